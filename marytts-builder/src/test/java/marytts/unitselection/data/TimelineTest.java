@@ -475,6 +475,37 @@ public class TimelineTest {
     
     
 
+    @Test
+    public void datagramSpanAgreesWithDatagrams() throws MaryConfigurationException, IOException {
+        TimelineReader[] timelines = new TimelineReader[] {
+                tlr, new TimelineReader(tlFileName, false) // with and without memory mapping
+        };
+        for (TimelineReader timeline : timelines) {
+            for (int testIdx = 0; testIdx < NUMDATAGRAMS; testIdx++) {
+                long onTime = getTimeOfIndex(testIdx);
+                long midTime = onTime + origDatagrams[testIdx].getDuration() / 2;
+                long span = origDatagrams[testIdx].getDuration() + 3;
+                long[] offset = new long[1];
+                long[] spanOffset = new long[1];
+                assertSpanEquals(timeline.getDatagrams(midTime, span, sampleRate, offset),
+                        timeline.getDatagramSpan(midTime, span, sampleRate, spanOffset));
+                assertEquals(offset[0], spanOffset[0]);
+                assertSpanEquals(timeline.getDatagrams(onTime, 3, sampleRate, null),
+                        timeline.getDatagramSpan(onTime, 3, sampleRate, null));
+                assertSpanEquals(timeline.getDatagrams(onTime*2, span*2, sampleRate/2),
+                        timeline.getDatagramSpan(onTime*2, span*2, sampleRate/2, null));
+            }
+        }
+    }
+
+    private static void assertSpanEquals(Datagram[] expected, DatagramSpan span) {
+        assertEquals(expected.length, span.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], span.getDatagram(i));
+            assertEquals(expected[i].getLength(), span.getLength(i));
+        }
+    }
+
     @AfterClass
     public static void tearDown() throws IOException {
         /* Delete the test file */
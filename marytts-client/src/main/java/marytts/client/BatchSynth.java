@@ -22,7 +22,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 import marytts.client.http.MaryHttpClient;
@@ -66,6 +69,8 @@ public class BatchSynth
      * Generate a set of audio files from text. Example call:
      * java -cp maryclient.jar -Dserver.host=localhost -Dserver.port=59125 -Dvoice=kevin16 marytts.client.BatchSynth target/dir path/to/texts.txt 
      * The text file must contain a target audio file name and the corresponding text in each line.
+     * With -Dbatch.size=50, the sentences are sent to the server 50 at a time, as batch requests
+     * which the server processes in parallel.
      * @param args first argument, the output directory; 
      * the rest, file names containing text files. Each text file contains, in each line, a file name followed by the sentence to generate as a .wav file.
      */
@@ -79,6 +84,7 @@ public class BatchSynth
         String locale = System.getProperty("locale", "en_US");
         String outputFormat = System.getProperty("output.type", "AUDIO");
         String extension = outputFormat.equals("AUDIO") ? ".wav" : "." + outputFormat.toLowerCase();
+        int batchSize = Integer.getInteger("batch.size", 0); // default: one request per sentence
         long globalStartTime = System.currentTimeMillis();
         int globalCounter = 0;
         for (int i=1; i<args.length; i++) {
@@ -89,6 +95,8 @@ public class BatchSynth
            File outputDir = new File(globalOutputDir.getPath()+"/"+genre);
            outputDir.mkdir();
            BufferedReader textReader = new BufferedReader(new InputStreamReader(new FileInputStream(texts), "utf-8"));
+           List<String> batchBasenames = new ArrayList<String>();
+           List<String> batchSentences = new ArrayList<String>();
            String line;
            while ((line = textReader.readLine()) != null) {
                line = line.trim();
@@ -110,6 +118,16 @@ public class BatchSynth
                
                //remove all backslashes
                sentence = sentence.replaceAll("\\\\","");
+               if (batchSize > 0) {
+                   batchBasenames.add(basename);
+                   batchSentences.add(sentence);
+                   if (batchSentences.size() == batchSize) {
+                       synthesizeBatch(mary, batchBasenames, batchSentences, inputFormat, outputFormat, locale, voice, outputDir, extension);
+                   }
+                   globalCounter++;
+                   genreCounter++;
+                   continue;
+               }
                FileOutputStream audio = new FileOutputStream(outputDir+"/"+basename+extension);
                mary.process(sentence, inputFormat, outputFormat, locale, "WAVE", voice, audio);
                audio.close();
@@ -118,6 +136,9 @@ public class BatchSynth
                globalCounter++;
                genreCounter++;
            }
+           if (batchSentences.size() > 0) {
+               synthesizeBatch(mary, batchBasenames, batchSentences, inputFormat, outputFormat, locale, voice, outputDir, extension);
+           }
            long genreEndTime = System.currentTimeMillis();
            System.out.println("Genre '"+genre+"' ("+genreCounter+" sentences) synthesized in "+ ((float)(genreEndTime-genreStartTime)/1000.) + " s");
         }
@@ -126,5 +147,32 @@ public class BatchSynth
 
     }
 
+    /**
+     * Send the sentences to the server in one batch request, write each result
+     * to outputDir/basename+extension, and clear the lists.
+     */
+    private static void synthesizeBatch(MaryHttpClient mary, final List<String> basenames, List<String> sentences,
+            String inputFormat, String outputFormat, String locale, String voice, final File outputDir, final String extension)
+    throws IOException
+    {
+        long startTime = System.currentTimeMillis();
+        mary.processBatch(sentences, inputFormat, outputFormat, locale, "WAVE", voice, false, new MaryHttpClient.BatchResultHandler() {
+            public void resultReceived(int index, int status, String contentType, byte[] data) throws IOException {
+                String basename = basenames.get(index);
+                if (status != 200) {
+                    System.err.println(basename+": error "+status+": "+new String(data, "UTF-8"));
+                    return;
+                }
+                FileOutputStream audio = new FileOutputStream(outputDir+"/"+basename+extension);
+                audio.write(data);
+                audio.close();
+            }
+        });
+        long endTime = System.currentTimeMillis();
+        System.out.println("Batch of "+sentences.size()+" sentences ("+basenames.get(0)+" to "+basenames.get(basenames.size()-1)+") synthesized in "+ ((float)(endTime-startTime)/1000.) + " s");
+        basenames.clear();
+        sentences.clear();
+    }
+
 }
 
@@ -21,8 +21,12 @@ package marytts.client.http;
 
 // General Java Classes
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.HttpURLConnection;
@@ -31,11 +35,20 @@ import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
@@ -52,6 +65,13 @@ import marytts.util.string.StringUtils;
 /**
  * An HTTP client implementing the MARY protocol.
  * It can be used as a command line client or from within java code.
+ * <p>
+ * All clients talking to the same server share a limited number of connections
+ * (system property <code>mary.client.maxConnections</code>, default 5), which are kept alive
+ * between requests; requests beyond that number wait for a connection to become free.
+ * Server metadata such as the lists of voices and data types is cached for
+ * <code>mary.client.metadata.ttl</code> seconds (default 60), so that creating
+ * many clients does not mean asking the server the same questions many times.
  * @author Marc Schr&ouml;der, oytun.turk
  * @see MaryGUIClient A GUI interface to this client
  * @see marytts.server.MaryServer Description of the MARY protocol
@@ -59,6 +79,23 @@ import marytts.util.string.StringUtils;
 
 public class MaryHttpClient extends MaryClient
 {
+    private static final int MAX_CONNECTIONS_PER_HOST = (int) getLongProperty("mary.client.maxConnections", 5);
+    private static final long METADATA_TTL = getLongProperty("mary.client.metadata.ttl", 60) * 1000;
+
+    /** For each server, the connections open to it. */
+    private static final Map<String, HostConnections> hostConnections = new HashMap<String, HostConnections>();
+    /** Server info requests and their answers. */
+    private static final Map<String, CachedInfo> infoCache = new ConcurrentHashMap<String, CachedInfo>();
+
+    private static long getLongProperty(String name, long defaultValue)
+    {
+        try {
+            return Long.getLong(name, defaultValue);
+        } catch (SecurityException e) { // e.g., in an applet
+            return defaultValue;
+        }
+    }
+
 
     /**
      * The simplest way to create a mary client. It will connect to the
@@ -304,19 +341,34 @@ public class MaryHttpClient extends MaryClient
     private String serverInfoRequest(URL url)
     throws IOException
     {
-        HttpURLConnection http = (HttpURLConnection)url.openConnection();
-        http.setRequestMethod("GET");
-        http.connect();
+        String key = url.toString();
+        CachedInfo cached = infoCache.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.time < METADATA_TTL) {
+            return cached.info;
+        }
+        String info;
+        Semaphore permits = acquireConnection();
+        try {
+            HttpURLConnection http = (HttpURLConnection)url.openConnection();
+            http.setRequestMethod("GET");
+            http.connect();
 
-        if(http.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            String errorData = "";
-            try {
-                errorData = FileUtils.getStreamAsString(http.getErrorStream(), "UTF-8");
-            } catch (Exception e) {}
-            throw new IOException(http.getResponseCode() + ":" + http.getResponseMessage()
-                    +"\n"+errorData);
-        }
-        return FileUtils.getStreamAsString(http.getInputStream(), "UTF-8");
+            if(http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                String errorData = "";
+                try {
+                    errorData = readFully(http.getErrorStream());
+                } catch (Exception e) {}
+                throw new IOException(http.getResponseCode() + ":" + http.getResponseMessage()
+                        +"\n"+errorData);
+            }
+            info = readFully(http.getInputStream());
+        } finally {
+            permits.release();
+        }
+        if (METADATA_TTL > 0) {
+            infoCache.put(key, new CachedInfo(info));
+        }
+        return info;
 /*  The following is example code if we were to use HttpClient:
  *         HttpClient httpclient = new DefaultHttpClient();
 
@@ -412,35 +464,125 @@ public class MaryHttpClient extends MaryClient
             }
         }
 
-        //to make HTTP Post request with HttpURLConnection
-        URL url = new URL(data.hostAddress.getHttpAddress()+"/process");
-        HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+        return getInputStream(post("process", params.toString()));
+    }
 
-        conn.setRequestMethod("POST");
-        conn.setAllowUserInteraction(false); // no user interact [like pop up]
-        conn.setDoOutput(true); // want to send
-        conn.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
-        OutputStream ost = conn.getOutputStream();
-        PrintWriter pw = new PrintWriter(ost);
-        pw.print(params.toString()); // here we "send" our body!
-        pw.flush();
-        pw.close();
+    /**
+     * Send the given form data in an HTTP POST request.
+     * This takes one of the connections to the server, which is given back
+     * when the stream returned by {@link #getInputStream(HttpURLConnection)} is closed.
+     * @param request the request path on the server, e.g. "process"
+     * @param params the url-encoded parameters
+     * @return the connection, from which the response can be read
+     */
+    private HttpURLConnection post(String request, String params) throws IOException
+    {
+        Semaphore permits = acquireConnection();
+        try {
+            //to make HTTP Post request with HttpURLConnection
+            URL url = new URL(data.hostAddress.getHttpAddress()+"/"+request);
+            HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+
+            conn.setRequestMethod("POST");
+            conn.setAllowUserInteraction(false); // no user interact [like pop up]
+            conn.setDoOutput(true); // want to send
+            conn.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
+            OutputStream ost = conn.getOutputStream();
+            PrintWriter pw = new PrintWriter(ost);
+            pw.print(params); // here we "send" our body!
+            pw.flush();
+            pw.close();
+            return conn;
+        } catch (IOException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
 
+    /**
+     * Get the body of the response to a request sent with {@link #post(String, String)}.
+     * The stream must be closed after use, so that the connection can be reused.
+     */
+    private InputStream getInputStream(HttpURLConnection conn) throws IOException
+    {
+        final Semaphore permits = getHostConnections(data.hostAddress).permits;
         //and InputStream from here will be body
         try {
-            return conn.getInputStream();
+            return new FilterInputStream(conn.getInputStream()) {
+                private boolean closed = false;
+                @Override
+                public void close() throws IOException {
+                    if (closed) return;
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            };
         } catch (IOException e) {
         	String error;
         	try {
-        		error = FileUtils.getStreamAsString(conn.getErrorStream(), "UTF-8");
+        		error = readFully(conn.getErrorStream());
         	} catch (IOException errE) {
         		// ok cannot get error message, just re-throw original e
         		throw new IOException("No detailed error message available", e);
+        	} finally {
+        		permits.release();
         	}
     		throw new IOException("Error message from server:\n"+error, e);
         }
 
     }
+
+    /**
+     * Read a response body as UTF-8 text and close the stream,
+     * so that its connection can be used for the next request.
+     */
+    private static String readFully(InputStream in) throws IOException
+    {
+        if (in == null) {
+            throw new IOException("No response body");
+        }
+        try {
+            return FileUtils.getStreamAsString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Wait until one of the connections to the server is free, and take it.
+     * @return the permits from which the connection was taken, and to which it must be released.
+     */
+    private Semaphore acquireConnection() throws IOException
+    {
+        Semaphore permits = getHostConnections(data.hostAddress).permits;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            IOException ioe = new InterruptedIOException("Interrupted while waiting for a connection to "+data.hostAddress.getFullAddress());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        return permits;
+    }
+
+    private static HostConnections getHostConnections(Address address)
+    {
+        synchronized (hostConnections) {
+            HostConnections connections = hostConnections.get(address.getHttpAddress());
+            if (connections == null) {
+                connections = new HostConnections(address, MAX_CONNECTIONS_PER_HOST);
+                hostConnections.put(address.getHttpAddress(), connections);
+            }
+            return connections;
+        }
+    }
     
     private Map<String,String> effectsString2EffectsMap(String effectsString)
     {
@@ -552,7 +694,11 @@ public class MaryHttpClient extends MaryClient
                         //maryDataSocket.close();
                     } catch (Exception e) {
                         e.printStackTrace();
-                    }                    
+                    } finally {
+                        try {
+                            fromServerStream.close();
+                        } catch (IOException ioe) {}
+                    }
 
                     //try {
                     //    warningReader.join();
@@ -581,14 +727,18 @@ public class MaryHttpClient extends MaryClient
         { 
             OutputStream os = (OutputStream) output;
             InputStream bis = new BufferedInputStream(fromServerStream);
-            byte[] bbuf = new byte[1024];
-            int nr;
-            while ((nr = bis.read(bbuf, 0, bbuf.length)) != -1) 
-            {
-                //System.err.println("Read " + nr + " bytes from server.");
-                os.write(bbuf, 0, nr);
+            try {
+                byte[] bbuf = new byte[1024];
+                int nr;
+                while ((nr = bis.read(bbuf, 0, bbuf.length)) != -1) 
+                {
+                    //System.err.println("Read " + nr + " bytes from server.");
+                    os.write(bbuf, 0, nr);
+                }
+                os.flush();
+            } finally {
+                bis.close();
             }
-            os.flush();
             
             if (timeout > 0)
                 timer.cancel();
@@ -617,5 +767,250 @@ public class MaryHttpClient extends MaryClient
 
     
 
+
+    ///////////////////////////////////////////////////////////////////////
+    //////////////////////// Asynchronous requests ////////////////////////
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Send a request to the server without waiting for the result. The request is processed
+     * as soon as one of the connections to the server is free. Sending many requests this way
+     * keeps all connections to the server busy.
+     * @param input a textual representation of the input data
+     * @param inputType the name of the input data type, e.g. TEXT or RAWMARYXML.
+     * @param outputType the name of the output data type, e.g. AUDIO or ACOUSTPARAMS.
+     * @param locale the locale of the input
+     * @param audioType the name of the audio format, e.g. "WAVE" or "MP3".
+     * @param defaultVoiceName the name of the voice to use, e.g. de7 or us1.
+     * @param defaultStyle the style to use, or null
+     * @param defaultEffects the audio effects to apply, e.g. "Robot(amount=50)", or null
+     * @param outputTypeParams any additional parameters for the output type, or null
+     * @return the future result of the request; its get() method throws an ExecutionException
+     * with an IOException as the cause if communication with the server fails.
+     */
+    public Future<byte[]> processAsync(final String input, final String inputType, final String outputType, final String locale,
+            final String audioType, final String defaultVoiceName, final String defaultStyle, final String defaultEffects,
+            final String outputTypeParams)
+    {
+        return getHostConnections(data.hostAddress).getExecutor().submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream result = new ByteArrayOutputStream();
+                process(input, inputType, outputType, locale, audioType, defaultVoiceName, defaultStyle, defaultEffects,
+                        outputTypeParams, result);
+                return result.toByteArray();
+            }
+        });
+    }
+
+    public Future<byte[]> processAsync(String input, String inputType, String outputType, String locale,
+            String audioType, String defaultVoiceName)
+    {
+        return processAsync(input, inputType, outputType, locale, audioType, defaultVoiceName, "", null, null);
+    }
+
+
+
+    ///////////////////////////////////////////////////////////////////////
+    //////////////////////// Batch synthesis requests /////////////////////
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Receives the results of a batch request sent with
+     * {@link MaryHttpClient#processBatch(List, String, String, String, String, String, boolean, BatchResultHandler)}.
+     */
+    public static interface BatchResultHandler
+    {
+        /**
+         * Called once for each input of the batch.
+         * @param index the position of the input in the list of inputs
+         * @param status the HTTP status of processing this input; 200 if it was processed successfully
+         * @param contentType the MIME type of data
+         * @param data the output for this input, or an error message if status is not 200
+         * @throws IOException if the result cannot be handled; this aborts the batch.
+         */
+        public void resultReceived(int index, int status, String contentType, byte[] data) throws IOException;
+    }
+
+    /**
+     * Process many inputs with the same settings in one request. The server processes
+     * the inputs in parallel and sends back each result as soon as it is available
+     * (if inOrder is false) or as soon as the results of all previous inputs have been sent.
+     * @param inputs the inputs to process
+     * @param inputType the name of the input data type, e.g. TEXT or RAWMARYXML.
+     * @param outputType the name of the output data type, e.g. AUDIO.
+     * @param locale the locale of the inputs
+     * @param audioType the name of the audio format, e.g. "WAVE" or "MP3"; only used if outputType is AUDIO.
+     * @param defaultVoiceName the name of the voice to use, or null for the default voice of the locale
+     * @param inOrder whether to receive the results in the order of the inputs
+     * @param handler receives the result of each input, in the thread calling this method
+     * @throws IOException if communication with the server fails.
+     */
+    public void processBatch(List<String> inputs, String inputType, String outputType, String locale, String audioType,
+            String defaultVoiceName, boolean inOrder, BatchResultHandler handler) throws IOException
+    {
+        StringBuilder params = new StringBuilder();
+        params.append("INPUT_TEXT=").append(URLEncoder.encode(joinBatchInputs(inputs), "UTF-8"));
+        params.append("&INPUT_TYPE=").append(URLEncoder.encode(inputType, "UTF-8"));
+        params.append("&OUTPUT_TYPE=").append(URLEncoder.encode(outputType, "UTF-8"));
+        if (locale != null) {
+            params.append("&LOCALE=").append(URLEncoder.encode(locale, "UTF-8"));
+        }
+        if (audioType != null) {
+            params.append("&AUDIO=").append(URLEncoder.encode(audioType + "_FILE", "UTF-8"));
+        }
+        if (defaultVoiceName != null) {
+            params.append("&VOICE=").append(URLEncoder.encode(defaultVoiceName, "UTF-8"));
+        }
+        params.append("&BATCH_ORDER=").append(inOrder ? "input" : "completion");
+        HttpURLConnection conn = post("processbatch", params.toString());
+        InputStream in = getInputStream(conn);
+        String contentType = conn.getContentType();
+        int b = contentType != null ? contentType.indexOf("boundary=") : -1;
+        if (b == -1) {
+            in.close();
+            throw new IOException("Expected a multipart response, got content type "+contentType);
+        }
+        try {
+            readBatchResponse(new BufferedInputStream(in), contentType.substring(b + "boundary=".length()).trim(), handler);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Put the inputs of a batch on one line each, writing line breaks as "\n" and backslashes as "\\".
+     */
+    static String joinBatchInputs(List<String> inputs)
+    {
+        StringBuilder text = new StringBuilder();
+        for (String input : inputs) {
+            for (int i=0; i<input.length(); i++) {
+                char c = input.charAt(i);
+                if (c == '\\') {
+                    text.append("\\\\");
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else if (c != '\r') {
+                    text.append(c);
+                }
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Read the parts of a multipart batch response and pass them to the handler.
+     */
+    static void readBatchResponse(InputStream in, String boundary, BatchResultHandler handler) throws IOException
+    {
+        String delimiter = "--" + boundary;
+        String line = readLine(in);
+        while (line != null && !line.startsWith(delimiter)) { // skip the preamble
+            line = readLine(in);
+        }
+        while (line != null && !line.equals(delimiter + "--")) {
+            if (!line.equals(delimiter)) {
+                throw new IOException("Unexpected line in batch response: "+line);
+            }
+            Map<String, String> headers = new HashMap<String, String>();
+            while ((line = readLine(in)) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon+1).trim());
+                }
+            }
+            byte[] data;
+            int index;
+            int status;
+            try {
+                data = new byte[Integer.parseInt(headers.get("content-length"))];
+                index = Integer.parseInt(headers.get("x-mary-batch-index"));
+                status = Integer.parseInt(headers.get("x-mary-batch-status"));
+            } catch (NumberFormatException e) {
+                throw new IOException("Missing or bad headers in batch response: "+headers);
+            }
+            new DataInputStream(in).readFully(data);
+            readLine(in); // the line break ending the data
+            handler.resultReceived(index, status, headers.get("content-type"), data);
+            line = readLine(in);
+        }
+        if (line == null) {
+            throw new IOException("Batch response ended prematurely");
+        }
+    }
+
+    /**
+     * Read one line of ASCII text, without the line break.
+     * @return the line, or null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        if (c == -1 && line.length() == 0) {
+            return null;
+        }
+        return line.toString();
+    }
+
+
+    /**
+     * The connections open to one server, and the threads processing
+     * asynchronous requests to it.
+     */
+    private static class HostConnections
+    {
+        final Semaphore permits;
+        private final Address address;
+        private final int maxConnections;
+        private ExecutorService executor;
+
+        HostConnections(Address address, int maxConnections)
+        {
+            this.address = address;
+            this.maxConnections = Math.max(1, maxConnections);
+            this.permits = new Semaphore(this.maxConnections, true);
+        }
+
+        /**
+         * One thread per connection: requests waiting for a connection wait in the queue,
+         * not in a thread of their own.
+         */
+        synchronized ExecutorService getExecutor()
+        {
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(maxConnections, new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "MaryHttpClient "+address.getFullAddress()+" "+count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * The answer to a server info request, and when it was received.
+     */
+    private static class CachedInfo
+    {
+        final String info;
+        final long time;
+
+        CachedInfo(String info)
+        {
+            this.info = info;
+            this.time = System.currentTimeMillis();
+        }
+    }
 }
 
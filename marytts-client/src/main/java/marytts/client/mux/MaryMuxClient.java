@@ -0,0 +1,373 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.client.mux;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import marytts.util.http.Address;
+import marytts.util.mux.Frame;
+
+/**
+ * A client for the multiplexing MARY protocol (see {@link Frame}), which sends
+ * any number of concurrent requests over one persistent connection to a MARY server
+ * running with <code>server=mux</code>. The client is thread-safe: requests can be sent
+ * from any number of threads, and their output arrives independently of each other.
+ * <p>
+ * Usage:
+ * <pre>
+ *   MaryMuxClient mary = new MaryMuxClient(new Address("localhost", 59125));
+ *   Future&lt;byte[]&gt; wav = mary.submit("Hello world", "TEXT", "AUDIO", "en_US", "WAVE", null);
+ *   InputStream streamed = mary.open("Hello again", "TEXT", "AUDIO", "en_US", "STREAMING_AU", null);
+ *   ...
+ *   mary.close();
+ * </pre>
+ *
+ * @author agent
+ */
+public class MaryMuxClient
+{
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final Map<Integer, PendingRequest> pending = new ConcurrentHashMap<Integer, PendingRequest>();
+    private int nextId = 1;
+    private volatile IOException failure;
+
+    /**
+     * Connect to the server at the given address.
+     * @throws IOException if the server cannot be reached
+     */
+    public MaryMuxClient(Address serverAddress) throws IOException
+    {
+        socket = new Socket(serverAddress.getHost(), serverAddress.getPort());
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread("MaryMuxClient reader " + serverAddress.getFullAddress()) {
+            public void run() {
+                readFrames(in);
+            }
+        };
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Send a request and collect its output.
+     * @param input a textual representation of the input data
+     * @param inputType the name of the input data type, e.g. TEXT or RAWMARYXML.
+     * @param outputType the name of the output data type, e.g. AUDIO or ACOUSTPARAMS.
+     * @param locale the locale of the input, e.g. en_US
+     * @param audioType the name of the audio format, e.g. "WAVE" or "MP3"; can be null if outputType is not AUDIO.
+     * @param voice the name of the voice to use, or null for the default voice of the locale.
+     * @return the future output; its get() method throws an ExecutionException with an IOException
+     * as the cause if the request fails or the connection is lost.
+     * @throws IOException if the request cannot be sent
+     */
+    public Future<byte[]> submit(String input, String inputType, String outputType, String locale, String audioType, String voice)
+    throws IOException
+    {
+        return submit(input, toParameters(inputType, outputType, locale, audioType, voice));
+    }
+
+    /**
+     * Send a request with the given parameters and collect its output.
+     * @param parameters the request parameters, see {@link Frame}
+     */
+    public Future<byte[]> submit(String input, Map<String, String> parameters) throws IOException
+    {
+        PendingRequest request = new PendingRequest(false);
+        send(request, parameters, input);
+        return request;
+    }
+
+    /**
+     * Send a request and read its output as it arrives, e.g. audio of type "STREAMING_AU".
+     * The parameters are as for {@link #submit(String, String, String, String, String, String)}.
+     * @return a stream of the output data; reading from it throws an IOException if the request fails.
+     * @throws IOException if the request cannot be sent
+     */
+    public InputStream open(String input, String inputType, String outputType, String locale, String audioType, String voice)
+    throws IOException
+    {
+        return open(input, toParameters(inputType, outputType, locale, audioType, voice));
+    }
+
+    /**
+     * Send a request with the given parameters and read its output as it arrives.
+     * @param parameters the request parameters, see {@link Frame}
+     */
+    public InputStream open(String input, Map<String, String> parameters) throws IOException
+    {
+        PendingRequest request = new PendingRequest(true);
+        send(request, parameters, input);
+        return request.getInputStream();
+    }
+
+    /**
+     * Close the connection. Requests which have not been answered yet fail.
+     */
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+
+    private static Map<String, String> toParameters(String inputType, String outputType, String locale, String audioType, String voice)
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        parameters.put("IN", inputType);
+        parameters.put("OUT", outputType);
+        parameters.put("LOCALE", locale);
+        if (audioType != null) {
+            parameters.put("AUDIO", audioType);
+        }
+        if (voice != null) {
+            parameters.put("VOICE", voice);
+        }
+        return parameters;
+    }
+
+    private void send(PendingRequest request, Map<String, String> parameters, String input) throws IOException
+    {
+        synchronized (out) {
+            if (failure != null) {
+                throw new IOException("Connection to server lost", failure);
+            }
+            int id = nextId++;
+            pending.put(id, request);
+            try {
+                Frame.request(id, parameters, input).writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                pending.remove(id);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Read frames from the server and pass them to their requests, until the connection is closed.
+     */
+    private void readFrames(DataInputStream in)
+    {
+        IOException problem = null;
+        try {
+            Frame frame;
+            while ((frame = Frame.readFrom(in)) != null) {
+                PendingRequest request = frame.getType() == Frame.DATA
+                    ? pending.get(frame.getRequestId())
+                    : pending.remove(frame.getRequestId());
+                if (request == null) {
+                    continue; // not ours -- ignore
+                }
+                switch (frame.getType()) {
+                case Frame.DATA:
+                    request.dataReceived(frame.getPayload());
+                    break;
+                case Frame.END:
+                    request.finished(null);
+                    break;
+                case Frame.ERROR:
+                    request.finished(new IOException("Error message from server:\n" + frame.getText()));
+                    break;
+                default:
+                    request.finished(new IOException("Unexpected frame type " + frame.getType()));
+                }
+            }
+        } catch (IOException e) {
+            problem = e;
+        }
+        IOException lost = new IOException("Connection to server lost");
+        if (problem != null) {
+            lost.initCause(problem);
+        }
+        synchronized (out) {
+            failure = lost;
+        }
+        List<PendingRequest> unanswered = new ArrayList<PendingRequest>(pending.values());
+        pending.clear();
+        for (PendingRequest request : unanswered) {
+            request.finished(lost);
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {}
+    }
+
+    /**
+     * A request waiting for its output. Either the output is collected and returned
+     * as a whole by {@link #get()}, or it can be read as it arrives
+     * from {@link #getInputStream()}.
+     */
+    private static class PendingRequest implements Future<byte[]>
+    {
+        private static final byte[] END_OF_DATA = new byte[0];
+
+        private final boolean streaming;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+        private boolean done = false;
+        private IOException problem;
+
+        PendingRequest(boolean streaming)
+        {
+            this.streaming = streaming;
+        }
+
+        void dataReceived(byte[] chunk)
+        {
+            if (streaming) {
+                chunks.add(chunk);
+            } else {
+                synchronized (this) {
+                    data.write(chunk, 0, chunk.length);
+                }
+            }
+        }
+
+        synchronized void finished(IOException problem)
+        {
+            this.problem = problem;
+            this.done = true;
+            notifyAll();
+            chunks.add(END_OF_DATA);
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        public synchronized boolean isDone()
+        {
+            return done;
+        }
+
+        public synchronized byte[] get() throws InterruptedException, ExecutionException
+        {
+            while (!done) {
+                wait();
+            }
+            return getResult();
+        }
+
+        public synchronized byte[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+        {
+            long end = System.currentTimeMillis() + unit.toMillis(timeout);
+            long left;
+            while (!done && (left = end - System.currentTimeMillis()) > 0) {
+                wait(left);
+            }
+            if (!done) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private byte[] getResult() throws ExecutionException
+        {
+            if (problem != null) {
+                throw new ExecutionException(problem);
+            }
+            return data.toByteArray();
+        }
+
+        InputStream getInputStream()
+        {
+            return new InputStream() {
+                private byte[] chunk = new byte[0];
+                private int pos = 0;
+
+                /**
+                 * Make sure there is data in the current chunk.
+                 * @return false at the end of the data
+                 */
+                private boolean fill() throws IOException
+                {
+                    while (pos == chunk.length) {
+                        if (chunk == END_OF_DATA) {
+                            return false;
+                        }
+                        try {
+                            chunk = chunks.take();
+                        } catch (InterruptedException e) {
+                            throw new IOException("Interrupted while waiting for data");
+                        }
+                        pos = 0;
+                        if (chunk == END_OF_DATA) {
+                            synchronized (PendingRequest.this) {
+                                if (problem != null) {
+                                    throw problem;
+                                }
+                            }
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public int read() throws IOException
+                {
+                    if (!fill()) return -1;
+                    return chunk[pos++] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException
+                {
+                    if (len == 0) return 0;
+                    if (!fill()) return -1;
+                    int n = Math.min(len, chunk.length - pos);
+                    System.arraycopy(chunk, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+
+                @Override
+                public int available()
+                {
+                    return chunk.length - pos;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.client.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.util.http.Address;
+import marytts.util.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author agent
+ *
+ */
+public class MaryHttpClientTest
+{
+    private HttpServer server;
+    private Address address;
+    private final ConcurrentHashMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                requests.putIfAbsent(path, new AtomicInteger());
+                requests.get(path).incrementAndGet();
+                String answer = "";
+                if (path.equals("/version")) {
+                    answer = "Mary TTS server 5.0 (impl. test)";
+                } else if (path.equals("/process")) {
+                    maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                    String query = FileUtils.getStreamAsString(exchange.getRequestBody(), "UTF-8");
+                    answer = URLDecoder.decode(query.substring("INPUT_TEXT=".length(), query.indexOf('&')), "UTF-8");
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {}
+                    running.decrementAndGet();
+                }
+                byte[] bytes = answer.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+        address = new Address("localhost", server.getAddress().getPort());
+    }
+
+    @After
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void sharesServerInfoBetweenClients() throws IOException
+    {
+        new MaryHttpClient(address, false, true);
+        new MaryHttpClient(address, false, true);
+        Assert.assertEquals(1, requests.get("/version").get());
+        Assert.assertEquals(1, requests.get("/voices").get());
+    }
+
+    @Test
+    public void processesAsynchronouslyOnLimitedConnections() throws Exception
+    {
+        MaryHttpClient client = new MaryHttpClient(address, false, true);
+        List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+        for (int i=0; i<20; i++) {
+            results.add(client.processAsync("input "+i, "TEXT", "ALLOPHONES", "en_US", null, null));
+        }
+        for (int i=0; i<20; i++) {
+            Assert.assertEquals("input "+i, new String(results.get(i).get(), "UTF-8"));
+        }
+        Assert.assertEquals(20, requests.get("/process").get());
+        Assert.assertTrue("at most 5 connections, but got "+maxRunning.get(), maxRunning.get() <= 5);
+        Assert.assertTrue(maxRunning.get() > 1);
+    }
+}
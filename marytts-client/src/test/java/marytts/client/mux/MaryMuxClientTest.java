@@ -0,0 +1,147 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.client.mux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import marytts.server.mux.MuxServer;
+import marytts.util.http.Address;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class MaryMuxClientTest
+{
+    /**
+     * Answers each request with its input repeated as many times as the REPEAT parameter says,
+     * one repetition at a time.
+     */
+    private static class EchoServer extends MuxServer
+    {
+        EchoServer()
+        {
+            super(0, 2, 4);
+        }
+
+        @Override
+        protected void process(Map<String, String> parameters, String input, OutputStream output) throws Exception
+        {
+            if (input.equals("fail")) {
+                throw new Exception("cannot process " + input);
+            }
+            int repeat = Integer.parseInt(parameters.get("REPEAT"));
+            for (int i=0; i<repeat; i++) {
+                output.write(input.getBytes("UTF-8"));
+                output.flush();
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private MuxServer server;
+    private MaryMuxClient client;
+
+    @Before
+    public void connect() throws IOException
+    {
+        server = new EchoServer();
+        server.bind();
+        new Thread(server).start();
+        client = new MaryMuxClient(new Address("localhost", server.getLocalPort()));
+    }
+
+    @After
+    public void disconnect() throws IOException
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    private static Map<String, String> repeat(int times)
+    {
+        Map<String, String> parameters = new java.util.HashMap<String, String>();
+        parameters.put("REPEAT", String.valueOf(times));
+        return parameters;
+    }
+
+    private static String repeat(String s, int times)
+    {
+        StringBuilder result = new StringBuilder();
+        for (int i=0; i<times; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void answersConcurrentRequestsOnOneConnection() throws Exception
+    {
+        List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+        for (int i=0; i<50; i++) {
+            results.add(client.submit("request " + i + ";", repeat(i)));
+        }
+        for (int i=0; i<50; i++) {
+            Assert.assertEquals(repeat("request " + i + ";", i), new String(results.get(i).get(), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void streamsLargeOutput() throws Exception
+    {
+        String chunk = repeat("0123456789", 1000);
+        InputStream in = client.open(chunk, repeat(200));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        Assert.assertEquals(200 * chunk.length(), out.size());
+        Assert.assertEquals(repeat(chunk, 200), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void reportsErrorsPerRequest() throws Exception
+    {
+        Future<byte[]> failing = client.submit("fail", repeat(1));
+        Future<byte[]> working = client.submit("ok", repeat(2));
+        try {
+            failing.get();
+            Assert.fail("expected an exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("cannot process fail"));
+        }
+        Assert.assertEquals("okok", new String(working.get(), "UTF-8"));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.client.mux;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import marytts.datatypes.MaryDataType;
+import marytts.server.Request;
+import marytts.server.mux.MuxServer;
+import marytts.util.http.Address;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class MuxServerTest
+{
+    /**
+     * Processes requests with a module that fails half way through.
+     */
+    private static class FailingServer extends MuxServer
+    {
+        FailingServer()
+        {
+            super(0, 1, 2);
+        }
+
+        @Override
+        protected void processRequest(Request request) throws Exception
+        {
+            Assert.assertNotNull(request.getAudio());
+            throw new Exception("module failed");
+        }
+    }
+
+    private MuxServer server;
+    private MaryMuxClient client;
+
+    @BeforeClass
+    public static void registerDataTypes()
+    {
+        // Data types can be registered only once per JVM, usually by the modules using them
+        if (!MaryDataType.getRegistrationComplete()) {
+            MaryDataType.registerDataType(MaryDataType.TEXT);
+            MaryDataType.registerDataType(MaryDataType.AUDIO);
+            MaryDataType.setRegistrationComplete();
+        }
+    }
+
+    @Before
+    public void connect() throws IOException
+    {
+        server = new FailingServer();
+        server.bind();
+        new Thread(server).start();
+        client = new MaryMuxClient(new Address("localhost", server.getLocalPort()));
+    }
+
+    @After
+    public void disconnect() throws IOException
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test(timeout=10000)
+    public void reportsFailedStreamingRequests() throws Exception
+    {
+        Future<byte[]> result = client.submit("Hello", "TEXT", "AUDIO", "en_US", "STREAMING_AU", null);
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected an exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("module failed"));
+        }
+    }
+
+    @Test(timeout=10000)
+    public void reportsFailedRequests() throws Exception
+    {
+        Future<byte[]> result = client.submit("Hello", "TEXT", "AUDIO", "en_US", "WAVE", null);
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected an exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("module failed"));
+        }
+    }
+
+    @Test(timeout=10000)
+    public void rejectsStreamingOfOtherAudioTypes() throws Exception
+    {
+        Future<byte[]> result = client.submit("Hello", "TEXT", "AUDIO", "en_US", "STREAMING_WAVE", null);
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected an exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("Cannot stream audio of type WAVE"));
+        }
+    }
+}
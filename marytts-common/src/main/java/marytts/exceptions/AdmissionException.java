@@ -0,0 +1,46 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.exceptions;
+
+/**
+ * Thrown when a request is not admitted for processing because the server is too busy.
+ * Clients may try again later.
+ *
+ * @author agent
+ */
+public class AdmissionException extends Exception
+{
+    private final String reason;
+
+    /**
+     * @param reason a short machine-readable reason, e.g. "queue_full" or "timeout"
+     * @param message a human-readable explanation
+     */
+    public AdmissionException(String reason, String message)
+    {
+        super(message);
+        this.reason = reason;
+    }
+
+    public String getReason()
+    {
+        return reason;
+    }
+}
@@ -73,7 +73,7 @@ public class AllophoneSet
      * @param identifier the identifier of the allophone set to test. 
      * @return true if the registry already contains the given allophone set, false otherwise.
      */
-    public static boolean hasAllophoneSet(String identifier) {
+    public static synchronized boolean hasAllophoneSet(String identifier) {
     	return allophoneSets.containsKey(identifier);
     }
     
@@ -83,7 +83,7 @@ public class AllophoneSet
      * @param identifier the identifier of the allophone set
      * @return the allophone set if available, null otherwise.
      */
-    public static AllophoneSet getAllophoneSetById(String identifier) {
+    public static synchronized AllophoneSet getAllophoneSetById(String identifier) {
     	return allophoneSets.get(identifier);
     }
     
@@ -96,7 +96,7 @@ public class AllophoneSet
      * @throws MaryConfigurationException if no allophone set can be loaded from the given file.
      */
 
-    public static AllophoneSet getAllophoneSet(InputStream inStream, String identifier) 
+    public static synchronized AllophoneSet getAllophoneSet(InputStream inStream, String identifier) 
     throws MaryConfigurationException {
     	AllophoneSet as = allophoneSets.get(identifier);
     	if (as == null) {
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import marytts.exceptions.RequestCancelledException;
+
+/**
+ * Tells the code processing a request that the result is no longer needed,
+ * e.g. because the client has disconnected.
+ * <p>
+ * Cancellation is cooperative: whoever processes a request binds the request's token
+ * to the processing thread with {@link #setCurrent(CancellationToken)}, and long-running
+ * code calls {@link #checkCurrent()} now and then, which throws a {@link RequestCancelledException}
+ * once the token is cancelled. Code which hands on work to other threads takes the
+ * {@link #current()} token along and binds it there.
+ * <p>
+ * A token can have a parent, e.g. the token of a client connection: cancelling the parent
+ * cancels all of its children.
+ *
+ * @author agent
+ */
+public class CancellationToken
+{
+    private static final ThreadLocal<CancellationToken> current = new ThreadLocal<CancellationToken>();
+
+    /**
+     * The token bound to the current thread.
+     * @return the token, or null if the thread is not processing a cancellable request.
+     */
+    public static CancellationToken current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Bind the given token to the current thread.
+     * @param token the token, or null to unbind
+     * @return the token bound so far, to be restored when done.
+     */
+    public static CancellationToken setCurrent(CancellationToken token)
+    {
+        CancellationToken previous = current.get();
+        if (token != null) {
+            current.set(token);
+        } else {
+            current.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Check the token bound to the current thread, if any.
+     * @throws RequestCancelledException if it has been cancelled.
+     */
+    public static void checkCurrent()
+    {
+        CancellationToken token = current.get();
+        if (token != null) {
+            token.check();
+        }
+    }
+
+    private final CancellationToken parent;
+    private volatile boolean cancelled = false;
+
+    public CancellationToken()
+    {
+        this(null);
+    }
+
+    /**
+     * @param parent a token whose cancellation also cancels this token, or null.
+     */
+    public CancellationToken(CancellationToken parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Cancel this token and all of its children.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * @throws RequestCancelledException if this token has been cancelled.
+     */
+    public void check()
+    {
+        if (isCancelled()) {
+            throw new RequestCancelledException();
+        }
+    }
+}
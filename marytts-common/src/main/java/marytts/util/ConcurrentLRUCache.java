@@ -0,0 +1,196 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded in-memory cache which can be used from many threads at the same time.
+ * The entries are spread over a number of independently locked segments, each of
+ * which evicts its least recently used entry when it is full; the cache as a whole
+ * therefore holds at most <code>maxSize</code> entries and is approximately LRU.
+ * Null keys and values are not supported.
+ *
+ * @author agent
+ *
+ */
+public class ConcurrentLRUCache<K, V>
+{
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache holding at most the given number of entries.
+     * @param maxSize the maximum number of entries; must be positive.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(int maxSize)
+    {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got "+maxSize);
+        }
+        this.maxSize = maxSize;
+        int numSegments = 1;
+        while (numSegments < MAX_SEGMENTS && numSegments * 2 * 8 <= maxSize) {
+            numSegments *= 2;
+        }
+        segments = (Segment<K, V>[]) new Segment<?, ?>[numSegments];
+        for (int i=0; i<numSegments; i++) {
+            // distribute the remainder so that the segment capacities add up to maxSize
+            int capacity = maxSize / numSegments + (i < maxSize % numSegments ? 1 : 0);
+            segments[i] = new Segment<K, V>(capacity);
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Look up a value, marking it as recently used.
+     * @param key the key
+     * @return the cached value, or null if there is none.
+     */
+    public V get(K key)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Add a value to the cache, possibly evicting the least recently used entry of its segment.
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value)
+    {
+        if (value == null) throw new NullPointerException("Cannot cache null values");
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Remove an entry from the cache.
+     * @param key the key
+     * @return the value previously cached for key, or null.
+     */
+    public V remove(K key)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    /**
+     * Remove all entries. The hit and miss counts are not reset.
+     */
+    public void clear()
+    {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the current number of entries.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of calls to {@link #get(Object)} which found a value.
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of calls to {@link #get(Object)} which did not find a value.
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of lookups which found a value, or 0 if there were no lookups yet.
+     */
+    public double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V>
+    {
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in milliseconds, using a fixed set of
+ * roughly logarithmically spaced buckets. Recording a value costs a bucket search
+ * and three atomic increments, so it can be used on the processing hot path from
+ * many threads at the same time. Percentiles are estimated by linear interpolation
+ * within the bucket containing the requested rank.
+ *
+ * @author agent
+ *
+ */
+public class LatencyHistogram
+{
+    /**
+     * Upper bounds (inclusive) of the buckets, in milliseconds. The last bucket is unbounded.
+     */
+    public static final long[] BUCKET_BOUNDS = new long[] {
+        1, 2, 3, 5, 7, 10, 15, 20, 30, 50, 70, 100, 150, 200, 300, 500, 700,
+        1000, 1500, 2000, 3000, 5000, 7000, 10000, 15000, 20000, 30000, 60000, 120000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one observation.
+     * @param millis the duration to record, in milliseconds; negative values are counted as 0.
+     */
+    public void record(long millis)
+    {
+        if (millis < 0) millis = 0;
+        buckets.incrementAndGet(bucketIndex(millis));
+        count.incrementAndGet();
+        sum.addAndGet(millis);
+        long m;
+        while ((m = max.get()) < millis) {
+            if (max.compareAndSet(m, millis)) break;
+        }
+    }
+
+    private static int bucketIndex(long millis)
+    {
+        int lo = 0;
+        int hi = BUCKET_BOUNDS.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BUCKET_BOUNDS[mid] < millis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return the number of observations recorded so far.
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of all observations recorded so far, in milliseconds.
+     */
+    public long getSum()
+    {
+        return sum.get();
+    }
+
+    /**
+     * @return the largest observation recorded so far, in milliseconds.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Get the number of observations in each bucket.
+     * @return an array of length BUCKET_BOUNDS.length + 1, where the last entry
+     * counts the observations above the largest bound.
+     */
+    public long[] getBucketCounts()
+    {
+        long[] counts = new long[buckets.length()];
+        for (int i=0; i<counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimate the given percentile of the recorded observations.
+     * @param p the percentile, between 0 and 1 (e.g., 0.95 for the 95th percentile)
+     * @return the estimated value in milliseconds, or 0 if nothing has been recorded.
+     */
+    public double getPercentile(double p)
+    {
+        if (p < 0 || p > 1) throw new IllegalArgumentException("Percentile must be between 0 and 1, got "+p);
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+        double rank = p * total;
+        long cumulative = 0;
+        for (int i=0; i<counts.length; i++) {
+            if (counts[i] == 0) continue;
+            if (cumulative + counts[i] >= rank) {
+                double lower = i == 0 ? 0 : BUCKET_BOUNDS[i-1];
+                double upper = i < BUCKET_BOUNDS.length ? BUCKET_BOUNDS[i] : Math.max(max.get(), lower);
+                double fraction = (rank - cumulative) / counts[i];
+                return Math.min(lower + fraction * (upper - lower), max.get());
+            }
+            cumulative += counts[i];
+        }
+        return max.get();
+    }
+}
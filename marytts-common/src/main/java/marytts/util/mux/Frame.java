@@ -0,0 +1,246 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.mux;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One frame of the multiplexing MARY protocol, in which many requests share one connection.
+ * On the wire, a frame consists of
+ * <ul>
+ * <li>the length of the rest of the frame, as a four-byte big-endian integer;</li>
+ * <li>the id of the request the frame belongs to, as a four-byte big-endian integer,
+ * chosen by the client and unique among the open requests of a connection;</li>
+ * <li>the frame type, one byte;</li>
+ * <li>the payload.</li>
+ * </ul>
+ * The client sends one {@link #REQUEST} frame per request. The server answers with any number
+ * of {@link #DATA} frames containing the output, followed by an {@link #END} frame;
+ * or, if the request fails, with an {@link #ERROR} frame containing the error message.
+ * The frames of different requests can be interleaved in any way.
+ * <p>
+ * The payload of a request frame is UTF-8 text: one line <code>NAME=value</code> per request
+ * parameter, an empty line, and the input data. The parameters are those of the socket protocol
+ * (see marytts.server.MaryServer): IN, OUT and LOCALE are required, AUDIO, VOICE, STYLE, EFFECTS
+ * and OUTPUT_TYPE_PARAMS are optional. PRIORITY (interactive or batch) is optional as well;
+ * by default, the priority depends on the length of the input.
+ *
+ * @author agent
+ */
+public class Frame
+{
+    public static final byte REQUEST = 1;
+    public static final byte DATA = 2;
+    public static final byte END = 3;
+    public static final byte ERROR = 4;
+
+    /** The number of bytes before the payload. */
+    public static final int HEADER_SIZE = 9;
+    /** The largest payload accepted. */
+    public static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    private final int requestId;
+    private final byte type;
+    private final byte[] payload;
+
+    public Frame(int requestId, byte type, byte[] payload)
+    {
+        if (payload.length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload too large: "+payload.length+" bytes");
+        }
+        this.requestId = requestId;
+        this.type = type;
+        this.payload = payload;
+    }
+
+    /**
+     * Create a request frame.
+     * @param requestId the id of the request
+     * @param parameters the request parameters; names and values must not contain line breaks.
+     * @param input the input data
+     */
+    public static Frame request(int requestId, Map<String, String> parameters, String input)
+    {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> p : parameters.entrySet()) {
+            text.append(p.getKey()).append('=').append(p.getValue()).append('\n');
+        }
+        text.append('\n').append(input);
+        return new Frame(requestId, REQUEST, toUTF8(text.toString()));
+    }
+
+    /**
+     * Create an error frame.
+     */
+    public static Frame error(int requestId, String message)
+    {
+        return new Frame(requestId, ERROR, toUTF8(message));
+    }
+
+    public int getRequestId()
+    {
+        return requestId;
+    }
+
+    public byte getType()
+    {
+        return type;
+    }
+
+    public byte[] getPayload()
+    {
+        return payload;
+    }
+
+    /**
+     * The payload as UTF-8 text, e.g. the message of an error frame.
+     */
+    public String getText()
+    {
+        try {
+            return new String(payload, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError("UTF-8 is always a supported encoding.");
+        }
+    }
+
+    /**
+     * The parameters of a request frame.
+     */
+    public Map<String, String> getParameters()
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        String text = getText();
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) > start) {
+            String line = text.substring(start, end);
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                parameters.put(line.substring(0, equals).trim(), line.substring(equals+1).trim());
+            }
+            start = end + 1;
+        }
+        return parameters;
+    }
+
+    /**
+     * The input data of a request frame.
+     */
+    public String getInput()
+    {
+        String text = getText();
+        if (text.startsWith("\n")) { // no parameters
+            return text.substring(1);
+        }
+        int separator = text.indexOf("\n\n");
+        return separator == -1 ? "" : text.substring(separator + 2);
+    }
+
+    /**
+     * The frame as it goes on the wire, ready for reading.
+     */
+    public ByteBuffer toByteBuffer()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(HEADER_SIZE - 4 + payload.length);
+        buffer.putInt(requestId);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException
+    {
+        out.writeInt(HEADER_SIZE - 4 + payload.length);
+        out.writeInt(requestId);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    /**
+     * Read one frame from a stream.
+     * @return the frame, or null if the stream ends before the frame.
+     * @throws IOException if the stream ends within the frame or the frame is malformed.
+     */
+    public static Frame readFrom(DataInputStream in) throws IOException
+    {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        checkLength(length);
+        int requestId = in.readInt();
+        byte type = in.readByte();
+        byte[] payload = new byte[length - (HEADER_SIZE - 4)];
+        in.readFully(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    /**
+     * Take one frame from the buffer, if it contains a complete frame.
+     * @param buffer a buffer ready for reading; its position is advanced past the frame.
+     * @return the frame, or null if the buffer does not contain a complete frame yet.
+     * @throws IOException if the frame is malformed.
+     */
+    public static Frame decode(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        checkLength(length);
+        if (buffer.remaining() < 4 + length) {
+            return null;
+        }
+        buffer.getInt(); // length
+        int requestId = buffer.getInt();
+        byte type = buffer.get();
+        byte[] payload = new byte[length - (HEADER_SIZE - 4)];
+        buffer.get(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    private static void checkLength(int length) throws IOException
+    {
+        if (length < HEADER_SIZE - 4 || length > HEADER_SIZE - 4 + MAX_PAYLOAD) {
+            throw new IOException("Bad frame length: "+length);
+        }
+    }
+
+    private static byte[] toUTF8(String text)
+    {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError("UTF-8 is always a supported encoding.");
+        }
+    }
+}
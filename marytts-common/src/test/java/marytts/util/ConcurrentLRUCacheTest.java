@@ -0,0 +1,74 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void putAndGet() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(10);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void staysBounded() {
+        ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(100);
+        for (int i=0; i<1000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue("size "+cache.size(), cache.size() <= 100);
+        assertTrue("size "+cache.size(), cache.size() > 50);
+        // the most recent entry is always kept
+        assertEquals(Integer.valueOf(999), cache.get(999));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void illegalSize() {
+        new ConcurrentLRUCache<String, String>(0);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(0.5), 0);
+    }
+
+    @Test
+    public void countAndSum() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(10);
+        h.record(20);
+        h.record(-5);
+        assertEquals(3, h.getCount());
+        assertEquals(30, h.getSum());
+        assertEquals(20, h.getMax());
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i=1; i<=1000; i++) {
+            h.record(i);
+        }
+        double p50 = h.getPercentile(0.5);
+        double p99 = h.getPercentile(0.99);
+        assertTrue("p50 = "+p50, p50 >= 400 && p50 <= 600);
+        assertTrue("p99 = "+p99, p99 >= 900 && p99 <= 1000);
+        assertTrue(p50 <= p99);
+    }
+
+    @Test
+    public void largeValuesAreBoundedByMax() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(500000);
+        double p99 = h.getPercentile(0.99);
+        assertTrue("p99 = "+p99, p99 > 120000 && p99 <= 500000);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void illegalPercentile() {
+        new LatencyHistogram().getPercentile(1.5);
+    }
+}
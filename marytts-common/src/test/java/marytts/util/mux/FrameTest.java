@@ -0,0 +1,93 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.mux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class FrameTest
+{
+    private static Frame createRequest()
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        parameters.put("IN", "TEXT");
+        parameters.put("OUT", "AUDIO");
+        parameters.put("LOCALE", "en_US");
+        return Frame.request(42, parameters, "Two\n\nparagraphs.");
+    }
+
+    @Test
+    public void decodesFrameArrivingInPieces() throws IOException
+    {
+        ByteBuffer wire = createRequest().toByteBuffer();
+        ByteBuffer received = ByteBuffer.allocate(wire.capacity() + 10);
+        Frame frame = null;
+        while (wire.hasRemaining()) {
+            received.put(wire.get());
+            received.flip();
+            frame = Frame.decode(received);
+            received.compact();
+            if (wire.hasRemaining()) {
+                Assert.assertNull(frame);
+            }
+        }
+        Assert.assertNotNull(frame);
+        Assert.assertEquals(0, received.position());
+        Assert.assertEquals(42, frame.getRequestId());
+        Assert.assertEquals(Frame.REQUEST, frame.getType());
+        Assert.assertEquals("AUDIO", frame.getParameters().get("OUT"));
+        Assert.assertEquals(3, frame.getParameters().size());
+        Assert.assertEquals("Two\n\nparagraphs.", frame.getInput());
+    }
+
+    @Test
+    public void readsWhatIsWritten() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        createRequest().writeTo(out);
+        new Frame(42, Frame.END, new byte[0]).writeTo(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals("Two\n\nparagraphs.", Frame.readFrom(in).getInput());
+        Assert.assertEquals(Frame.END, Frame.readFrom(in).getType());
+        Assert.assertNull(Frame.readFrom(in));
+    }
+
+    @Test(expected=IOException.class)
+    public void rejectsBadLength() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putInt(-1).putInt(0).flip();
+        Frame.decode(buffer);
+    }
+}
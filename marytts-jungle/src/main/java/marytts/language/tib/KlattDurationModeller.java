@@ -80,6 +80,12 @@ public class KlattDurationModeller extends InternalModule {
                 new Locale("tib"));
     }
 
+    @Override
+    public Class<?>[] getStartupDependencies()
+    {
+        return new Class<?>[] {marytts.modules.Synthesis.class};
+    }
+
     public void startup() throws Exception {
         super.startup();
         // We depend on the Synthesis module:
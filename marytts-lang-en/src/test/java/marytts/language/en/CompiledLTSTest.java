@@ -0,0 +1,89 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import static org.junit.Assert.assertEquals;
+
+import marytts.cart.CART;
+import marytts.cart.LeafNode.StringAndFloatLeafNode;
+import marytts.cart.io.MaryCARTReader;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.modules.phonemiser.AllophoneSet;
+import marytts.modules.phonemiser.TrainedLTS;
+
+import org.junit.Test;
+
+/**
+ * Make sure that the compiled letter-to-sound tree predicts the same
+ * as the tree of node objects.
+ *
+ * @author agent
+ *
+ */
+public class CompiledLTSTest {
+
+    private static final String[] WORDS = new String[] {
+        "Schwarzenegger", "Tsipras", "blogosphere", "qwxz", "a", "O'Reilly", "naïve", "R2D2", "x-ray", "Zhwenjiang"
+    };
+
+    /**
+     * Predict the pronunciation the way TrainedLTS did before the tree was compiled.
+     */
+    private String predictWithNodes(CART tree, String graphemes)
+    {
+        FeatureDefinition fd = tree.getFeatureDefinition();
+        int context = Integer.parseInt(tree.getProperties().getProperty("context"));
+        if (Boolean.parseBoolean(tree.getProperties().getProperty("lowercase"))) {
+            graphemes = graphemes.toLowerCase();
+        }
+        int indexPredictedFeature = fd.getFeatureIndex(TrainedLTS.PREDICTED_STRING_FEATURENAME);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < graphemes.length(); i++) {
+            byte[] byteFeatures = new byte[2*context + 1];
+            for (int fnr = 0; fnr < byteFeatures.length; fnr++) {
+                int pos = i - context + fnr;
+                String grAtPos = (pos < 0 || pos >= graphemes.length()) ? "null" : graphemes.substring(pos, pos+1);
+                try {
+                    byteFeatures[fnr] = fd.getFeatureValueAsByte(fnr, grAtPos);
+                } catch (IllegalArgumentException iae) {
+                    byteFeatures[fnr] = fd.getFeatureValueAsByte(fnr, "null");
+                }
+            }
+            FeatureVector fv = new FeatureVector(byteFeatures, new short[]{}, new float[]{}, 0);
+            StringAndFloatLeafNode leaf = (StringAndFloatLeafNode) tree.interpretToNode(fv, 0);
+            String prediction = leaf.mostProbableString(fd, indexPredictedFeature);
+            result.append(prediction.substring(1, prediction.length() - 1));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void sameAsNodeTree() throws Exception {
+        AllophoneSet allophoneSet = AllophoneSet.getAllophoneSet(
+                CompiledLTSTest.class.getResourceAsStream("/marytts/language/en_US/lexicon/allophones.en_US.xml"), "test");
+        CART tree = new MaryCARTReader().loadFromStream(
+                CompiledLTSTest.class.getResourceAsStream("/marytts/language/en_US/lexicon/cmudict.lts"));
+        TrainedLTS lts = new TrainedLTS(allophoneSet, tree);
+        for (String word : WORDS) {
+            assertEquals(word, predictWithNodes(tree, word), lts.predictPronunciation(word));
+        }
+    }
+}
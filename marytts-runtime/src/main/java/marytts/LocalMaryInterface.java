@@ -370,7 +370,7 @@ public class LocalMaryInterface implements MaryInterface {
 	}
 
 	private MaryData process(MaryData in) throws SynthesisException {		
-		Request r = new Request(inputType, outputType, locale, voice, effects, style, 1, audioFileFormat, isStreaming, outputTypeParams);
+		Request r = new Request(inputType, outputType, locale, voice, effects, style, Request.newId(), audioFileFormat, isStreaming, outputTypeParams);
 		r.setInputData(in);
 		try {
 			r.process();
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Properties;
+
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.unitselection.select.Target;
+
+/**
+ * A CART with int array leaves which is interpreted directly from its binary
+ * MaryCART representation, e.g. a memory-mapped CART file, without creating
+ * node objects. Loading only records the position of each node in the buffer
+ * and the number of data below each decision node, so that the tree can be used
+ * right away and its data can be shared between processes via the page cache.
+ * <p>
+ * Only the interpretation methods are supported. {@link #interpretToNode(FeatureVector, int)}
+ * returns a leaf node created for the occasion, holding all data below the node where
+ * the walk stopped; the tree structure itself, e.g. for the node iterators, is not available.
+ * Use {@link marytts.cart.io.MaryCARTReader#load(String)} to get a CART made of node objects.
+ *
+ * @author agent
+ *
+ */
+public class FlatCART extends CART
+{
+    private final ByteBuffer data;
+    private final int[] decisionNodes;
+    private final int[] decisionNodeData;
+    private final int[] leafNodes;
+    private final boolean[] byteValuedFeature;
+
+    /**
+     * Create a flat CART from the decision and leaf nodes starting at the current position
+     * of the given buffer, as written by {@link marytts.cart.io.MaryCARTWriter}.
+     * The position of <code>bb</code> is moved past the nodes.
+     * @param bb a buffer positioned at the number of decision nodes
+     * @param featDef the feature definition of the CART
+     * @param properties the properties of the CART, or null
+     * @throws IOException if the nodes are not consistent, or contain leaves other than int array leaves.
+     */
+    public FlatCART(ByteBuffer bb, FeatureDefinition featDef, Properties properties)
+    throws IOException
+    {
+        super(null, featDef, properties);
+        this.data = bb.duplicate();
+        int numDecNodes = bb.getInt();
+        decisionNodes = new int[numDecNodes];
+        for (int i=0; i<numDecNodes; i++) {
+            decisionNodes[i] = bb.position();
+            int featureIndex = bb.getInt();
+            int nodeTypeNr = bb.getInt();
+            if (nodeTypeNr < 0 || nodeTypeNr >= DecisionNode.Type.values().length) {
+                throw new IOException("Decision node "+i+" has unknown type "+nodeTypeNr);
+            }
+            DecisionNode.Type nodeType = DecisionNode.Type.values()[nodeTypeNr];
+            int numChildren = 2;
+            switch (nodeType) {
+            case ByteDecisionNode:
+            case ShortDecisionNode:
+                numChildren = bb.getInt();
+                if (featDef.getNumberOfValues(featureIndex) != numChildren) {
+                    throw new IOException("Inconsistent cart file: feature "+
+                            featDef.getFeatureName(featureIndex)+" should have "+
+                            featDef.getNumberOfValues(featureIndex)+
+                            " values, but decision node "+i+" has only "+numChildren+" child nodes");
+                }
+                break;
+            default:
+                bb.getInt(); // criterion
+            }
+            bb.position(bb.position() + 4*numChildren);
+        }
+        int numLeafNodes = bb.getInt();
+        leafNodes = new int[numLeafNodes];
+        for (int j=0; j<numLeafNodes; j++) {
+            leafNodes[j] = bb.position();
+            int leafTypeNr = bb.getInt();
+            if (leafTypeNr != LeafNode.LeafType.IntArrayLeafNode.ordinal()) {
+                throw new IOException("Leaf "+j+" is not an int array leaf -- cannot use a flat CART");
+            }
+            int numData = bb.getInt();
+            bb.position(bb.position() + 4*numData);
+        }
+        byteValuedFeature = new boolean[featDef.getNumberOfFeatures()];
+        for (int f=0; f<byteValuedFeature.length; f++) {
+            byteValuedFeature[f] = featDef.isByteFeature(f);
+        }
+        decisionNodeData = new int[numDecNodes];
+        Arrays.fill(decisionNodeData, -1);
+        for (int i=0; i<numDecNodes; i++) {
+            countData(i);
+        }
+    }
+
+    private int countData(int decisionNode)
+    {
+        if (decisionNodeData[decisionNode] >= 0) return decisionNodeData[decisionNode];
+        int n = 0;
+        int childPos = firstChildPosition(decisionNode);
+        for (int k=0, numChildren=getNumberOfChildren(decisionNode); k<numChildren; k++) {
+            n += getNumberOfData(data.getInt(childPos + 4*k));
+        }
+        decisionNodeData[decisionNode] = n;
+        return n;
+    }
+
+    private int getNumberOfData(int child)
+    {
+        if (child < 0) return countData(-child - 1);
+        if (child > 0) return data.getInt(leafNodes[child - 1] + 4);
+        return 0;
+    }
+
+    private DecisionNode.Type getType(int decisionNode)
+    {
+        return DecisionNode.Type.values()[data.getInt(decisionNodes[decisionNode] + 4)];
+    }
+
+    private int getNumberOfChildren(int decisionNode)
+    {
+        switch (getType(decisionNode)) {
+        case ByteDecisionNode:
+        case ShortDecisionNode:
+            return data.getInt(decisionNodes[decisionNode] + 8);
+        default:
+            return 2;
+        }
+    }
+
+    private int firstChildPosition(int decisionNode)
+    {
+        return decisionNodes[decisionNode] + 12;
+    }
+
+    /**
+     * The child reference chosen by the given decision node for the given feature vector,
+     * encoded as in the MaryCART format: negative for decision nodes, positive for leaves, 0 for empty leaves.
+     */
+    private int getNextNode(int decisionNode, FeatureVector fv)
+    {
+        int pos = decisionNodes[decisionNode];
+        int featureIndex = data.getInt(pos);
+        int daughter;
+        switch (getType(decisionNode)) {
+        case BinaryByteDecisionNode:
+            daughter = fv.getByteFeature(featureIndex) == (byte) data.getInt(pos + 8) ? 0 : 1;
+            break;
+        case BinaryShortDecisionNode:
+            daughter = fv.getShortFeature(featureIndex) == (short) data.getInt(pos + 8) ? 0 : 1;
+            break;
+        case BinaryFloatDecisionNode:
+            float val = byteValuedFeature[featureIndex] ? (float) fv.getByteFeature(featureIndex) : fv.getContinuousFeature(featureIndex);
+            daughter = val < data.getFloat(pos + 8) ? 0 : 1;
+            break;
+        case ByteDecisionNode:
+            daughter = fv.getByteFeature(featureIndex);
+            break;
+        case ShortDecisionNode:
+            daughter = fv.getShortFeature(featureIndex);
+            break;
+        default:
+            throw new IllegalStateException("Unsupported decision node type "+getType(decisionNode));
+        }
+        return data.getInt(firstChildPosition(decisionNode) + 4*daughter);
+    }
+
+    /**
+     * Get all data below the given node reference.
+     */
+    private int[] getAllData(int node)
+    {
+        int[] result = new int[getNumberOfData(node)];
+        fillData(node, result, 0);
+        return result;
+    }
+
+    private int fillData(int node, int[] target, int pos)
+    {
+        if (node > 0) {
+            int leafPos = leafNodes[node - 1];
+            int numData = data.getInt(leafPos + 4);
+            for (int d=0; d<numData; d++) {
+                target[pos++] = data.getInt(leafPos + 8 + 4*d);
+            }
+        } else if (node < 0) {
+            int decisionNode = -node - 1;
+            int childPos = firstChildPosition(decisionNode);
+            for (int k=0, numChildren=getNumberOfChildren(decisionNode); k<numChildren; k++) {
+                pos = fillData(data.getInt(childPos + 4*k), target, pos);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * The reference to the root node, in MaryCART encoding.
+     */
+    private int getRoot()
+    {
+        if (decisionNodes.length > 0) return -1;
+        if (leafNodes.length > 0) return 1;
+        return 0;
+    }
+
+    /**
+     * Passes the given item through this CART and returns the
+     * unit indexes found, backing off to a more general node if fewer
+     * than <code>minNumberOfData</code> units would be found.
+     * This gives the same result as {@link CART#interpret(Target, int)}.
+     *
+     * @param target the target to analyze
+     * @param minNumberOfData the minimum number of data requested.
+     * If this is 0, walk down the CART until the leaf level.
+     *
+     * @return an int[] with the data, or null if the tree is empty
+     */
+    @Override
+    public Object interpret(Target target, int minNumberOfData)
+    {
+        int node = findNode(target.getFeatureVector(), minNumberOfData);
+        if (node == 0) return null;
+        return getAllData(node);
+    }
+
+    /**
+     * Walk down the tree as {@link CART#interpretToNode(FeatureVector, int)} does.
+     * @return the reference to the node where the walk stopped, in MaryCART encoding, or 0 if there is none.
+     */
+    private int findNode(FeatureVector fv, int minNumberOfData)
+    {
+        int current = getRoot();
+        int prev = 0;
+        while (current < 0 && getNumberOfData(current) > minNumberOfData) {
+            prev = current;
+            current = getNextNode(-current - 1, fv);
+        }
+        if (current == 0 || getNumberOfData(current) < minNumberOfData && prev != 0) {
+            current = prev;
+        }
+        return current;
+    }
+
+    /**
+     * Walk down the tree according to the features in fv, and return the data in the leaf found there.
+     * @param fv a feature vector which must be consistent with the tree's feature definition.
+     * @return the leaf data, or null if the path ends in an empty leaf.
+     */
+    @Override
+    public Object interpret(FeatureVector fv)
+    {
+        int current = getRoot();
+        while (current < 0) {
+            current = getNextNode(-current - 1, fv);
+        }
+        if (current == 0) return null;
+        return getAllData(current);
+    }
+
+    /**
+     * Passes the given item through this CART, like {@link #interpret(Target, int)}.
+     * As there are no node objects, the result is a new leaf holding the data below
+     * the node where the walk stopped; it is not connected to any other node.
+     *
+     * @return an int array leaf with the data, or null if the tree is empty
+     */
+    @Override
+    public Node interpretToNode(FeatureVector featureVector, int minNumberOfData)
+    {
+        int node = findNode(featureVector, minNumberOfData);
+        if (node == 0) return null;
+        return new LeafNode.IntArrayLeafNode(getAllData(node));
+    }
+
+    @Override
+    public int getNumNodes()
+    {
+        return decisionNodes.length + leafNodes.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "flat CART with "+decisionNodes.length+" decision nodes and "+leafNodes.length+" leaves";
+    }
+}
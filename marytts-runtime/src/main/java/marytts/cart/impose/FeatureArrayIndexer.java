@@ -23,11 +23,15 @@ import java.util.Arrays;
 
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 
 
 /**
  * A class branched from FeatureFileIndexer which works directly on
  * a feature array, rather than extending FeatureFileReader.
+ * Alternatively, it can index the units of a {@link PackedFeatureStore};
+ * in that case, only an array of unit indexes is sorted, and feature vector
+ * objects are created only for the units returned by a query.
  * @author Marc Schr&ouml;der
  *
  */
@@ -39,6 +43,8 @@ public class FeatureArrayIndexer
     private FeatureComparator c = new FeatureComparator( -1, null );
     private UnitIndexComparator cui = new UnitIndexComparator();
     private FeatureVector[] featureVectors;
+    private PackedFeatureStore featureStore;
+    private int[] unitIndexes;
     private FeatureDefinition featureDefinition;
     
     private long numberOfLeaves = 0;
@@ -93,6 +99,83 @@ public class FeatureArrayIndexer
         this.featureVectors = featureVectors;
         this.featureDefinition = featureDefinition;
     }
+
+    /**
+     * Constructor which takes a packed feature store and launches an indexing
+     * operation according to a feature sequence constraint.
+     * 
+     * @param featureStore the unit features
+     * @param setFeatureSequence An array of feature names indicating the hierarchical order
+     * (or, equivalently, the sequence) of the features to use for the indexing.
+     */
+    public FeatureArrayIndexer(PackedFeatureStore featureStore, String[] setFeatureSequence)
+    {
+        this(featureStore);
+        deepSort( setFeatureSequence );
+    }
+
+    /**
+     * Constructor which takes a packed feature store but does not launch an indexing
+     * operation.
+     * 
+     * @param featureStore the unit features
+     */
+    public FeatureArrayIndexer(PackedFeatureStore featureStore)
+    {
+        this.featureStore = featureStore;
+        this.featureDefinition = featureStore.getFeatureDefinition();
+        this.unitIndexes = new int[featureStore.getNumberOfUnits()];
+        for (int i=0; i<unitIndexes.length; i++) {
+            unitIndexes[i] = i;
+        }
+    }
+    
+    /************************************/
+    /* ACCESS TO THE UNDERLYING STORAGE */
+    /************************************/
+
+    private int getNumberOfUnits()
+    {
+        return featureStore != null ? unitIndexes.length : featureVectors.length;
+    }
+
+    private int getFeatureAsInt(int pos, int featureIndex)
+    {
+        if (featureStore != null) return featureStore.getFeatureAsInt(unitIndexes[pos], featureIndex);
+        return featureVectors[pos].getFeatureAsInt(featureIndex);
+    }
+
+    private void sortByUnitIndex(int from, int to)
+    {
+        if (featureStore != null) Arrays.sort(unitIndexes, from, to);
+        else Arrays.sort(featureVectors, from, to, cui);
+    }
+
+    /**
+     * Sort the given zone according to the value of the given feature.
+     * For a feature store, this is a stable counting sort over the feature's values.
+     */
+    private void sortByFeature(int from, int to, int featureIndex)
+    {
+        if (featureStore == null) {
+            c.setFeatureIdx( featureIndex, featureVectors[0].getFeatureType(featureIndex) );
+            Arrays.sort( featureVectors, from, to, c );
+            return;
+        }
+        int nVal = featureDefinition.getNumberOfValues(featureIndex);
+        int[] counts = new int[nVal+1];
+        for (int i=from; i<to; i++) {
+            counts[getFeatureAsInt(i, featureIndex)+1]++;
+        }
+        for (int v=1; v<=nVal; v++) {
+            counts[v] += counts[v-1];
+        }
+        int[] sorted = new int[to-from];
+        for (int i=from; i<to; i++) {
+            sorted[counts[getFeatureAsInt(i, featureIndex)]++] = unitIndexes[i];
+        }
+        System.arraycopy(sorted, 0, unitIndexes, from, sorted.length);
+    }
     
     /********************/
     /* INDEXING METHODS */
@@ -109,7 +192,7 @@ public class FeatureArrayIndexer
     private void sortNode( int currentFeatureIdx, MaryNode currentNode ) {
         /* If we have reached a leaf, do a final sort according to the unit index and return: */
         if ( currentFeatureIdx == featureSequence.length ) {
-            Arrays.sort( featureVectors, currentNode.from, currentNode.to, cui );
+            sortByUnitIndex( currentNode.from, currentNode.to );
             numberOfLeaves++;
             /*System.out.print( "LEAF ! (" + (currentNode.to-currentNode.from) + " units)" );
             for ( int i = currentNode.from; i < currentNode.to; i++ ) {
@@ -120,14 +203,10 @@ public class FeatureArrayIndexer
         }
         /* Else: */
         int currentFeature = featureSequence[currentFeatureIdx];
-        FeatureVector.FeatureType featureType = featureVectors[0].getFeatureType(currentFeature);
         /* Register the feature currently used for the splitting */
         currentNode.setFeatureIndex( currentFeature );
         /* Perform the sorting according to the currently considered feature: */
-        /* 1) position the comparator onto the right feature */
-        c.setFeatureIdx( currentFeature, featureType );
-        /* 2) do the sorting */
-        Arrays.sort( featureVectors, currentNode.from, currentNode.to, c );
+        sortByFeature( currentNode.from, currentNode.to, currentFeature );
         
         /* Then, seek for the zones where the feature value is the same,
          * and launch the next sort level on these. */
@@ -138,7 +217,7 @@ public class FeatureArrayIndexer
         for ( int i = 0; i < nVal; i++ ) {
             nextFrom = nextTo;
             // System.out.print( "Next node begins at " + nextFrom );
-            while ( (nextTo < currentNode.to) && (featureVectors[nextTo].getFeatureAsInt( currentFeature ) == i)  ) {
+            while ( (nextTo < currentNode.to) && (getFeatureAsInt( nextTo, currentFeature ) == i)  ) {
                 // System.out.print( " " + featureVectors[nextTo].getFeatureAsInt( currentFeature ) );
                 nextTo++;
             }
@@ -163,7 +242,7 @@ public class FeatureArrayIndexer
     public void deepSort( int[] setFeatureSequence ) {
         featureSequence = setFeatureSequence;
         numberOfLeaves = 0;
-        tree = new MaryNode( 0, featureVectors.length );
+        tree = new MaryNode( 0, getNumberOfUnits() );
         sortNode( 0, tree );
     }
     
@@ -177,7 +256,7 @@ public class FeatureArrayIndexer
     public void deepSort( String[] setFeatureSequence ) {
         featureSequence = featureDefinition.getFeatureIndexArray( setFeatureSequence );
         numberOfLeaves = 0;
-        tree = new MaryNode( 0, featureVectors.length );
+        tree = new MaryNode( 0, getNumberOfUnits() );
         sortNode( 0, tree );
     }
     
@@ -191,7 +270,7 @@ public class FeatureArrayIndexer
     private void fillNode( MaryNode currentNode ) {
         /* If we have reached a leaf, do a final sort according to the unit index and return: */
         if ( currentNode.isLeaf() ) {
-            Arrays.sort( featureVectors, currentNode.from, currentNode.to, cui );
+            sortByUnitIndex( currentNode.from, currentNode.to );
             numberOfLeaves++;
             /*System.out.print( "LEAF ! (" + (currentNode.to-currentNode.from) + " units)" );
             for ( int i = currentNode.from; i < currentNode.to; i++ ) {
@@ -202,12 +281,8 @@ public class FeatureArrayIndexer
         }
         /* Else: */
         int currentFeature = currentNode.featureIndex;
-        FeatureVector.FeatureType featureType = featureVectors[0].getFeatureType(currentFeature);
         /* Perform the sorting according to the currently considered feature: */
-        /* 1) position the comparator onto the right feature */
-        c.setFeatureIdx( currentFeature, featureType );
-        /* 2) do the sorting */
-        Arrays.sort( featureVectors, currentNode.from, currentNode.to, c );
+        sortByFeature( currentNode.from, currentNode.to, currentFeature );
         
         /* Then, seek for the zones where the feature value is the same,
          * and launch the next sort level on these. */
@@ -217,7 +292,7 @@ public class FeatureArrayIndexer
         for ( int i = 0; i < nVal; i++ ) {
             nextFrom = nextTo;
             // System.out.print( "Next node begins at " + nextFrom );
-            while ( (nextTo < currentNode.to) && (featureVectors[nextTo].getFeatureAsInt( currentFeature ) == i)  ) {
+            while ( (nextTo < currentNode.to) && (getFeatureAsInt( nextTo, currentFeature ) == i)  ) {
                 // System.out.print( " " + featureVectors[nextTo].getFeatureAsInt( currentFeature ) );
                 nextTo++;
             }
@@ -374,10 +449,25 @@ public class FeatureArrayIndexer
     public FeatureVector[] getFeatureVectors(int from, int to){
         FeatureVector[] vectors = new FeatureVector[to-from];
         for ( int i = from; i < to; i++ ) {
-            vectors[i-from] = featureVectors[i];
+            vectors[i-from] = featureStore != null ? featureStore.getFeatureVector(unitIndexes[i]) : featureVectors[i];
         }
         return vectors;
     }
+
+    /**
+     * Get the unit indexes from the big array 
+     * according to the given indices
+     * @param from the start index
+     * @param to the end index
+     * @return the unit indexes
+     */
+    public int[] getUnitIndexes(int from, int to){
+        int[] indexes = new int[to-from];
+        for ( int i = from; i < to; i++ ) {
+            indexes[i-from] = featureStore != null ? unitIndexes[i] : featureVectors[i].getUnitIndex();
+        }
+        return indexes;
+    }
     
     public FeatureDefinition getFeatureDefinition()
     {
@@ -32,6 +32,7 @@ import java.util.Properties;
 
 import marytts.cart.CART;
 import marytts.cart.DecisionNode;
+import marytts.cart.FlatCART;
 import marytts.cart.LeafNode;
 import marytts.cart.Node;
 import marytts.exceptions.MaryConfigurationException;
@@ -410,6 +411,60 @@ public class MaryCARTReader
         // set the rootNode as the rootNode of cart
         return new CART(rootNode, featureDefinition, props);
     }
+
+    /**
+     * Load the cart from the given file as a flat CART, which is interpreted
+     * directly from the memory-mapped file without creating node objects.
+     * This is only possible for trees with int array leaves, such as the
+     * preselection trees of unit selection voices.
+     * 
+     * @param fileName
+     *            the file to load the cart from
+     * @return a flat CART
+     * @throws IOException
+     *             if a problem occurs while loading, or if the tree has leaves other than int array leaves.
+     * @see FlatCART
+     */
+    public FlatCART loadFlat(String fileName)
+    throws IOException, MaryConfigurationException
+    {
+        FileInputStream fis = new FileInputStream(fileName);
+        ByteBuffer bb;
+        try {
+            FileChannel fc = fis.getChannel();
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            fis.close(); // also closes the channel; the mapping remains valid
+        }
+        
+        MaryHeader maryHeader = new MaryHeader(bb);
+        if (!maryHeader.hasCurrentVersion()) {
+            throw new IOException("Wrong version of database file");
+        }
+        if (maryHeader.getType() != MaryHeader.CARTS) {
+            throw new IOException("No CARTs file");
+        }
+        
+        // Read properties
+        short propDataLength = bb.getShort();
+        Properties props;
+        if (propDataLength == 0) {
+            props = null;
+        } else {
+            byte[] propsData = new byte[propDataLength];
+            bb.get(propsData);
+            ByteArrayInputStream bais = new ByteArrayInputStream(propsData);
+            props = new Properties();
+            props.load(bais);
+            bais.close();
+        }
+        
+        // Read the feature definition
+        FeatureDefinition featureDefinition = new FeatureDefinition(bb);
+
+        // the nodes are used directly from the buffer
+        return new FlatCART(bb, featureDefinition, props);
+    }
     
 }
 
@@ -29,6 +29,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.Channels;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -44,6 +45,7 @@ import marytts.modules.synthesis.Voice;
 import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
+import marytts.util.data.audio.ChunkedAudioInputStream;
 import marytts.util.data.audio.SequenceAudioInputStream;
 import marytts.util.dom.DomUtils;
 import marytts.util.dom.MaryNormalisedWriter;
@@ -266,7 +268,15 @@ public class MaryData
             writeTo(new OutputStreamWriter(os, "UTF-8"));
         } else { // audio
         	logger.debug("Writing audio output, frame length "+audio.getFrameLength());
-            AudioSystem.write(audio, audioFileFormat.getType(), os);
+            if (audioFileFormat.getType() == AudioFileFormat.Type.AU
+                    && audio instanceof ChunkedAudioInputStream
+                    && ((ChunkedAudioInputStream) audio).canTransferAsAU()
+                    && audio.getFrameLength() == AudioSystem.NOT_SPECIFIED) {
+                // streaming audio: avoid the conversion streams of AudioSystem.write()
+                ((ChunkedAudioInputStream) audio).transferToAU(Channels.newChannel(os));
+            } else {
+                AudioSystem.write(audio, audioFileFormat.getType(), os);
+            }
             os.flush();
             os.close();
         }
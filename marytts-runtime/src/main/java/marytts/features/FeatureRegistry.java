@@ -53,7 +53,7 @@ public class FeatureRegistry
      * @param locale
      * @param mgr
      */
-    public static void setFeatureProcessorManager(Locale locale, FeatureProcessorManager mgr)
+    public static synchronized void setFeatureProcessorManager(Locale locale, FeatureProcessorManager mgr)
     {
         managersByLocale.put(locale, mgr);
     }
@@ -63,7 +63,7 @@ public class FeatureRegistry
      * locale-specific feature processor manager can be found.
      * @param mgr
      */
-    public static void setFallbackFeatureProcessorManager(FeatureProcessorManager mgr)
+    public static synchronized void setFallbackFeatureProcessorManager(FeatureProcessorManager mgr)
     {
         fallbackManager = mgr;
     }
@@ -73,7 +73,7 @@ public class FeatureRegistry
      * @param voice
      * @param mgr
      */
-    public static void setFeatureProcessorManager(Voice voice, FeatureProcessorManager mgr)
+    public static synchronized void setFeatureProcessorManager(Voice voice, FeatureProcessorManager mgr)
     {
         managersByVoice.put(voice, mgr);
     }
@@ -84,7 +84,7 @@ public class FeatureRegistry
      * @return the feature processor manager, or null if there is no voice-specific
      * feature processor manager.
      */
-    public static FeatureProcessorManager getFeatureProcessorManager(Voice voice)
+    public static synchronized FeatureProcessorManager getFeatureProcessorManager(Voice voice)
     {
         return managersByVoice.get(voice);
     }
@@ -96,7 +96,7 @@ public class FeatureRegistry
      * @return the feature processor manager, or null if there is no locale-specific
      * feature processor manager.
      */
-    public static FeatureProcessorManager getFeatureProcessorManager(Locale locale)
+    public static synchronized FeatureProcessorManager getFeatureProcessorManager(Locale locale)
     {
         FeatureProcessorManager m = managersByLocale.get(locale);
         if (m != null) return m;
@@ -110,7 +110,7 @@ public class FeatureRegistry
      * no voice- or locale-specific feature processor manager.
      * @return
      */
-    public static FeatureProcessorManager getFallbackFeatureProcessorManager()
+    public static synchronized FeatureProcessorManager getFallbackFeatureProcessorManager()
     {
         return fallbackManager;
     }
@@ -156,7 +156,7 @@ public class FeatureRegistry
     }
     
     
-    public static Collection<Locale> getSupportedLocales()
+    public static synchronized Collection<Locale> getSupportedLocales()
     {
         Collection<Locale> locales = new TreeSet<Locale>(new Comparator<Locale>() {
             public int compare(Locale o1, Locale o2) {
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The feature vectors of all units in a database, packed into one contiguous
+ * byte buffer instead of one {@link FeatureVector} object per unit.
+ * The buffer uses the record layout of the feature file, i.e. for each unit
+ * the byte-valued features, followed by the short-valued features and the
+ * continuous features, in big-endian byte order. If the buffer is a slice of a
+ * memory-mapped feature file, the feature values are never copied onto the heap.
+ * <p>
+ * Features are identified by the same overall index as in {@link FeatureVector}.
+ * All accessors use absolute positions, so a store can safely be shared
+ * between threads.
+ *
+ * @author agent
+ *
+ */
+public class PackedFeatureStore
+{
+    private final FeatureDefinition featureDefinition;
+    private final ByteBuffer data;
+    private final int numberOfUnits;
+    private final int numBytes;
+    private final int numShorts;
+    private final int numFloats;
+    private final int recordSize;
+    private final int floatOffset;
+
+    /**
+     * Create a feature store from the feature vector records at the current
+     * position of the given byte buffer. The store shares the buffer's content;
+     * the position of <code>bb</code> is moved past the records.
+     * @param featureDefinition the feature definition describing the records
+     * @param numberOfUnits the number of records to use
+     * @param bb the byte buffer, e.g. mapped from a feature file
+     * @throws IOException if the buffer does not contain enough data
+     */
+    public PackedFeatureStore(FeatureDefinition featureDefinition, int numberOfUnits, ByteBuffer bb)
+    throws IOException
+    {
+        this.featureDefinition = featureDefinition;
+        this.numberOfUnits = numberOfUnits;
+        this.numBytes = featureDefinition.getNumberOfByteFeatures();
+        this.numShorts = featureDefinition.getNumberOfShortFeatures();
+        this.numFloats = featureDefinition.getNumberOfContinuousFeatures();
+        this.recordSize = numBytes + 2*numShorts + 4*numFloats;
+        this.floatOffset = numBytes + 2*numShorts;
+        int size = dataSize();
+        if (bb.remaining() < size) {
+            throw new IOException("Expected "+size+" bytes of feature data for "+numberOfUnits+" units, but only "+bb.remaining()+" available");
+        }
+        ByteBuffer slice = bb.slice();
+        slice.limit(size);
+        this.data = slice;
+        bb.position(bb.position() + size);
+    }
+
+    /**
+     * Create a feature store by reading the feature vector records from the given input
+     * into a single heap buffer.
+     * @param featureDefinition the feature definition describing the records
+     * @param numberOfUnits the number of records to read
+     * @param input the input to read from
+     * @throws IOException if the data cannot be read
+     */
+    public PackedFeatureStore(FeatureDefinition featureDefinition, int numberOfUnits, DataInput input)
+    throws IOException
+    {
+        this.featureDefinition = featureDefinition;
+        this.numberOfUnits = numberOfUnits;
+        this.numBytes = featureDefinition.getNumberOfByteFeatures();
+        this.numShorts = featureDefinition.getNumberOfShortFeatures();
+        this.numFloats = featureDefinition.getNumberOfContinuousFeatures();
+        this.recordSize = numBytes + 2*numShorts + 4*numFloats;
+        this.floatOffset = numBytes + 2*numShorts;
+        byte[] bytes = new byte[dataSize()];
+        input.readFully(bytes);
+        this.data = ByteBuffer.wrap(bytes);
+    }
+
+    private int dataSize() throws IOException
+    {
+        long size = (long) numberOfUnits * recordSize;
+        if (numberOfUnits < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Cannot store "+numberOfUnits+" feature vectors of "+recordSize+" bytes each in one buffer");
+        }
+        return (int) size;
+    }
+
+    public FeatureDefinition getFeatureDefinition()
+    {
+        return featureDefinition;
+    }
+
+    public int getNumberOfUnits()
+    {
+        return numberOfUnits;
+    }
+
+    public int getNumberOfByteFeatures()
+    {
+        return numBytes;
+    }
+
+    public int getNumberOfShortFeatures()
+    {
+        return numShorts;
+    }
+
+    public int getNumberOfContinuousFeatures()
+    {
+        return numFloats;
+    }
+
+    /**
+     * Whether the feature data lives outside the java heap, e.g. in a memory-mapped file.
+     * @return true if the underlying buffer is a direct buffer
+     */
+    public boolean isDirect()
+    {
+        return data.isDirect();
+    }
+
+    /**
+     * Get a byte-valued feature of a unit.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the feature index, between 0 and getNumberOfByteFeatures()-1
+     * @return the feature value
+     */
+    public final byte getByteFeature(int unitIndex, int featureIndex)
+    {
+        return data.get(unitIndex*recordSize + featureIndex);
+    }
+
+    /**
+     * Get a short-valued feature of a unit.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the overall feature index, i.e. between getNumberOfByteFeatures()
+     * and getNumberOfByteFeatures()+getNumberOfShortFeatures()-1
+     * @return the feature value
+     */
+    public final short getShortFeature(int unitIndex, int featureIndex)
+    {
+        return data.getShort(unitIndex*recordSize + numBytes + 2*(featureIndex-numBytes));
+    }
+
+    /**
+     * Get a continuous feature of a unit.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the overall feature index, i.e. at least
+     * getNumberOfByteFeatures()+getNumberOfShortFeatures()
+     * @return the feature value
+     */
+    public final float getContinuousFeature(int unitIndex, int featureIndex)
+    {
+        return data.getFloat(unitIndex*recordSize + floatOffset + 4*(featureIndex-numBytes-numShorts));
+    }
+
+    /**
+     * Get any discrete feature of a unit as an int, e.g. for array indexing.
+     * Continuous features are truncated.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the overall feature index
+     * @return the feature value
+     * @see FeatureVector#getFeatureAsInt(int)
+     */
+    public int getFeatureAsInt(int unitIndex, int featureIndex)
+    {
+        if (featureIndex < numBytes) {
+            return getByteFeature(unitIndex, featureIndex);
+        } else if (featureIndex < numBytes + numShorts) {
+            return getShortFeature(unitIndex, featureIndex);
+        } else if (featureIndex < numBytes + numShorts + numFloats) {
+            return (int) getContinuousFeature(unitIndex, featureIndex);
+        }
+        throw new IndexOutOfBoundsException(featureIndex+" is not between 0 and "+(numBytes + numShorts + numFloats));
+    }
+
+    /**
+     * Create a feature vector object holding a copy of the features of a unit.
+     * This allocates, so it should be avoided on the processing hot path.
+     * @param unitIndex the index of the unit
+     * @return a new feature vector
+     */
+    public FeatureVector getFeatureVector(int unitIndex)
+    {
+        if (unitIndex < 0 || unitIndex >= numberOfUnits) {
+            throw new IndexOutOfBoundsException(unitIndex+" is not between 0 and "+numberOfUnits);
+        }
+        int pos = unitIndex * recordSize;
+        byte[] bytes = new byte[numBytes];
+        for (int i=0; i<numBytes; i++) {
+            bytes[i] = data.get(pos + i);
+        }
+        pos += numBytes;
+        short[] shorts = new short[numShorts];
+        for (int i=0; i<numShorts; i++) {
+            shorts[i] = data.getShort(pos + 2*i);
+        }
+        pos += 2*numShorts;
+        float[] floats = new float[numFloats];
+        for (int i=0; i<numFloats; i++) {
+            floats[i] = data.getFloat(pos + 4*i);
+        }
+        return new FeatureVector(bytes, shorts, floats, unitIndex);
+    }
+}
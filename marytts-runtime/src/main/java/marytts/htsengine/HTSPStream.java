@@ -63,6 +63,8 @@
 
 package marytts.htsengine;
 
+import marytts.server.Deadline;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 import java.util.Arrays;
 
@@ -217,6 +219,7 @@ public class HTSPStream {
        logger.info("Global variance optimization");
      
 	 for (m=0; m<M; m++) {
+	   CancellationToken.checkCurrent();
 	   calcWUWandWUM( m , debug);
 	   ldlFactorization(debug);   /* LDL factorization                               */
 	   forwardSubstitution();     /* forward substitution in Cholesky decomposition  */
@@ -360,6 +363,13 @@ public class HTSPStream {
 
   
   /*----------------- GV functions  -----------------------------*/
+  /* the maximum number of GV iterations; a quarter of it if the request's deadline is close */
+  int getMaxGVIter(){
+    if (maxGVIter >= 4 && Deadline.degrade("gv"))
+      return maxGVIter / 4;
+    return maxGVIter;
+  }
+
   private void gvParmGenDerivative(int m, boolean debug){    
     int t,iter;
     double step = stepInit;
@@ -384,7 +394,9 @@ public class HTSPStream {
     calcWUWandWUM(m, false);
     
     /* iteratively optimize c */
-    for (iter=1; iter<=maxGVIter; iter++) {
+    int maxIter = getMaxGVIter();
+    for (iter=1; iter<=maxIter; iter++) {
+      CancellationToken.checkCurrent();
       /* calculate GV objective and its derivative with respect to c */
       obj = calcDerivative(m);   
       
@@ -433,7 +445,9 @@ public class HTSPStream {
       calcWUWandWUM(m, false);
       
       /* iteratively optimize c */
-      for (iter=1; iter<=maxGVIter; iter++) {
+      int maxIter = getMaxGVIter();
+      for (iter=1; iter<=maxIter; iter++) {
+        CancellationToken.checkCurrent();
         /* calculate GV objective and its derivative with respect to c */
         obj = calcGradient(m);   
         /* accelerate/decelerate step size */
@@ -487,7 +501,7 @@ public class HTSPStream {
         }
         prev = obj;       
       }   
-      if( iter>maxGVIter ){
+      if( iter>maxIter ){
         logger.info("   optimization stopped by reaching max number of iterations (no global variance applied)");
 
         /* If there it does not converge, the feature parameter is not optimized */
@@ -79,8 +79,10 @@ import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import marytts.server.RequestTrace;
 import marytts.signalproc.analysis.Mfccs;
 import marytts.signalproc.analysis.PitchReaderWriter;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 import marytts.util.io.LEDataInputStream;
 
@@ -305,6 +307,8 @@ public class HTSParameterGeneration {
 	}  /* for each model in this utterance */ 
 			
 	/* parameter generation for mcep */  
+    CancellationToken.checkCurrent(); // the streams check again while generating
+    RequestTrace.count("mlpg_frames", um.getTotalFrame());
     if( mcepPst != null ) {
 	  logger.info("Parameter generation for MGC: ");
 	  if(htsData.getUseGV())
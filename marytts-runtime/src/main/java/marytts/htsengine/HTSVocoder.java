@@ -84,7 +84,9 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
+import marytts.exceptions.RequestCancelledException;
 import marytts.signalproc.process.AmplitudeNormalizer;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.ProducingDoubleDataSource;
@@ -454,6 +456,7 @@ public class HTSVocoder {
       magSample = 1;
       magPulseSize = 0;
       for(mcepframe=0,lf0frame=0; mcepframe<mcepPst.getT(); mcepframe++) {
+        CancellationToken.checkCurrent();
        
         /* get current feature vector mgc */ 
         for(i=0; i<m; i++)
@@ -560,6 +563,7 @@ public class HTSVocoder {
         /* Generate fperiod samples per feature vector, normally 80 samples per frame */
         //p1=0.0;
         gauss=false;
+        int frameStart = s_double;
         for(j=fprd-1, i=(iprd+1)/2; j>=0; j--) {          
           if(p1 == 0.0) {
             if(gauss)
@@ -677,9 +681,6 @@ public class HTSVocoder {
         
           //System.out.format("%f ", x);  
           audio_double[s_double] = x;
-          if(audioProducer != null) {
-              audioProducer.putOneDataPoint(x);
-          }
 
           s_double++;
           
@@ -694,6 +695,9 @@ public class HTSVocoder {
          // System.out.println("  i=" + i + "  inc=" + inc + "  pc=" + pc + "  p1=" + p1);
           
         } /* for each sample in a period fprd */
+        if(audioProducer != null) {
+          audioProducer.putData(audio_double, frameStart, s_double-frameStart);
+        }
         //System.out.format("\n");
         
         /********* For debuging
@@ -2208,8 +2212,12 @@ public class HTSVocoder {
             try {
                 htsMLSAVocoder(lf0Pst, mcepPst, strPst, magPst, voiced, htsData, this);
                 putEndOfStream();
+            } catch (RequestCancelledException e) {
+                logger.debug("Vocoding cancelled");
+                putFailure(e);
             } catch (Exception e) {
                 logger.error("Cannot vocode", e);
+                putFailure(e);
             }
         }
         
@@ -97,6 +97,12 @@ public class HMMDurationF0Modeller extends InternalModule
       
   }  
    
+  @Override
+  public Class<?>[] getStartupDependencies()
+  {
+    return new Class<?>[] {TargetFeatureLister.class};
+  }
+
   public void startup() throws Exception
   {
     super.startup();
@@ -80,7 +80,7 @@ public class InternalModule implements MaryModule
     private MaryDataType inputType = null;
     private MaryDataType outputType = null;
     private Locale locale = null;
-    protected int state;
+    protected volatile int state;
     /** The logger instance to be used by this module.
      * It will identify the origin of the log message in the log file.
      */
@@ -109,6 +109,17 @@ public class InternalModule implements MaryModule
         state = MODULE_RUNNING;
     }
 
+    /**
+     * The modules which must be running before this module's startup() is called.
+     * Modules whose startup() starts, or otherwise relies on, other modules should
+     * list them here, so that {@link ModuleStarter} does not start them concurrently.
+     * @return the classes of the modules this module depends on; by default, an empty array.
+     */
+    public Class<?>[] getStartupDependencies()
+    {
+        return new Class<?>[0];
+    }
+
     /**
      * Perform a power-on self test by processing some example input data.
      * @throws Error if the module does not work properly.
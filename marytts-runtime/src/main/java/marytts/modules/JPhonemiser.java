@@ -38,7 +38,9 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.fst.FSTLookup;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.phonemiser.TrainedLTS;
+import marytts.server.MaryMetrics;
 import marytts.server.MaryProperties;
+import marytts.util.ConcurrentLRUCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -51,6 +53,12 @@ import org.w3c.dom.traversal.NodeIterator;
 
 /**
  * The phonemiser module -- java implementation.
+ * <p>
+ * The pronunciations found by {@link #phonemise(String, String, StringBuilder)}
+ * are kept in a bounded cache shared by all requests, so that repeated words,
+ * notably out-of-vocabulary names which need letter-to-sound rules, are only
+ * transcribed once. The size of the cache is set by the property
+ * <code>jphonemiser.cache.size</code>; 0 disables the cache.
  *
  * @author Marc Schr&ouml;der, Sathish
  */
@@ -64,6 +72,11 @@ public class JPhonemiser extends InternalModule
 
     protected AllophoneSet allophoneSet;
 
+    /**
+     * Pronunciation and g2p method for text and part-of-speech, or null if disabled.
+     */
+    protected ConcurrentLRUCache<String, String[]> pronunciationCache;
+
     public JPhonemiser(String propertyPrefix)
     throws IOException,  MaryConfigurationException
     {
@@ -104,6 +117,10 @@ public class JPhonemiser extends InternalModule
         lexicon = new FSTLookup(lexiconStream, lexiconProperty);
         InputStream ltsStream = MaryProperties.needStream(ltsProperty);
         lts = new TrainedLTS(allophoneSet, ltsStream);
+        int cacheSize = MaryProperties.getInteger("jphonemiser.cache.size", 10000);
+        if (cacheSize > 0) {
+            pronunciationCache = new ConcurrentLRUCache<String, String[]>(cacheSize);
+        }
     }
 
 
@@ -143,7 +160,7 @@ public class JPhonemiser extends InternalModule
                     while (st.hasMoreTokens()) {
                         String graph = st.nextToken();
                         StringBuilder helper = new StringBuilder();
-                        String phon = phonemise(graph, pos, helper);
+                        String phon = cachedPhonemise(graph, pos, helper);
                         if (ph.length() == 0) { // first part
                             // The g2pMethod of the combined beast is
                             // the g2pMethod of the first constituant.
@@ -167,6 +184,44 @@ public class JPhonemiser extends InternalModule
         return result;
     }
 
+    /**
+     * Phonemise the word text, using the result of a previous call
+     * with the same text and part-of-speech if it is still in the cache.
+     * @param text the textual (graphemic) form of a word.
+     * @param pos the part-of-speech of the word, or null
+     * @param g2pMethod filled with the method of phonemisation, as in {@link #phonemise(String, String, StringBuilder)}
+     * @return a phonemisation of the text, or null if no phonemisation method was successful.
+     */
+    public String cachedPhonemise(String text, String pos, StringBuilder g2pMethod)
+    {
+        if (pronunciationCache == null) {
+            return phonemise(text, pos, g2pMethod);
+        }
+        String key = getLocale() + "|" + (pos != null ? pos : "") + "|" + text;
+        String[] cached = pronunciationCache.get(key);
+        MaryMetrics.recordCacheLookup("pronunciation", cached != null);
+        if (cached != null) {
+            g2pMethod.append(cached[1]);
+            return cached[0];
+        }
+        StringBuilder method = new StringBuilder();
+        String result = phonemise(text, pos, method);
+        if (result != null) {
+            pronunciationCache.put(key, new String[] {result, method.toString()});
+        }
+        g2pMethod.append(method);
+        return result;
+    }
+
+    /**
+     * Access the pronunciation cache, e.g. to look at its hit rate.
+     * @return the cache, or null if pronunciations are not cached.
+     */
+    public ConcurrentLRUCache<String, String[]> getPronunciationCache()
+    {
+        return pronunciationCache;
+    }
+
     /**
      * Phonemise the word text. This starts with a simple lexicon lookup,
      * followed by some heuristics, and finally applies letter-to-sound rules
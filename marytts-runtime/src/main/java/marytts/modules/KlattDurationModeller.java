@@ -87,6 +87,12 @@ public class KlattDurationModeller extends InternalModule {
         this.localePrefix = localeString;
     }
 
+    @Override
+    public Class<?>[] getStartupDependencies()
+    {
+        return new Class<?>[] {Synthesis.class};
+    }
+
     public void startup() throws Exception {
         super.startup();
         // We depend on the Synthesis module:
@@ -101,6 +101,11 @@ public interface MaryModule
      * <p>
      * This method should never return <code> null </code>; in case of a
      * failure, an exception should be thrown.
+     * <p>
+     * The request's {@link marytts.util.CancellationToken} is bound to the calling thread;
+     * modules doing lengthy computations should call
+     * {@link marytts.util.CancellationToken#checkCurrent()} now and then, so that they stop
+     * when the request is no longer needed.
      */
     public MaryData process(MaryData d) throws Exception;
 }
@@ -20,12 +20,14 @@
 package marytts.modules;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import marytts.datatypes.MaryDataType;
 import marytts.exceptions.MaryConfigurationException;
@@ -33,6 +35,7 @@ import marytts.modules.synthesis.Voice;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 
+import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.commons.collections.map.MultiKeyMap;
 import org.apache.log4j.Logger;
 
@@ -50,6 +53,9 @@ public class ModuleRegistry
 {
     private static MultiKeyMap mkm;
     private static List<MaryModule> allModules;
+    private static ConcurrentHashMap<MultiKey, ProcessingPlan> plans;
+    // plans are computed and invalidated under this lock, so that no plan computed before an invalidation is kept
+    private static final Object planLock = new Object();
     private static boolean registrationComplete;
     private static Logger logger;
     
@@ -63,6 +69,7 @@ public class ModuleRegistry
     static {
         mkm = new MultiKeyMap();
         allModules = new LinkedList<MaryModule>();
+        plans = new ConcurrentHashMap<MultiKey, ProcessingPlan>();
         registrationComplete = false;
         logger = MaryUtils.getLogger("ModuleRegistry");
     }
@@ -132,6 +139,7 @@ public class ModuleRegistry
         l.add(module);
         
         allModules.add(module);
+        invalidateProcessingPlans();
 
         MaryDataType.registerDataType(type);
         MaryDataType.registerDataType(module.outputType());
@@ -162,6 +170,7 @@ public class ModuleRegistry
             throw new IllegalStateException("Registration has already completed, cannot do that a second time");
 
         registrationComplete = true;
+        invalidateProcessingPlans();
         MaryDataType.setRegistrationComplete();
     }
     
@@ -229,9 +238,34 @@ public class ModuleRegistry
      * list could be found.
      * @throws IllegalStateException if called while registration is not yet complete. 
      * @throws NullPointerException if source data type, target data type or locale is null.
+     * @see #getProcessingPlan(MaryDataType, MaryDataType, Locale, Voice)
      */
     public static LinkedList<MaryModule> modulesRequiredForProcessing(
         MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice)
+    {
+        ProcessingPlan plan = getProcessingPlan(sourceType, targetType, locale, voice);
+        if (!plan.isFeasible()) {
+            return null;
+        }
+        return new LinkedList<MaryModule>(plan.getModules());
+    }
+
+    /**
+     * Get the processing plan for transforming the given source data type into the
+     * requested target data type, for the given locale and voice.
+     * Plans are computed on first request and cached until the registry changes,
+     * so that repeated requests for the same combination do not need to search
+     * through the registered modules again.
+     * @param sourceType
+     * @param targetType
+     * @param locale
+     * @param voice the voice, or null; if not null, any preferred modules it may have are taken into account.
+     * @return the processing plan; it will not be null, but it may not be feasible if no path through modules
+     * could be found (see {@link ProcessingPlan#isFeasible()}).
+     * @throws IllegalStateException if called while registration is not yet complete. 
+     * @throws NullPointerException if source data type or target data type is null.
+     */
+    public static ProcessingPlan getProcessingPlan(MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice)
     {
         if (!registrationComplete)
             throw new IllegalStateException("Cannot inquire about modules while registration is ongoing");
@@ -241,10 +275,75 @@ public class ModuleRegistry
             throw new NullPointerException("Received null target type");
         //if (locale == null)
         //    throw new NullPointerException("Received null locale");
-        LinkedList<MaryDataType> seenTypes = new LinkedList<MaryDataType>();
-        seenTypes.add(sourceType);
-        return modulesRequiredForProcessing(
-            sourceType, targetType, locale, voice, seenTypes);
+        MultiKey key = new MultiKey(sourceType, targetType, locale, voice);
+        ProcessingPlan plan = plans.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        synchronized (planLock) {
+            plan = plans.get(key);
+            if (plan == null) {
+                LinkedList<MaryDataType> seenTypes = new LinkedList<MaryDataType>();
+                seenTypes.add(sourceType);
+                List<MaryModule> path = modulesRequiredForProcessing(sourceType, targetType, locale, voice, seenTypes);
+                plan = new ProcessingPlan(sourceType, targetType, locale, voice, path);
+                plans.put(key, plan);
+                logger.debug("New processing plan: "+plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Compute the processing plans for all combinations of input and output types,
+     * for all known voices and for the locales of all registered modules,
+     * so that requests do not need to compute them on the fly.
+     * @throws IllegalStateException if called while registration is not yet complete. 
+     */
+    public static void precomputeProcessingPlans()
+    {
+        if (!registrationComplete)
+            throw new IllegalStateException("Cannot inquire about modules while registration is ongoing");
+        List<Locale> locales = new ArrayList<Locale>();
+        for (MaryModule m : allModules) {
+            if (m.getLocale() != null && !locales.contains(m.getLocale())) {
+                locales.add(m.getLocale());
+            }
+        }
+        List<MaryDataType> inputTypes = MaryDataType.getInputTypes();
+        List<MaryDataType> outputTypes = MaryDataType.getOutputTypes();
+        long startTime = System.currentTimeMillis();
+        for (MaryDataType in : inputTypes) {
+            for (MaryDataType out : outputTypes) {
+                for (Locale locale : locales) {
+                    getProcessingPlan(in, out, locale, null);
+                }
+                for (Voice v : Voice.getAvailableVoices()) {
+                    getProcessingPlan(in, out, v.getLocale(), v);
+                }
+            }
+        }
+        logger.debug("Computed "+plans.size()+" processing plans in "+(System.currentTimeMillis()-startTime)+" ms");
+    }
+
+    /**
+     * Provide all processing plans computed so far, e.g. to inspect their timing statistics.
+     * @return an unmodifiable collection of processing plans.
+     */
+    public static Collection<ProcessingPlan> getProcessingPlans()
+    {
+        return Collections.unmodifiableCollection(plans.values());
+    }
+
+    /**
+     * Forget all cached processing plans. This is called whenever the registry changes,
+     * e.g. when a module or a voice is registered; plans will be recomputed on demand.
+     */
+    public static void invalidateProcessingPlans()
+    {
+        synchronized (planLock) {
+            plans.clear();
+        }
     }
     
     /**
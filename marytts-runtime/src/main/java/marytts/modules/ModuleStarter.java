@@ -0,0 +1,202 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.util.MaryUtils;
+import marytts.util.Pair;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Starts a list of modules on a bounded pool of threads. A module is started
+ * only when all the modules it depends on (see {@link InternalModule#getStartupDependencies()})
+ * are running; modules which do not depend on one another are started in parallel.
+ * <p>
+ * Dependencies on modules which are not in the list are ignored. If the dependencies
+ * contain a cycle, the modules in the cycle are started one after the other,
+ * in the order of the list, after all other modules.
+ *
+ * @author agent
+ */
+public class ModuleStarter
+{
+    private final int numThreads;
+    private final Logger logger;
+
+    /**
+     * @param numThreads the maximum number of modules to start at the same time;
+     * with 1, the modules are started one after the other, in list order.
+     */
+    public ModuleStarter(int numThreads)
+    {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread, got "+numThreads);
+        }
+        this.numThreads = numThreads;
+        this.logger = MaryUtils.getLogger("ModuleStarter");
+    }
+
+    /**
+     * Start the given modules, unless they are already running.
+     * @param modules the modules to start
+     * @return for each module that was started by this method, the time its startup took, in milliseconds,
+     * in the order in which the modules were started.
+     * @throws Exception if a module cannot be started. No further modules are started then.
+     */
+    public List<Pair<MaryModule, Long>> startup(List<MaryModule> modules) throws Exception
+    {
+        List<Pair<MaryModule, Long>> startupTimes = new ArrayList<Pair<MaryModule,Long>>();
+        if (numThreads == 1) {
+            startSequentially(modules, startupTimes);
+            return startupTimes;
+        }
+        // for each module, the modules it is still waiting for:
+        Map<MaryModule, Set<MaryModule>> waiting = new LinkedHashMap<MaryModule, Set<MaryModule>>();
+        for (MaryModule m : modules) {
+            waiting.put(m, getDependencies(m, modules));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ModuleStartup-"+count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            CompletionService<Pair<MaryModule, Long>> completion = new ExecutorCompletionService<Pair<MaryModule,Long>>(pool);
+            int running = submitReady(waiting, completion);
+            while (running > 0) {
+                Pair<MaryModule, Long> started;
+                try {
+                    started = completion.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) throw (Exception) cause;
+                    throw new Exception(cause);
+                }
+                running--;
+                if (started.getSecond() != null) {
+                    startupTimes.add(started);
+                }
+                for (Set<MaryModule> dependencies : waiting.values()) {
+                    dependencies.remove(started.getFirst());
+                }
+                running += submitReady(waiting, completion);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!waiting.isEmpty()) {
+            StringBuilder names = new StringBuilder();
+            for (MaryModule m : waiting.keySet()) {
+                names.append(" ").append(m.name());
+            }
+            logger.warn("Cyclic startup dependencies between modules"+names+" -- starting them one after the other");
+            startSequentially(new ArrayList<MaryModule>(waiting.keySet()), startupTimes);
+        }
+        return startupTimes;
+    }
+
+    /**
+     * The modules in the list which m depends on.
+     */
+    private static Set<MaryModule> getDependencies(MaryModule m, List<MaryModule> modules)
+    {
+        Set<MaryModule> dependencies = new HashSet<MaryModule>();
+        if (m instanceof InternalModule) {
+            for (Class<?> c : ((InternalModule) m).getStartupDependencies()) {
+                for (MaryModule other : modules) {
+                    if (other != m && c.isInstance(other)) {
+                        dependencies.add(other);
+                    }
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Submit all modules which are no longer waiting for any other module,
+     * and remove them from waiting.
+     * @return the number of modules submitted
+     */
+    private int submitReady(Map<MaryModule, Set<MaryModule>> waiting, CompletionService<Pair<MaryModule, Long>> completion)
+    {
+        List<MaryModule> ready = new ArrayList<MaryModule>();
+        for (Map.Entry<MaryModule, Set<MaryModule>> entry : waiting.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+        for (final MaryModule m : ready) {
+            waiting.remove(m);
+            completion.submit(new Callable<Pair<MaryModule, Long>>() {
+                public Pair<MaryModule, Long> call() throws Exception {
+                    return new Pair<MaryModule, Long>(m, start(m));
+                }
+            });
+        }
+        return ready.size();
+    }
+
+    private void startSequentially(List<MaryModule> modules, List<Pair<MaryModule, Long>> startupTimes) throws Exception
+    {
+        for (MaryModule m : modules) {
+            Long time = start(m);
+            if (time != null) {
+                startupTimes.add(new Pair<MaryModule, Long>(m, time));
+            }
+        }
+    }
+
+    /**
+     * Start the module if it is not yet running.
+     * @return the time the startup took, in milliseconds, or null if the module was running already.
+     */
+    private static Long start(MaryModule m) throws Exception
+    {
+        if (m.getState() != MaryModule.MODULE_OFFLINE) {
+            return null;
+        }
+        long before = System.currentTimeMillis();
+        try {
+            m.startup();
+        } catch (Throwable t) {
+            throw new Exception("Problem starting module "+ m.name(), t);
+        }
+        return System.currentTimeMillis() - before;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+
+/**
+ * An immutable, precomputed chain of modules converting a given input type into
+ * a given output type for a given locale and voice.
+ * Plans are computed once by the {@link ModuleRegistry} and shared by all requests
+ * using the same combination; each plan keeps cumulative timing statistics
+ * about its executions.
+ *
+ * @author agent
+ *
+ */
+public class ProcessingPlan
+{
+    private final MaryDataType inputType;
+    private final MaryDataType outputType;
+    private final Locale locale;
+    private final Voice voice;
+    private final List<MaryModule> modules;
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * Create a new processing plan.
+     * @param inputType
+     * @param outputType
+     * @param locale
+     * @param voice
+     * @param modules the ordered list of modules to apply, or null if there is no
+     * processing path from the input type to the output type.
+     */
+    ProcessingPlan(MaryDataType inputType, MaryDataType outputType, Locale locale, Voice voice, List<MaryModule> modules)
+    {
+        this.inputType = inputType;
+        this.outputType = outputType;
+        this.locale = locale;
+        this.voice = voice;
+        this.modules = modules != null ? Collections.unmodifiableList(new ArrayList<MaryModule>(modules)) : null;
+    }
+
+    public MaryDataType getInputType()
+    {
+        return inputType;
+    }
+
+    public MaryDataType getOutputType()
+    {
+        return outputType;
+    }
+
+    public Locale getLocale()
+    {
+        return locale;
+    }
+
+    public Voice getVoice()
+    {
+        return voice;
+    }
+
+    /**
+     * Whether there is a processing path from the input type to the output type.
+     * @return true if {@link #getModules()} returns a list of modules, false otherwise.
+     */
+    public boolean isFeasible()
+    {
+        return modules != null;
+    }
+
+    /**
+     * The (ordered) list of modules to apply.
+     * @return an unmodifiable list of modules, or null if there is no processing path.
+     */
+    public List<MaryModule> getModules()
+    {
+        return modules;
+    }
+
+    /**
+     * Record one execution of this plan.
+     * @param millis the time it took to run through all modules in the plan, in milliseconds.
+     */
+    public void recordExecution(long millis)
+    {
+        executions.incrementAndGet();
+        totalTime.addAndGet(millis);
+        long max;
+        while ((max = maxTime.get()) < millis) {
+            if (maxTime.compareAndSet(max, millis)) break;
+        }
+    }
+
+    /**
+     * @return the number of times this plan has been executed.
+     */
+    public long getExecutionCount()
+    {
+        return executions.get();
+    }
+
+    /**
+     * @return the cumulative time spent executing this plan, in milliseconds.
+     */
+    public long getTotalTime()
+    {
+        return totalTime.get();
+    }
+
+    /**
+     * @return the longest single execution of this plan, in milliseconds.
+     */
+    public long getMaxTime()
+    {
+        return maxTime.get();
+    }
+
+    /**
+     * @return the average execution time of this plan in milliseconds, or 0 if it was never executed.
+     */
+    public double getAverageTime()
+    {
+        long n = executions.get();
+        if (n == 0) return 0;
+        return (double) totalTime.get() / n;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(inputType.name()).append(" -> ").append(outputType.name());
+        sb.append(" (locale ").append(locale).append(", voice ").append(voice != null ? voice.getName() : null).append("): ");
+        if (modules == null) {
+            sb.append("no processing path");
+        } else {
+            for (int i=0; i<modules.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(modules.get(i).name());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -33,11 +33,16 @@ import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
+import marytts.modules.synthesis.StreamingWaveformSynthesizer;
 import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.server.MaryProperties;
 import marytts.signalproc.effects.EffectsApplier;
+import marytts.util.data.ResamplingDoubleDataSource;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
+import marytts.util.data.audio.AudioDoubleDataSource;
+import marytts.util.data.audio.ChunkedAudioInputStream;
+import marytts.util.data.audio.DDSAudioInputStream;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.dom.NameNodeFilter;
 
@@ -67,6 +72,16 @@ public class Synthesis extends InternalModule
               null);
     }
 
+    /**
+     * The waveform synthesizers start the modules they use themselves,
+     * so these must not be started concurrently.
+     */
+    @Override
+    public Class<?>[] getStartupDependencies()
+    {
+        return new Class<?>[] {TargetFeatureLister.class, HTSEngine.class, MaryXMLToMbrola.class, MbrolaCaller.class};
+    }
+
     public void startup() throws Exception
     {
         startupSynthesizers();
@@ -174,11 +189,7 @@ public class Synthesis extends InternalModule
                 if (currentVoiceElement != null) {
                     // We have just left a voice section
                     if (!elements.isEmpty()) {
-                        AudioInputStream ais = synthesizeOneSection
-                            (elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams);
-                        if (ais != null) {
-                            result.appendAudio(ais);
-                        }
+                        synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
                         elements.clear();
                     }
                     currentVoice = defaultVoice;
@@ -191,11 +202,7 @@ public class Synthesis extends InternalModule
                     || (v.getAttribute("effect")!=null && v.getAttribute("effect")!="" && !v.getAttribute("effect").equals(currentEffect))) {
                 // We have just entered a new voice section
                 if (!elements.isEmpty()) {
-                    AudioInputStream ais = synthesizeOneSection
-                        (elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams);
-                    if (ais != null) {
-                        result.appendAudio(ais);
-                    }
+                    synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
                     elements.clear();
                 }
                 
@@ -216,11 +223,7 @@ public class Synthesis extends InternalModule
             // Chunk at sentence boundaries
             if (s != currentSentence) {
                 if (!elements.isEmpty()) {
-                    AudioInputStream ais = synthesizeOneSection
-                        (elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams);
-                    if (ais != null) {
-                        result.appendAudio(ais);
-                    }
+                    synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
                     elements.clear();
                 }
                 currentSentence = s;
@@ -229,11 +232,7 @@ public class Synthesis extends InternalModule
         }
         
         if (!elements.isEmpty()) {
-            AudioInputStream ais = synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams);
-            
-            if (ais != null) {
-                result.appendAudio(ais);
-            }
+            synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
         }
 
         return result;
@@ -241,16 +240,20 @@ public class Synthesis extends InternalModule
 
     /**
      * Synthesize one section, consisting of tokens and boundaries, with a
-     * given voice, to the given target audio format.
+     * given voice, to the given target audio format, and append the audio to result.
+     * If the voice's synthesizer can stream its audio and the result is read while it is being
+     * produced (i.e., its audio is appendable), the section's audio is appended before synthesis
+     * starts, and filled in by the synthesizer as synthesis proceeds.
      */
-    private AudioInputStream synthesizeOneSection
-        (List<Element> tokensAndBoundaries, Voice voice, String currentStyle, String currentEffect, AudioFormat targetFormat, String outputParams)
+    private void synthesizeOneSection
+        (List<Element> tokensAndBoundaries, Voice voice, String currentStyle, String currentEffect, AudioFormat targetFormat, String outputParams,
+         MaryData result)
     throws SynthesisException, UnsupportedAudioFileException
     {     
         // sanity check: are there any tokens containing phone descendants?
         if (!containsPhoneDescendants(tokensAndBoundaries)) {
             logger.warn("No PHONE segments found in this section; will not attempt to synthesize it!");
-            return null;
+            return;
         }
         
         EffectsApplier ef = new EffectsApplier();
@@ -259,9 +262,37 @@ public class Synthesis extends InternalModule
         ef.setHMMEffectParameters(voice, currentEffect);
         //
         
+        if (voice.synthesizer() instanceof StreamingWaveformSynthesizer
+                && result.getAudio() instanceof AppendableSequenceAudioInputStream) {
+            StreamingWaveformSynthesizer synthesizer = (StreamingWaveformSynthesizer) voice.synthesizer();
+            if (synthesizer.isStreaming(voice, outputParams)) {
+                ChunkedAudioInputStream section = new ChunkedAudioInputStream(synthesizer.getAudioFormat(voice, outputParams), null);
+                try {
+                    result.appendAudio(convertAndApplyEffects(section, voice, currentEffect, targetFormat, ef));
+                    synthesizer.synthesize(tokensAndBoundaries, voice, outputParams, section);
+                } finally {
+                    section.doneAppending();
+                }
+                return;
+            }
+        }
         AudioInputStream ais = null;
         ais = voice.synthesize(tokensAndBoundaries, outputParams);
-        if (ais == null) return null;
+        if (ais == null) return;
+        result.appendAudio(convertAndApplyEffects(ais, voice, currentEffect, targetFormat, ef));
+    }
+
+    private AudioInputStream convertAndApplyEffects
+        (AudioInputStream ais, Voice voice, String currentEffect, AudioFormat targetFormat, EffectsApplier ef)
+    throws UnsupportedAudioFileException
+    {
+        // Sample rate conversion required? Java Sound supports only few rates, so we do it ourselves:
+        if (ais.getFormat().getSampleRate() != targetFormat.getSampleRate()
+                && canResample(ais.getFormat(), targetFormat)) {
+            logger.debug("Resampling audio of voice " + voice.getName() + " from "
+                    + ais.getFormat().getSampleRate() + " to " + targetFormat.getSampleRate() + " Hz");
+            ais = resample(ais, targetFormat);
+        }
         // Conversion to targetFormat required?
         if (!ais.getFormat().matches(targetFormat)) {
             // Attempt conversion; if not supported, log a warning
@@ -297,7 +328,40 @@ public class Synthesis extends InternalModule
         }
         return ais;
     }
-    
+
+    /**
+     * Whether {@link #resample(AudioInputStream, AudioFormat)} can convert audio in the given format
+     * to the sample rate of the target format.
+     */
+    private static boolean canResample(AudioFormat format, AudioFormat targetFormat)
+    {
+        int bits = format.getSampleSizeInBits();
+        return format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+            && (bits == 8 || bits == 16 || bits == 24)
+            && format.getChannels() == 1
+            && targetFormat.getChannels() <= 1
+            && isIntegralRate(format.getSampleRate())
+            && isIntegralRate(targetFormat.getSampleRate());
+    }
+
+    private static boolean isIntegralRate(float sampleRate)
+    {
+        return sampleRate > 0 && sampleRate == (int) sampleRate;
+    }
+
+    /**
+     * Resample the audio to the sample rate of the target format, using a
+     * polyphase resampler which processes the audio as it becomes available.
+     * @return a stream of 16 bit signed mono audio, with the sample rate and endianness of targetFormat.
+     */
+    private static AudioInputStream resample(AudioInputStream ais, AudioFormat targetFormat)
+    {
+        int targetRate = (int) targetFormat.getSampleRate();
+        AudioFormat resampledFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, targetRate, 16, 1, 2, targetRate, targetFormat.isBigEndian());
+        return new DDSAudioInputStream(new ResamplingDoubleDataSource(new AudioDoubleDataSource(ais),
+                (int) ais.getFormat().getSampleRate(), targetRate), resampledFormat);
+    }
+
     /**
      * Check if the List of Elements contains any TOKENS that have PHONE descendants
      * 
@@ -93,6 +93,12 @@ public class TobiContourGenerator extends InternalModule {
         this.tobirulefilePropertyName = localeString + ".cap.tobirulefile";
     }
 
+    @Override
+    public Class<?>[] getStartupDependencies()
+    {
+        return new Class<?>[] {Synthesis.class};
+    }
+
     public void startup() throws Exception {
         super.startup();
         // We depend on the Synthesis module:
@@ -24,9 +24,16 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.LeafNode;
+import marytts.cart.Node;
 import marytts.cart.LeafNode.StringAndFloatLeafNode;
 import marytts.cart.io.MaryCARTReader;
 import marytts.exceptions.MaryConfigurationException;
@@ -38,6 +45,13 @@ import marytts.features.FeatureVector;
 /**
  * 
  * This predicts pronunciation from a model trained with LTSTrainer.
+ * <p>
+ * When the tree is loaded, it is compiled into flat arrays: each decision
+ * node becomes a feature index, a criterion and an offset into a table of child
+ * references, and the most probable phone string of each leaf is computed once.
+ * Predicting a letter then needs no feature vector objects, no leaf evaluation
+ * and no exceptions for unknown letters. Trees with other decision node types than
+ * the byte-valued ones written by LTSTrainer are interpreted as node objects.
  * 
  * @author benjaminroth
  *
@@ -51,6 +65,20 @@ public class TrainedLTS {
     private int context;
     private AllophoneSet allophoneSet;
     private boolean convertToLowercase;
+
+    // The compiled tree; nodeFeature is null if the tree could not be compiled.
+    // Child references >= 0 are decision node indexes, references < 0 are
+    // leaves, ~ref being the index into leafPredictions.
+    private int[] nodeFeature;
+    private byte[] nodeCriterion;
+    private boolean[] nodeIsBinary;
+    private int[] nodeFirstChild;
+    private int[] children;
+    private String[] leafPredictions;
+    private int root;
+    // For each context position, the feature value of each known letter, and the value for "null":
+    private Map<Character, Byte>[] letterValues;
+    private byte[] nullValues;
     
     /**
      * 
@@ -77,6 +105,7 @@ public class TrainedLTS {
         if (props == null) throw new IllegalArgumentException("Prediction tree does not contain properties");
         convertToLowercase = Boolean.parseBoolean(props.getProperty("lowercase"));
         context = Integer.parseInt(props.getProperty("context"));
+        compile();
     }
     
     /**
@@ -97,13 +126,135 @@ public class TrainedLTS {
         if (props == null) throw new IllegalArgumentException("Prediction tree does not contain properties");
         convertToLowercase = Boolean.parseBoolean(props.getProperty("lowercase"));
         context = Integer.parseInt(props.getProperty("context"));
+        compile();
     }
-    
+
+    /**
+     * Translate the tree into the flat arrays used by {@link #predictPronunciation(String)},
+     * and precompute the feature values of the letters. If the tree contains decision nodes
+     * which cannot be compiled, the node objects will be used for prediction.
+     */
+    @SuppressWarnings("unchecked")
+    private void compile()
+    {
+        int numFeatures = 2*context + 1;
+        letterValues = (Map<Character, Byte>[]) new Map<?, ?>[numFeatures];
+        nullValues = new byte[numFeatures];
+        for (int fnr = 0; fnr < numFeatures; fnr++) {
+            letterValues[fnr] = new HashMap<Character, Byte>();
+            String[] values = featureDefinition.getPossibleValues(fnr);
+            for (int v = 0; v < values.length; v++) {
+                if (values[v].length() == 1) {
+                    letterValues[fnr].put(values[v].charAt(0), (byte) v);
+                }
+            }
+            nullValues[fnr] = featureDefinition.getFeatureValueAsByte(fnr, "null");
+        }
+
+        List<DecisionNode> decisionNodes = new ArrayList<DecisionNode>();
+        List<StringAndFloatLeafNode> leaves = new ArrayList<StringAndFloatLeafNode>();
+        int numChildren = collectNodes(tree.getRootNode(), decisionNodes, leaves);
+        if (numChildren < 0) {
+            nodeFeature = null;
+            return;
+        }
+        Map<Node, Integer> refs = new HashMap<Node, Integer>();
+        for (int i = 0; i < decisionNodes.size(); i++) {
+            refs.put(decisionNodes.get(i), i);
+        }
+        leafPredictions = new String[leaves.size()];
+        for (int j = 0; j < leafPredictions.length; j++) {
+            refs.put(leaves.get(j), ~j);
+            String prediction = leaves.get(j).mostProbableString(featureDefinition, indexPredictedFeature);
+            leafPredictions[j] = prediction.substring(1, prediction.length() - 1);
+        }
+        int n = decisionNodes.size();
+        int[] feature = new int[n];
+        byte[] criterion = new byte[n];
+        boolean[] isBinary = new boolean[n];
+        int[] firstChild = new int[n];
+        int[] childRefs = new int[numChildren];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            DecisionNode dn = decisionNodes.get(i);
+            feature[i] = dn.getFeatureIndex();
+            isBinary[i] = dn instanceof DecisionNode.BinaryByteDecisionNode;
+            if (isBinary[i]) {
+                criterion[i] = ((DecisionNode.BinaryByteDecisionNode) dn).getCriterionValueAsByte();
+            }
+            firstChild[i] = pos;
+            for (int k = 0; k < dn.getNumberOfDaugthers(); k++) {
+                childRefs[pos++] = refs.get(dn.getDaughter(k));
+            }
+        }
+        nodeFeature = feature;
+        nodeCriterion = criterion;
+        nodeIsBinary = isBinary;
+        nodeFirstChild = firstChild;
+        children = childRefs;
+        root = refs.get(tree.getRootNode());
+    }
+
+    /**
+     * Collect the nodes below node in depth-first order.
+     * @return the number of child references of the decision nodes found,
+     * or -1 if the tree contains nodes which cannot be compiled.
+     */
+    private int collectNodes(Node node, List<DecisionNode> decisionNodes, List<StringAndFloatLeafNode> leaves)
+    {
+        if (node instanceof StringAndFloatLeafNode) {
+            if (((LeafNode) node).isEmpty()) return -1;
+            leaves.add((StringAndFloatLeafNode) node);
+            return 0;
+        }
+        if (!(node instanceof DecisionNode.BinaryByteDecisionNode || node instanceof DecisionNode.ByteDecisionNode)) {
+            return -1;
+        }
+        DecisionNode dn = (DecisionNode) node;
+        decisionNodes.add(dn);
+        int numChildren = dn.getNumberOfDaugthers();
+        for (int k = 0; k < dn.getNumberOfDaugthers(); k++) {
+            int below = collectNodes(dn.getDaughter(k), decisionNodes, leaves);
+            if (below < 0) return -1;
+            numChildren += below;
+        }
+        return numChildren;
+    }
+
+    private byte getLetterValue(int fnr, String graphemes, int pos)
+    {
+        if (pos < 0 || pos >= graphemes.length()) {
+            return nullValues[fnr];
+        }
+        Byte value = letterValues[fnr].get(graphemes.charAt(pos));
+        // Silently ignore unknown characters
+        return value != null ? value.byteValue() : nullValues[fnr];
+    }
+
     public String predictPronunciation(String graphemes)
     {
         if (convertToLowercase)
             graphemes = graphemes.toLowerCase(allophoneSet.getLocale());
 
+        if (nodeFeature != null) {
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < graphemes.length(); i++) {
+                int node = root;
+                while (node >= 0) {
+                    byte value = getLetterValue(nodeFeature[node], graphemes, i - context + nodeFeature[node]);
+                    int daughter;
+                    if (nodeIsBinary[node]) {
+                        daughter = value == nodeCriterion[node] ? 0 : 1;
+                    } else {
+                        daughter = value;
+                    }
+                    node = children[nodeFirstChild[node] + daughter];
+                }
+                result.append(leafPredictions[~node]);
+            }
+            return result.toString();
+        }
+
         String returnStr = "";
 
         for (int i = 0 ; i < graphemes.length() ; i++){
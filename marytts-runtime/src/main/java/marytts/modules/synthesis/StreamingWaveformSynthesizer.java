@@ -0,0 +1,76 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.exceptions.SynthesisException;
+import marytts.util.data.audio.ChunkedAudioInputStream;
+
+import org.w3c.dom.Element;
+
+/**
+ * A waveform synthesizer which can deliver the audio for a part of a MaryXML
+ * document piece by piece while it is still synthesizing, so that the first
+ * audio of long sections can be played before the entire section is synthesized.
+ * 
+ * @author agent
+ */
+public interface StreamingWaveformSynthesizer extends WaveformSynthesizer
+{
+    /**
+     * Whether synthesis with the given voice and output parameters should use
+     * {@link #synthesize(List, Voice, String, ChunkedAudioInputStream)}.
+     * @param voice the Voice to use for synthesis
+     * @param outputParams any specified output parameters; may be null
+     */
+    public boolean isStreaming(Voice voice, String outputParams);
+
+    /**
+     * The format of the audio which
+     * {@link #synthesize(List, Voice, String, ChunkedAudioInputStream)}
+     * appends to its output stream.
+     * @param voice the Voice to use for synthesis
+     * @param outputParams any specified output parameters; may be null
+     */
+    public AudioFormat getAudioFormat(Voice voice, String outputParams);
+
+    /**
+     * Synthesize a given part of a MaryXML document, appending the audio to the
+     * output stream as soon as it is available. The audio is appended in the
+     * calling thread, and the MaryXML document is only accessed from the calling
+     * thread, so that the output can be read concurrently by another thread.
+     * The caller must call {@link ChunkedAudioInputStream#doneAppending()} when
+     * this method returns. This method is expected to be thread-safe.
+     * @param tokensAndBoundaries the part of the MaryXML document to
+     * synthesize; a list containing a number of adjacent <t> and <boundary>
+     * elements.
+     * @param voice the Voice to use for synthesis
+     * @param outputParams any specified output parameters; may be null
+     * @param output the stream to append the audio to, in the format given by
+     * {@link #getAudioFormat(Voice, String)}.
+     * @throws IllegalArgumentException if the voice requested for this section
+     * is incompatible with this WaveformSynthesizer.
+     */
+    public void synthesize(List<Element> tokensAndBoundaries, Voice voice, String outputParams, ChunkedAudioInputStream output)
+        throws SynthesisException;
+}
@@ -39,6 +39,11 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -477,6 +482,22 @@ public class Voice
     public boolean hasVocalizationSupport() { return vocalizationSupport; }
     public VocalizationSynthesizer getVocalizationSynthesizer() { return vocalizationSynthesizer; }
 
+    /**
+     * Whether the data needed for synthesis with this voice has been loaded.
+     * Most voices are loaded completely when they are created; voices which are
+     * registered with their configuration only, and loaded on first use, return false
+     * until {@link #load()} has been called.
+     * @return true if the voice can synthesize without loading any data first.
+     */
+    public boolean isLoaded() { return true; }
+
+    /**
+     * Load the data needed for synthesis with this voice, if it has not been loaded yet.
+     * This method does nothing for voices which are loaded when they are created.
+     * @throws MaryConfigurationException if the voice data cannot be loaded.
+     */
+    public void load() throws MaryConfigurationException {}
+
     /**
      * Get any styles supported by this voice.
      * @return an array of style names supported by this voice, or null if styles are not supported.
@@ -601,7 +622,7 @@ public class Voice
      * its locale.
      * This value is set in the config file setting <code>voice.(name).want.to.be.default.voice</code>.
      */
-    public static void registerVoice(Voice voice)
+    public static synchronized void registerVoice(Voice voice)
     {
         if (voice == null)
             throw new NullPointerException("Cannot register null voice.");
@@ -609,6 +630,7 @@ public class Voice
             logger.info("Registering voice `" + voice.getName() + "': " +
                          voice.gender() + ", locale " + voice.getLocale());
             allVoices.add(voice);
+            ModuleRegistry.invalidateProcessingPlans();
             try {
                 FreeTTSVoices.load(voice);
             } catch (NoClassDefFoundError err) {
@@ -624,7 +646,7 @@ public class Voice
      * Check if this voice should be registered as default.
      * @param voice
      */
-	private static void checkIfDefaultVoice(Voice voice)
+	private static synchronized void checkIfDefaultVoice(Voice voice)
 	{
 		
         Locale locale = voice.getLocale();
@@ -640,7 +662,7 @@ public class Voice
 	 * @param name
 	 * @return
 	 */
-    public static Voice getVoice(String name)
+    public static synchronized Voice getVoice(String name)
     {
         for (Iterator<Voice> it = allVoices.iterator(); it.hasNext(); ) {
             Voice v = it.next();
@@ -681,7 +703,7 @@ public class Voice
      * @param locale
      * @return a collection of Voice objects, or an empty collection if no voice is available for the given locale.
      */
-    public static Collection<Voice> getAvailableVoices(Locale locale)
+    public static synchronized Collection<Voice> getAvailableVoices(Locale locale)
     {
         ArrayList<Voice> list = new ArrayList<Voice>();
         for (Voice v : allVoices) {
@@ -697,7 +719,7 @@ public class Voice
      * will return the voices in decreasing order of their "wantToBeDefault" value.
      * @return a collection of Voice objects, or an empty collection if no voice is available for the given waveform synthesizer.
      */
-    public static Collection<Voice> getAvailableVoices(WaveformSynthesizer synth)
+    public static synchronized Collection<Voice> getAvailableVoices(WaveformSynthesizer synth)
     {
         if (synth == null) {
             throw new NullPointerException("Got null WaveformSynthesizer");
@@ -716,7 +738,7 @@ public class Voice
      * will return the voices in decreasing order of their "wantToBeDefault" value.
      * @return a collection of Voice objects, or an empty collection if no voice is available for the given locale.
      */
-    public static Collection<Voice> getAvailableVoices(WaveformSynthesizer synth, Locale locale)
+    public static synchronized Collection<Voice> getAvailableVoices(WaveformSynthesizer synth, Locale locale)
     {
         ArrayList<Voice> list = new ArrayList<Voice>();
         for (Voice v : allVoices) {
@@ -727,7 +749,7 @@ public class Voice
         return list;
     }
 
-    public static Voice getVoice(Locale locale, Gender gender)
+    public static synchronized Voice getVoice(Locale locale, Gender gender)
     {
         for (Voice v : allVoices) {
             if (MaryUtils.subsumes(locale, v.getLocale()) && v.gender().equals(gender))
@@ -766,7 +788,60 @@ public class Voice
     }
 
 
-    public static Voice getDefaultVoice(Locale locale)
+    /**
+     * Load all registered voices which have not been loaded yet (see {@link #load()}),
+     * for example to warm up a server whose voices are loaded on first use.
+     * @param numThreads the number of voices to load at the same time
+     * @throws MaryConfigurationException if a voice cannot be loaded. The other voices
+     * are loaded nevertheless.
+     */
+    public static void loadVoices(int numThreads) throws MaryConfigurationException
+    {
+        List<Voice> toLoad = new ArrayList<Voice>();
+        synchronized (Voice.class) {
+            for (Voice v : allVoices) {
+                if (!v.isLoaded()) {
+                    toLoad.add(v);
+                }
+            }
+        }
+        if (toLoad.isEmpty()) {
+            return;
+        }
+        logger.info("Loading "+toLoad.size()+" voices on "+numThreads+" threads");
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numThreads));
+        try {
+            List<Future<?>> loading = new ArrayList<Future<?>>();
+            for (final Voice v : toLoad) {
+                loading.add(pool.submit(new Callable<Void>() {
+                    public Void call() throws MaryConfigurationException {
+                        v.load();
+                        return null;
+                    }
+                }));
+            }
+            MaryConfigurationException problem = null;
+            for (int i=0; i<loading.size(); i++) {
+                try {
+                    loading.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.warn("Cannot load voice "+toLoad.get(i).getName(), e.getCause());
+                    if (problem == null) {
+                        problem = new MaryConfigurationException("Cannot load voice "+toLoad.get(i).getName(), e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    throw new MaryConfigurationException("Interrupted while loading voices", e);
+                }
+            }
+            if (problem != null) {
+                throw problem;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static synchronized Voice getDefaultVoice(Locale locale)
     {
         Voice v = defaultVoices.get(locale);
         if (v == null) v = getVoice(locale, FEMALE);
@@ -776,7 +851,7 @@ public class Voice
     }
 
 
-    public static Voice getSuitableVoice(MaryData d) {
+    public static synchronized Voice getSuitableVoice(MaryData d) {
         Locale docLocale = d.getLocale();
         if (docLocale == null && d.getType().isXMLType() && d.getDocument() != null
                 && d.getDocument().getDocumentElement().hasAttribute("xml:lang")) {
@@ -805,7 +880,7 @@ public class Voice
      * @param lexiconName
      * @return the requested lexicon, or null.
      */
-    private static Lexicon getLexicon(String lexiconClass, String lexiconName)
+    private static synchronized Lexicon getLexicon(String lexiconClass, String lexiconName)
     {
         if (lexiconClass == null) return null;
         // build the lexicon if not already built
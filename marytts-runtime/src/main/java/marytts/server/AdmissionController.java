@@ -0,0 +1,319 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import marytts.exceptions.AdmissionException;
+
+/**
+ * Decides when a request may start processing, so that a burst of requests waits
+ * instead of slowing down every request and exhausting the memory.
+ * <p>
+ * A request is admitted when fewer than <code>server.admission.maxconcurrent</code> requests
+ * are being processed overall (default: twice the number of processors), fewer than
+ * <code>server.admission.voice.maxconcurrent</code> with the same voice (default 0, i.e. no limit;
+ * can be set for individual voices as <code>server.admission.voice.VOICENAME.maxconcurrent</code>),
+ * and, for batch requests, fewer than <code>server.admission.batch.maxconcurrent</code> batch requests
+ * (default 0, i.e. only the overall limit). Otherwise, the request waits, up to
+ * <code>server.admission.timeout</code> milliseconds (default 30000). At most
+ * <code>server.admission.maxqueued</code> requests wait at the same time (default 100);
+ * more are rejected immediately.
+ * <p>
+ * Waiting interactive requests are admitted before waiting batch requests,
+ * and requests of the same priority in the order in which they arrived.
+ * Rejections are counted in {@link MaryMetrics#ADMISSION_REJECTED}, waiting times
+ * are recorded in {@link MaryMetrics#ADMISSION_WAIT}.
+ *
+ * @author agent
+ */
+public class AdmissionController
+{
+    public static enum Priority { INTERACTIVE, BATCH }
+
+    private static AdmissionController instance;
+
+    /**
+     * The admission controller configured by the MARY properties, shared by all servers.
+     */
+    public static synchronized AdmissionController getInstance()
+    {
+        if (instance == null) {
+            instance = new AdmissionController(
+                    MaryProperties.getInteger("server.admission.maxconcurrent", 2 * Runtime.getRuntime().availableProcessors()),
+                    MaryProperties.getInteger("server.admission.voice.maxconcurrent", 0),
+                    MaryProperties.getInteger("server.admission.batch.maxconcurrent", 0),
+                    MaryProperties.getInteger("server.admission.maxqueued", 100),
+                    MaryProperties.getInteger("server.admission.timeout", 30000));
+            instance.voiceLimitsFromProperties = true;
+            instance.interactiveMaxChars = MaryProperties.getInteger("server.admission.interactive.maxchars", 1000);
+        }
+        return instance;
+    }
+
+    private final int maxConcurrent;
+    private final int maxPerVoice;
+    private final int maxBatch;
+    private final int maxQueued;
+    private final long timeout;
+    private boolean voiceLimitsFromProperties = false;
+    private int interactiveMaxChars = 1000;
+    private final Map<String, Integer> voiceLimits = new HashMap<String, Integer>();
+
+    private int running = 0;
+    private int runningBatch = 0;
+    private final Map<String, Integer> runningPerVoice = new HashMap<String, Integer>();
+    private final TreeSet<Waiter> waiting = new TreeSet<Waiter>();
+    private long nextSequence = 0;
+
+    /**
+     * @param maxConcurrent the maximum number of requests processed at the same time, or 0 for no limit
+     * @param maxPerVoice the maximum number of requests processed with the same voice, or 0 for no limit
+     * @param maxBatch the maximum number of batch requests processed at the same time, or 0 for no limit
+     * @param maxQueued the maximum number of requests waiting to be admitted
+     * @param timeout the maximum time a request waits, in milliseconds
+     */
+    public AdmissionController(int maxConcurrent, int maxPerVoice, int maxBatch, int maxQueued, long timeout)
+    {
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerVoice = maxPerVoice;
+        this.maxBatch = maxBatch;
+        this.maxQueued = maxQueued;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Set the maximum number of requests processed with the given voice, overriding the default.
+     * @param voiceName the voice
+     * @param max the maximum number of requests, or 0 for no limit
+     */
+    public synchronized void setVoiceLimit(String voiceName, int max)
+    {
+        voiceLimits.put(voiceName, max);
+    }
+
+    /**
+     * The priority of a request with the given input: long inputs are processed as batch requests.
+     */
+    public Priority classify(String input)
+    {
+        return input != null && input.length() > interactiveMaxChars ? Priority.BATCH : Priority.INTERACTIVE;
+    }
+
+    /**
+     * The priority of a request which asks for the given priority.
+     * @param requested "interactive" or "batch", or null to classify the request by its input
+     * @param input the input of the request
+     * @throws IllegalArgumentException if the requested priority is unknown
+     */
+    public Priority getPriority(String requested, String input)
+    {
+        if (requested == null) {
+            return classify(input);
+        }
+        return Priority.valueOf(requested.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Wait until a request may be processed.
+     * @param voiceName the name of the voice the request uses, or null
+     * @param priority the priority of the request
+     * @return the ticket, which must be released when the request has been processed.
+     * @throws AdmissionException if the request is rejected, because too many requests
+     * are waiting or it has waited too long.
+     */
+    public Ticket admit(String voiceName, Priority priority) throws AdmissionException
+    {
+        long startTime = System.currentTimeMillis();
+        Ticket ticket = waitForAdmission(voiceName, priority, startTime);
+        MaryMetrics.getHistogram(MaryMetrics.ADMISSION_WAIT, "priority", priority.name().toLowerCase())
+            .record(System.currentTimeMillis() - startTime);
+        return ticket;
+    }
+
+    private synchronized Ticket waitForAdmission(String voiceName, Priority priority, long startTime) throws AdmissionException
+    {
+        Waiter waiter = new Waiter(voiceName, priority, nextSequence++);
+        if (waiting.isEmpty() && canRun(waiter)) {
+            return start(waiter);
+        }
+        if (waiting.size() >= maxQueued) {
+            throw reject("queue_full", "Server busy: too many requests waiting");
+        }
+        waiting.add(waiter);
+        try {
+            while (!isNext(waiter)) {
+                long left = startTime + timeout - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw reject("timeout", "Server busy: request waited more than "+timeout+" ms");
+                }
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    // let the caller know too
+                    Thread.currentThread().interrupt();
+                    throw reject("interrupted", "Interrupted while waiting for admission");
+                }
+            }
+        } catch (AdmissionException e) {
+            waiting.remove(waiter);
+            notifyAll(); // others may be next now
+            throw e;
+        }
+        waiting.remove(waiter);
+        notifyAll(); // others may be able to run as well
+        return start(waiter);
+    }
+
+    /**
+     * The waiter is next if it can run and no waiter before it can.
+     */
+    private boolean isNext(Waiter waiter)
+    {
+        for (Waiter w : waiting) {
+            if (canRun(w)) {
+                return w == waiter;
+            }
+        }
+        return false;
+    }
+
+    private boolean canRun(Waiter w)
+    {
+        if (maxConcurrent > 0 && running >= maxConcurrent) return false;
+        if (w.priority == Priority.BATCH && maxBatch > 0 && runningBatch >= maxBatch) return false;
+        if (w.voiceName != null) {
+            int limit = getVoiceLimit(w.voiceName);
+            if (limit > 0 && getRunning(w.voiceName) >= limit) return false;
+        }
+        return true;
+    }
+
+    private int getVoiceLimit(String voiceName)
+    {
+        Integer limit = voiceLimits.get(voiceName);
+        if (limit == null) {
+            limit = voiceLimitsFromProperties
+                ? MaryProperties.getInteger("server.admission.voice."+voiceName+".maxconcurrent", maxPerVoice)
+                : maxPerVoice;
+            voiceLimits.put(voiceName, limit);
+        }
+        return limit;
+    }
+
+    private Ticket start(Waiter w)
+    {
+        running++;
+        if (w.priority == Priority.BATCH) runningBatch++;
+        if (w.voiceName != null) runningPerVoice.put(w.voiceName, getRunning(w.voiceName) + 1);
+        return new Ticket(w);
+    }
+
+    private synchronized void finish(Waiter w)
+    {
+        running--;
+        if (w.priority == Priority.BATCH) runningBatch--;
+        if (w.voiceName != null) runningPerVoice.put(w.voiceName, getRunning(w.voiceName) - 1);
+        notifyAll();
+    }
+
+    private AdmissionException reject(String reason, String message)
+    {
+        MaryMetrics.getCounter(MaryMetrics.ADMISSION_REJECTED, "reason", reason).incrementAndGet();
+        return new AdmissionException(reason, message);
+    }
+
+    /**
+     * @return the number of requests being processed.
+     */
+    public synchronized int getRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return the number of requests being processed with the given voice.
+     */
+    public synchronized int getRunning(String voiceName)
+    {
+        Integer n = runningPerVoice.get(voiceName);
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * @return the number of requests waiting to be admitted.
+     */
+    public synchronized int getWaiting()
+    {
+        return waiting.size();
+    }
+
+    /**
+     * The permission to process one request.
+     */
+    public class Ticket
+    {
+        private final Waiter waiter;
+        private boolean released = false;
+
+        private Ticket(Waiter waiter)
+        {
+            this.waiter = waiter;
+        }
+
+        /**
+         * Inform the admission controller that the request has been processed.
+         * Calling this more than once has no effect.
+         */
+        public void release()
+        {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            finish(waiter);
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter>
+    {
+        final String voiceName;
+        final Priority priority;
+        final long sequence;
+
+        Waiter(String voiceName, Priority priority, long sequence)
+        {
+            this.voiceName = voiceName;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Waiter other)
+        {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
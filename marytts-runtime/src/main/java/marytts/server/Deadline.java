@@ -0,0 +1,167 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The time by which a request should be done, so that expensive processing stages
+ * can trade quality for speed when time is short.
+ * <p>
+ * Like the {@link marytts.util.CancellationToken}, the deadline of a request is bound to the
+ * thread processing it, see {@link Request#process()}. A stage which can do with less work
+ * asks {@link #degrade(String)} whether it should; the stages which did are reported by
+ * {@link #getDegradations()} and counted in {@link MaryMetrics#DEGRADATIONS}.
+ * <p>
+ * Time is short once more than a fraction <code>server.deadline.degrade</code> of the time
+ * has been used up (default 0.5).
+ *
+ * @author agent
+ */
+public class Deadline
+{
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<Deadline>();
+
+    /**
+     * The deadline bound to the current thread.
+     * @return the deadline, or null if the request being processed has none.
+     */
+    public static Deadline current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Bind the given deadline to the current thread.
+     * @param deadline the deadline, or null to unbind
+     * @return the deadline bound so far, to be restored when done.
+     */
+    public static Deadline setCurrent(Deadline deadline)
+    {
+        Deadline previous = current.get();
+        if (deadline != null) {
+            current.set(deadline);
+        } else {
+            current.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Whether the given processing stage should do less work for the request processed
+     * by the current thread. If so, the stage is recorded as degraded.
+     * @param stage a short name of the stage, e.g. "beam"
+     * @return true if time is short, false otherwise or if the request has no deadline.
+     */
+    public static boolean degrade(String stage)
+    {
+        Deadline deadline = current.get();
+        if (deadline == null || !deadline.isShort()) {
+            return false;
+        }
+        deadline.degraded(stage);
+        return true;
+    }
+
+    private final long startTime;
+    private final long endTime;
+    private final double degradeFraction;
+    private final Set<String> degradations = new LinkedHashSet<String>();
+
+    /**
+     * A deadline starting now.
+     * @param budget the time the request may take, in milliseconds
+     * @throws IllegalArgumentException if budget is not positive.
+     */
+    public Deadline(long budget)
+    {
+        this(budget, Double.parseDouble(MaryProperties.getProperty("server.deadline.degrade", "0.5")));
+    }
+
+    /**
+     * A deadline starting now.
+     * @param budget the time the request may take, in milliseconds
+     * @param degradeFraction the fraction of the budget after which time is short
+     * @throws IllegalArgumentException if budget is not positive.
+     */
+    public Deadline(long budget, double degradeFraction)
+    {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Deadline must be positive, got "+budget);
+        }
+        this.startTime = System.currentTimeMillis();
+        this.endTime = startTime + budget;
+        this.degradeFraction = degradeFraction;
+    }
+
+    /**
+     * @return the time left, in milliseconds; negative if the deadline has passed.
+     */
+    public long remaining()
+    {
+        return endTime - System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if the deadline has passed.
+     */
+    public boolean isExpired()
+    {
+        return remaining() <= 0;
+    }
+
+    /**
+     * @return true if processing should cut corners to meet the deadline.
+     */
+    public boolean isShort()
+    {
+        long now = System.currentTimeMillis();
+        return now - startTime >= degradeFraction * (endTime - startTime);
+    }
+
+    /**
+     * Record that the given stage has done less work than usual.
+     * Each stage is counted once per request.
+     */
+    public void degraded(String stage)
+    {
+        boolean added;
+        synchronized (degradations) {
+            added = degradations.add(stage);
+        }
+        if (added) {
+            MaryMetrics.getCounter(MaryMetrics.DEGRADATIONS, "stage", stage).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the stages which have done less work than usual, in the order in which they did.
+     */
+    public List<String> getDegradations()
+    {
+        synchronized (degradations) {
+            return Collections.unmodifiableList(new ArrayList<String>(degradations));
+        }
+    }
+}
@@ -55,12 +55,15 @@ import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureRegistry;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
+import marytts.modules.ModuleStarter;
+import marytts.modules.ProcessingPlan;
 import marytts.modules.Synthesis;
 import marytts.modules.synthesis.Voice;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.Pair;
+import marytts.util.data.audio.DDSAudioInputStream;
 import marytts.util.data.audio.MaryAudioUtils;
 import marytts.util.io.FileUtils;
 
@@ -83,6 +86,7 @@ public class Mary {
     private static Logger logger;
 
     private static int currentState = STATE_OFF;
+    private static volatile boolean warmedUp = false;
     private static boolean jarsAdded = false;
 
     /**
@@ -97,6 +101,15 @@ public class Mary {
         return currentState;
     }
 
+    /**
+     * Whether the system can process requests at full speed: it is running,
+     * and the warm-up configured by <code>server.warmup</code>, if any, is complete.
+     * @see WarmUp
+     */
+    public static boolean isReady() {
+        return warmedUp && currentState == STATE_RUNNING;
+    }
+
     /**
      * Add jars to classpath. Normally this is called from startup().
      * @throws Exception
@@ -134,25 +147,23 @@ public class Mary {
         }
         ModuleRegistry.setRegistrationComplete();
         
-        List<Pair<MaryModule, Long>> startupTimes = new ArrayList<Pair<MaryModule,Long>>();
-        
         // Separate loop for startup allows modules to cross-reference to each
         // other via Mary.getModule(Class) even if some have not yet been
         // started.
+        List<MaryModule> toStart = new ArrayList<MaryModule>();
         for (MaryModule m : ModuleRegistry.getAllModules()) {
             // Only start the modules here if in server mode: 
             if (((!MaryProperties.getProperty("server").equals("commandline")) || m instanceof Synthesis) 
                     && m.getState() == MaryModule.MODULE_OFFLINE) {
-                long before = System.currentTimeMillis();
-                try {
-                    m.startup();
-                } catch (Throwable t) {
-                    throw new Exception("Problem starting module "+ m.name(), t);
-                }
-                long after = System.currentTimeMillis();
-                startupTimes.add(new Pair<MaryModule, Long>(m, after-before));
+                toStart.add(m);
             }
-            if (MaryProperties.getAutoBoolean("modules.poweronselftest", false)) {
+        }
+        // Modules which do not depend on each other can be started in parallel,
+        // if they are known to be safe for that (see InternalModule.getStartupDependencies()):
+        int numThreads = MaryProperties.getInteger("modules.startup.threads", 1);
+        List<Pair<MaryModule, Long>> startupTimes = new ModuleStarter(Math.max(1, numThreads)).startup(toStart);
+        if (MaryProperties.getAutoBoolean("modules.poweronselftest", false)) {
+            for (MaryModule m : ModuleRegistry.getAllModules()) {
                 m.powerOnSelfTest();
             }
         }
@@ -168,6 +179,9 @@ public class Mary {
                 logger.debug(p.getFirst().name()+": "+p.getSecond()+" ms");
             }
         }
+
+        // Now that all voices are known, compute the processing paths through modules once:
+        ModuleRegistry.precomputeProcessingPlans();
     }
 
     private static void setupFeatureProcessors()
@@ -292,6 +306,8 @@ public class Mary {
         });
 
 
+        DDSAudioInputStream.setDitherByDefault(MaryProperties.getBoolean("audio.dither", false));
+
         setupFeatureProcessors();
         
         // Instantiate module classes and startup modules:
@@ -299,6 +315,24 @@ public class Mary {
 
         logger.info("Startup complete.");
         currentState = STATE_RUNNING;
+
+        if (MaryProperties.getBoolean("server.warmup", false)) {
+            // Let the JIT compile the synthesis code before reporting that we are ready:
+            final WarmUp warmUp = WarmUp.fromProperties();
+            Thread warmUpThread = new Thread("WarmUp") {
+                public void run() {
+                    try {
+                        warmUp.run();
+                    } finally {
+                        warmedUp = true;
+                    }
+                }
+            };
+            warmUpThread.setDaemon(true);
+            warmUpThread.start();
+        } else {
+            warmedUp = true;
+        }
     }
 
     /**
@@ -383,6 +417,16 @@ public class Mary {
     {
         if (currentState != STATE_RUNNING) throw new IllegalStateException("MARY system is not running");
         currentState = STATE_SHUTTING_DOWN;
+        warmedUp = false;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Processing plan usage:");
+            for (ProcessingPlan plan : ModuleRegistry.getProcessingPlans()) {
+                if (plan.getExecutionCount() > 0) {
+                    logger.debug(plan + " -- executed " + plan.getExecutionCount() + " times, average "
+                            + plan.getAverageTime() + " ms, max " + plan.getMaxTime() + " ms");
+                }
+            }
+        }
         logger.info("Shutting down modules...");
         // Shut down modules:
         for (MaryModule m : ModuleRegistry.getAllModules()) {
@@ -451,7 +495,7 @@ public class Mary {
             audioFileFormat = new AudioFileFormat(audioType, audioFormat, AudioSystem.NOT_SPECIFIED);
         }
         
-        Request request = new Request(inputType, outputType, locale, voice, effects, style, 1, audioFileFormat, false, outputTypeParams);
+        Request request = new Request(inputType, outputType, locale, voice, effects, style, Request.newId(), audioFileFormat, false, outputTypeParams);
         request.setInputData(input);
         request.process();
         request.writeOutputData(output);
@@ -491,6 +535,7 @@ public class Mary {
         System.err.print("MARY server " + Version.specificationVersion() + " starting as a ");
         if (server.equals("socket")) System.err.print("socket server...");
         else if (server.equals("http")) System.err.print("HTTP server...");
+        else if (server.equals("mux")) System.err.print("multiplexing socket server...");
         else System.err.print("command-line application...");
         
         // first thing we do, let's test if the port is available:
@@ -514,6 +559,8 @@ public class Mary {
             main = (Runnable) Class.forName("marytts.server.MaryServer").newInstance();
         } else if (server.equals("http")) { //http server mode
         	main = (Runnable) Class.forName("marytts.server.http.MaryHttpServer").newInstance();
+        } else if (server.equals("mux")) { //multiplexing socket server mode
+            main = (Runnable) Class.forName("marytts.server.mux.MuxServer").newInstance();
         } else { // command-line mode
         	main = new Runnable() {
         		public void run() {
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import marytts.util.LatencyHistogram;
+
+/**
+ * A central, process-wide collection of cumulative processing statistics:
+ * counters and latency histograms identified by a metric name and an optional label.
+ * All operations are lock-free, so that statistics can be collected on the
+ * processing hot path; servers can expose them, e.g. via the HTTP <code>/metrics</code> handler.
+ * <p>
+ * Metric keys have the form <code>name</code> or <code>name{label="value"}</code>.
+ *
+ * @author agent
+ *
+ */
+public class MaryMetrics
+{
+    public static final String REQUESTS = "marytts_requests_total";
+    public static final String REQUESTS_FAILED = "marytts_requests_failed_total";
+    public static final String REQUESTS_CANCELLED = "marytts_requests_cancelled_total";
+    public static final String REQUEST_DURATION = "marytts_request_duration_ms";
+    public static final String MODULE_DURATION = "marytts_module_duration_ms";
+    public static final String CACHE_LOOKUPS = "marytts_cache_lookups_total";
+    public static final String AUDIO_PRODUCED = "marytts_audio_produced_ms_total";
+    public static final String AUDIO_PROCESSING = "marytts_audio_processing_ms_total";
+    public static final String ADMISSION_REJECTED = "marytts_admission_rejected_total";
+    public static final String ADMISSION_WAIT = "marytts_admission_wait_ms";
+    public static final String DEGRADATIONS = "marytts_degradations_total";
+    public static final String TRACES_DROPPED = "marytts_traces_dropped_total";
+
+    private static final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+    private static final AtomicInteger activeRequests = new AtomicInteger();
+
+    private MaryMetrics()
+    {
+    }
+
+    /**
+     * Build a metric key from a name and a label.
+     * The key is the metric as written in the Prometheus text format, so the label value is escaped.
+     * @param name the metric name
+     * @param labelName the label name, or null for an unlabelled metric
+     * @param labelValue the label value
+     * @return the metric key
+     */
+    public static String key(String name, String labelName, String labelValue)
+    {
+        if (labelName == null) return name;
+        return name + "{" + labelName + "=\"" + escape(labelValue) + "\"}";
+    }
+
+    private static String escape(String labelValue)
+    {
+        String value = String.valueOf(labelValue);
+        StringBuilder buf = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\': buf.append("\\\\"); break;
+            case '"': buf.append("\\\""); break;
+            case '\n': buf.append("\\n"); break;
+            default: buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Get the counter for the given key, creating it if necessary.
+     * @param key the metric key
+     * @return the counter; callers may increment it.
+     */
+    public static AtomicLong getCounter(String key)
+    {
+        AtomicLong c = counters.get(key);
+        if (c == null) {
+            c = new AtomicLong();
+            AtomicLong existing = counters.putIfAbsent(key, c);
+            if (existing != null) c = existing;
+        }
+        return c;
+    }
+
+    public static AtomicLong getCounter(String name, String labelName, String labelValue)
+    {
+        return getCounter(key(name, labelName, labelValue));
+    }
+
+    /**
+     * Get the latency histogram for the given key, creating it if necessary.
+     * @param key the metric key
+     * @return the histogram
+     */
+    public static LatencyHistogram getHistogram(String key)
+    {
+        LatencyHistogram h = histograms.get(key);
+        if (h == null) {
+            h = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(key, h);
+            if (existing != null) h = existing;
+        }
+        return h;
+    }
+
+    public static LatencyHistogram getHistogram(String name, String labelName, String labelValue)
+    {
+        return getHistogram(key(name, labelName, labelValue));
+    }
+
+    /**
+     * @return a snapshot of all counters, sorted by key.
+     */
+    public static SortedMap<String, Long> getCounters()
+    {
+        SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return all histograms, sorted by key.
+     */
+    public static SortedMap<String, LatencyHistogram> getHistograms()
+    {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, LatencyHistogram>(histograms));
+    }
+
+    /**
+     * Inform the statistics that a request has started processing.
+     */
+    public static void requestStarted()
+    {
+        activeRequests.incrementAndGet();
+        getCounter(REQUESTS).incrementAndGet();
+    }
+
+    /**
+     * Inform the statistics that a request has finished processing.
+     * @param millis the processing time of the request, in milliseconds
+     * @param success whether the request was processed successfully
+     */
+    public static void requestFinished(long millis, boolean success)
+    {
+        activeRequests.decrementAndGet();
+        getHistogram(REQUEST_DURATION).record(millis);
+        if (!success) {
+            getCounter(REQUESTS_FAILED).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of requests currently being processed.
+     */
+    public static int getActiveRequests()
+    {
+        return activeRequests.get();
+    }
+
+    /**
+     * Record the time a module took to process one chunk of data.
+     * @param moduleName
+     * @param millis
+     */
+    public static void recordModuleTime(String moduleName, long millis)
+    {
+        getHistogram(MODULE_DURATION, "module", moduleName).record(millis);
+    }
+
+    /**
+     * Record the outcome of a cache lookup.
+     * @param cache the name of the cache
+     * @param hit whether the lookup was successful
+     */
+    public static void recordCacheLookup(String cache, boolean hit)
+    {
+        getCounter(CACHE_LOOKUPS + "{cache=\"" + cache + "\",result=\"" + (hit ? "hit" : "miss") + "\"}").incrementAndGet();
+        RequestTrace.count("cache_" + cache + (hit ? "_hits" : "_misses"), 1);
+    }
+
+    /**
+     * Record the amount of audio produced by a request, and the processing time needed to produce it.
+     * @param audioMillis duration of the audio produced, in milliseconds
+     * @param processingMillis processing time, in milliseconds
+     */
+    public static void recordAudio(long audioMillis, long processingMillis)
+    {
+        getCounter(AUDIO_PRODUCED).addAndGet(audioMillis);
+        getCounter(AUDIO_PROCESSING).addAndGet(processingMillis);
+    }
+
+    /**
+     * The overall real-time factor, i.e. the ratio of processing time over duration of the audio produced.
+     * @return the real-time factor, or 0 if no audio has been produced yet.
+     */
+    public static double getRealTimeFactor()
+    {
+        long audio = getCounter(AUDIO_PRODUCED).get();
+        if (audio == 0) return 0;
+        return (double) getCounter(AUDIO_PROCESSING).get() / audio;
+    }
+}
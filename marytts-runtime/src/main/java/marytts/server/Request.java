@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -45,13 +46,17 @@ import javax.xml.transform.TransformerException;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.RequestCancelledException;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
+import marytts.modules.ProcessingPlan;
 import marytts.modules.synthesis.Voice;
+import marytts.util.CancellationToken;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
+import marytts.util.data.audio.ChunkedAudioInputStream;
 import marytts.util.dom.DomUtils;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.dom.NameNodeFilter;
@@ -82,6 +87,16 @@ import org.w3c.dom.traversal.TreeWalker;
  * (<code>writeOutputData</code>).
  */
 public class Request {
+    private static final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * A new request id. Ids are unique within this process, so that the requests
+     * of all servers can be told apart, e.g. in the {@link TraceLog}.
+     */
+    public static int newId() {
+        return lastId.incrementAndGet();
+    }
+
     protected MaryDataType inputType;
     protected MaryDataType outputType;
     protected String outputTypeParams;
@@ -97,7 +112,11 @@ public class Request {
     protected MaryData inputData;
     protected MaryData outputData;
     protected boolean streamAudio = false;;
-    protected boolean abortRequested = false;
+    protected final CancellationToken cancellation;
+    protected Deadline deadline;
+    protected RequestTrace trace;
+    private int inputSize = -1;
+    protected boolean warmUp = false;
 
     // Keep track of timing info for each module
     // (map MaryModule onto Long)
@@ -132,12 +151,15 @@ public class Request {
         if (outputType == MaryDataType.get("AUDIO")) {
             if (audioFileFormat == null)
                 throw new NullPointerException("audio file format is needed for output type AUDIO");
-            this.appendableAudioStream = new AppendableSequenceAudioInputStream(audioFileFormat.getFormat(), null);
+            // written by the processing thread, read by the thread sending the audio:
+            this.appendableAudioStream = new ChunkedAudioInputStream(audioFileFormat.getFormat(), null);
         } else {
             this.appendableAudioStream = null;
         }
         this.logger = MaryUtils.getLogger("R " + id);
         this.outputTypeParams = outputTypeParams;
+        // e.g. the token of the client connection, so that the request is cancelled if the client goes away:
+        this.cancellation = new CancellationToken(CancellationToken.current());
         this.inputData = null;
         this.outputData = null;
         StringBuilder info =
@@ -203,7 +225,45 @@ public class Request {
      */
     public void abort() {
         logger.info("Requesting abort.");
-        abortRequested = true;
+        cancellation.cancel();
+    }
+
+    /**
+     * The token which tells the modules processing this request that it has been aborted.
+     * It is cancelled by {@link #abort()}, and also when the token which was current
+     * in the thread creating this request is cancelled.
+     * @see CancellationToken
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellation;
+    }
+
+    /**
+     * Set the time by which this request should be done. When time gets short,
+     * expensive processing stages do less work, see {@link Deadline}.
+     * @param deadline the deadline, or null for no deadline
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the deadline of this request, or null if it has none.
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Mark this request as part of the warm-up, see {@link WarmUp}. Warm-up requests
+     * are not counted in the {@link MaryMetrics} and are never traced.
+     */
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
     }
     
     /**
@@ -242,6 +302,7 @@ public class Request {
 
     public void setInputData(String inputText) throws Exception
     {
+        inputSize = inputText.length();
         inputData = new MaryData(inputType, defaultLocale);
         inputData.setWarnClient(true); // log warnings to client
         // For RAWMARYXML, a validating parse is not possible
@@ -270,6 +331,88 @@ public class Request {
     public void process() throws Exception {
         assert Mary.currentState() == Mary.STATE_RUNNING;
         long startTime = System.currentTimeMillis();
+        if (!warmUp) {
+            MaryMetrics.requestStarted();
+        }
+        boolean success = false;
+        // The modules check the token while processing this request:
+        CancellationToken previousToken = CancellationToken.setCurrent(cancellation);
+        // ...and may cut corners if the deadline is close:
+        Deadline previousDeadline = Deadline.setCurrent(deadline);
+        // ...and report what they did if this request is traced:
+        TraceLog traceLog = TraceLog.getInstance();
+        trace = !warmUp && traceLog.sample()
+            ? new RequestTrace(id, defaultVoice != null ? defaultVoice.getName() : null, inputType.name(), outputType.name(), inputSize)
+            : null;
+        RequestTrace previousTrace = RequestTrace.setCurrent(trace);
+        String outcome = "failed";
+        try {
+            processInputData(startTime);
+            success = true;
+            outcome = "ok";
+        } catch (RequestCancelledException e) {
+            outcome = "cancelled";
+            logger.info("Request cancelled.");
+            MaryMetrics.getCounter(MaryMetrics.REQUESTS_CANCELLED).incrementAndGet();
+            throw e;
+        } finally {
+            if (!success && appendableAudioStream != null) {
+                // nobody is going to append any more audio, so a reader must not wait for it
+                appendableAudioStream.doneAppending();
+            }
+            CancellationToken.setCurrent(previousToken);
+            Deadline.setCurrent(previousDeadline);
+            RequestTrace.setCurrent(previousTrace);
+            if (deadline != null && !deadline.getDegradations().isEmpty()) {
+                logger.info("Degraded to meet the deadline: " + deadline.getDegradations());
+            }
+            final long processingTime = System.currentTimeMillis() - startTime;
+            if (!warmUp) {
+                MaryMetrics.requestFinished(processingTime, success);
+            }
+            if (success && appendableAudioStream != null
+                    && appendableAudioStream.getFrameLength() == AudioSystem.NOT_SPECIFIED
+                    && appendableAudioStream instanceof ChunkedAudioInputStream) {
+                // the length of the audio is known once it has been read
+                final ChunkedAudioInputStream audio = (ChunkedAudioInputStream) appendableAudioStream;
+                final TraceLog log = traceLog;
+                audio.whenRead(new Runnable() {
+                    public void run()
+                    {
+                        recordFinished("ok", processingTime, audio.getFramesRead(), log);
+                    }
+                });
+            } else {
+                recordFinished(outcome, processingTime,
+                        success && appendableAudioStream != null ? appendableAudioStream.getFrameLength() : -1, traceLog);
+            }
+        }
+    }
+
+    /**
+     * Record the audio produced by a finished request in the metrics, and its trace, if any.
+     * @param outcome how processing ended
+     * @param processingTime the processing time in milliseconds
+     * @param frames the number of audio frames produced, or a negative number if none or unknown
+     * @param traceLog where to record the trace
+     */
+    private void recordFinished(String outcome, long processingTime, long frames, TraceLog traceLog)
+    {
+        long audioMillis = -1;
+        float frameRate = appendableAudioStream != null ? appendableAudioStream.getFormat().getFrameRate() : 0;
+        if (frames > 0 && frameRate > 0) {
+            audioMillis = (long) (1000 * frames / frameRate);
+            if (!warmUp) {
+                MaryMetrics.recordAudio(audioMillis, processingTime);
+            }
+        }
+        if (trace != null) {
+            trace.finished(outcome, processingTime, audioMillis, deadline != null ? deadline.getDegradations() : null);
+            traceLog.record(trace);
+        }
+    }
+
+    private void processInputData(long startTime) throws Exception {
         if (inputData == null)
             throw new NullPointerException("Input data is not set.");
         if (inputType.isXMLType() && inputData.getDocument() == null)
@@ -281,6 +424,7 @@ public class Request {
         MaryData rawmaryxml;
         // Is inputdata of a type that must be converted to RAWMARYXML?
         if (outputType.name().equals("PRAAT_TEXTGRID")) { // never chunk for PRAAT_TEXTGRID
+            RequestTrace.count("chunks", 1);
             outputData = processOrLookupOneChunk(inputData, outputType, outputTypeParams);
             return;
         } else if (inputType.isTextType() && inputType.name().startsWith("TEXT")
@@ -295,6 +439,7 @@ public class Request {
             inputDataList = splitIntoChunks(inputData);
         } else {
             // other input data types are processed as a whole
+            RequestTrace.count("chunks", 1);
             outputData = processOrLookupOneChunk(inputData, outputType, outputTypeParams);
             //assert outputData.getDefaultVoice() != null;
             if (outputType == MaryDataType.AUDIO) {
@@ -323,7 +468,8 @@ public class Request {
             outputData.setAudioFileFormat(audioFileFormat);
         }
         int len = inputDataList.getLength();
-        for (int i=0; i<len && !abortRequested; i++) {
+        for (int i=0; i<len; i++) {
+            cancellation.check();
             Element currentInputParagraph = (Element) inputDataList.item(i);
             assert currentInputParagraph.getTagName().equals(MaryXML.PARAGRAPH);
             NodeList outputNodeList = null;
@@ -332,6 +478,7 @@ public class Request {
                 outputNodeList = currentInputParagraph.getChildNodes();
             } else { // process "real" data:
                 MaryData oneInputData = extractParagraphAsMaryData(rawmaryxml, currentInputParagraph);
+                RequestTrace.count("chunks", 1);
                 //assert oneInputData.getDefaultVoice() != null;
                 MaryData oneOutputData = processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
                 //assert oneOutputData.getDefaultVoice() != null;
@@ -407,6 +554,7 @@ public class Request {
         if (oneOutputType.isTextType()) {
             try {
                 String outputtext = cache.lookupText(inputtype, outputtype, localeString, voice, outputParams, defaultStyle, defaultEffects, inputtext);
+                MaryMetrics.recordCacheLookup("text", outputtext != null);
                 if (outputtext != null) {
                     MaryData outData = new MaryData(oneOutputType, locale);
                     ByteArrayInputStream sr = new ByteArrayInputStream(outputtext.getBytes());
@@ -423,6 +571,7 @@ public class Request {
         } else if (outputtype.equals("AUDIO")) {
             try {
                 byte[] wavFileData = cache.lookupAudio(inputtype, localeString, voice, outputParams, defaultStyle, defaultEffects, inputtext);
+                MaryMetrics.recordCacheLookup("audio", wavFileData != null);
                 if (wavFileData != null) {
                     AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavFileData));
                     MaryData outData = new MaryData(oneOutputType, locale);
@@ -498,23 +647,25 @@ public class Request {
             FileNotFoundException, TransformerException, IOException 
     {
         logger.debug("Determining which modules to use");
-        List<MaryModule> neededModules = ModuleRegistry.modulesRequiredForProcessing(oneInputData.getType(), oneOutputType, locale, oneInputData.getDefaultVoice());
-        // Now neededModules contains references to the needed modules,
-        // in the order in which they are to process the data.
-        if (neededModules == null) {
+        ProcessingPlan plan = ModuleRegistry.getProcessingPlan(oneInputData.getType(), oneOutputType, locale, oneInputData.getDefaultVoice());
+        if (!plan.isFeasible()) {
             // The modules we have cannot be combined such that
             // the outputType can be generated from the inputData type.
             String message = "No known way of generating output from input -- " + "no processing path through modules.";
             throw new UnsupportedOperationException(message);
         }
+        // Now the plan contains references to the needed modules,
+        // in the order in which they are to process the data.
+        List<MaryModule> neededModules = plan.getModules();
         usedModules.addAll(neededModules);
         logger.info("Handling request using the following modules:");
         for (MaryModule m : neededModules) {
             logger.info("- " + m.name() + " (" + m.getClass().getName() + ")");
         }
+        long planStartTime = System.currentTimeMillis();
         MaryData currentData = oneInputData;
         for (MaryModule m : neededModules) {
-            if (abortRequested) break;
+            cancellation.check();
             if (m.getState() == MaryModule.MODULE_OFFLINE) {
                 // This should happen only in command line mode:
                 assert MaryProperties.needProperty("server").compareTo("commandline") == 0;
@@ -547,6 +698,8 @@ public class Request {
             MaryData outData = null;
             try {
                 outData = m.process(currentData);
+            } catch (RequestCancelledException e) {
+                throw e;
             } catch (Exception e) {
                 throw new Exception("Module " + m.name() + ": Problem processing the data.", e);
             }
@@ -561,6 +714,12 @@ public class Request {
             currentData = outData;
             long moduleStopTime = System.currentTimeMillis();
             long delta = moduleStopTime - moduleStartTime;
+            if (!warmUp) {
+                MaryMetrics.recordModuleTime(m.name(), delta);
+            }
+            if (trace != null) {
+                trace.moduleProcessed(m.name(), moduleStartTime, moduleStopTime);
+            }
             Long soFar = timingInfo.get(m);
             if (soFar != null)
                 timingInfo.put(m, new Long(soFar.longValue()+delta));
@@ -572,6 +731,9 @@ public class Request {
                 logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
             }
         }
+        if (!cancellation.isCancelled()) {
+            plan.recordExecution(System.currentTimeMillis() - planStartTime);
+        }
         if (currentData.getType() == MaryDataType.AUDIO) {
             AudioInputStream ais = currentData.getAudio();
             assert ais != null;
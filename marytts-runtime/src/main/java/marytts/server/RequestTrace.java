@@ -0,0 +1,251 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What happened while processing one request: the modules in the order in which they ran,
+ * with their start and end times, and counts reported by the processing stages,
+ * such as the number of chunks, Viterbi candidates or generated frames.
+ * <p>
+ * Like the {@link marytts.util.CancellationToken}, the trace of a request is bound to the
+ * thread processing it, see {@link Request#process()}, so that processing code can
+ * report counts with {@link #count(String, long)} without knowing about the request.
+ * Only sampled requests have a trace, see {@link TraceLog}.
+ *
+ * @author agent
+ */
+public class RequestTrace
+{
+    private static final ThreadLocal<RequestTrace> current = new ThreadLocal<RequestTrace>();
+
+    /**
+     * The trace bound to the current thread.
+     * @return the trace, or null if the request being processed is not traced.
+     */
+    public static RequestTrace current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Bind the given trace to the current thread.
+     * @param trace the trace, or null to unbind
+     * @return the trace bound so far, to be restored when done.
+     */
+    public static RequestTrace setCurrent(RequestTrace trace)
+    {
+        RequestTrace previous = current.get();
+        if (trace != null) {
+            current.set(trace);
+        } else {
+            current.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Add to a count in the trace of the request processed by the current thread, if it is traced.
+     * @param name the name of the count, e.g. "viterbi_candidates"
+     * @param n the amount to add
+     */
+    public static void count(String name, long n)
+    {
+        RequestTrace trace = current.get();
+        if (trace != null) {
+            trace.add(name, n);
+        }
+    }
+
+    private final int id;
+    private final long startTime;
+    private final String voice;
+    private final String inputType;
+    private final String outputType;
+    private final int inputSize;
+    private final List<Stage> stages = new ArrayList<Stage>();
+    private final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    private String outcome;
+    private long processingTime = -1;
+    private long audioDuration = -1;
+    private List<String> degradations;
+
+    /**
+     * @param id the id of the request
+     * @param voice the name of the voice, or null
+     * @param inputType the name of the input type
+     * @param outputType the name of the output type
+     * @param inputSize the number of characters in the input, or -1 if unknown
+     */
+    public RequestTrace(int id, String voice, String inputType, String outputType, int inputSize)
+    {
+        this.id = id;
+        this.startTime = System.currentTimeMillis();
+        this.voice = voice;
+        this.inputType = inputType;
+        this.outputType = outputType;
+        this.inputSize = inputSize;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Add to a count.
+     */
+    public synchronized void add(String name, long n)
+    {
+        Long soFar = counts.get(name);
+        counts.put(name, soFar != null ? soFar + n : n);
+    }
+
+    /**
+     * @return the value of the given count, or 0 if nothing was counted.
+     */
+    public synchronized long getCount(String name)
+    {
+        Long n = counts.get(name);
+        return n != null ? n : 0;
+    }
+
+    /**
+     * Record that a module has processed (a chunk of) the request.
+     * @param module the name of the module
+     * @param start the time when the module started, in milliseconds since the epoch
+     * @param end the time when the module finished, in milliseconds since the epoch
+     */
+    public synchronized void moduleProcessed(String module, long start, long end)
+    {
+        stages.add(new Stage(module, start - startTime, end - startTime));
+    }
+
+    /**
+     * Record the outcome of the request.
+     * @param outcome "ok", "failed", "cancelled", or "cached" for a response served from a cache
+     * @param processingTime the processing time, in milliseconds
+     * @param audioDuration the duration of the audio produced, in milliseconds, or -1 if there is none
+     * @param degradations the stages which did less work to meet the deadline, or null
+     */
+    public synchronized void finished(String outcome, long processingTime, long audioDuration, List<String> degradations)
+    {
+        this.outcome = outcome;
+        this.processingTime = processingTime;
+        this.audioDuration = audioDuration;
+        this.degradations = degradations;
+    }
+
+    /**
+     * The trace as a single line of JSON.
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder buf = new StringBuilder(256);
+        buf.append("{\"id\":").append(id);
+        buf.append(",\"start\":").append(startTime);
+        buf.append(",\"voice\":");
+        appendString(buf, voice);
+        buf.append(",\"in\":");
+        appendString(buf, inputType);
+        buf.append(",\"out\":");
+        appendString(buf, outputType);
+        buf.append(",\"input_chars\":").append(inputSize);
+        buf.append(",\"outcome\":");
+        appendString(buf, outcome);
+        buf.append(",\"processing_ms\":").append(processingTime);
+        if (audioDuration >= 0) {
+            buf.append(",\"audio_ms\":").append(audioDuration);
+            if (audioDuration > 0) {
+                buf.append(",\"rtf\":").append((double) processingTime / audioDuration);
+            }
+        }
+        buf.append(",\"modules\":[");
+        for (int i = 0; i < stages.size(); i++) {
+            Stage s = stages.get(i);
+            if (i > 0) buf.append(',');
+            buf.append("{\"name\":");
+            appendString(buf, s.module);
+            buf.append(",\"start_ms\":").append(s.start).append(",\"end_ms\":").append(s.end).append('}');
+        }
+        buf.append("],\"counts\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            if (!first) buf.append(',');
+            first = false;
+            appendString(buf, e.getKey());
+            buf.append(':').append(e.getValue());
+        }
+        buf.append('}');
+        if (degradations != null && !degradations.isEmpty()) {
+            buf.append(",\"degradations\":[");
+            for (int i = 0; i < degradations.size(); i++) {
+                if (i > 0) buf.append(',');
+                appendString(buf, degradations.get(i));
+            }
+            buf.append(']');
+        }
+        return buf.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder buf, String s)
+    {
+        if (s == null) {
+            buf.append("null");
+            return;
+        }
+        buf.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"': buf.append("\\\""); break;
+            case '\\': buf.append("\\\\"); break;
+            case '\n': buf.append("\\n"); break;
+            case '\r': buf.append("\\r"); break;
+            case '\t': buf.append("\\t"); break;
+            default:
+                if (c < 0x20) {
+                    buf.append(String.format("\\u%04x", (int) c));
+                } else {
+                    buf.append(c);
+                }
+            }
+        }
+        buf.append('"');
+    }
+
+    private static class Stage
+    {
+        final String module;
+        final long start;
+        final long end;
+
+        Stage(String module, long start, long end)
+        {
+            this.module = module;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import marytts.util.MaryUtils;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.RollingFileAppender;
+
+/**
+ * Collects the traces of a sample of the requests, see {@link RequestTrace}.
+ * <p>
+ * A fraction <code>trace.sample</code> of the requests is traced (default 0, i.e. none;
+ * 1 traces every request). The traces are written as JSON lines, one per request,
+ * to the file <code>trace.file</code> (default MARY_BASE/log/trace.jsonl), which is rotated
+ * when it grows beyond <code>trace.file.maxsize</code> (default 10MB), keeping
+ * <code>trace.file.backups</code> old files (default 5). Writing happens in a separate thread,
+ * so that the requests do not wait for the disk; if more than <code>trace.queue</code> traces
+ * (default 1000) are waiting to be written, further traces are dropped rather than slowing down processing,
+ * and counted in the metric {@link MaryMetrics#TRACES_DROPPED}. The last <code>trace.recent</code> traces (default 100)
+ * are also kept in memory, e.g. for the http server's debug page.
+ *
+ * @author agent
+ */
+public class TraceLog
+{
+    private static TraceLog instance;
+
+    /**
+     * The trace log configured by the MARY properties.
+     */
+    public static synchronized TraceLog getInstance()
+    {
+        if (instance == null) {
+            double sample = Double.parseDouble(MaryProperties.getProperty("trace.sample", "0"));
+            instance = new TraceLog(sample, MaryProperties.getInteger("trace.recent", 100),
+                    MaryProperties.getInteger("trace.queue", 1000));
+            if (sample > 0) {
+                String filename = MaryProperties.getFilename("trace.file", MaryProperties.maryBase() + "/log/trace.jsonl");
+                try {
+                    instance.logTo(filename, MaryProperties.getProperty("trace.file.maxsize", "10MB"),
+                            MaryProperties.getInteger("trace.file.backups", 5));
+                } catch (IOException e) {
+                    MaryUtils.getLogger("TraceLog").warn("Cannot write traces to " + filename + ", keeping only the recent ones", e);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final double sample;
+    private final int maxRecent;
+    private final LinkedList<RequestTrace> recent = new LinkedList<RequestTrace>();
+    private final Random random = new Random();
+    private final BlockingQueue<String> pending;
+    private Thread writer;
+
+    /**
+     * A trace log which keeps traces in memory only.
+     * @param sample the fraction of requests to trace, between 0 (none) and 1 (all)
+     * @param maxRecent the number of traces to keep in memory
+     */
+    public TraceLog(double sample, int maxRecent)
+    {
+        this(sample, maxRecent, 1000);
+    }
+
+    /**
+     * @param sample the fraction of requests to trace, between 0 (none) and 1 (all)
+     * @param maxRecent the number of traces to keep in memory
+     * @param maxPending the number of traces which may wait to be written to the file
+     */
+    public TraceLog(double sample, int maxRecent, int maxPending)
+    {
+        this.sample = sample;
+        this.maxRecent = maxRecent;
+        this.pending = new ArrayBlockingQueue<String>(maxPending);
+    }
+
+    /**
+     * Also write the traces to the given file, in the background.
+     * @param filename the file
+     * @param maxSize the size at which to rotate the file, e.g. "10MB"
+     * @param backups the number of rotated files to keep
+     * @throws IOException if the file cannot be opened
+     */
+    public void logTo(String filename, String maxSize, int backups) throws IOException
+    {
+        File dir = new File(filename).getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        RollingFileAppender file = new RollingFileAppender(new PatternLayout("%m%n"), filename, true);
+        file.setMaxFileSize(maxSize);
+        file.setMaxBackupIndex(backups);
+        final Logger logger = MaryUtils.getLogger("trace");
+        logger.setAdditivity(false); // not in the server log as well
+        logger.setLevel(Level.INFO);
+        logger.removeAllAppenders();
+        logger.addAppender(file);
+        synchronized (this) {
+            if (writer != null) {
+                return; // already writing, now to the new file
+            }
+            writer = new Thread("TraceLog writer") {
+                public void run()
+                {
+                    try {
+                        while (true) {
+                            logger.info(pending.take());
+                        }
+                    } catch (InterruptedException e) {
+                        // stop writing
+                    }
+                }
+            };
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Decide whether to trace the next request.
+     */
+    public boolean sample()
+    {
+        if (sample <= 0) return false;
+        if (sample >= 1) return true;
+        synchronized (random) {
+            return random.nextDouble() < sample;
+        }
+    }
+
+    /**
+     * Record the trace of a finished request.
+     */
+    public void record(RequestTrace trace)
+    {
+        boolean writing;
+        synchronized (this) {
+            recent.addLast(trace);
+            while (recent.size() > maxRecent) {
+                recent.removeFirst();
+            }
+            writing = writer != null;
+        }
+        if (writing && !pending.offer(trace.toJson())) {
+            MaryMetrics.getCounter(MaryMetrics.TRACES_DROPPED).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the most recent traces, oldest first.
+     */
+    public synchronized List<RequestTrace> getRecent()
+    {
+        return new ArrayList<RequestTrace>(recent);
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+import marytts.util.MaryRuntimeUtils;
+import marytts.util.MaryUtils;
+import marytts.util.string.StringUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+
+/**
+ * Synthesizes a representative workload with every voice after startup, so that
+ * the JIT has compiled the code of the unit selection, the HMM parameter generation
+ * and the vocoder before the first real requests arrive.
+ * <p>
+ * Each voice is kept busy for <code>server.warmup.duration</code> milliseconds (default 10000)
+ * by <code>server.warmup.threads</code> threads (default: the number of processors),
+ * each of which synthesizes the sentences of the corpus one after the other. The corpus for the voices
+ * of a locale is read from the file <code>server.warmup.corpus.&lt;locale&gt;</code>
+ * (e.g. <code>server.warmup.corpus.en_US</code>), one input text per line; by default, the example
+ * texts of each voice are used. Mary reports that it is ready only when the warm-up is complete,
+ * see {@link Mary#isReady()}. Warm-up requests are not counted in the metrics, see {@link Request#setWarmUp(boolean)}.
+ *
+ * @author agent
+ */
+public class WarmUp implements Runnable
+{
+    private static final Logger logger = MaryUtils.getLogger("WarmUp");
+
+    private final int numThreads;
+    private final long duration;
+    private final Map<Locale, List<String>> corpora;
+
+    /**
+     * The warm-up configured by the MARY properties, for the voices available now.
+     * @throws IOException if a corpus cannot be read
+     */
+    public static WarmUp fromProperties() throws IOException
+    {
+        Set<Locale> locales = new LinkedHashSet<Locale>();
+        for (Voice voice : Voice.getAvailableVoices()) {
+            locales.add(voice.getLocale());
+        }
+        return new WarmUp(
+                MaryProperties.getInteger("server.warmup.threads", Runtime.getRuntime().availableProcessors()),
+                MaryProperties.getInteger("server.warmup.duration", 10000),
+                readCorpora(locales));
+    }
+
+    /**
+     * Read the corpora configured for the given locales.
+     * @return the input texts for each locale which has a corpus
+     * @throws IOException if a corpus cannot be read
+     */
+    static Map<Locale, List<String>> readCorpora(Collection<Locale> locales) throws IOException
+    {
+        Map<Locale, List<String>> corpora = new HashMap<Locale, List<String>>();
+        for (Locale locale : locales) {
+            String corpusFile = MaryProperties.getFilename("server.warmup.corpus." + locale, null);
+            if (corpusFile == null) {
+                continue;
+            }
+            List<String> corpus = new ArrayList<String>();
+            for (String line : FileUtils.readFileToString(new File(corpusFile), "UTF-8").split("\n")) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    corpus.add(line);
+                }
+            }
+            corpora.put(locale, corpus);
+        }
+        return corpora;
+    }
+
+    /**
+     * @param numThreads the number of requests synthesized at the same time
+     * @param duration the time to spend on each voice, in milliseconds
+     * @param corpora the input texts to synthesize with the voices of each locale;
+     * voices of other locales synthesize their example texts
+     */
+    public WarmUp(int numThreads, long duration, Map<Locale, List<String>> corpora)
+    {
+        this.numThreads = Math.max(1, numThreads);
+        this.duration = duration;
+        this.corpora = corpora;
+    }
+
+    /**
+     * Warm up all available voices, one after the other.
+     */
+    public void run()
+    {
+        run(new ArrayList<Voice>(Voice.getAvailableVoices()));
+    }
+
+    /**
+     * Warm up the given voices, one after the other.
+     * @return the number of sentences synthesized.
+     */
+    int run(List<Voice> voices)
+    {
+        long startTime = System.currentTimeMillis();
+        int total = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (Voice voice : voices) {
+                if (Mary.currentState() != Mary.STATE_RUNNING) {
+                    return total;
+                }
+                total += warmUp(voice, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        logger.info("Warm-up of " + voices.size() + " voices complete in " + (System.currentTimeMillis() - startTime) + " ms");
+        return total;
+    }
+
+    /**
+     * Synthesize the corpus with the given voice on all threads until the time for the voice is up.
+     * Every thread synthesizes at least one sentence.
+     * @return the number of sentences synthesized.
+     */
+    private int warmUp(final Voice voice, ExecutorService pool)
+    {
+        List<String> corpus = corpora.get(voice.getLocale());
+        final List<String> sentences = corpus != null ? corpus : getExampleSentences(voice);
+        if (sentences.isEmpty()) {
+            logger.debug("No example text for voice " + voice.getName() + " -- not warming it up");
+            return 0;
+        }
+        final long endTime = System.currentTimeMillis() + duration;
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<Integer>> threads = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < numThreads; i++) {
+            threads.add(pool.submit(new Callable<Integer>() {
+                public Integer call() throws Exception
+                {
+                    int n = 0;
+                    do {
+                        String text = sentences.get(next.getAndIncrement() % sentences.size());
+                        synthesize(voice, text);
+                        n++;
+                    } while (System.currentTimeMillis() < endTime && Mary.currentState() == Mary.STATE_RUNNING);
+                    return n;
+                }
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> f : threads) {
+            try {
+                total += f.get();
+            } catch (ExecutionException e) {
+                logger.warn("Warm-up of voice " + voice.getName() + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                logger.warn("Warm-up of voice " + voice.getName() + " interrupted");
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.info("Warmed up voice " + voice.getName() + " with " + total + " sentences on " + numThreads + " threads");
+        return total;
+    }
+
+    private static void synthesize(Voice voice, String text) throws Exception
+    {
+        AudioFileFormat audioFileFormat = new AudioFileFormat(AudioFileFormat.Type.WAVE, voice.dbAudioFormat(), AudioSystem.NOT_SPECIFIED);
+        Request request = new Request(MaryDataType.TEXT, MaryDataType.AUDIO, voice.getLocale(), voice, "", "", Request.newId(), audioFileFormat);
+        request.setWarmUp(true);
+        request.setInputData(text);
+        request.process();
+        // reading the audio runs the parts of synthesis which produce it on demand:
+        request.writeOutputData(NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    private static List<String> getExampleSentences(Voice voice)
+    {
+        List<String> sentences = new ArrayList<String>();
+        List<String> voiceExamples = StringUtils.processVoiceExampleText(MaryRuntimeUtils.getVoiceExampleText(voice.getName()));
+        if (voiceExamples != null) {
+            for (String s : voiceExamples) {
+                if (s.trim().length() > 0) {
+                    sentences.add(s.trim());
+                }
+            }
+        }
+        if (sentences.isEmpty()) {
+            String text = MaryDataType.TEXT.exampleText(voice.getLocale());
+            if (text != null && text.trim().length() > 0) {
+                sentences.add(text.trim());
+            }
+        }
+        return sentences;
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.effects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.sampled.AudioInputStream;
+
+import marytts.server.Deadline;
+import marytts.server.MaryMetrics;
+import marytts.util.CancellationToken;
+import marytts.util.ConcurrentLRUCache;
+import marytts.util.data.BaseDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+import marytts.util.data.audio.AudioDoubleDataSource;
+import marytts.util.data.audio.DDSAudioInputStream;
+
+/**
+ * The audio effects requested by one effects string, such as
+ * "Robot(amount=80)+Stadium(amount=50)", parsed and configured once,
+ * in the order in which they are applied.
+ * <p>
+ * Chains are cached per effects string and sampling rate, and shared between
+ * requests: applying a chain only calls {@link BaseAudioEffect#process(DoubleDataSource)}
+ * of each effect, which creates the per-stream processing objects, such as the filters of
+ * the {@link FilterEffectBase} effects, and does not change the effect's configuration.
+ * Effects used in chains must keep to this. All effects process their input frame by frame while the
+ * output is read, so that the first audio is available early and memory use does not
+ * grow with the length of the audio; the chain's output has the same length as its input.
+ *
+ * @author agent
+ *
+ */
+public class EffectChain
+{
+    private static final int CACHE_SIZE = 100;
+    private static final ConcurrentLRUCache<String, EffectChain> chains = new ConcurrentLRUCache<String, EffectChain>(CACHE_SIZE);
+    private static final EffectChain EMPTY = new EffectChain(new BaseAudioEffect[0]);
+
+    /**
+     * Get the chain of effects for the given effects string.
+     * @param effects the effects and their parameters, separated by {@link EffectsApplier#chEffectSeparator}; may be null or empty.
+     * @param samplingRate the sampling rate of the audio the effects will be applied to
+     * @return a chain, which is empty if the string does not contain any known effects.
+     */
+    public static EffectChain forEffects(String effects, int samplingRate)
+    {
+        if (effects == null || effects.trim().length() == 0) {
+            return EMPTY;
+        }
+        String key = samplingRate + "|" + effects;
+        EffectChain chain = chains.get(key);
+        MaryMetrics.recordCacheLookup("effects", chain != null);
+        if (chain == null) {
+            chain = compile(effects, samplingRate);
+            chains.put(key, chain);
+        }
+        return chain;
+    }
+
+    private static EffectChain compile(String effects, int samplingRate)
+    {
+        EffectsApplier parser = new EffectsApplier();
+        parser.parseEffectsAndParams(effects, samplingRate);
+        BaseAudioEffect[] parsed = parser.audioEffects;
+        if (parsed == null) {
+            return EMPTY;
+        }
+        List<BaseAudioEffect> ordered = new ArrayList<BaseAudioEffect>();
+        for (int i=0; i<parsed.length; i++) {
+            int index = i;
+            if (parser.optimumEffectIndices != null && parser.optimumEffectIndices[i] >= 0
+                    && parser.optimumEffectIndices[i] < parsed.length) {
+                index = parser.optimumEffectIndices[i];
+            }
+            if (parsed[index] != null) {
+                ordered.add(parsed[index]);
+            }
+        }
+        return new EffectChain(ordered.toArray(new BaseAudioEffect[ordered.size()]));
+    }
+
+    private final BaseAudioEffect[] audioEffects;
+
+    private EffectChain(BaseAudioEffect[] audioEffects)
+    {
+        this.audioEffects = audioEffects;
+    }
+
+    /**
+     * The effects in this chain, in the order in which they are applied.
+     * The effects are shared and must not be modified.
+     */
+    public BaseAudioEffect[] getEffects()
+    {
+        return audioEffects.clone();
+    }
+
+    public boolean isEmpty()
+    {
+        return audioEffects.length == 0;
+    }
+
+    /**
+     * Apply the effects to the given audio.
+     * @param input the audio
+     * @return the processed audio, with the same format and frame length as input,
+     * or input itself if none of the effects changes the signal.
+     */
+    public AudioInputStream apply(AudioInputStream input)
+    {
+        if (isEmpty()) {
+            return input;
+        }
+        AudioDoubleDataSource signal = new AudioDoubleDataSource(input);
+        DoubleDataSource output = apply(signal);
+        // Effects which leave the signal untouched (e.g. the HMM effects, which
+        // are applied during synthesis) return their input; if all effects do,
+        // the input stream can be passed on as it is.
+        if (output == signal) {
+            return input;
+        }
+        return new DDSAudioInputStream(output, input.getFormat());
+    }
+
+    /**
+     * Apply the effects to the given signal.
+     * @param input the signal
+     * @return the processed signal, which reports the same data length as input,
+     * or input itself if none of the effects changes the signal.
+     * The effects stop processing when the current request is cancelled, see {@link CancellationToken},
+     * and are skipped altogether if the deadline of the current request is close, see {@link Deadline}.
+     */
+    public DoubleDataSource apply(DoubleDataSource input)
+    {
+        DoubleDataSource output = input;
+        for (BaseAudioEffect effect : audioEffects) {
+            output = effect.process(output);
+        }
+        if (output != input && Deadline.degrade("effects")) {
+            return input;
+        }
+        long length = input.getDataLength();
+        if (output != input && length != DoubleDataSource.NOT_SPECIFIED && output.getDataLength() != length) {
+            output = new KnownLengthDoubleDataSource(output, length);
+        }
+        CancellationToken cancellation = CancellationToken.current();
+        if (output != input && cancellation != null) {
+            output = new CancellableDoubleDataSource(output, cancellation);
+        }
+        return output;
+    }
+
+    /**
+     * Checks the request's token before processing more data, as the data is usually
+     * read from a different thread than the one processing the request.
+     */
+    private static class CancellableDoubleDataSource extends BaseDoubleDataSource
+    {
+        private final CancellationToken cancellation;
+
+        CancellableDoubleDataSource(DoubleDataSource inputSource, CancellationToken cancellation)
+        {
+            super(inputSource);
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public int getData(double[] target, int targetPos, int length)
+        {
+            cancellation.check();
+            return inputSource.getData(target, targetPos, length);
+        }
+    }
+
+    /**
+     * Delivers exactly the given number of values from its input source,
+     * padding with zeroes if necessary, so that the length is known before the
+     * data is read.
+     */
+    private static class KnownLengthDoubleDataSource extends BaseDoubleDataSource
+    {
+        private long remaining;
+
+        KnownLengthDoubleDataSource(DoubleDataSource inputSource, long length)
+        {
+            super(inputSource);
+            this.dataLength = length;
+            this.remaining = length;
+        }
+
+        @Override
+        public int getData(double[] target, int targetPos, int length)
+        {
+            int toDeliver = (int) Math.min(length, remaining);
+            int read = 0;
+            if (toDeliver > 0 && inputSource.hasMoreData()) {
+                read = inputSource.getData(target, targetPos, toDeliver);
+            }
+            if (read < toDeliver) {
+                Arrays.fill(target, targetPos+read, targetPos+toDeliver, 0);
+            }
+            remaining -= toDeliver;
+            return toDeliver;
+        }
+
+        @Override
+        public boolean hasMoreData()
+        {
+            return remaining > 0;
+        }
+
+        @Override
+        public int available()
+        {
+            if (!inputSource.hasMoreData()) {
+                return (int) Math.min(remaining, Integer.MAX_VALUE);
+            }
+            return (int) Math.min(remaining, inputSource.available());
+        }
+    }
+}
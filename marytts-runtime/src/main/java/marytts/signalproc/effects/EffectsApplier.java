@@ -25,16 +25,11 @@ import java.util.Iterator;
 import java.util.Vector;
 
 import javax.sound.sampled.AudioFileFormat;
-import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
 import marytts.htsengine.HMMVoice;
 import marytts.modules.synthesis.Voice;
-import marytts.util.data.BufferedDoubleDataSource;
-import marytts.util.data.DoubleDataSource;
-import marytts.util.data.audio.AudioDoubleDataSource;
-import marytts.util.data.audio.DDSAudioInputStream;
 import marytts.util.math.MathUtils;
 import marytts.util.string.StringUtils;
 
@@ -52,56 +47,17 @@ public class EffectsApplier {
          getOptimizedEffectOrdering();
     }
     
+    /**
+     * Apply the effects given in param to the input audio. The effects string is parsed
+     * only once, see {@link EffectChain#forEffects(String, int)}, and the effects are applied
+     * while the resulting audio is read.
+     * @param input the audio to process
+     * @param param the effects and their parameters
+     * @return the processed audio, or input if there is nothing to do.
+     */
     public AudioInputStream apply(AudioInputStream input, String param)
     {
-        AudioFormat audioformat = input.getFormat();
-        AudioDoubleDataSource signal = new AudioDoubleDataSource(input);
-        DoubleDataSource tmpSignal = null;
-        
-        parseEffectsAndParams(param, (int)audioformat.getSampleRate());
-        boolean bFirstEffect = true;
-        
-        if (audioEffects != null) //There are audio effects to apply
-        {   
-            int index;
-            
-            for (int i=0; i<audioEffects.length; i++)
-            {
-                if (optimumEffectIndices!=null && optimumEffectIndices[i]>=0 && optimumEffectIndices[i]<audioEffects.length)
-                    index = optimumEffectIndices[i];
-                else
-                    index = i;
-                
-                if (audioEffects[index]!=null)
-                {
-                    if (bFirstEffect)
-                    {
-                        if (audioEffects[index]!= null)
-                        {
-                            tmpSignal = audioEffects[index].apply(signal);
-                            bFirstEffect = false;
-                        }
-                    }
-                    else
-                    {
-                        if (audioEffects[index]!= null)
-                            tmpSignal = audioEffects[index].apply(tmpSignal);
-                    }
-                }
-            }
-            
-            if (tmpSignal!=null) {
-                if (tmpSignal.getDataLength() == DoubleDataSource.NOT_SPECIFIED) {
-                    double[] data = tmpSignal.getAllData();
-                    tmpSignal = new BufferedDoubleDataSource(data);
-                }
-                assert tmpSignal.getDataLength() != DoubleDataSource.NOT_SPECIFIED;
-                return new DDSAudioInputStream(tmpSignal, audioformat);
-            } else
-                return input;
-        }
-        else
-            return input;
+        return EffectChain.forEffects(param, (int) input.getFormat().getSampleRate()).apply(input);
     }
     
     //Extract effects and parameters and create the corresponding effects at a default sampling rate 
@@ -350,19 +306,15 @@ public class EffectsApplier {
             ((HMMVoice)voice).setDurationScale(dummy3.NO_MODIFICATION);
             //
 
-            parseEffectsAndParams(currentEffect);
-
-            if (audioEffects!=null)
-            {   
-                for (int i=0; i<audioEffects.length; i++)
-                {
-                    if (audioEffects[i] instanceof HMMF0AddEffect)
-                        ((HMMVoice)voice).setF0Mean((double)((HMMF0AddEffect)audioEffects[i]).f0Add);
-                    else if (audioEffects[i] instanceof HMMF0ScaleEffect)
-                        ((HMMVoice)voice).setF0Std(((HMMF0ScaleEffect)audioEffects[i]).f0Scale);
-                    else if (audioEffects[i] instanceof HMMDurationScaleEffect)
-                        ((HMMVoice)voice).setDurationScale(((HMMDurationScaleEffect)audioEffects[i]).durScale);
-                }
+            int samplingRate = (int) voice.dbAudioFormat().getSampleRate();
+            for (BaseAudioEffect effect : EffectChain.forEffects(currentEffect, samplingRate).getEffects())
+            {
+                if (effect instanceof HMMF0AddEffect)
+                    ((HMMVoice)voice).setF0Mean((double)((HMMF0AddEffect)effect).f0Add);
+                else if (effect instanceof HMMF0ScaleEffect)
+                    ((HMMVoice)voice).setF0Std(((HMMF0ScaleEffect)effect).f0Scale);
+                else if (effect instanceof HMMDurationScaleEffect)
+                    ((HMMVoice)voice).setDurationScale(((HMMDurationScaleEffect)effect).durScale);
             }
         }
     }
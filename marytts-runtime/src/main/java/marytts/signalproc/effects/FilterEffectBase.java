@@ -42,7 +42,6 @@ public class FilterEffectBase extends BaseAudioEffect {
     int frameLength;
     double normalizedCutOffFreq1;
     double normalizedCutOffFreq2;
-    InlineDataProcessor filter;
     
     public static int NULL_FILTER = 0;
     public static int LOWPASS_FILTER = 1;
@@ -178,38 +177,37 @@ public class FilterEffectBase extends BaseAudioEffect {
         frameLength = 8*SignalProcUtils.getDFTSize(fs);
         normalizedCutOffFreq1 = cutOffFreqInHz1/fs;
         normalizedCutOffFreq2 = cutOffFreqInHz2/fs;
-        filter = null;
         
+        if ((filterType == BANDPASS_FILTER || filterType == BANDREJECT_FILTER) && normalizedCutOffFreq1>normalizedCutOffFreq2)
+        {
+            double tmp = normalizedCutOffFreq1;
+            normalizedCutOffFreq1 = normalizedCutOffFreq2;
+            normalizedCutOffFreq2 = tmp;
+        }
+    }
+    
+    /**
+     * Create the filter for one signal. Each call of {@link #process(DoubleDataSource)}
+     * gets its own filter, so that the effect can be shared by concurrent requests.
+     * @return the filter, or null if the parameters do not describe a filter.
+     */
+    protected InlineDataProcessor createFilter()
+    {
         if (filterType == LOWPASS_FILTER && normalizedCutOffFreq1>0.0)
-            filter = new LowPassFilter(normalizedCutOffFreq1);
+            return new LowPassFilter(normalizedCutOffFreq1);
         else if (filterType == HIGHPASS_FILTER && normalizedCutOffFreq1>0.0)
-            filter = new HighPassFilter(normalizedCutOffFreq1);
+            return new HighPassFilter(normalizedCutOffFreq1);
         else if (filterType == BANDPASS_FILTER && normalizedCutOffFreq1>0.0 && normalizedCutOffFreq2>0.0)
-        {
-            if (normalizedCutOffFreq1>normalizedCutOffFreq2)
-            {
-                double tmp = normalizedCutOffFreq1;
-                normalizedCutOffFreq1 = normalizedCutOffFreq2;
-                normalizedCutOffFreq2 = tmp;
-            }
-            
-            filter = new BandPassFilter(normalizedCutOffFreq1, normalizedCutOffFreq2);
-        }
+            return new BandPassFilter(normalizedCutOffFreq1, normalizedCutOffFreq2);
         else if (filterType == BANDREJECT_FILTER  && normalizedCutOffFreq1>0.0 && normalizedCutOffFreq2>0.0)
-        {
-            if (normalizedCutOffFreq1>normalizedCutOffFreq2)
-            {
-                double tmp = normalizedCutOffFreq1;
-                normalizedCutOffFreq1 = normalizedCutOffFreq2;
-                normalizedCutOffFreq2 = tmp;
-            }
-            
-            filter = new BandRejectFilter(normalizedCutOffFreq1, normalizedCutOffFreq2);
-        }
+            return new BandRejectFilter(normalizedCutOffFreq1, normalizedCutOffFreq2);
+        
+        return null;
     }
     
     public DoubleDataSource process(DoubleDataSource input)
     {
+        InlineDataProcessor filter = createFilter();
         if (filter != null)
         {
             FrameOverlapAddSource foas = new FrameOverlapAddSource(input, Window.HANNING, true, frameLength, fs, filter);
@@ -73,9 +73,7 @@ public class VocalTractLinearScalerEffect extends BaseAudioEffect {
     
     public DoubleDataSource process(DoubleDataSource inputAudio)
     {        
-        amount = MathUtils.CheckLimits(amount, MIN_AMOUNT, MAX_AMOUNT);
-        
-        double [] vscales = {amount};
+        double [] vscales = {MathUtils.CheckLimits(amount, MIN_AMOUNT, MAX_AMOUNT)};
 
         int frameLength = SignalProcUtils.getDFTSize(fs);
         int predictionOrder = SignalProcUtils.getLPOrder(fs);
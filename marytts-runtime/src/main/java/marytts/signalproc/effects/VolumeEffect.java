@@ -19,6 +19,7 @@
  */
 package marytts.signalproc.effects;
 
+import marytts.signalproc.process.InlineDataProcessor;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.DoubleDataSource;
 import marytts.util.math.MathUtils;
@@ -55,16 +56,17 @@ public class VolumeEffect extends BaseAudioEffect {
     
     public DoubleDataSource process(DoubleDataSource input)
     {
-        double [] x = input.getAllData();
-        if (x!=null)
-        {
-            for (int i=0; i<x.length; i++)
-                x[i] *= amount;
-            
-            input = new BufferedDoubleDataSource(x);
-        }
+        if (amount == 1.0f)
+            return input;
         
-        return input;
+        final float gain = amount;
+        return new BufferedDoubleDataSource(input, new InlineDataProcessor() {
+            public void applyInline(double[] data, int off, int len)
+            {
+                for (int i=off; i<off+len; i++)
+                    data[i] *= gain;
+            }
+        });
     }
 
     public String getHelpText() {
@@ -30,6 +30,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -37,9 +42,10 @@ import javax.sound.sampled.AudioInputStream;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.MaryConfigurationException;
 import marytts.exceptions.SynthesisException;
+import marytts.modules.synthesis.StreamingWaveformSynthesizer;
 import marytts.modules.synthesis.Voice;
-import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.modules.synthesis.Voice.Gender;
 import marytts.server.MaryProperties;
 import marytts.unitselection.concat.UnitConcatenator;
@@ -50,7 +56,9 @@ import marytts.unitselection.select.HalfPhoneTarget;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.unitselection.select.Target;
 import marytts.unitselection.select.UnitSelector;
+import marytts.unitselection.select.viterbi.Viterbi;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.ChunkedAudioInputStream;
 import marytts.util.dom.MaryNormalisedWriter;
 import marytts.util.dom.NameNodeFilter;
 
@@ -70,8 +78,14 @@ import org.w3c.dom.traversal.TreeWalker;
  *
  */
 
-public class UnitSelectionSynthesizer implements WaveformSynthesizer
+public class UnitSelectionSynthesizer implements StreamingWaveformSynthesizer
 {
+    /**
+     * In streaming mode, the minimum number of selected units to concatenate in one go,
+     * unless a pause is reached or the selection is complete.
+     */
+    private static final int MIN_UNITS_PER_CHUNK = 10;
+
     /**
      * A map with Voice objects as keys, and Lists of UtteranceProcessors as values.
      * Idea: For a given voice, find the list of utterance processors to apply. 
@@ -91,13 +105,41 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
         // Register UnitSelection voices:
         logger.debug("Register UnitSelection voices:");
         List<String> voiceNames = MaryProperties.getList("unitselection.voices.list");
-        for (String voiceName : voiceNames) {
-            long time = System.currentTimeMillis();
-            Voice unitSelVoice = new UnitSelectionVoice(voiceName, this);
-            logger.debug("Voice '" + unitSelVoice + "'");
-            Voice.registerVoice(unitSelVoice);    
-            long newtime = System.currentTimeMillis()-time;
-            logger.info("Loading of voice "+voiceName+" took "+newtime+" milliseconds");
+        final boolean lazy = MaryProperties.getBoolean("unitselection.voices.lazy", false);
+        int numThreads = MaryProperties.getInteger("modules.startup.threads", Runtime.getRuntime().availableProcessors());
+        // Load the voices in parallel, but register them in list order,
+        // so that the same voices become the default voices:
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, voiceNames.size())));
+        try {
+            List<Future<Voice>> voices = new ArrayList<Future<Voice>>();
+            for (final String voiceName : voiceNames) {
+                voices.add(pool.submit(new Callable<Voice>() {
+                    public Voice call() throws Exception {
+                        long time = System.currentTimeMillis();
+                        Voice unitSelVoice = new UnitSelectionVoice(voiceName, UnitSelectionSynthesizer.this);
+                        long newtime = System.currentTimeMillis()-time;
+                        if (lazy) {
+                            logger.info("Voice "+voiceName+" will be loaded on first use");
+                        } else {
+                            logger.info("Loading of voice "+voiceName+" took "+newtime+" milliseconds");
+                        }
+                        return unitSelVoice;
+                    }
+                }));
+            }
+            for (Future<Voice> f : voices) {
+                Voice unitSelVoice;
+                try {
+                    unitSelVoice = f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                    throw e;
+                }
+                logger.debug("Voice '" + unitSelVoice + "'");
+                Voice.registerVoice(unitSelVoice);
+            }
+        } finally {
+            pool.shutdownNow();
         }
         logger.info("started.");
     }
@@ -154,15 +196,10 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
     {
         assert voice instanceof UnitSelectionVoice;
         UnitSelectionVoice v = (UnitSelectionVoice) voice;
-        UnitDatabase udb = v.getDatabase();
+        load(v);
         // Select:
         UnitSelector unitSel = v.getUnitSelector();
-        UnitConcatenator unitConcatenator;
-        if (outputParams != null && outputParams.contains("MODIFICATION")) {
-            unitConcatenator = v.getModificationConcatenator();
-        } else {
-            unitConcatenator = v.getConcatenator();
-        }
+        UnitConcatenator unitConcatenator = getConcatenator(v, outputParams);
         // TODO: check if we actually need to access v.getDatabase() here
         UnitDatabase database = v.getDatabase();
         logger.debug("Selecting units with a "+unitSel.getClass().getName()+" from a "+database.getClass().getName());
@@ -177,9 +214,78 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
         
         // Concatenate:
         logger.debug("Now creating audio with a "+unitConcatenator.getClass().getName());
-        AudioInputStream audio = null;
+        AudioInputStream audio = concatenate(unitConcatenator, selectedUnits);
+        
+        // Propagate unit durations to XML tree:
+        new DurationPropagator(database).propagate(selectedUnits);
+        logDurations(tokensAndBoundaries);
+        
+        return audio;
+    }
+
+    /**
+     * Whether to stream the audio, as configured by the property "unitselection.streaming".
+     */
+    public boolean isStreaming(Voice voice, String outputParams)
+    {
+        return MaryProperties.getBoolean("unitselection.streaming", false);
+    }
+
+    public AudioFormat getAudioFormat(Voice voice, String outputParams)
+    {
+        assert voice instanceof UnitSelectionVoice;
+        return getConcatenator((UnitSelectionVoice) voice, outputParams).getAudioFormat();
+    }
+
+    /**
+     * Synthesize while selecting units: the units are concatenated and their audio
+     * is appended to output as soon as the unit selection has committed to them.
+     * The selection commits to units when all paths still considered agree on them, 
+     * and to the best path so far at each pause.
+     * 
+     * {@inheritDoc}
+     */
+    public void synthesize(List<Element> tokensAndBoundaries, Voice voice, String outputParams, ChunkedAudioInputStream output)
+        throws SynthesisException
+    {
+        assert voice instanceof UnitSelectionVoice;
+        UnitSelectionVoice v = (UnitSelectionVoice) voice;
+        load(v);
+        UnitSelector unitSel = v.getUnitSelector();
+        UnitConcatenator unitConcatenator = getConcatenator(v, outputParams);
+        logger.debug("Selecting units with a "+unitSel.getClass().getName()+" and streaming audio from a "+unitConcatenator.getClass().getName());
+        StreamingConcatenation concatenation = new StreamingConcatenation(unitConcatenator, v.getDatabase(), output);
+        unitSel.selectUnits(tokensAndBoundaries, voice, concatenation);
+        concatenation.flush();
+        logDurations(tokensAndBoundaries);
+    }
+
+    /**
+     * Load the voice data if the voice is loaded on first use.
+     */
+    private void load(UnitSelectionVoice v) throws SynthesisException
+    {
         try {
-            audio = unitConcatenator.getAudio(selectedUnits);
+            v.load();
+        } catch (MaryConfigurationException e) {
+            throw new SynthesisException("Cannot load voice "+v.getName(), e);
+        }
+    }
+
+    private UnitConcatenator getConcatenator(UnitSelectionVoice v, String outputParams)
+    {
+        if (outputParams != null && outputParams.contains("MODIFICATION")) {
+            return v.getModificationConcatenator();
+        } else {
+            return v.getConcatenator();
+        }
+    }
+
+    private AudioInputStream concatenate(UnitConcatenator unitConcatenator, List<SelectedUnit> selectedUnits)
+        throws SynthesisException
+    {
+        try {
+            return unitConcatenator.getAudio(selectedUnits);
         } catch (IOException ioe) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
@@ -187,76 +293,10 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
                 pw.println(selIt.next());
             throw new SynthesisException("Problems generating audio for unit chain: "+sw.toString(), ioe);
         }
-        
-        // Propagate unit durations to XML tree:
-        float endInSeconds = 0;
-        float durLeftHalfInSeconds = 0;
-        String unitString = "";
-        String unitAttrName = "units"; // name of the attribute that is added for unit selection diagnostics
-        for (SelectedUnit su : selectedUnits) {
-            Target t = su.getTarget();
-            boolean halfphone = (t instanceof HalfPhoneTarget);
-            Object concatenationData = su.getConcatenationData();
-            assert concatenationData instanceof UnitData;
-            UnitData unitData = (UnitData) concatenationData;
-            Unit unit = su.getUnit();
-            
-            // For the unit durations, keep record in floats because of precision;
-            // convert to millis only at export time, and re-compute duration in millis
-            // from the end in millis, to avoid discrepancies due to rounding
-            int unitDurationInSamples = unitData.getUnitDuration();
-            float unitDurationInSeconds = unitDurationInSamples / (float) database.getUnitFileReader().getSampleRate();
-            int prevEndInMillis = (int) (1000 * endInSeconds);
-            endInSeconds += unitDurationInSeconds;
-            int endInMillis = (int) (1000 * endInSeconds);
-            int unitDurationInMillis = endInMillis - prevEndInMillis;
-            unitString = t.getName() + " " + udb.getFilename(unit) + " " + unit.index + " " + unitDurationInSeconds;
-            if (halfphone) {
-                if (((HalfPhoneTarget)t).isLeftHalf()) {
-                    durLeftHalfInSeconds = unitDurationInSeconds;
-                } else { // right half
-                    // re-compute unit duration from both halves
-                    float totalUnitDurInSeconds = durLeftHalfInSeconds + unitDurationInSeconds;
-                    float prevEndInSeconds = endInSeconds - totalUnitDurInSeconds;
-                    prevEndInMillis = (int) (1000 * prevEndInSeconds);
-                    unitDurationInMillis = endInMillis - prevEndInMillis;
-                    durLeftHalfInSeconds = 0;
-                }
-            }
-            
-            Element maryxmlElement = t.getMaryxmlElement();
-            if (maryxmlElement != null) {
-                if (maryxmlElement.getNodeName().equals(MaryXML.PHONE)) {
-                    if (!maryxmlElement.hasAttribute("d") || !maryxmlElement.hasAttribute("end")) {
-                        throw new IllegalStateException("No duration information in MaryXML -- check log file"
-                                + " for messages warning about unloadable acoustic models"
-                                + " instead of voice-specific acoustic feature predictors");
-                    }
-                    //int oldD = Integer.parseInt(maryxmlElement.getAttribute("d"));
-                    //int oldEnd = Integer.parseInt(maryxmlElement.getAttribute("end"));
-                    //double doubleEnd = Double.parseDouble(maryxmlElement.getAttribute("end"));
-                    //int oldEnd = (int)(doubleEnd * 1000);
-                    maryxmlElement.setAttribute("d", String.valueOf(unitDurationInMillis));
-                    maryxmlElement.setAttribute("end", String.valueOf(endInSeconds));
-                    // the following messes up all end values!
-                    //if (oldEnd == oldD) {
-                    //    // start new end computation
-                    //    endInSeconds = unitDurationInSeconds;
-                    //}
-                } else { // not a PHONE
-                    assert maryxmlElement.getNodeName().equals(MaryXML.BOUNDARY);
-                    maryxmlElement.setAttribute("duration", String.valueOf(unitDurationInMillis));
-                }
-                if (maryxmlElement.hasAttribute(unitAttrName)) {
-                    String prevUnitString = maryxmlElement.getAttribute(unitAttrName);
-                    maryxmlElement.setAttribute(unitAttrName, prevUnitString + "; " + unitString);
-                } else {
-                    maryxmlElement.setAttribute(unitAttrName, unitString);
-                }
-           } else {
-                logger.debug("Unit "+su.getTarget().getName()+" of length "+unitDurationInMillis+" ms has no maryxml element.");
-            }
-        }
+    }
+
+    private void logDurations(List<Element> tokensAndBoundaries)
+    {
         if (logger.getEffectiveLevel().equals(Level.DEBUG)) {
             try {
                 MaryNormalisedWriter writer = new MaryNormalisedWriter();
@@ -267,10 +307,161 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
                 logger.warn("Problem writing XML to logfile: "+e);
             }
         }
+    }
 
-        
-        return audio;
+    /**
+     * Writes the realised unit durations to the MaryXML elements of the units' targets.
+     * The units of an utterance can be given in several calls, in order.
+     */
+    private class DurationPropagator
+    {
+        private UnitDatabase udb;
+        private float endInSeconds = 0;
+        private float durLeftHalfInSeconds = 0;
+
+        DurationPropagator(UnitDatabase udb)
+        {
+            this.udb = udb;
+        }
+
+        void propagate(List<SelectedUnit> selectedUnits)
+        {
+            String unitString = "";
+            String unitAttrName = "units"; // name of the attribute that is added for unit selection diagnostics
+            for (SelectedUnit su : selectedUnits) {
+                Target t = su.getTarget();
+                boolean halfphone = (t instanceof HalfPhoneTarget);
+                Object concatenationData = su.getConcatenationData();
+                assert concatenationData instanceof UnitData;
+                UnitData unitData = (UnitData) concatenationData;
+                Unit unit = su.getUnit();
+            
+                // For the unit durations, keep record in floats because of precision;
+                // convert to millis only at export time, and re-compute duration in millis
+                // from the end in millis, to avoid discrepancies due to rounding
+                int unitDurationInSamples = unitData.getUnitDuration();
+                float unitDurationInSeconds = unitDurationInSamples / (float) udb.getUnitFileReader().getSampleRate();
+                int prevEndInMillis = (int) (1000 * endInSeconds);
+                endInSeconds += unitDurationInSeconds;
+                int endInMillis = (int) (1000 * endInSeconds);
+                int unitDurationInMillis = endInMillis - prevEndInMillis;
+                unitString = t.getName() + " " + udb.getFilename(unit) + " " + unit.index + " " + unitDurationInSeconds;
+                if (halfphone) {
+                    if (((HalfPhoneTarget)t).isLeftHalf()) {
+                        durLeftHalfInSeconds = unitDurationInSeconds;
+                    } else { // right half
+                        // re-compute unit duration from both halves
+                        float totalUnitDurInSeconds = durLeftHalfInSeconds + unitDurationInSeconds;
+                        float prevEndInSeconds = endInSeconds - totalUnitDurInSeconds;
+                        prevEndInMillis = (int) (1000 * prevEndInSeconds);
+                        unitDurationInMillis = endInMillis - prevEndInMillis;
+                        durLeftHalfInSeconds = 0;
+                    }
+                }
+            
+                Element maryxmlElement = t.getMaryxmlElement();
+                if (maryxmlElement != null) {
+                    if (maryxmlElement.getNodeName().equals(MaryXML.PHONE)) {
+                        if (!maryxmlElement.hasAttribute("d") || !maryxmlElement.hasAttribute("end")) {
+                            throw new IllegalStateException("No duration information in MaryXML -- check log file"
+                                    + " for messages warning about unloadable acoustic models"
+                                    + " instead of voice-specific acoustic feature predictors");
+                        }
+                        //int oldD = Integer.parseInt(maryxmlElement.getAttribute("d"));
+                        //int oldEnd = Integer.parseInt(maryxmlElement.getAttribute("end"));
+                        //double doubleEnd = Double.parseDouble(maryxmlElement.getAttribute("end"));
+                        //int oldEnd = (int)(doubleEnd * 1000);
+                        maryxmlElement.setAttribute("d", String.valueOf(unitDurationInMillis));
+                        maryxmlElement.setAttribute("end", String.valueOf(endInSeconds));
+                        // the following messes up all end values!
+                        //if (oldEnd == oldD) {
+                        //    // start new end computation
+                        //    endInSeconds = unitDurationInSeconds;
+                        //}
+                    } else { // not a PHONE
+                        assert maryxmlElement.getNodeName().equals(MaryXML.BOUNDARY);
+                        maryxmlElement.setAttribute("duration", String.valueOf(unitDurationInMillis));
+                    }
+                    if (maryxmlElement.hasAttribute(unitAttrName)) {
+                        String prevUnitString = maryxmlElement.getAttribute(unitAttrName);
+                        maryxmlElement.setAttribute(unitAttrName, prevUnitString + "; " + unitString);
+                    } else {
+                        maryxmlElement.setAttribute(unitAttrName, unitString);
+                    }
+               } else {
+                    logger.debug("Unit "+su.getTarget().getName()+" of length "+unitDurationInMillis+" ms has no maryxml element.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Concatenates the units handed on by the unit selection in chunks, and
+     * appends the audio to an output stream.
+     * Each chunk is concatenated together with the last unit of the previous chunk,
+     * whose audio is skipped, so that the join between the chunks is made in
+     * the same way as within a chunk.
+     */
+    private class StreamingConcatenation implements Viterbi.SelectionListener
+    {
+        private UnitConcatenator unitConcatenator;
+        private DurationPropagator durations;
+        private ChunkedAudioInputStream output;
+        private List<SelectedUnit> pending = new ArrayList<SelectedUnit>();
+        private SelectedUnit previous = null;
+
+        StreamingConcatenation(UnitConcatenator unitConcatenator, UnitDatabase database, ChunkedAudioInputStream output)
+        {
+            this.unitConcatenator = unitConcatenator;
+            this.durations = new DurationPropagator(database);
+            this.output = output;
+        }
+
+        public void unitsSelected(List<SelectedUnit> units) throws SynthesisException
+        {
+            pending.addAll(units);
+            if (pending.size() >= MIN_UNITS_PER_CHUNK
+                    || pending.get(pending.size()-1).getTarget().isSilence()) {
+                flush();
+            }
+        }
+
+        /**
+         * Concatenate the pending units and append their audio to the output.
+         */
+        void flush() throws SynthesisException
+        {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<SelectedUnit> chunk = new ArrayList<SelectedUnit>(pending.size()+1);
+            SelectedUnit context = null;
+            if (previous != null) {
+                // a copy, so that the previous unit's concatenation data is kept
+                context = new SelectedUnit(previous.getUnit(), previous.getTarget());
+                chunk.add(context);
+            }
+            chunk.addAll(pending);
+            AudioInputStream audio = concatenate(unitConcatenator, chunk);
+            if (context != null) {
+                UnitData contextData = (UnitData) context.getConcatenationData();
+                long toSkip = (long) contextData.getUnitDuration() * audio.getFormat().getFrameSize();
+                try {
+                    while (toSkip > 0) {
+                        long skipped = audio.skip(toSkip);
+                        if (skipped <= 0) break;
+                        toSkip -= skipped;
+                    }
+                } catch (IOException ioe) {
+                    throw new SynthesisException("Cannot skip audio of unit "+context, ioe);
+                }
+            }
+            durations.propagate(pending);
+            output.append(audio);
+            previous = pending.get(pending.size()-1);
+            pending.clear();
+        }
     }
     
 }
-
+
@@ -76,8 +76,18 @@ public class UnitSelectionVoice extends Voice {
     protected String name;
     protected CART[] f0Carts;
     protected String exampleText;
+    private volatile boolean loaded = false;
 
     
+    /**
+     * Create a unit selection voice. The voice data is loaded right away unless the
+     * property <code>unitselection.voices.lazy</code> is true, in which case only the
+     * voice configuration is read, and the data is loaded on first use or when
+     * {@link #load()} is called.
+     * @param name the voice name
+     * @param synthesizer the synthesizer providing this voice
+     * @throws MaryConfigurationException if the voice cannot be created.
+     */
     public UnitSelectionVoice(String name, WaveformSynthesizer synthesizer)
     throws MaryConfigurationException
     {
@@ -97,7 +107,36 @@ public class UnitSelectionVoice extends Voice {
             if (exampleTextStream != null) {
                 readExampleText(exampleTextStream);
             }
-            
+        } catch (MaryConfigurationException mce) {
+            throw mce;
+        } catch (Exception ex) {
+            throw new MaryConfigurationException("Cannot build unit selection voice '"+name+"'", ex);
+        }
+        if (!MaryProperties.getBoolean("unitselection.voices.lazy", false)) {
+            load();
+        }
+    }
+
+    @Override
+    public boolean isLoaded()
+    {
+        return loaded;
+    }
+
+    /**
+     * Load the unit database, unit selector and concatenator of this voice,
+     * if this has not been done yet.
+     * @throws MaryConfigurationException if the voice data cannot be loaded.
+     */
+    @Override
+    public synchronized void load() throws MaryConfigurationException
+    {
+        if (loaded) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        try {
+            String header = "voice."+name;
             FeatureProcessorManager featProcManager = FeatureRegistry.getFeatureProcessorManager(this);
             if (featProcManager == null) featProcManager = FeatureRegistry.getFeatureProcessorManager(getLocale());
             if (featProcManager == null) throw new MaryConfigurationException("No feature processor manager for voice '"+name+"' (locale "+getLocale()+")");
@@ -135,13 +174,21 @@ public class UnitSelectionVoice extends Voice {
             String unitReaderClass = MaryProperties.needProperty(header+".unitReaderClass");
             String unitsFile = MaryProperties.needFilename(header+".unitsFile");
             UnitFileReader unitReader = (UnitFileReader) Class.forName(unitReaderClass).newInstance();
-            unitReader.load(unitsFile);
+            unitReader.load(unitsFile, MaryProperties.getBoolean("unitselection.units.preload", false));
             
             logger.debug("...loading cart file...");
             //String cartReaderClass = MaryProperties.needProperty(header+".cartReaderClass");
-            InputStream cartStream = MaryProperties.needStream(header+".cartFile");
-            CART cart = new MaryCARTReader().loadFromStream(cartStream);
-            cartStream.close();
+            CART cart;
+            String cartFile = MaryProperties.getFilename(header+".cartFile");
+            if (MaryProperties.getBoolean("unitselection.preselection.flat", true)
+                    && cartFile != null && new File(cartFile).isFile()) {
+                // use the tree directly from the memory-mapped file
+                cart = new MaryCARTReader().loadFlat(cartFile);
+            } else {
+                InputStream cartStream = MaryProperties.needStream(header+".cartFile");
+                cart = new MaryCARTReader().loadFromStream(cartStream);
+                cartStream.close();
+            }
             //get the backtrace information
             int backtrace = MaryProperties.getInteger(header+".cart.backtrace", 100);
             
@@ -216,7 +263,23 @@ public class UnitSelectionVoice extends Voice {
         } catch (Exception ex) {
             throw new MaryConfigurationException("Cannot build unit selection voice '"+name+"'", ex);
         }
-        
+        loaded = true;
+        logger.debug("Loading the data of voice "+name+" took "+(System.currentTimeMillis()-time)+" ms");
+    }
+
+    /**
+     * Make sure the voice data is loaded before it is accessed.
+     * @throws IllegalStateException if the voice data cannot be loaded.
+     */
+    private void ensureLoaded()
+    {
+        if (!loaded) {
+            try {
+                load();
+            } catch (MaryConfigurationException e) {
+                throw new IllegalStateException("Cannot load unit selection voice '"+name+"'", e);
+            }
+        }
     }
     
     
@@ -226,6 +289,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitDatabase getDatabase()
     {
+        ensureLoaded();
         return database;
     }
     
@@ -236,6 +300,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitSelector getUnitSelector()
     {
+        ensureLoaded();
         return unitSelector;
     }
     
@@ -245,6 +310,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitConcatenator getConcatenator()
     {
+        ensureLoaded();
         return concatenator;
     }
 
@@ -254,6 +320,7 @@ public class UnitSelectionVoice extends Voice {
      * @return the modifying UnitConcatenator
      */
     public UnitConcatenator getModificationConcatenator() {
+        ensureLoaded();
         if (modificationConcatenator == null) {
             // get sensible minimum and maximum values:
             try {
@@ -315,12 +382,14 @@ public class UnitSelectionVoice extends Voice {
     
     public CART[] getF0Trees()
     {
+        ensureLoaded();
         return f0Carts;
     }
     
     
     public FeatureDefinition getF0CartsFeatDef()
     {
+        ensureLoaded();
         if (f0Carts == null || f0Carts.length < 1) return null;
         return f0Carts[0].getFeatureDefinition();
     }
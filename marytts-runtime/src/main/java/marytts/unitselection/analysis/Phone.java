@@ -181,8 +181,7 @@ public class Phone {
     private int getNumberOfUnitFrames(SelectedUnit unit) {
         int numberOfFrames = 0;
         try {
-            Datagram[] frames = getUnitData(unit).getFrames();
-            numberOfFrames = frames.length;
+            numberOfFrames = getUnitData(unit).getNumberOfFrames();
         } catch (NullPointerException e) {
             // leave at 0
         }
@@ -499,17 +498,18 @@ public class Phone {
      * @return the durations (in seconds) of each Datagram in the unit in an array, or null if unit is null
      */
     private double[] getUnitFrameDurations(SelectedUnit unit) {
-        Datagram[] frames = null;
+        UnitData unitData = null;
+        int numberOfFrames = 0;
         try {
-            frames = getUnitData(unit).getFrames();
+            unitData = getUnitData(unit);
+            numberOfFrames = unitData.getNumberOfFrames();
         } catch (NullPointerException e) {
             return null;
         }
-        assert frames != null;
 
-        double[] frameDurations = new double[frames.length];
-        for (int f = 0; f < frames.length; f++) {
-            long frameDuration = frames[f].getDuration();
+        double[] frameDurations = new double[numberOfFrames];
+        for (int f = 0; f < numberOfFrames; f++) {
+            long frameDuration = unitData.getFrameDuration(f);
             frameDurations[f] = frameDuration / sampleRate; // converting to seconds
         }
         return frameDurations;
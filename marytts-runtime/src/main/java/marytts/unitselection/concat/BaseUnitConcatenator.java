@@ -40,9 +40,11 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 
 import marytts.unitselection.analysis.ProsodyAnalyzer;
+import marytts.unitselection.data.DatagramSpan;
 import marytts.unitselection.data.TimelineReader;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.SelectedUnit;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.Datagram;
@@ -119,6 +121,7 @@ public class BaseUnitConcatenator implements UnitConcatenator
         getDatagramsFromTimeline(units);
         
         // 2. Determine target pitchmarks (= duration and f0) for each unit
+        CancellationToken.checkCurrent();
         determineTargetPitchmarks(units);
         
         // 2a. Analyze SelectedUnits wrt predicted vs. realized prosody
@@ -129,11 +132,13 @@ public class BaseUnitConcatenator implements UnitConcatenator
         }
         
         // 3. Generate audio to match the target pitchmarks as closely as possible
+        CancellationToken.checkCurrent();
         return generateAudioStream(units);
     }
 
     /**
      * Get the raw audio material for each unit from the timeline.
+     * The frames are read as views on the timeline data, see {@link UnitData#getSpan()}.
      * @param units
      */
     protected void getDatagramsFromTimeline(List<SelectedUnit> units) throws IOException
@@ -145,8 +150,7 @@ public class BaseUnitConcatenator implements UnitConcatenator
             int unitSize = unitToTimeline(unit.getUnit().duration); // convert to timeline samples
             long unitStart = unitToTimeline(unit.getUnit().startTime); // convert to timeline samples
             //System.out.println("Unit size "+unitSize+", pitchmarksInUnit "+pitchmarksInUnit);
-            Datagram[] datagrams = timeline.getDatagrams(unitStart,(long)unitSize);
-            unitData.setFrames(datagrams);
+            unitData.setSpan(timeline.getDatagramSpan(unitStart,(long)unitSize));
         }
     }
     
@@ -159,6 +163,16 @@ public class BaseUnitConcatenator implements UnitConcatenator
         for (SelectedUnit unit : units) {
             UnitData unitData = (UnitData)unit.getConcatenationData();
             assert unitData != null : "Should not have null unitdata here";
+            DatagramSpan span = unitData.getSpan();
+            if (span != null) {
+                if (span.size() == 0) { // no datagrams -- set as silence
+                    int targetLength = (int) (unit.getTarget().getTargetDurationInSeconds() * timeline.getSampleRate());
+                    span = DatagramSpan.silence(targetLength);
+                    unitData.setSpan(span);
+                }
+                unitData.setUnitDuration((int) span.getTotalDuration());
+                continue;
+            }
             Datagram[] datagrams = unitData.getFrames();
             Datagram[] frames = null; // frames to realise
             // The number and duration of the frames to realise
@@ -188,6 +202,11 @@ public class BaseUnitConcatenator implements UnitConcatenator
      */
     protected AudioInputStream generateAudioStream(List<SelectedUnit> units) throws IOException
     {
+        DatagramSpan[] spans = getSpans(units);
+        if (spans != null) {
+            DoubleDataSource audioSource = new DatagramSpanDoubleDataSource(spans);
+            return new DDSAudioInputStream(new BufferedDoubleDataSource(audioSource), audioformat);
+        }
         LinkedList<Datagram> datagrams = new LinkedList<Datagram>();
         for (SelectedUnit unit : units) {
             UnitData unitData = (UnitData)unit.getConcatenationData();
@@ -203,6 +222,25 @@ public class BaseUnitConcatenator implements UnitConcatenator
     }
     
     
+    /**
+     * Get the frames of all units as views on the timeline data.
+     * @param units
+     * @return the spans, or null if the frames of any unit are not available as a span.
+     */
+    protected DatagramSpan[] getSpans(List<SelectedUnit> units)
+    {
+        DatagramSpan[] spans = new DatagramSpan[units.size()];
+        for (int i=0; i<spans.length; i++) {
+            UnitData unitData = (UnitData)units.get(i).getConcatenationData();
+            assert unitData != null : "Should not have null unitdata here";
+            spans[i] = unitData.getSpan();
+            if (spans[i] == null) {
+                return null;
+            }
+        }
+        return spans;
+    }
+
     /**
      * Create a datagram appropriate for this unit concatenator
      * which contains only zero values as samples.
@@ -227,6 +265,7 @@ public class BaseUnitConcatenator implements UnitConcatenator
     {
         protected int[] pitchmarks;
         protected Datagram[] frames;
+        protected DatagramSpan span;
         protected Datagram rightContextFrame;
         
         protected int unitDuration = -1;
@@ -285,21 +324,74 @@ public class BaseUnitConcatenator implements UnitConcatenator
         public void setFrames(Datagram[] frames)
         {
             this.frames = frames; 
+            this.span = null;
         }
         
+        /**
+         * Get the frames as Datagram objects. If the frames were set as a span,
+         * the Datagram objects are created from it now, and the span is discarded,
+         * so that changes to the frames take effect.
+         */
         public Datagram[] getFrames()
         {
+            if (frames == null && span != null) {
+                frames = span.getDatagrams();
+                span = null;
+            }
             return frames;
         }
         
         public void setFrame(int frameIndex, Datagram frame)
         {
-            this.frames[frameIndex] = frame;
+            getFrames()[frameIndex] = frame;
         }
         
         public Datagram getFrame(int frameIndex)
         {
-            return frames[frameIndex];
+            return getFrames()[frameIndex];
+        }
+
+        /**
+         * Set the frames as a view on the timeline data, replacing any frames set with {@link #setFrames(Datagram[])}.
+         * @param span
+         */
+        public void setSpan(DatagramSpan span)
+        {
+            this.span = span;
+            this.frames = null;
+        }
+
+        /**
+         * Get the frames as a view on the timeline data.
+         * @return the span, or null if the frames are Datagram objects.
+         */
+        public DatagramSpan getSpan()
+        {
+            return span;
+        }
+
+        /**
+         * Get the number of frames, without creating Datagram objects from a span.
+         * @return the number of frames; throws NullPointerException if there are no frames
+         */
+        public int getNumberOfFrames()
+        {
+            if (span != null) {
+                return span.size();
+            }
+            return frames.length;
+        }
+
+        /**
+         * Get the duration of a frame, in samples, without creating Datagram objects from a span.
+         * @param frameIndex
+         */
+        public long getFrameDuration(int frameIndex)
+        {
+            if (span != null) {
+                return span.getDuration(frameIndex);
+            }
+            return frames[frameIndex].getDuration();
         }
         
         public void setRightContextFrame(Datagram aRightContextFrame)
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.concat;
+
+import marytts.signalproc.window.DynamicTwoHalvesWindow;
+import marytts.signalproc.window.Window;
+import marytts.unitselection.data.DatagramSpan;
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+
+/**
+ * A double data source reading the audio samples of units directly from their
+ * datagram spans, i.e. from the timeline data, without creating Datagram objects.
+ * Like {@link DatagramOverlapDoubleDataSource}, it can overlap-add the right
+ * context of a unit to the first frame of the following unit.
+ *
+ * @author agent
+ *
+ */
+public class DatagramSpanDoubleDataSource extends BufferedDoubleDataSource
+{
+    protected DatagramSpan[] spans;
+    protected DatagramSpan[] rightContexts;
+    protected int p; // point to current span/rightContext
+    protected int q; // point to current datagram within spans[p]
+    protected long totalRead; // count samples read from spans
+    private DynamicTwoHalvesWindow window;
+    private double[] context;
+
+    /**
+     * Construct a double data source from the given spans, which are read one after the other.
+     * @param spans
+     */
+    public DatagramSpanDoubleDataSource(DatagramSpan[] spans)
+    {
+        this(spans, null);
+    }
+
+    /**
+     * Construct a double data source from the given spans and right contexts.
+     * @param spans
+     * @param rightContexts null, or for each span, null or a span whose first datagram is to be overlap-added
+     * to the first datagram of the next span.
+     */
+    public DatagramSpanDoubleDataSource(DatagramSpan[] spans, DatagramSpan[] rightContexts)
+    {
+        super((DoubleDataSource)null);
+        this.spans = spans;
+        this.rightContexts = rightContexts;
+        dataLength = 0;
+        for (int i=0; i<spans.length; i++) {
+            dataLength += spans[i].getTotalDuration();
+        }
+        p = 0;
+        q = 0;
+    }
+
+    public boolean hasMoreData()
+    {
+        return currentlyInBuffer() > 0 || totalRead < dataLength;
+    }
+
+    public int available()
+    {
+        return (int) (currentlyInBuffer() + dataLength - totalRead);
+    }
+
+    protected boolean readIntoBuffer(int minLength)
+    {
+        if (bufferSpaceLeft()<minLength) {
+            // current buffer cannot hold the data requested;
+            // need to make it larger
+            increaseBufferSize(minLength+currentlyInBuffer());
+        } else if (buf.length-writePos<minLength) {
+            compact(); // create a contiguous space for the new data
+        }
+        int readSum = 0;
+        while (readSum < minLength && p < spans.length) {
+            if (q >= spans[p].size()) {
+                p++;
+                q = 0;
+            } else {
+                int length = (int) spans[p].getDuration(q);
+                if (buf.length < writePos + length) {
+                    increaseBufferSize(writePos+length);
+                }
+                int read = spans[p].readSamples(q, buf, writePos);
+                if (q == 0 && p > 0 && rightContexts != null && rightContexts[p-1] != null) {
+                    overlapAdd(rightContexts[p-1], writePos, read);
+                }
+                writePos += read;
+                readSum += read;
+                totalRead += read;
+                q++;
+            }
+        }
+        if (dataProcessor != null) {
+            dataProcessor.applyInline(buf, writePos-readSum, readSum);
+        }
+        return readSum >= minLength;
+    }
+
+    /**
+     * Window the data just read with the left half of a HANN window,
+     * and overlap-add the first datagram of the right context, windowed with the right half.
+     */
+    private void overlapAdd(DatagramSpan rightContext, int pos, int read)
+    {
+        if (window == null) {
+            window = new DynamicTwoHalvesWindow(Window.HANNING);
+        }
+        window.applyInlineLeftHalf(buf, pos, read);
+        int contextLength = (int) rightContext.getDuration(0);
+        if (context == null || context.length < contextLength) {
+            context = new double[contextLength];
+        }
+        rightContext.readSamples(0, context, 0);
+        window.applyInlineRightHalf(context, 0, contextLength);
+        for (int i=0, iMax = Math.min(read, contextLength); i<iMax; i++) {
+            buf[pos+i] += context[i];
+        }
+    }
+}
@@ -29,6 +29,7 @@ import javax.sound.sampled.AudioInputStream;
 import marytts.modules.phonemiser.Allophone;
 import marytts.server.MaryProperties;
 import marytts.signalproc.process.FDPSOLAProcessor;
+import marytts.signalproc.process.SegmentedFDPSOLAProcessor;
 import marytts.unitselection.analysis.Phone;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.unitselection.select.Target;
@@ -558,7 +559,14 @@ public class FdpsolaUnitConcatenator extends OverlapUnitConcatenator {
         double[][] pscales = getRealizedPitchScales(realizedPhones);
         
         // process into audio stream:
-        DDSAudioInputStream stream = (new FDPSOLAProcessor()).processDecrufted(datagrams, rightContexts, audioformat, voicings, pscales, tscales);
+        DDSAudioInputStream stream;
+        if (MaryProperties.getBoolean("unitselection.concat.fdpsola.parallel", false)) {
+            int segmentSize = MaryProperties.getInteger("unitselection.concat.fdpsola.segmentsize", SegmentedFDPSOLAProcessor.DEFAULT_UNITS_PER_SEGMENT);
+            stream = new SegmentedFDPSOLAProcessor(segmentSize, SegmentedFDPSOLAProcessor.DEFAULT_MARGIN_UNITS, null)
+                    .processDecrufted(datagrams, rightContexts, audioformat, voicings, pscales, tscales);
+        } else {
+            stream = (new FDPSOLAProcessor()).processDecrufted(datagrams, rightContexts, audioformat, voicings, pscales, tscales);
+        }
         
         // update durations from processed Datagrams:
 //        updateUnitDataDurations(units, datagrams);
@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.sound.sampled.AudioInputStream;
 
+import marytts.unitselection.data.DatagramSpan;
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.util.data.BufferedDoubleDataSource;
@@ -56,14 +57,11 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
             //System.out.println(unitStart/((float)timeline.getSampleRate()));
             //System.out.println("Unit index = " + unit.getUnit().getIndex());
             
-            Datagram[] datagrams = timeline.getDatagrams(unitStart,(long)unitSize);
-            unitData.setFrames(datagrams);
+            unitData.setSpan(timeline.getDatagramSpan(unitStart,(long)unitSize));
             // one right context period for windowing:
-            Datagram rightContextFrame = null;
             Unit nextInDB = database.getUnitFileReader().getNextUnit(unit.getUnit());
             if (nextInDB != null && !nextInDB.isEdgeUnit()) {
-                rightContextFrame = timeline.getDatagram(unitStart+unitSize);
-                unitData.setRightContextFrame(rightContextFrame);
+                unitData.setRightContextSpan(timeline.getDatagramSpan(unitStart+unitSize, 1, timeline.getSampleRate(), null));
             }
         }
     }
@@ -77,36 +75,38 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
         for (SelectedUnit unit : units) {
             UnitData unitData = (UnitData)unit.getConcatenationData();
             assert unitData != null : "Should not have null unitdata here";
-            Datagram[] datagrams = unitData.getFrames();
-            Datagram[] frames = null; // frames to realise
             // The number and duration of the frames to realise
             // must be the result of the target pitchmark computation.
+            // The frames to realise are determined as indices into the unit's frames,
+            // so that the same computation applies to frames as datagram spans and as Datagram objects.
 
             // Set target pitchmarks,
             // either by copying from units (data-driven)
             // or by computing from target (model-driven)
+            int nFrames = unitData.getNumberOfFrames();
             int unitDuration = 0;
             int nZeroLengthDatagrams = 0;
-            for (int i=0; i<datagrams.length; i++) {
-                int dur = (int) datagrams[i].getDuration();
+            for (int i=0; i<nFrames; i++) {
+                int dur = (int) unitData.getFrameDuration(i);
                 if (dur == 0) nZeroLengthDatagrams++;
-                unitDuration += datagrams[i].getDuration();
+                unitDuration += dur;
+            }
+            int[] datagrams = new int[nFrames - nZeroLengthDatagrams];
+            for (int i=0, j=0; i<nFrames; i++) {
+                if (unitData.getFrameDuration(i) > 0) {
+                    datagrams[j++] = i;
+                }
             }
             if (nZeroLengthDatagrams > 0) {
                 logger.warn("Unit "+unit+" contains "+nZeroLengthDatagrams+" zero-length datagrams -- removing them");
-                Datagram[] dummy = new Datagram[datagrams.length - nZeroLengthDatagrams];
-                for (int i=0, j=0; i<datagrams.length; i++) {
-                    if (datagrams[i].getDuration() > 0) {
-                        dummy[j++] = datagrams[i];
-                    }
-                }
-                datagrams = dummy;
-                unitData.setFrames(datagrams);
             }
+            int[] frames = null; // frames to realise
+            int silencePosition = -1; // where to insert silence into frames, if anywhere
+            int silenceDuration = 0;
             if (unit.getTarget().isSilence()) {
                 int targetDuration = Math.round(unit.getTarget().getTargetDurationInSeconds()*audioformat.getSampleRate());
-                if (targetDuration > 0 && datagrams != null && datagrams.length > 0) {
-                    int firstPeriodDur = (int) datagrams[0].getDuration();
+                if (targetDuration > 0 && datagrams.length > 0) {
+                    int firstPeriodDur = (int) unitData.getFrameDuration(datagrams[0]);
                     if (targetDuration < firstPeriodDur) {
                         logger.debug("For "+unit+", adjusting target duration to be at least one period: "
                                 + (firstPeriodDur/audioformat.getSampleRate())+" s instead of requested "+unit.getTarget().getTargetDurationInSeconds()+ " s");
@@ -114,26 +114,22 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
                     }
                     if (unitDuration < targetDuration) {
                         // insert silence in the middle
-                        frames = new Datagram[datagrams.length+1];
-                        int mid = (datagrams.length+1) / 2;
-                        System.arraycopy(datagrams, 0, frames, 0, mid);
-                        if (mid < datagrams.length) {
-                            System.arraycopy(datagrams, mid, frames, mid+1, datagrams.length-mid);
-                        }
-                        frames[mid] = createZeroDatagram(targetDuration - unitDuration);
+                        frames = datagrams;
+                        silencePosition = (datagrams.length+1) / 2;
+                        silenceDuration = targetDuration - unitDuration;
                     } else { // unitDuration >= targetDuration
                         // cut frames from the middle
                         int midright = (datagrams.length+1) / 2; // first frame of the right part
                         int midleft = midright - 1; // last frame of the left part
                         while (unitDuration > targetDuration && midright < datagrams.length) {
-                            unitDuration -= datagrams[midright].getDuration();
+                            unitDuration -= unitData.getFrameDuration(datagrams[midright]);
                             midright++;
                             if (unitDuration > targetDuration && midleft > 0) { // force it to leave at least one frame, therefore > 0
-                                unitDuration -= datagrams[midleft].getDuration();
+                                unitDuration -= unitData.getFrameDuration(datagrams[midleft]);
                                 midleft--;
                             }
                         }
-                        frames = new Datagram[midleft+1 + datagrams.length-midright];
+                        frames = new int[midleft+1 + datagrams.length-midright];
                         assert midleft >= 0;
                         System.arraycopy(datagrams, 0, frames, 0, midleft+1);
                         if (midright < datagrams.length) {
@@ -143,17 +139,52 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
                     unitDuration = targetDuration; // now they are the same
                 } else { // unitSize == 0, we have a zero-length silence unit
                     // artificial silence data:
-                    frames = new Datagram[] { createZeroDatagram(targetDuration) };
+                    frames = new int[0];
+                    silencePosition = 0;
+                    silenceDuration = targetDuration;
                     unitDuration = targetDuration;
                 }
             } else { // not silence
                 // take unit as is
                 frames = datagrams;
             }
+            selectFrames(unitData, frames, silencePosition, silenceDuration);
             unitData.setUnitDuration(unitDuration);
-            unitData.setFrames(frames);
         }
     }
+
+    /**
+     * Replace the frames of a unit with a selection of them, and possibly insert silence.
+     * @param unitData
+     * @param frames the indices of the frames to keep
+     * @param silencePosition the position in frames where to insert a frame of silence, or -1 for none
+     * @param silenceDuration the duration of the silence, in samples
+     */
+    private void selectFrames(UnitData unitData, int[] frames, int silencePosition, int silenceDuration)
+    {
+        DatagramSpan span = unitData.getSpan();
+        if (span != null) {
+            if (frames.length < span.size()) {
+                span = span.select(frames);
+            }
+            if (silencePosition >= 0) {
+                span = span.insertSilence(silencePosition, silenceDuration);
+            }
+            unitData.setSpan(span);
+            return;
+        }
+        Datagram[] datagrams = unitData.getFrames();
+        int nSilence = silencePosition >= 0 ? 1 : 0;
+        Datagram[] selected = new Datagram[frames.length + nSilence];
+        for (int i=0, j=0; i<selected.length; i++) {
+            if (i == silencePosition) {
+                selected[i] = createZeroDatagram(silenceDuration);
+            } else {
+                selected[i] = datagrams[frames[j++]];
+            }
+        }
+        unitData.setFrames(selected);
+    }
     
     /**
      * Generate audio to match the target pitchmarks as closely as possible.
@@ -163,6 +194,11 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
      */
     protected AudioInputStream generateAudioStream(List<SelectedUnit> units) throws IOException
     {
+        DatagramSpan[] spans = getSpans(units);
+        if (spans != null) {
+            DoubleDataSource audioSource = new DatagramSpanDoubleDataSource(spans, getRightContextSpans(units));
+            return new DDSAudioInputStream(new BufferedDoubleDataSource(audioSource), audioformat);
+        }
         int len = units.size();
         Datagram[][] datagrams = new Datagram[len][];
         Datagram[] rightContexts = new Datagram[len];
@@ -189,19 +225,68 @@ public class OverlapUnitConcatenator extends BaseUnitConcatenator {
         return new DDSAudioInputStream(new BufferedDoubleDataSource(audioSource), audioformat);
     }
 
+    /**
+     * For each unit, get the right context span to overlap-add with the next unit, if any.
+     * Only use right context if the next unit in the DB is not the
+     * same as the next selected unit.
+     * @param units
+     * @return an array with a span or null for each unit
+     */
+    private DatagramSpan[] getRightContextSpans(List<SelectedUnit> units)
+    {
+        int len = units.size();
+        DatagramSpan[] rightContexts = new DatagramSpan[len];
+        for (int i=0; i<len; i++) {
+            SelectedUnit unit = units.get(i);
+            OverlapUnitData unitData = (OverlapUnitData)unit.getConcatenationData();
+            Unit nextInDB = database.getUnitFileReader().getNextUnit(unit.getUnit());
+            Unit nextSelected;
+            if (i+1==len) nextSelected = null;
+            else nextSelected = units.get(i+1).getUnit();
+            if (nextInDB != null && !nextInDB.equals(nextSelected)) {
+                rightContexts[i] = unitData.getRightContextSpan(); // may be null
+            }
+        }
+        return rightContexts;
+    }
+
     public static class OverlapUnitData extends BaseUnitConcatenator.UnitData
     {
         protected Datagram rightContextFrame;
+        protected DatagramSpan rightContextSpan;
         
         public void setRightContextFrame(Datagram aRightContextFrame)
         {
             this.rightContextFrame = aRightContextFrame;
+            this.rightContextSpan = null;
         }
         
         public Datagram getRightContextFrame()
         {
+            if (rightContextFrame == null && rightContextSpan != null) {
+                rightContextFrame = rightContextSpan.getDatagram(0);
+            }
             return rightContextFrame;
         }
+
+        /**
+         * Set the right context frame as a view on the timeline data.
+         * @param aRightContextSpan a span whose first datagram is the right context frame
+         */
+        public void setRightContextSpan(DatagramSpan aRightContextSpan)
+        {
+            this.rightContextSpan = aRightContextSpan;
+            this.rightContextFrame = null;
+        }
+
+        /**
+         * Get the right context frame as a view on the timeline data.
+         * @return a span whose first datagram is the right context frame, or null
+         */
+        public DatagramSpan getRightContextSpan()
+        {
+            return rightContextSpan;
+        }
     }
 }
 
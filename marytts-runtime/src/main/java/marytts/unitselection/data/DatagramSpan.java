@@ -0,0 +1,300 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.data;
+
+import java.nio.ByteBuffer;
+
+import marytts.util.data.Datagram;
+
+/**
+ * A view on a sequence of datagrams, as read from a timeline, which does not
+ * copy the datagrams' data. The span only records the duration of each datagram
+ * and the position and length of its data in a byte buffer; for memory-mapped
+ * timelines, this is the mapped timeline file itself, so that reading a span
+ * allocates neither a Datagram object nor a byte array per datagram.
+ * <p>
+ * The data is accessed with the typed getters, which read the timeline's
+ * big-endian byte order, e.g. {@link #getShort(int, int)} for audio samples or
+ * {@link #getFloat(int, int)} for Mel-Cepstrum coefficients, or decoded into
+ * samples with {@link #readSamples(int, double[], int)}. A span can also contain
+ * silence datagrams, which have no data in the buffer and read as zeroes.
+ * <p>
+ * Spans are immutable except for the durations, which can be changed with
+ * {@link #setDuration(int, long)}; the selection methods create new spans
+ * which share the data but not the durations. Spans can be read from several threads.
+ *
+ * @author agent
+ *
+ */
+public class DatagramSpan
+{
+    private static final int SILENCE = -1;
+
+    private final ByteBuffer buffer;
+    private final int[] positions;
+    private final int[] lengths;
+    private final long[] durations;
+
+    /**
+     * Create a span of datagrams whose data lies in the given buffer.
+     * @param buffer the buffer holding the datagrams' data; only absolute get methods are used.
+     * @param positions the position of each datagram's data in buffer, or -1 for silence
+     * @param lengths the length of each datagram's data, in bytes
+     * @param durations the duration of each datagram, in samples
+     */
+    DatagramSpan(ByteBuffer buffer, int[] positions, int[] lengths, long[] durations)
+    {
+        assert positions.length == lengths.length && lengths.length == durations.length;
+        this.buffer = buffer;
+        this.positions = positions;
+        this.lengths = lengths;
+        this.durations = durations;
+    }
+
+    /**
+     * Create a span containing the given datagrams. The datagrams' data
+     * is copied into one buffer.
+     * @param datagrams the datagrams, which must have their data in {@link Datagram#getData()}.
+     */
+    public DatagramSpan(Datagram[] datagrams)
+    {
+        int n = datagrams.length;
+        positions = new int[n];
+        lengths = new int[n];
+        durations = new long[n];
+        int total = 0;
+        for (int i=0; i<n; i++) {
+            positions[i] = total;
+            lengths[i] = datagrams[i].getLength();
+            durations[i] = datagrams[i].getDuration();
+            total += lengths[i];
+        }
+        byte[] data = new byte[total];
+        for (int i=0; i<n; i++) {
+            System.arraycopy(datagrams[i].getData(), 0, data, positions[i], lengths[i]);
+        }
+        buffer = ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Create a span containing one datagram of audio silence.
+     * @param duration the duration of the silence, in samples
+     * @return a span whose only datagram reads as the given number of zero-valued 16-bit samples.
+     */
+    public static DatagramSpan silence(long duration)
+    {
+        return new DatagramSpan(null, new int[] {SILENCE}, new int[] {(int) (2*duration)}, new long[] {duration});
+    }
+
+    /**
+     * The number of datagrams in this span.
+     */
+    public int size()
+    {
+        return durations.length;
+    }
+
+    /**
+     * Get the duration of a datagram, in samples.
+     * @param i the index of the datagram in this span
+     */
+    public long getDuration(int i)
+    {
+        return durations[i];
+    }
+
+    /**
+     * Set the duration of a datagram, in samples.
+     * @param i the index of the datagram in this span
+     * @param duration the new duration. Must be non-negative.
+     * @throws IllegalArgumentException if duration is negative
+     */
+    public void setDuration(int i, long duration)
+    {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Can't set the negative duration [" + duration + "].");
+        }
+        durations[i] = duration;
+    }
+
+    /**
+     * Get the sum of the durations of all datagrams in this span, in samples.
+     */
+    public long getTotalDuration()
+    {
+        long total = 0;
+        for (long d : durations) {
+            total += d;
+        }
+        return total;
+    }
+
+    /**
+     * Get the length, in bytes, of a datagram's data.
+     * @param i the index of the datagram in this span
+     */
+    public int getLength(int i)
+    {
+        return lengths[i];
+    }
+
+    /**
+     * Whether the datagram is silence, i.e. has no data in the timeline.
+     * @param i the index of the datagram in this span
+     */
+    public boolean isSilence(int i)
+    {
+        return positions[i] == SILENCE;
+    }
+
+    /**
+     * Get a byte of a datagram's data.
+     * @param i the index of the datagram in this span
+     * @param offset the position of the byte within the datagram's data
+     */
+    public byte getByte(int i, int offset)
+    {
+        assert offset >= 0 && offset < lengths[i];
+        if (positions[i] == SILENCE) return 0;
+        return buffer.get(positions[i]+offset);
+    }
+
+    /**
+     * Get a big-endian short value from a datagram's data.
+     * @param i the index of the datagram in this span
+     * @param offset the position of the first byte of the value within the datagram's data
+     */
+    public short getShort(int i, int offset)
+    {
+        assert offset >= 0 && offset+2 <= lengths[i];
+        if (positions[i] == SILENCE) return 0;
+        return buffer.getShort(positions[i]+offset);
+    }
+
+    /**
+     * Get a big-endian float value from a datagram's data.
+     * @param i the index of the datagram in this span
+     * @param offset the position of the first byte of the value within the datagram's data
+     */
+    public float getFloat(int i, int offset)
+    {
+        assert offset >= 0 && offset+4 <= lengths[i];
+        if (positions[i] == SILENCE) return 0;
+        return buffer.getFloat(positions[i]+offset);
+    }
+
+    /**
+     * Decode the audio data of a datagram, which consists of 16-bit big-endian samples,
+     * into the range [-1, 1], in the same way as {@link marytts.util.data.DatagramDoubleDataSource}.
+     * @param i the index of the datagram in this span
+     * @param target the array to write the samples to
+     * @param pos the position in target of the first sample
+     * @return the number of samples written, i.e. the datagram's duration.
+     */
+    public int readSamples(int i, double[] target, int pos)
+    {
+        int dur = (int) durations[i];
+        assert lengths[i] / 2 == dur : "expected datagram data length to be "+(dur*2)+", found "+lengths[i];
+        int start = positions[i];
+        if (start == SILENCE) {
+            for (int k=0; k<dur; k++) {
+                target[pos+k] = 0;
+            }
+            return dur;
+        }
+        for (int k=0; k<dur; k++) {
+            target[pos+k] = buffer.getShort(start + 2*k) / 32768.0; // normalise to range [-1, 1]
+        }
+        return dur;
+    }
+
+    /**
+     * Create a span containing some of the datagrams in this span.
+     * @param indices the indices in this span of the datagrams to include, in the order in which to include them.
+     * @return a new span sharing the data of this span.
+     */
+    public DatagramSpan select(int[] indices)
+    {
+        int n = indices.length;
+        int[] newPositions = new int[n];
+        int[] newLengths = new int[n];
+        long[] newDurations = new long[n];
+        for (int k=0; k<n; k++) {
+            newPositions[k] = positions[indices[k]];
+            newLengths[k] = lengths[indices[k]];
+            newDurations[k] = durations[indices[k]];
+        }
+        return new DatagramSpan(buffer, newPositions, newLengths, newDurations);
+    }
+
+    /**
+     * Create a span containing the datagrams of this span with an audio silence
+     * datagram inserted.
+     * @param index the index which the silence datagram will have in the new span, between 0 and size().
+     * @param duration the duration of the silence, in samples
+     * @return a new span sharing the data of this span.
+     * @see #silence(long)
+     */
+    public DatagramSpan insertSilence(int index, long duration)
+    {
+        int n = size();
+        int[] newPositions = new int[n+1];
+        int[] newLengths = new int[n+1];
+        long[] newDurations = new long[n+1];
+        System.arraycopy(positions, 0, newPositions, 0, index);
+        System.arraycopy(lengths, 0, newLengths, 0, index);
+        System.arraycopy(durations, 0, newDurations, 0, index);
+        newPositions[index] = SILENCE;
+        newLengths[index] = (int) (2*duration);
+        newDurations[index] = duration;
+        System.arraycopy(positions, index, newPositions, index+1, n-index);
+        System.arraycopy(lengths, index, newLengths, index+1, n-index);
+        System.arraycopy(durations, index, newDurations, index+1, n-index);
+        return new DatagramSpan(buffer, newPositions, newLengths, newDurations);
+    }
+
+    /**
+     * Create a Datagram object for a datagram in this span, by copying its data.
+     * @param i the index of the datagram in this span
+     */
+    public Datagram getDatagram(int i)
+    {
+        byte[] data = new byte[lengths[i]];
+        if (positions[i] != SILENCE) {
+            ByteBuffer bb = buffer.duplicate();
+            bb.position(positions[i]);
+            bb.get(data);
+        }
+        return new Datagram(durations[i], data);
+    }
+
+    /**
+     * Create Datagram objects for all datagrams in this span, by copying their data.
+     * This is for code which needs the datagrams as objects.
+     */
+    public Datagram[] getDatagrams()
+    {
+        Datagram[] datagrams = new Datagram[size()];
+        for (int i=0; i<datagrams.length; i++) {
+            datagrams[i] = getDatagram(i);
+        }
+        return datagrams;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.unitselection.select.DiphoneTarget;
 import marytts.unitselection.select.HalfPhoneTarget;
 import marytts.unitselection.select.Target;
@@ -79,6 +80,7 @@ public class DiphoneUnitDatabase extends UnitDatabase {
         byte bleftName = targetCostFunction.getFeatureDefinition().getFeatureValueAsByte(iPhoneme, leftName);
         byte brightName = targetCostFunction.getFeatureDefinition().getFeatureValueAsByte(iPhoneme, rightName);
         FeatureVector[] fvs = targetCostFunction.getFeatureVectors();
+        PackedFeatureStore featureStore = fvs == null ? targetCostFunction.getFeatureStore() : null;
 
         //HashSet<DiphoneUnit> candidateUnitSet = new HashSet<DiphoneUnit>();
         TIntHashSet candidateUnitSet = new TIntHashSet();
@@ -90,21 +92,17 @@ public class DiphoneUnitDatabase extends UnitDatabase {
 
         // Now, clist is an array of halfphone unit indexes.
         for (int i = 0; i < clist.length; i++) {
-            Unit unit = unitReader.units[clist[i]];
-            FeatureVector fv = fvs != null ? fvs[unit.index] : targetCostFunction.getFeatureVector(unit);
-            byte bunitName = fv.byteValuedDiscreteFeatures[iPhoneme];
+            byte bunitName = getPhone(fvs, featureStore, clist[i], iPhoneme);
             // force correct phone symbol:
             if (bunitName != bleftName) continue;
             int iRightNeighbour = clist[i]+1;
             if (iRightNeighbour < numUnits) {
-                Unit rightNeighbour = unitReader.units[iRightNeighbour];
-                FeatureVector rfv = fvs != null ? fvs[iRightNeighbour] : targetCostFunction.getFeatureVector(rightNeighbour); 
-                byte brightUnitName = rfv.byteValuedDiscreteFeatures[iPhoneme];
+                byte brightUnitName = getPhone(fvs, featureStore, iRightNeighbour, iPhoneme);
                 if (brightUnitName == brightName) {
                     // Found a diphone -- add it to candidates
                     //DiphoneUnit diphoneUnit = new DiphoneUnit(unit, rightNeighbour);
                     //candidateUnitSet.add(diphoneUnit);
-                    candidateUnitSet.add(unit.index);
+                    candidateUnitSet.add(clist[i]);
                 }
             }
         }
@@ -115,21 +113,17 @@ public class DiphoneUnitDatabase extends UnitDatabase {
 
         // Now, clist is an array of halfphone unit indexes.
         for (int i = 0; i < clist.length; i++) {
-            Unit unit = unitReader.units[clist[i]];
-            FeatureVector fv = fvs != null ? fvs[unit.index] : targetCostFunction.getFeatureVector(unit);
-            byte bunitName = fv.byteValuedDiscreteFeatures[iPhoneme];
+            byte bunitName = getPhone(fvs, featureStore, clist[i], iPhoneme);
             // force correct phone symbol:
             if (bunitName != brightName) continue;
             int iLeftNeighbour = clist[i]-1;
             if (iLeftNeighbour >= 0) {
-                Unit leftNeighbour = unitReader.units[iLeftNeighbour];
-                FeatureVector lfv = fvs != null ? fvs[iLeftNeighbour] : targetCostFunction.getFeatureVector(leftNeighbour);
-                byte bleftUnitName = lfv.byteValuedDiscreteFeatures[iPhoneme];
+                byte bleftUnitName = getPhone(fvs, featureStore, iLeftNeighbour, iPhoneme);
                 if (bleftUnitName == bleftName) {
                     // Found a diphone -- add it to candidates
                     //DiphoneUnit diphoneUnit = new DiphoneUnit(leftNeighbour, unit);
                     //candidateUnitSet.add(diphoneUnit);
-                    candidateUnitSet.add(leftNeighbour.index);
+                    candidateUnitSet.add(iLeftNeighbour);
                 }
             }
         }
@@ -137,7 +131,7 @@ public class DiphoneUnitDatabase extends UnitDatabase {
         // now create ArrayList of ViterbiCandidates from the candidateUnitSet, blacklisting along the way:
         ArrayList<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(candidateUnitSet.size());
         for (int leftIndex : candidateUnitSet.toArray()) {
-            DiphoneUnit diphoneUnit = new DiphoneUnit(unitReader.units[leftIndex], unitReader.units[leftIndex+1]);
+            DiphoneUnit diphoneUnit = new DiphoneUnit(unitReader.getUnit(leftIndex), unitReader.getUnit(leftIndex+1));
             ViterbiCandidate candidate = new ViterbiCandidate(diphoneTarget, diphoneUnit, targetCostFunction);
             // Blacklisting:
             if (blacklist.equals("")) { // no blacklist
@@ -154,5 +148,15 @@ public class DiphoneUnitDatabase extends UnitDatabase {
         return candidates;
     }
 
+    /**
+     * Look up the phone feature of a unit from whichever feature storage the target cost function uses.
+     */
+    private byte getPhone(FeatureVector[] fvs, PackedFeatureStore featureStore, int unitIndex, int iPhoneme)
+    {
+        if (fvs != null) return fvs[unitIndex].byteValuedDiscreteFeatures[iPhoneme];
+        if (featureStore != null) return featureStore.getByteFeature(unitIndex, iPhoneme);
+        return targetCostFunction.getFeatureVector(unitReader.getUnit(unitIndex)).byteValuedDiscreteFeatures[iPhoneme];
+    }
+
 }
 
@@ -29,14 +29,22 @@ import java.nio.channels.FileChannel;
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.util.data.MaryHeader;
 
 
+/**
+ * Reader for unit feature files.
+ * When loaded from a memory-mapped file (the default), the unit features are kept
+ * in a {@link PackedFeatureStore} backed by the file itself, and individual
+ * {@link FeatureVector} objects are only created on request.
+ */
 public class FeatureFileReader
 {
     protected MaryHeader hdr;
     protected FeatureDefinition featureDefinition;
     protected FeatureVector[] featureVectors;
+    protected PackedFeatureStore featureStore;
     
     /**
      * Get a feature file reader representing the given feature file. 
@@ -88,11 +96,8 @@ public class FeatureFileReader
         }
         featureDefinition = new FeatureDefinition(dis);
         int numberOfUnits = dis.readInt();
-        featureVectors = new FeatureVector[numberOfUnits];
-        for (int i=0; i<numberOfUnits; i++) {
-            featureVectors[i] = featureDefinition.readFeatureVector(i,dis);
-        }
-
+        featureStore = new PackedFeatureStore(featureDefinition, numberOfUnits, dis);
+        featureVectors = null;
     }
     
     protected void loadFromByteBuffer(String fileName) throws IOException, MaryConfigurationException
@@ -111,11 +116,8 @@ public class FeatureFileReader
         }
         featureDefinition = new FeatureDefinition(bb);
         int numberOfUnits = bb.getInt();
-        featureVectors = new FeatureVector[numberOfUnits];
-        for (int i=0; i<numberOfUnits; i++) {
-            featureVectors[i] = featureDefinition.readFeatureVector(i, bb);
-        }
-
+        featureStore = new PackedFeatureStore(featureDefinition, numberOfUnits, bb);
+        featureVectors = null;
     }
 
     /**
@@ -125,7 +127,10 @@ public class FeatureFileReader
      */
     public FeatureVector getFeatureVector(int unitIndex)
     {
-        return featureVectors[unitIndex];
+        if (featureVectors != null) {
+            return featureVectors[unitIndex];
+        }
+        return featureStore.getFeatureVector(unitIndex);
     }
     
     /**
@@ -134,16 +139,35 @@ public class FeatureFileReader
      */
     public FeatureVector[] getCopyOfFeatureVectors()
     {
-       return (FeatureVector[]) featureVectors.clone(); 
+       return getFeatureVectors().clone();
     }
 
     /**
      * Return the internal array of feature vectors.
+     * If the features are held in a packed feature store, this creates one
+     * feature vector object per unit on the first call; code that only needs
+     * to read feature values should use {@link #getFeatureStore()} instead.
      * @return the internal array of feature vectors.
      */
-    public FeatureVector[] getFeatureVectors()
+    public synchronized FeatureVector[] getFeatureVectors()
+    {
+        if (featureVectors == null && featureStore != null) {
+            FeatureVector[] fvs = new FeatureVector[featureStore.getNumberOfUnits()];
+            for (int i=0; i<fvs.length; i++) {
+                fvs[i] = featureStore.getFeatureVector(i);
+            }
+            featureVectors = fvs;
+        }
+        return featureVectors; 
+    }
+
+    /**
+     * Get the packed feature store holding the unit features, if any.
+     * @return the feature store, or null if the features were loaded as individual feature vectors.
+     */
+    public PackedFeatureStore getFeatureStore()
     {
-       return featureVectors; 
+        return featureStore;
     }
     
     /**
@@ -175,6 +199,7 @@ public class FeatureFileReader
         FeatureVector[] newFV = new FeatureVector[this.getNumberOfUnits()];
         
         for ( int i=0; i<this.getNumberOfUnits(); i++ ) {
+            FeatureVector fv = getFeatureVector(i);
             
             // create features array
             byte[]  byteFeatures  = new byte[noByteFeatures];
@@ -187,13 +212,13 @@ public class FeatureFileReader
             
             for ( int j=0; j < featureIndexes.length; j++ ) {
                 if( newFeatureDefinition.isByteFeature(j) ) {
-                    byteFeatures[countByteFeatures++] = featureVectors[i].getByteFeature(featureIndexes[j]);
+                    byteFeatures[countByteFeatures++] = fv.getByteFeature(featureIndexes[j]);
                 }
                 else if( newFeatureDefinition.isShortFeature(j) ) {
-                    shortFeatures[countShortFeatures++] = featureVectors[i].getShortFeature(featureIndexes[j]); 
+                    shortFeatures[countShortFeatures++] = fv.getShortFeature(featureIndexes[j]); 
                 }
                 else if( newFeatureDefinition.isContinuousFeature(j) ) {
-                    continiousFeatures[countFloatFeatures++] = featureVectors[i].getContinuousFeature(featureIndexes[j]);
+                    continiousFeatures[countFloatFeatures++] = fv.getContinuousFeature(featureIndexes[j]);
                 }
             }
             
@@ -210,7 +235,7 @@ public class FeatureFileReader
      */
     public FeatureVector getFeatureVector(Unit unit)
     {
-        return featureVectors[unit.index];
+        return getFeatureVector(unit.index);
     }
 
     public FeatureDefinition getFeatureDefinition()
@@ -219,6 +244,9 @@ public class FeatureFileReader
     }
     
     public int getNumberOfUnits() {
+        if (featureVectors == null && featureStore != null) {
+            return featureStore.getNumberOfUnits();
+        }
         return( featureVectors.length );
     }
 }
@@ -28,7 +28,7 @@ import java.nio.channels.FileChannel;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
-import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.util.data.MaryHeader;
 
 
@@ -64,10 +64,8 @@ public class HalfPhoneFeatureFileReader extends FeatureFileReader
             "Halfphone unit feature file contains incompatible feature definitions for left and right units -- this should not happen!";
         featureDefinition = leftWeights; // one of them, for super class
         int numberOfUnits = dis.readInt();
-        featureVectors = new FeatureVector[numberOfUnits];
-        for (int i=0; i<numberOfUnits; i++) {
-            featureVectors[i] = featureDefinition.readFeatureVector(i,dis);
-        }
+        featureStore = new PackedFeatureStore(featureDefinition, numberOfUnits, dis);
+        featureVectors = null;
     }
     
     @Override
@@ -90,10 +88,8 @@ public class HalfPhoneFeatureFileReader extends FeatureFileReader
             "Halfphone unit feature file contains incompatible feature definitions for left and right units -- this should not happen!";
         featureDefinition = leftWeights; // one of them, for super class
         int numberOfUnits = bb.getInt();
-        featureVectors = new FeatureVector[numberOfUnits];
-        for (int i=0; i<numberOfUnits; i++) {
-            featureVectors[i] = featureDefinition.readFeatureVector(i, bb);
-        }
+        featureStore = new PackedFeatureStore(featureDefinition, numberOfUnits, bb);
+        featureVectors = null;
     }
 
     public FeatureDefinition getLeftWeights()
@@ -26,6 +26,7 @@ import java.util.Properties;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.util.data.Datagram;
+import marytts.util.io.General;
 
 
 public class LPCTimelineReader extends TimelineReader
@@ -69,6 +70,41 @@ public class LPCTimelineReader extends TimelineReader
     public float getLPCMin() { return lpcMin; }
     
     public float getLPCRange() { return lpcRange; }
+
+    /**
+     * Read the LPC coefficients of a datagram in a span from this timeline,
+     * without creating an LPCDatagram.
+     * @param span a span of datagrams read from this timeline
+     * @param i the index of the datagram in span
+     * @param coeffs the array to write the coefficients to; its length must be at least {@link #getLPCOrder()}.
+     * @see LPCDatagram#getCoeffs(float, float)
+     */
+    public void getCoeffs(DatagramSpan span, int i, float[] coeffs)
+    {
+        for (int k=0; k<lpcOrder; k++) {
+            coeffs[k] = General.unQuantize(span.getShort(i, 2*k), lpcMin, lpcRange);
+        }
+    }
+
+    /**
+     * Read the LPC residual of a datagram in a span from this timeline,
+     * without creating an LPCDatagram.
+     * @param span a span of datagrams read from this timeline
+     * @param i the index of the datagram in span
+     * @param residual the array to write the residual to, or null to only get its length.
+     * @return the number of residual samples in the datagram
+     * @see LPCDatagram#getResidual()
+     */
+    public int getResidual(DatagramSpan span, int i, short[] residual)
+    {
+        int residualLength = span.getLength(i) - 2*lpcOrder;
+        if (residual != null) {
+            for (int k=0; k<residualLength; k++) {
+                residual[k] = General.ulawToShort(span.getByte(i, 2*lpcOrder+k));
+            }
+        }
+        return residualLength;
+    }
     
     
     /**
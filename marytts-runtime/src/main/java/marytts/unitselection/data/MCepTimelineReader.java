@@ -60,6 +60,21 @@ public class MCepTimelineReader extends TimelineReader
     }
 
     public int getOrder() { return order; }
+
+    /**
+     * Read the Mel-Cepstrum coefficients of a datagram in a span from this timeline,
+     * without creating an MCepDatagram.
+     * @param span a span of datagrams read from this timeline
+     * @param i the index of the datagram in span
+     * @param coeffs the array to write the coefficients to; its length must be at least {@link #getOrder()}.
+     * @see #getDatagramSpan(long, long, int, long[])
+     */
+    public void getCoeffs(DatagramSpan span, int i, float[] coeffs)
+    {
+        for (int k=0; k<order; k++) {
+            coeffs[k] = span.getFloat(i, 4*k);
+        }
+    }
     
     
     /**
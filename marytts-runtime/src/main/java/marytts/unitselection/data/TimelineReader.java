@@ -43,6 +43,7 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Vector;
 
 import marytts.exceptions.MaryConfigurationException;
@@ -487,6 +488,7 @@ public class TimelineReader
 
         while (true) {
             if (!canReadDatagramHeader(bb)) {
+                bytePos += bb.position();
                 bb = loadByteBuffer(bytePos, bufSize);
                 assert canReadDatagramHeader(bb);
             }
@@ -497,6 +499,7 @@ public class TimelineReader
                 int datagramNumBytes = Datagram.NUM_HEADER_BYTES+d.getLength();
                 // need to make sure we return a byte buffer from which d can be read
                 if (!canReadAmount(bb, datagramNumBytes)) {
+                    bytePos += posBefore;
                     bb = loadByteBuffer(bytePos, Math.max(datagramNumBytes, bufSize));
                 }
                 assert canReadAmount(bb, datagramNumBytes);
@@ -804,6 +807,155 @@ public class TimelineReader
         return getDatagrams( unit, reqSampleRate, null );
     }
 
+    /////////////////////// as views ////////////////////////////
+
+    /**
+     * Get a view on the datagrams spanning a particular time range from a particular time location,
+     * and return the time offset between the time request and the actual location of the first
+     * returned datagram. The datagrams are selected exactly as by
+     * {@link #getDatagrams(long, long, int, long[])}, but the returned span refers to the datagrams'
+     * data where it lies in the timeline, rather than copying it into Datagram objects.
+     * For memory-mapped timelines, this does not allocate any memory per datagram;
+     * otherwise, the data of all datagrams in the span is copied into one array.
+     * <p>
+     * The span contains the datagrams' data as it is stored in the timeline, irrespective of
+     * the subclass of Datagram which this timeline reader creates in {@link #getNextDatagram(ByteBuffer)}.
+     * 
+     * @param targetTimeInSamples the requested position, in samples. Must be non-negative and
+     * less than the total duration of the timeline.
+     * @param timeSpanInSamples the requested time span, in samples.
+     * @param reqSampleRate the sample rate for the requested and returned times. Must be positive.
+     * @param returnOffset an optional output field, as for {@link #getDatagrams(long, long, int, long[])}.
+     * 
+     * @return a span containing at least one datagram. If less than the requested amount of datagrams
+     * can be read, the number of datagrams that can be read is returned.
+     * @throws IllegalArgumentException if targetTimeInSamples is negative, or if a returnOffset of length 0 is given.
+     * @throws IOException, BufferUnderflowException if no data can be read at the given target time
+     */
+    public DatagramSpan getDatagramSpan(long targetTimeInSamples, long timeSpanInSamples, int reqSampleRate, long[] returnOffset) throws IOException {
+        return getDatagramSpan(targetTimeInSamples, -1, timeSpanInSamples, reqSampleRate, returnOffset);
+    }
+
+    /**
+     * Get a view on the datagrams spanning a particular time range from a particular time location,
+     * given in the timeline's sampling rate.
+     * @see #getDatagramSpan(long, long, int, long[])
+     */
+    public DatagramSpan getDatagramSpan(long targetTimeInSamples, long timeSpanInSamples) throws IOException {
+        return getDatagramSpan(targetTimeInSamples, timeSpanInSamples, sampleRate, null);
+    }
+
+    /**
+     * Get a view on a given number of datagrams from a particular time location.
+     * The datagrams are selected exactly as by {@link #getDatagrams(long, int, int, long[])}.
+     * @see #getDatagramSpan(long, long, int, long[])
+     */
+    public DatagramSpan getDatagramSpan(long targetTimeInSamples, int number, int reqSampleRate, long[] returnOffset) throws IOException {
+        return getDatagramSpan(targetTimeInSamples, number, -1, reqSampleRate, returnOffset);
+    }
+
+    /**
+     * Get a view on the datagrams spanning a particular unit.
+     * @see #getDatagramSpan(long, long, int, long[])
+     */
+    public DatagramSpan getDatagramSpan(Unit unit, int reqSampleRate) throws IOException {
+        return getDatagramSpan(unit.startTime, (long)(unit.duration), reqSampleRate, null);
+    }
+
+    private DatagramSpan getDatagramSpan(long targetTimeInSamples, int nDatagrams, long timeSpanInSamples, int reqSampleRate, long[] returnOffset) 
+    throws IllegalArgumentException, IOException {
+        /* Check the input arguments */
+        if ( targetTimeInSamples < 0 ) {
+            throw new IllegalArgumentException( "Can't get a datagram from a negative time position (given time position was [" + targetTimeInSamples + "])." );
+        }
+        if ( reqSampleRate <= 0 ) {
+            throw new IllegalArgumentException( "sample rate must be positive, but is "+reqSampleRate );
+        }
+        boolean byNumber = timeSpanInSamples <= 0;
+        if (byNumber && nDatagrams <= 0) {
+            nDatagrams = 1; // return at least one datagram
+        }
+        long scaledTargetTime = scaleTime( reqSampleRate, targetTimeInSamples );
+        Pair<ByteBuffer, Long> p = getByteBufferAtTime(scaledTargetTime);
+        ByteBuffer bb = p.getFirst();
+        long time = p.getSecond();
+        if ( returnOffset != null ) {
+            if (returnOffset.length == 0) {
+                throw new IllegalArgumentException("If returnOffset is given, it must have length of at least 1");
+            }
+            returnOffset[0] = unScaleTime( reqSampleRate, (scaledTargetTime - time) );
+        }
+        long endTime = byNumber ? -1 : scaleTime( reqSampleRate, (targetTimeInSamples+timeSpanInSamples) );
+
+        // With a memory-mapped timeline, the span refers to the mapped buffer;
+        // otherwise, the data is read piecewise and must be collected in one array.
+        boolean mapped = mappedBB != null;
+        byte[] collected = mapped ? null : new byte[1024];
+        int collectedLength = 0;
+        int capacity = byNumber ? nDatagrams : 16;
+        int[] positions = new int[capacity];
+        int[] lengths = new int[capacity];
+        long[] durations = new long[capacity];
+        int nRead = 0;
+        boolean haveReadAll = false;
+        while (!haveReadAll) {
+            if (bb.limit() - bb.position() < Datagram.NUM_HEADER_BYTES) {
+                if (mapped) break; // end of the datagram zone
+                // we may have reached the end of the current byte buffer... try reading another:
+                try {
+                    bb = getByteBufferAtTime(time).getFirst();
+                } catch (Exception e) {
+                    break;
+                }
+                if (bb.limit() - bb.position() < Datagram.NUM_HEADER_BYTES) break;
+            }
+            int headerPos = bb.position();
+            long duration = bb.getLong();
+            int length = bb.getInt();
+            if (duration < 0 || length < 0) {
+                throw new IOException("Cannot read datagram with duration "+duration+" and length "+length);
+            }
+            if (bb.limit() - bb.position() < length) {
+                if (mapped) break;
+                bb = getByteBufferAtTime(time).getFirst();
+                headerPos = bb.position();
+                bb.position(headerPos + Datagram.NUM_HEADER_BYTES);
+                if (bb.limit() - bb.position() < length) break;
+            }
+            if (nRead == positions.length) {
+                capacity = 2 * capacity;
+                positions = Arrays.copyOf(positions, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+            }
+            if (mapped) {
+                positions[nRead] = bb.position();
+            } else {
+                if (collectedLength + length > collected.length) {
+                    collected = Arrays.copyOf(collected, Math.max(2*collected.length, collectedLength+length));
+                }
+                bb.get(collected, collectedLength, length);
+                positions[nRead] = collectedLength;
+                collectedLength += length;
+            }
+            bb.position(headerPos + Datagram.NUM_HEADER_BYTES + length);
+            lengths[nRead] = length;
+            time += duration; // duration in timeline sample rate
+            durations[nRead] = reqSampleRate != sampleRate ? unScaleTime(reqSampleRate, duration) : duration;
+            nRead++;
+            if (byNumber && nRead == nDatagrams || !byNumber && time >= endTime) {
+                haveReadAll = true;
+            }
+        }
+        if (nRead < capacity) {
+            positions = Arrays.copyOf(positions, nRead);
+            lengths = Arrays.copyOf(lengths, nRead);
+            durations = Arrays.copyOf(durations, nRead);
+        }
+        ByteBuffer data = mapped ? bb : ByteBuffer.wrap(collected, 0, collectedLength);
+        return new DatagramSpan(data, positions, lengths, durations);
+    }
+
     /*****************************************/
     /* HELPER CLASSES                        */
     /*****************************************/
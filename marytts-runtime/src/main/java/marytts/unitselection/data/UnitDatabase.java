@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import marytts.cart.CART;
+import marytts.server.Deadline;
 import marytts.unitselection.select.JoinCostFunction;
 import marytts.unitselection.select.StatisticalCostFunction;
 import marytts.unitselection.select.Target;
@@ -147,6 +148,10 @@ public class UnitDatabase
         //get the cart tree and extract the candidates
         int[] clist = (int[]) preselectionCART.interpret(target,backtrace);
         logger.debug("For target "+target+", selected " + clist.length + " units");
+        if (clist.length > 20 && Deadline.degrade("candidates")) {
+            // time is short: compute the target costs of only some of the candidates
+            clist = sample(clist, Math.max(20, clist.length / 4));
+        }
 
         // Now, clist is an array of unit indexes.
         List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
@@ -170,6 +175,25 @@ public class UnitDatabase
 
         return candidates;
     }
+
+    /**
+     * Pick the given number of units, spread evenly over the list. The preselection tree
+     * lists units in database order, so the first few would all come from the same recordings.
+     * @param units the unit indexes to choose from
+     * @param n the number of units to pick
+     * @return n of the units, in their original order, or units itself if it has no more than n.
+     */
+    static int[] sample(int[] units, int n)
+    {
+        if (n >= units.length) {
+            return units;
+        }
+        int[] sample = new int[n];
+        for (int i = 0; i < n; i++) {
+            sample[i] = units[(int) ((long) i * units.length / n)];
+        }
+        return sample;
+    }
     
     /**
      * For debugging, return the basename of the original audio file from which
@@ -31,17 +31,24 @@
  */
 package marytts.unitselection.data;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.util.data.MaryHeader;
 
 
 /**
- * Loads a unit file in memory and provides accessors to the start times and durations.
+ * Maps a unit file into memory and provides accessors to the start times and durations.
+ * The unit data is read directly from the memory-mapped file when it is needed,
+ * so that loading is independent of the number of units, and the data can be shared
+ * between several processes via the page cache.
+ * Use the primitive accessors {@link #getStartTime(int)} and {@link #getDuration(int)}
+ * where no {@link Unit} object is needed.
+ * Alternatively, all units can be created at load time (see {@link #load(String, boolean)}),
+ * which uses more memory but creates no objects when the units are used.
  * 
  * @author sacha
  *
@@ -52,7 +59,11 @@ public class UnitFileReader
     private MaryHeader hdr = null;
     private int numberOfUnits = 0;
     private int sampleRate = 0;
-    Unit[] units; // this has visibility "default" rather than private so that other classes in the same package can access it directly, for efficiency reasons
+    private ByteBuffer unitData; // start time (long) and duration (int) for each unit
+    private Unit[] units = null; // all units, if preloaded
+    
+    /** The number of bytes per unit in the unit file. */
+    private static final int UNIT_SIZE = 12;
     
     /****************/
     /* CONSTRUCTORS */
@@ -77,35 +88,59 @@ public class UnitFileReader
     }
     
     /**
-     * Load the given unit file
+     * Load the given unit file, reading the units from the mapped file on demand.
      * @param fileName the unit file to read
      * @throws IOException if a problem occurs while reading
      */
     public void load(String fileName) throws IOException, MaryConfigurationException
     {
-        /* Open the file */
-        DataInputStream dis = new DataInputStream( new BufferedInputStream( new FileInputStream( fileName ) ) );
+        load(fileName, false);
+    }
+
+    /**
+     * Load the given unit file
+     * @param fileName the unit file to read
+     * @param preload whether to create all units now, rather than whenever {@link #getUnit(int)} is called
+     * @throws IOException if a problem occurs while reading
+     */
+    public void load(String fileName, boolean preload) throws IOException, MaryConfigurationException
+    {
+        /* Map the file */
+        FileInputStream fis = new FileInputStream(fileName);
+        ByteBuffer bb;
+        try {
+            FileChannel fc = fis.getChannel();
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            fis.close();
+        }
         /* Load the Mary header */
-        hdr = new MaryHeader( dis );
+        hdr = new MaryHeader( bb );
         if ( hdr.getType() != MaryHeader.UNITS ) {
             throw new MaryConfigurationException( "File [" + fileName + "] is not a valid Mary Units file." );
         }
         /* Read the number of units */
-        numberOfUnits = dis.readInt();
+        numberOfUnits = bb.getInt();
         if ( numberOfUnits < 0 ) {
             throw new MaryConfigurationException( "File [" + fileName + "] has a negative number of units. Aborting." );
         }
         /* Read the sample rate */
-        sampleRate = dis.readInt();
+        sampleRate = bb.getInt();
         if ( sampleRate < 0 ) {
             throw new MaryConfigurationException( "File [" + fileName + "] has a negative number sample rate. Aborting." );
         }
-        units = new Unit[numberOfUnits];
-        /* Read the start times and durations */
-        for ( int i = 0; i < numberOfUnits; i++ ) {
-            long startTime = dis.readLong();
-            int duration = dis.readInt();
-            units[i] = new Unit(startTime, duration, i);
+        /* The start times and durations are read on demand */
+        if ( bb.remaining() < (long) numberOfUnits * UNIT_SIZE ) {
+            throw new MaryConfigurationException( "File [" + fileName + "] is truncated: expected data for " + numberOfUnits + " units." );
+        }
+        unitData = bb.slice();
+        units = null;
+        if (preload) {
+            Unit[] all = new Unit[numberOfUnits];
+            for ( int i = 0; i < numberOfUnits; i++ ) {
+                all[i] = new Unit(getStartTime(i), getDuration(i), i);
+            }
+            units = all;
         }
     }
     
@@ -136,7 +171,38 @@ public class UnitFileReader
      * @return The considered unit.
       */
     public Unit getUnit( int i ) {
-        return units[i];
+        if (units != null) {
+            return units[i];
+        }
+        return new Unit(getStartTime(i), getDuration(i), i);
+    }
+
+    /**
+     * Get the start time of unit number i, without creating a unit object.
+     * 
+     * @param i The index of the considered unit.
+     * @return The start time, in samples.
+     */
+    public long getStartTime( int i ) {
+        checkIndex(i);
+        return unitData.getLong(i*UNIT_SIZE);
+    }
+
+    /**
+     * Get the duration of unit number i, without creating a unit object.
+     * 
+     * @param i The index of the considered unit.
+     * @return The duration, in samples, or -1 for edge units.
+     */
+    public int getDuration( int i ) {
+        checkIndex(i);
+        return unitData.getInt(i*UNIT_SIZE + 8);
+    }
+
+    private void checkIndex( int i ) {
+        if ( i < 0 || i >= numberOfUnits ) {
+            throw new IndexOutOfBoundsException( "Unit index " + i + " is not between 0 and " + numberOfUnits );
+        }
     }
 
     /**
@@ -160,8 +226,8 @@ public class UnitFileReader
      */
     public Unit getNextUnit(Unit u)
     {
-        if (u == null || u.index >= units.length-1 || u.index < 0) return null;
-        return units[u.index+1];
+        if (u == null || u.index >= numberOfUnits-1 || u.index < 0) return null;
+        return getUnit(u.index+1);
     }
     
     /**
@@ -171,8 +237,8 @@ public class UnitFileReader
      */
     public Unit getPreviousUnit(Unit u)
     {
-        if (u == null || u.index >= units.length || u.index <= 0) return null;
-        return units[u.index-1];
+        if (u == null || u.index >= numberOfUnits || u.index <= 0) return null;
+        return getUnit(u.index-1);
     }
 
     /**
@@ -183,7 +249,7 @@ public class UnitFileReader
      * @return true if the unit is an edge unit in the unit file, false otherwise
      */
     public boolean isEdgeUnit(int i) {
-        return units[i].isEdgeUnit();
+        return getDuration(i) == -1;
     }
     
 }
@@ -26,6 +26,7 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.FeatureFileReader;
 import marytts.unitselection.data.HalfPhoneFeatureFileReader;
@@ -95,7 +96,7 @@ public class DiphoneFFRTargetCostFunction implements TargetCostFunction
 
     public FeatureVector getFeatureVector(Unit unit)
     {
-        return tcfForHalfphones.featureVectors[unit.index];
+        return tcfForHalfphones.getFeatureVector(unit);
     }
 
     /**
@@ -142,6 +143,13 @@ public class DiphoneFFRTargetCostFunction implements TargetCostFunction
         }
         return null;
     }
+
+    public PackedFeatureStore getFeatureStore() {
+        if (tcfForHalfphones != null) {
+            return tcfForHalfphones.getFeatureStore();
+        }
+        return null;
+    }
     
     
     
@@ -28,6 +28,7 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.features.TargetFeatureComputer;
 import marytts.server.MaryProperties;
 import marytts.signalproc.display.Histogram;
@@ -43,6 +44,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
     protected WeightFunc[] weightFunction;
     protected TargetFeatureComputer targetFeatureComputer;
     protected FeatureVector[] featureVectors;
+    protected PackedFeatureStore featureStore;
     protected FeatureDefinition featureDefinition;
     protected boolean[] weightsNonZero;
 
@@ -73,13 +75,13 @@ public class FFRTargetCostFunction implements TargetCostFunction
         nCostComputations++; // for debug
         FeatureVector targetFeatures = target.getFeatureVector(); 
         assert targetFeatures != null: "Target "+target+" does not have pre-computed feature vector";
-        FeatureVector unitFeatures = featureVectors[unit.index];
+        int unitIndex = unit.index;
         int nBytes = targetFeatures.byteValuedDiscreteFeatures.length;
         int nShorts = targetFeatures.shortValuedDiscreteFeatures.length;
         int nFloats = targetFeatures.continuousFeatures.length;
-        assert nBytes == unitFeatures.byteValuedDiscreteFeatures.length;
-        assert nShorts == unitFeatures.shortValuedDiscreteFeatures.length;
-        assert nFloats == unitFeatures.continuousFeatures.length;
+        assert nBytes == featureDefinition.getNumberOfByteFeatures();
+        assert nShorts == featureDefinition.getNumberOfShortFeatures();
+        assert nFloats == featureDefinition.getNumberOfContinuousFeatures();
 
         float[] weightVector = weights.getFeatureWeights();
         // Now the actual computation
@@ -91,12 +93,12 @@ public class FFRTargetCostFunction implements TargetCostFunction
                     float weight = weightVector[i];
                     if ( featureDefinition.hasSimilarityMatrix(i) ) {
                         byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[i];
-                        byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[i];
+                        byte unitFeatValueIndex = getUnitByteFeature(unitIndex, i);
                         float similarity = featureDefinition.getSimilarity(i, unitFeatValueIndex, targetFeatValueIndex);
                         cost += similarity * weight;
                         if (debugShowCostGraph) cumulWeightedCosts[i] += similarity * weight;
                     }
-                    else if (targetFeatures.byteValuedDiscreteFeatures[i] != unitFeatures.byteValuedDiscreteFeatures[i]) {
+                    else if (targetFeatures.byteValuedDiscreteFeatures[i] != getUnitByteFeature(unitIndex, i)) {
                         cost += weight;
                         if (debugShowCostGraph) cumulWeightedCosts[i] += weight;
                     }
@@ -109,7 +111,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
                 if (weightsNonZero[i]) {
                     float weight = weightVector[i];
                     //if (targetFeatures.getShortFeature(i) != unitFeatures.getShortFeature(i)) {
-                    if (targetFeatures.shortValuedDiscreteFeatures[i-nBytes] != unitFeatures.shortValuedDiscreteFeatures[i-nBytes]) {
+                    if (targetFeatures.shortValuedDiscreteFeatures[i-nBytes] != getUnitShortFeature(unitIndex, i)) {
                         cost += weight;
                         if (debugShowCostGraph) cumulWeightedCosts[i] += weight;
                     }
@@ -125,7 +127,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
                     //float a = targetFeatures.getContinuousFeature(i);
                     float a = targetFeatures.continuousFeatures[i-nDiscrete];
                     //float b = unitFeatures.getContinuousFeature(i);
-                    float b = unitFeatures.continuousFeatures[i-nDiscrete];
+                    float b = getUnitContinuousFeature(unitIndex, i);
                     //if (!Float.isNaN(a) && !Float.isNaN(b)) {
                     // Implementation of isNaN() is: (v != v).
                     if (!(a != a) && !(b != b)) {
@@ -161,13 +163,13 @@ public class FFRTargetCostFunction implements TargetCostFunction
         
         FeatureVector targetFeatures = target.getFeatureVector(); 
         assert targetFeatures != null: "Target "+target+" does not have pre-computed feature vector";
-        FeatureVector unitFeatures = featureVectors[unit.index];
+        int unitIndex = unit.index;
         int nBytes = targetFeatures.byteValuedDiscreteFeatures.length;
         int nShorts = targetFeatures.shortValuedDiscreteFeatures.length;
         int nFloats = targetFeatures.continuousFeatures.length;
-        assert nBytes == unitFeatures.byteValuedDiscreteFeatures.length;
-        assert nShorts == unitFeatures.shortValuedDiscreteFeatures.length;
-        assert nFloats == unitFeatures.continuousFeatures.length;
+        assert nBytes == featureDefinition.getNumberOfByteFeatures();
+        assert nShorts == featureDefinition.getNumberOfShortFeatures();
+        assert nFloats == featureDefinition.getNumberOfContinuousFeatures();
         
         int featureIndex = this.featureDefinition.getFeatureIndex(featureName);
         float[] weightVector = weights.getFeatureWeights();
@@ -178,12 +180,12 @@ public class FFRTargetCostFunction implements TargetCostFunction
                 float weight = weightVector[featureIndex];
                 if ( featureDefinition.hasSimilarityMatrix(featureIndex) ) {
                     byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[featureIndex];
-                    byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[featureIndex];
+                    byte unitFeatValueIndex = getUnitByteFeature(unitIndex, featureIndex);
                     float similarity = featureDefinition.getSimilarity(featureIndex, unitFeatValueIndex, targetFeatValueIndex);
                     cost = similarity * weight;
                     if (debugShowCostGraph) cumulWeightedCosts[featureIndex] += similarity * weight;
                 }
-                else if (targetFeatures.byteValuedDiscreteFeatures[featureIndex] != unitFeatures.byteValuedDiscreteFeatures[featureIndex]) {
+                else if (targetFeatures.byteValuedDiscreteFeatures[featureIndex] != getUnitByteFeature(unitIndex, featureIndex)) {
                     cost = weight;
                     if (debugShowCostGraph) cumulWeightedCosts[featureIndex] += weight;
                 }
@@ -192,7 +194,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
             if (weightsNonZero[featureIndex]) {
                 float weight = weightVector[featureIndex];
                 //if (targetFeatures.getShortFeature(i) != unitFeatures.getShortFeature(i)) {
-                if (targetFeatures.shortValuedDiscreteFeatures[featureIndex-nBytes] != unitFeatures.shortValuedDiscreteFeatures[featureIndex-nBytes]) {
+                if (targetFeatures.shortValuedDiscreteFeatures[featureIndex-nBytes] != getUnitShortFeature(unitIndex, featureIndex)) {
                     cost = weight;
                     if (debugShowCostGraph) cumulWeightedCosts[featureIndex] += weight;
                 }
@@ -204,7 +206,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
                 //float a = targetFeatures.getContinuousFeature(i);
                 float a = targetFeatures.continuousFeatures[featureIndex-nDiscrete];
                 //float b = unitFeatures.getContinuousFeature(i);
-                float b = unitFeatures.continuousFeatures[featureIndex-nDiscrete];
+                float b = getUnitContinuousFeature(unitIndex, featureIndex);
                 //if (!Float.isNaN(a) && !Float.isNaN(b)) {
                 // Implementation of isNaN() is: (v != v).
                 if (!(a != a) && !(b != b)) {
@@ -218,6 +220,45 @@ public class FFRTargetCostFunction implements TargetCostFunction
         }
         return cost;
     }
+
+    /**
+     * Get a byte-valued feature of a unit, without creating a feature vector object
+     * if the features are held in a packed feature store.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the index of the feature
+     * @return the feature value
+     */
+    protected final byte getUnitByteFeature(int unitIndex, int featureIndex)
+    {
+        if (featureVectors != null) return featureVectors[unitIndex].byteValuedDiscreteFeatures[featureIndex];
+        return featureStore.getByteFeature(unitIndex, featureIndex);
+    }
+
+    /**
+     * Get a short-valued feature of a unit.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the overall index of the feature
+     * @return the feature value
+     * @see #getUnitByteFeature(int, int)
+     */
+    protected final short getUnitShortFeature(int unitIndex, int featureIndex)
+    {
+        if (featureVectors != null) return featureVectors[unitIndex].getShortFeature(featureIndex);
+        return featureStore.getShortFeature(unitIndex, featureIndex);
+    }
+
+    /**
+     * Get a continuous feature of a unit.
+     * @param unitIndex the index of the unit
+     * @param featureIndex the overall index of the feature
+     * @return the feature value
+     * @see #getUnitByteFeature(int, int)
+     */
+    protected final float getUnitContinuousFeature(int unitIndex, int featureIndex)
+    {
+        if (featureVectors != null) return featureVectors[unitIndex].getContinuousFeature(featureIndex);
+        return featureStore.getContinuousFeature(unitIndex, featureIndex);
+    }
         
 
     /**
@@ -244,7 +285,8 @@ public class FFRTargetCostFunction implements TargetCostFunction
     throws IOException
     {
         this.featureDefinition = ffr.getFeatureDefinition();
-        this.featureVectors = ffr.getFeatureVectors();
+        this.featureStore = ffr.getFeatureStore();
+        this.featureVectors = featureStore != null ? null : ffr.getFeatureVectors();
         if (weightsStream != null) {
             MaryUtils.getLogger("TargetCostFeatures").debug("Overwriting target cost weights from file");
             // overwrite weights from file
@@ -307,7 +349,8 @@ public class FFRTargetCostFunction implements TargetCostFunction
      */
     public FeatureVector getFeatureVector(Unit unit)
     {
-        return featureVectors[unit.index];
+        if (featureVectors != null) return featureVectors[unit.index];
+        return featureStore.getFeatureVector(unit.index);
     }
     
     /**
@@ -322,13 +365,13 @@ public class FFRTargetCostFunction implements TargetCostFunction
     {
         int featureIndex = featureDefinition.getFeatureIndex(featureName);
         if (featureDefinition.isByteFeature(featureIndex)) {
-            byte value = featureVectors[unit.index].getByteFeature(featureIndex);
+            byte value = getUnitByteFeature(unit.index, featureIndex);
             return featureDefinition.getFeatureValueAsString(featureIndex, value);
         } else if (featureDefinition.isShortFeature(featureIndex)) {
-            short value = featureVectors[unit.index].getShortFeature(featureIndex);
+            short value = getUnitShortFeature(unit.index, featureIndex);
             return featureDefinition.getFeatureValueAsString(featureIndex, value);
         } else { // continuous -- return float as string
-            float value = featureVectors[unit.index].getContinuousFeature(featureIndex);
+            float value = getUnitContinuousFeature(unit.index, featureIndex);
             return String.valueOf(value);
         }
     }
@@ -380,5 +423,10 @@ public class FFRTargetCostFunction implements TargetCostFunction
         return featureVectors;
     }
 
+    public PackedFeatureStore getFeatureStore()
+    {
+        return featureStore;
+    }
+
 }
 
@@ -96,7 +96,8 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction
         this.leftWeights = ffr.getLeftWeights();
         this.featureDefinition = this.leftWeights;
         this.rightWeights = ffr.getRightWeights();
-        this.featureVectors = ffr.getFeatureVectors();
+        this.featureStore = ffr.getFeatureStore();
+        this.featureVectors = featureStore != null ? null : ffr.getFeatureVectors();
 
         if (weightsFile != null) {
             MaryUtils.getLogger("TargetCostFeatures").debug("Overwriting target cost weights from file "+weightsFile);
@@ -176,7 +177,7 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction
      */
     public FeatureVector getUnitFeatures(Unit unit)
     {
-        return featureVectors[unit.index];
+        return getFeatureVector(unit);
     }
     
     /**
@@ -191,13 +192,13 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction
     {
         int featureIndex = featureDefinition.getFeatureIndex(featureName);
         if (featureDefinition.isByteFeature(featureIndex)) {
-            byte value = featureVectors[unit.index].getByteFeature(featureIndex);
+            byte value = getUnitByteFeature(unit.index, featureIndex);
             return featureDefinition.getFeatureValueAsString(featureIndex, value);
         } else if (featureDefinition.isShortFeature(featureIndex)) {
-            short value = featureVectors[unit.index].getShortFeature(featureIndex);
+            short value = getUnitShortFeature(unit.index, featureIndex);
             return featureDefinition.getFeatureValueAsString(featureIndex, value);
         } else { // continuous -- return float as string
-            float value = featureVectors[unit.index].getContinuousFeature(featureIndex);
+            float value = getUnitContinuousFeature(unit.index, featureIndex);
             return String.valueOf(value);
         }
     }
@@ -26,6 +26,7 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
 import marytts.unitselection.data.FeatureFileReader;
 import marytts.unitselection.data.Unit;
 
@@ -106,6 +107,14 @@ public interface TargetCostFunction
      * @return the full array of feature vectors, or null if this method is not supported.
      */
     public FeatureVector[] getFeatureVectors();
+
+    /**
+     * Get the packed store of all unit features. This is the most memory-efficient
+     * way of accessing unit features.
+     * @return the feature store, or null if the features are held as individual feature vectors.
+     * @see #getFeatureVectors()
+     */
+    public PackedFeatureStore getFeatureStore();
  
 }
 
@@ -24,6 +24,7 @@ import java.util.List;
 
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
+import marytts.server.MaryProperties;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.viterbi.Viterbi;
 import marytts.util.MaryUtils;
@@ -89,7 +90,55 @@ public class UnitSelector
     throws SynthesisException
     {
         long time = System.currentTimeMillis();
+        Viterbi viterbi = createViterbi(tokensAndBoundaries);
+        viterbi.apply();
+        List<SelectedUnit> selectedUnits = viterbi.getSelectedUnits();
+        // If you can not associate the candidate units in the best path 
+        // with the items in the segment relation, there is no best path
+        if (selectedUnits == null) {
+            throw new IllegalStateException("Viterbi: can't find path");
+        }
+        long newtime = System.currentTimeMillis() - time;
+        logger.debug("Selection took "+newtime+" milliseconds");
+        return selectedUnits;
+    }
 
+    /**
+     * Select the units for the targets in the given list of tokens and boundaries,
+     * and hand them on to the listener as soon as they are known, i.e. while the
+     * selection for later parts of the utterance is still going on.
+     * The units for the first part of the utterance are known when all surviving
+     * paths of the Viterbi search agree on them. If the property
+     * "unitselection.streaming.commitAtSilences" is true, the search also commits to
+     * the currently best path at each pause, so that audio is available earlier but
+     * may differ from the result of {@link #selectUnits(List, marytts.modules.synthesis.Voice)}.
+     * 
+     * @param tokensAndBoundaries the token and boundary MaryXML elements representing
+     * an utterance.
+     * @param voice the voice with which to synthesize
+     * @param listener receives all selected units, in utterance order
+     * @throws SynthesisException if no path for generating the target utterance
+     * could be found, or if the listener fails
+     */
+    public void selectUnits(List<Element> tokensAndBoundaries,
+            marytts.modules.synthesis.Voice voice, Viterbi.SelectionListener listener)
+    throws SynthesisException
+    {
+        long time = System.currentTimeMillis();
+        Viterbi viterbi = createViterbi(tokensAndBoundaries);
+        viterbi.apply(listener, MaryProperties.getBoolean("unitselection.streaming.commitAtSilences", false));
+        long newtime = System.currentTimeMillis() - time;
+        logger.debug("Incremental selection took "+newtime+" milliseconds");
+    }
+
+    /**
+     * Set up the Viterbi search for the targets in the given list of tokens and boundaries.
+     * @param tokensAndBoundaries the token and boundary MaryXML elements representing
+     * an utterance.
+     * @return a Viterbi object ready to apply
+     */
+    protected Viterbi createViterbi(List<Element> tokensAndBoundaries)
+    {
         List<Element> segmentsAndBoundaries = new ArrayList<Element>();
         for (Element tOrB : tokensAndBoundaries) {
             if (tOrB.getTagName().equals(MaryXML.BOUNDARY)) {
@@ -117,17 +166,7 @@ public class UnitSelector
         }else{
             viterbi = new Viterbi(targets, database, targetCostWeight, sCostWeight, beamSize);
         }
-        
-        viterbi.apply();
-        List<SelectedUnit> selectedUnits = viterbi.getSelectedUnits();
-        // If you can not associate the candidate units in the best path 
-        // with the items in the segment relation, there is no best path
-        if (selectedUnits == null) {
-            throw new IllegalStateException("Viterbi: can't find path");
-        }
-        long newtime = System.currentTimeMillis() - time;
-        logger.debug("Selection took "+newtime+" milliseconds");
-        return selectedUnits;
+        return viterbi;
     }
     
     /**
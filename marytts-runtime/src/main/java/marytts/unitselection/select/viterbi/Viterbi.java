@@ -41,6 +41,8 @@ import java.util.List;
 import java.util.Map;
 
 import marytts.exceptions.SynthesisException;
+import marytts.server.Deadline;
+import marytts.server.RequestTrace;
 import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.data.UnitDatabase;
@@ -50,6 +52,7 @@ import marytts.unitselection.select.SelectedUnit;
 import marytts.unitselection.select.StatisticalCostFunction;
 import marytts.unitselection.select.Target;
 import marytts.unitselection.select.TargetCostFunction;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 
 import org.apache.log4j.Level;
@@ -90,6 +93,8 @@ public  class Viterbi
     //-1: unlimited search
     // n>0: beam search, retain only the n best paths at each step.
     protected int beamSize;
+    // whether the beam has been narrowed because the request's deadline is close:
+    private boolean beamNarrowed = false;
     protected final float wTargetCosts;
     protected final float wJoinCosts;
     protected final float wSCosts;
@@ -220,73 +225,186 @@ public  class Viterbi
         //go through all but the last point
         //(since last point has no item)
         for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
-            // The candidates for the current item:
-            // candidate selection is carried out by UnitSelector
-            Target target = point.target;
-            List<ViterbiCandidate> candidates = database.getCandidates(target);
-            if (candidates.size() == 0) {
-                if (target instanceof DiphoneTarget) {
-                    logger.debug("No diphone '"+target.getName()+"' -- will build from halfphones");
-                    DiphoneTarget dt = (DiphoneTarget) target;
-                    // replace diphone viterbi point with two half-phone viterbi points
-                    Target left = dt.left;
-                    Target right = dt.right;
-                    point.setTarget(left);
-                    ViterbiPoint newP = new ViterbiPoint(right);
-                    newP.next = point.next;
-                    point.next = newP;
-                    candidates = database.getCandidates(left);
-                    if (candidates.size() == 0) 
-                        throw new SynthesisException("Cannot even find any halfphone unit for target "+left);
-                } else {
-                    throw new SynthesisException("Cannot find any units for target "+target);
-                }
+            CancellationToken.checkCurrent();
+            narrowBeamIfShort();
+            extendPaths(point);
+        }
+    }
+
+    /**
+     * Carry out the Viterbi search like {@link #apply()}, but hand on the units of the
+     * best path to the listener as soon as they are known, rather than only at the end.
+     * Units are known when all paths which are still extended by the search
+     * go through them, i.e. when the beam has converged to a single surviving path
+     * for the first part of the utterance. In addition, if commitAtSilences is true,
+     * the currently best path is committed at each silence target, and all other
+     * paths are discarded; this makes the units available early even where the
+     * beam does not converge, at the price of a possibly suboptimal overall path.
+     * @param listener receives all selected units, in utterance order, in one or more calls.
+     * @param commitAtSilences whether to commit to the currently best path at silence targets
+     * @throws SynthesisException if for any part of the target chain, no
+     * candidates can be found, or if no path through the targets can be found.
+     */
+    public void apply(SelectionListener listener, boolean commitAtSilences) throws SynthesisException
+    {
+        logger.debug("Viterbi running incrementally with beam size " + beamSize);
+        ViterbiPath committed = null;
+        for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
+            CancellationToken.checkCurrent();
+            narrowBeamIfShort();
+            extendPaths(point);
+            List<ViterbiPath> paths = point.next.getPaths();
+            if (paths.isEmpty()) {
+                throw new SynthesisException("Viterbi: can't find path");
             }
-            assert candidates.size() > 0;
-            
-            // absolutely critical since candidates is no longer a SortedSet:
-            Collections.sort(candidates);
-            
-            point.candidates = candidates;
-            assert beamSize != 0; // general beam search not implemented
-    
-            // Now go through all existing paths and all candidates 
-            // for the current item;
-            // tentatively extend each existing path to each of 
-            // the candidates, but only retain the best one
-            List<ViterbiPath> paths = point.paths;
-            int nPaths = paths.size();
-            if (beamSize != -1 && beamSize < nPaths) {
-                // beam search, look only at the best n paths:
-                nPaths = beamSize;
+            ViterbiPath commit;
+            if (commitAtSilences && point.target.isSilence() && point.next.next != null) {
+                commit = Collections.min(paths);
+                paths.clear();
+                paths.add(commit);
+            } else {
+                commit = findCommonPath(paths, committed);
             }
-            // for searchStrategy == -1, no beam -- look at all candidates.
-            int i = 0;
-            int iMax = nPaths;
-            for (ViterbiPath pp : paths) {
-                assert pp != null;
-                // We are at the very beginning of the search, 
-                // or have a usable path to extend
-                candidates = point.candidates;
-                assert candidates != null;
-                int j = 0;
-                int jMax = beamSize;
-                // Go through the candidates as returned by the iterator of the sorted set,
-                // i.e. sorted according to increasing target cost.
-                for (ViterbiCandidate c : candidates) { 
-                    // For the candidate c, create a path extending the 
-                    // previous path pp to that candidate, taking into
-                    // account the target and join costs:
-                    ViterbiPath np = getPath(pp, c);
-                    // Compare this path to the existing best path 
-                    // (if any) leading to candidate c; only retain 
-                    // the one with the better score.
-                    addPath(point.next, np);
-                    if (++j == jMax) break;
+            if (commit != committed) {
+                List<SelectedUnit> units = getUnits(commit, committed);
+                committed = commit;
+                if (!units.isEmpty()) {
+                    listener.unitsSelected(units);
                 }
-                if (++i == iMax) break;
             }
         }
+        ViterbiPath best = findBestPath();
+        if (best == null) {
+            throw new SynthesisException("Viterbi: can't find path");
+        }
+        List<SelectedUnit> units = getUnits(best, committed);
+        if (!units.isEmpty()) {
+            listener.unitsSelected(units);
+        }
+    }
+
+    /**
+     * If the deadline of the current request is close, search the rest of
+     * the utterance with a quarter of the beam (or 25 paths for unlimited search).
+     * @see Deadline
+     */
+    private void narrowBeamIfShort()
+    {
+        if (beamNarrowed || beamSize > 0 && beamSize < 4) {
+            return;
+        }
+        if (Deadline.degrade("beam")) {
+            int narrowBeam = beamSize == -1 ? 25 : beamSize / 4;
+            logger.debug("Time is short: narrowing beam from " + beamSize + " to " + narrowBeam);
+            beamSize = narrowBeam;
+            beamNarrowed = true;
+        }
+    }
+
+    /**
+     * Find the last path element shared by all paths that will be extended by the search.
+     * @param paths the paths leading to the candidates of the current point
+     * @param committed a path element known to be shared by all paths, or null.
+     * @return the last shared path element, or committed if there is no later one.
+     */
+    private ViterbiPath findCommonPath(List<ViterbiPath> paths, ViterbiPath committed)
+    {
+        int nPaths = paths.size();
+        if (beamSize != -1 && beamSize < nPaths) {
+            // only these will be extended, see extendPaths()
+            nPaths = beamSize;
+        }
+        ViterbiPath[] ancestors = paths.subList(0, nPaths).toArray(new ViterbiPath[nPaths]);
+        // all paths have the same length, so we can step back in parallel:
+        while (ancestors[0] != null && ancestors[0] != committed) {
+            boolean shared = true;
+            for (int i=1; i<nPaths && shared; i++) {
+                shared = ancestors[i] == ancestors[0];
+            }
+            if (shared) {
+                return ancestors[0];
+            }
+            for (int i=0; i<nPaths; i++) {
+                ancestors[i] = ancestors[i].previous;
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Extend the paths leading to the given point to the candidates of the point's target.
+     * @param point the point whose candidates are to be determined
+     * @throws SynthesisException if no candidates can be found for the point's target
+     */
+    private void extendPaths(ViterbiPoint point) throws SynthesisException
+    {
+        // The candidates for the current item:
+        // candidate selection is carried out by UnitSelector
+        Target target = point.target;
+        List<ViterbiCandidate> candidates = database.getCandidates(target);
+        if (candidates.size() == 0) {
+            if (target instanceof DiphoneTarget) {
+                logger.debug("No diphone '"+target.getName()+"' -- will build from halfphones");
+                DiphoneTarget dt = (DiphoneTarget) target;
+                // replace diphone viterbi point with two half-phone viterbi points
+                Target left = dt.left;
+                Target right = dt.right;
+                point.setTarget(left);
+                ViterbiPoint newP = new ViterbiPoint(right);
+                newP.next = point.next;
+                point.next = newP;
+                candidates = database.getCandidates(left);
+                if (candidates.size() == 0) 
+                    throw new SynthesisException("Cannot even find any halfphone unit for target "+left);
+            } else {
+                throw new SynthesisException("Cannot find any units for target "+target);
+            }
+        }
+        assert candidates.size() > 0;
+        RequestTrace.count("viterbi_candidates", candidates.size());
+        
+        // absolutely critical since candidates is no longer a SortedSet:
+        Collections.sort(candidates);
+        
+        point.candidates = candidates;
+        assert beamSize != 0; // general beam search not implemented
+
+        // Now go through all existing paths and all candidates 
+        // for the current item;
+        // tentatively extend each existing path to each of 
+        // the candidates, but only retain the best one
+        List<ViterbiPath> paths = point.paths;
+        int nPaths = paths.size();
+        if (beamSize != -1 && beamSize < nPaths) {
+            // beam search, look only at the best n paths:
+            nPaths = beamSize;
+        }
+        // for searchStrategy == -1, no beam -- look at all candidates.
+        int i = 0;
+        int iMax = nPaths;
+        for (ViterbiPath pp : paths) {
+            assert pp != null;
+            // We are at the very beginning of the search, 
+            // or have a usable path to extend
+            candidates = point.candidates;
+            assert candidates != null;
+            int j = 0;
+            int jMax = beamSize;
+            // Go through the candidates as returned by the iterator of the sorted set,
+            // i.e. sorted according to increasing target cost.
+            for (ViterbiCandidate c : candidates) { 
+                // For the candidate c, create a path extending the 
+                // previous path pp to that candidate, taking into
+                // account the target and join costs:
+                ViterbiPath np = getPath(pp, c);
+                // Compare this path to the existing best path 
+                // (if any) leading to candidate c; only retain 
+                // the one with the better score.
+                addPath(point.next, np);
+                if (++j == jMax) break;
+            }
+            if (++i == iMax) break;
+        }
     }
     
     /**
@@ -337,21 +455,7 @@ public  class Viterbi
             //System.out.println("No best path found");
             return null;
         }
-        for (ViterbiPath path = best; path != null; path = path.getPrevious()) {
-            if (path.candidate != null) {
-                Unit u = path.candidate.unit;
-                Target t = path.candidate.target;
-                if (u instanceof DiphoneUnit) {
-                    assert t instanceof DiphoneTarget;
-                    DiphoneUnit du = (DiphoneUnit) u;
-                    DiphoneTarget dt = (DiphoneTarget) t;
-                    selectedUnits.addFirst(new SelectedUnit(du.right, dt.right));
-                    selectedUnits.addFirst(new SelectedUnit(du.left, dt.left));
-                } else {
-                    selectedUnits.addFirst(new SelectedUnit(u, t));
-                }
-            }
-        }
+        selectedUnits.addAll(getUnits(best, null));
         if (logger.getEffectiveLevel().equals(Level.DEBUG)) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
@@ -450,6 +554,33 @@ public  class Viterbi
         return selectedUnits;
     }
     
+    /**
+     * Get the units of the given part of a path.
+     * @param last the last path element of the part
+     * @param stop the path element before the part, or null for the entire path up to last
+     * @return the units of the path elements after stop up to and including last, in utterance order.
+     */
+    private LinkedList<SelectedUnit> getUnits(ViterbiPath last, ViterbiPath stop)
+    {
+        LinkedList<SelectedUnit> selectedUnits = new LinkedList<SelectedUnit>();
+        for (ViterbiPath path = last; path != null && path != stop; path = path.getPrevious()) {
+            if (path.candidate != null) {
+                Unit u = path.candidate.unit;
+                Target t = path.candidate.target;
+                if (u instanceof DiphoneUnit) {
+                    assert t instanceof DiphoneTarget;
+                    DiphoneUnit du = (DiphoneUnit) u;
+                    DiphoneTarget dt = (DiphoneTarget) t;
+                    selectedUnits.addFirst(new SelectedUnit(du.right, dt.right));
+                    selectedUnits.addFirst(new SelectedUnit(du.left, dt.left));
+                } else {
+                    selectedUnits.addFirst(new SelectedUnit(u, t));
+                }
+            }
+        }
+        return selectedUnits;
+    }
+
     /**
      * Construct a new path element linking a previous path to the given candidate.
      * The (penalty) score associated with the new path is calculated as the sum of
@@ -545,6 +676,19 @@ public  class Viterbi
  
     
    
+    /**
+     * Receives the selected units from {@link Viterbi#apply(SelectionListener, boolean)}
+     * as soon as they are known.
+     */
+    public interface SelectionListener
+    {
+        /**
+         * Called with the next selected units, following on from those passed in the previous call.
+         * @param units the units, in utterance order
+         */
+        public void unitsSelected(List<SelectedUnit> units) throws SynthesisException;
+    }
+
     private class DebugStats
     {
         int n;
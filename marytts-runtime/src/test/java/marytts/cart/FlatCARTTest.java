@@ -0,0 +1,105 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import marytts.cart.io.MaryCARTReader;
+import marytts.cart.io.MaryCARTWriter;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.unitselection.select.Target;
+import marytts.util.FeatureUtils;
+import marytts.util.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class FlatCARTTest {
+
+    FeatureDefinition def;
+    FeatureVector[] featureVectors;
+    File cartFile;
+
+    @Before
+    public void setUp() throws Exception {
+        String targetfeatures = FileUtils.getStreamAsString(FlatCARTTest.class.getResourceAsStream("/marytts/util/helloworld.targetfeatures"), "UTF-8");
+        def = FeatureUtils.readFeatureDefinition(targetfeatures);
+        featureVectors = FeatureUtils.readFeatureVectors(targetfeatures);
+
+        // selection_prosody == nuclear ? (by phone) : (leaf)
+        DecisionNode root = new DecisionNode.BinaryByteDecisionNode("selection_prosody", "nuclear", def);
+        int iPhone = def.getFeatureIndex("phone");
+        DecisionNode byPhone = new DecisionNode.ByteDecisionNode(iPhone, def.getNumberOfValues(iPhone), def);
+        for (int v=0; v<def.getNumberOfValues(iPhone); v++) {
+            String phone = def.getFeatureValueAsString(iPhone, v);
+            if (phone.equals("w") || phone.equals("l")) {
+                byPhone.addDaughter(new LeafNode.IntArrayLeafNode(new int[] {v, v+100}));
+            } else if (phone.equals("d")) {
+                byPhone.addDaughter(new LeafNode.IntArrayLeafNode(new int[] {7}));
+            } else {
+                byPhone.addDaughter(new LeafNode.IntArrayLeafNode(new int[0]));
+            }
+        }
+        root.addDaughter(byPhone);
+        root.addDaughter(new LeafNode.IntArrayLeafNode(new int[] {1, 2, 3}));
+        root.countData();
+        cartFile = File.createTempFile("flatcart", ".mry");
+        new MaryCARTWriter().dumpMaryCART(new CART(root, def), cartFile.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        cartFile.delete();
+    }
+
+    @Test
+    public void sameResultsAsNodeCART() throws Exception {
+        CART nodeCart = new MaryCARTReader().load(cartFile.getPath());
+        FlatCART flatCart = new MaryCARTReader().loadFlat(cartFile.getPath());
+        assertEquals(nodeCart.getNumNodes(), flatCart.getNumNodes());
+        for (FeatureVector fv : featureVectors) {
+            Target t = new Target("test", null);
+            t.setFeatureVector(fv);
+            for (int backtrace : new int[] {0, 1, 3, 100}) {
+                assertArrayEquals((int[]) nodeCart.interpret(t, backtrace), (int[]) flatCart.interpret(t, backtrace));
+                Node nodeNode = nodeCart.interpretToNode(fv, backtrace);
+                Node flatNode = flatCart.interpretToNode(fv, backtrace);
+                assertEquals(nodeNode.getNumberOfData(), flatNode.getNumberOfData());
+                assertArrayEquals((int[]) nodeNode.getAllData(), (int[]) flatNode.getAllData());
+            }
+            Object nodeResult = nodeCart.interpret(fv);
+            Object flatResult = flatCart.interpret(fv);
+            if (nodeResult == null) {
+                assertEquals(null, flatResult);
+            } else {
+                assertArrayEquals((int[]) nodeResult, (int[]) flatResult);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import marytts.cart.impose.FeatureArrayIndexer;
+import marytts.util.FeatureUtils;
+import marytts.util.io.FileUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class PackedFeatureStoreTest {
+
+    FeatureDefinition def;
+    FeatureVector[] featureVectors;
+    byte[] packed;
+
+    @Before
+    public void setUp() throws IOException {
+        String targetfeatures = FileUtils.getStreamAsString(PackedFeatureStoreTest.class.getResourceAsStream("/marytts/util/helloworld.targetfeatures"), "UTF-8");
+        def = FeatureUtils.readFeatureDefinition(targetfeatures);
+        featureVectors = FeatureUtils.readFeatureVectors(targetfeatures);
+        for (int i=0; i<featureVectors.length; i++) { // give each vector its own unit index
+            FeatureVector fv = featureVectors[i];
+            featureVectors[i] = new FeatureVector(fv.byteValuedDiscreteFeatures, fv.shortValuedDiscreteFeatures, fv.continuousFeatures, i);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(42); // something before the records
+        for (FeatureVector fv : featureVectors) {
+            fv.writeTo(out);
+        }
+        out.close();
+        packed = baos.toByteArray();
+    }
+
+    private void assertSameFeatures(PackedFeatureStore store) {
+        assertEquals(featureVectors.length, store.getNumberOfUnits());
+        int nBytes = def.getNumberOfByteFeatures();
+        int nShorts = def.getNumberOfShortFeatures();
+        for (int u=0; u<featureVectors.length; u++) {
+            FeatureVector fv = featureVectors[u];
+            for (int i=0; i<def.getNumberOfFeatures(); i++) {
+                if (i < nBytes) {
+                    assertEquals(fv.getByteFeature(i), store.getByteFeature(u, i));
+                } else if (i < nBytes + nShorts) {
+                    assertEquals(fv.getShortFeature(i), store.getShortFeature(u, i));
+                } else {
+                    assertEquals(fv.getContinuousFeature(i), store.getContinuousFeature(u, i), 0);
+                }
+            }
+            FeatureVector copy = store.getFeatureVector(u);
+            assertArrayEquals(fv.byteValuedDiscreteFeatures, copy.byteValuedDiscreteFeatures);
+            assertArrayEquals(fv.shortValuedDiscreteFeatures, copy.shortValuedDiscreteFeatures);
+            assertEquals(u, copy.getUnitIndex());
+        }
+    }
+
+    @Test
+    public void readFromByteBuffer() throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(packed);
+        assertEquals(42, bb.getInt());
+        PackedFeatureStore store = new PackedFeatureStore(def, featureVectors.length, bb);
+        assertEquals(0, bb.remaining());
+        assertSameFeatures(store);
+    }
+
+    @Test
+    public void readFromStream() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed));
+        assertEquals(42, in.readInt());
+        PackedFeatureStore store = new PackedFeatureStore(def, featureVectors.length, in);
+        assertSameFeatures(store);
+    }
+
+    @Test(expected=IOException.class)
+    public void truncatedBuffer() throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(packed);
+        bb.getInt();
+        new PackedFeatureStore(def, featureVectors.length + 1, bb);
+    }
+
+    @Test
+    public void indexerGivesSameResultAsFeatureVectors() throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(packed);
+        bb.getInt();
+        PackedFeatureStore store = new PackedFeatureStore(def, featureVectors.length, bb);
+        String[] sequence = new String[] { "phone", "selection_prosody" };
+        FeatureArrayIndexer fromVectors = new FeatureArrayIndexer(featureVectors.clone(), def, sequence);
+        FeatureArrayIndexer fromStore = new FeatureArrayIndexer(store, sequence);
+        assertEquals(fromVectors.getNumberOfLeaves(), fromStore.getNumberOfLeaves());
+        for (FeatureVector target : featureVectors) {
+            assertArrayEquals(fromVectors.retrieve(target).getUnitIndexes(), fromStore.retrieve(target).getUnitIndexes());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Arrays;
+
+import marytts.server.Deadline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class HTSPStreamTest
+{
+    @Test
+    public void fullGVIterationsWhileTimeIsAmple() throws Exception
+    {
+        Deadline deadline = new Deadline(60000, 1);
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            Assert.assertEquals(200, new HTSPStream(75, 10, HMMData.MGC, 200).getMaxGVIter());
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertTrue(deadline.getDegradations().isEmpty());
+    }
+
+    @Test
+    public void fewerGVIterationsWhenTimeIsShort() throws Exception
+    {
+        Deadline deadline = new Deadline(60000, 0);
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            Assert.assertEquals(50, new HTSPStream(75, 10, HMMData.MGC, 200).getMaxGVIter());
+            // too few to cut down
+            Assert.assertEquals(3, new HTSPStream(75, 10, HMMData.MGC, 3).getMaxGVIter());
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertEquals(Arrays.asList("gv"), deadline.getDegradations());
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import marytts.util.Pair;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ModuleStarterTest
+{
+    private static class TestModule extends InternalModule
+    {
+        private final List<String> events;
+        private final Class<?>[] dependencies;
+        CountDownLatch together;
+        boolean fail;
+
+        TestModule(String name, List<String> events, Class<?>... dependencies)
+        {
+            super(name, null, null, null);
+            this.events = events;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public Class<?>[] getStartupDependencies()
+        {
+            return dependencies;
+        }
+
+        @Override
+        public void startup() throws Exception
+        {
+            events.add("start "+name());
+            if (fail) {
+                throw new IllegalStateException("cannot start");
+            }
+            if (together != null) {
+                together.countDown();
+                if (!together.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("not started in parallel");
+                }
+            }
+            Thread.sleep(20);
+            super.startup();
+            events.add("end "+name());
+        }
+    }
+
+    private static class First extends TestModule
+    {
+        First(List<String> events, Class<?>... dependencies) { super("First", events, dependencies); }
+    }
+
+    private static class Second extends TestModule
+    {
+        Second(List<String> events, Class<?>... dependencies) { super("Second", events, dependencies); }
+    }
+
+    private static class Third extends TestModule
+    {
+        Third(List<String> events, Class<?>... dependencies) { super("Third", events, dependencies); }
+    }
+
+    @Test
+    public void startsDependenciesFirst() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        MaryModule second = new Second(events, First.class);
+        MaryModule first = new First(events);
+        MaryModule third = new Third(events, Second.class);
+        List<Pair<MaryModule, Long>> times = new ModuleStarter(4).startup(Arrays.asList(third, second, first));
+        Assert.assertEquals(Arrays.asList("start First", "end First", "start Second", "end Second", "start Third", "end Third"), events);
+        Assert.assertEquals(3, times.size());
+        Assert.assertSame(first, times.get(0).getFirst());
+        Assert.assertEquals(MaryModule.MODULE_RUNNING, third.getState());
+    }
+
+    @Test
+    public void startsIndependentModulesInParallel() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        TestModule first = new First(events);
+        TestModule second = new Second(events);
+        first.together = second.together = new CountDownLatch(2);
+        new ModuleStarter(2).startup(Arrays.<MaryModule>asList(first, second));
+        Assert.assertEquals(MaryModule.MODULE_RUNNING, first.getState());
+        Assert.assertEquals(MaryModule.MODULE_RUNNING, second.getState());
+    }
+
+    @Test
+    public void startsCyclicDependenciesInOrder() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        MaryModule first = new First(events, Second.class);
+        MaryModule second = new Second(events, First.class);
+        MaryModule third = new Third(events);
+        List<Pair<MaryModule, Long>> times = new ModuleStarter(4).startup(Arrays.asList(first, second, third));
+        Assert.assertEquals(Arrays.asList("start Third", "end Third", "start First", "end First", "start Second", "end Second"), events);
+        Assert.assertEquals(3, times.size());
+    }
+
+    @Test
+    public void skipsRunningModules() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        MaryModule first = new First(events);
+        first.startup();
+        events.clear();
+        List<Pair<MaryModule, Long>> times = new ModuleStarter(1).startup(Arrays.asList(first, new Second(events, First.class)));
+        Assert.assertEquals(Arrays.asList("start Second", "end Second"), events);
+        Assert.assertEquals(1, times.size());
+    }
+
+    @Test
+    public void reportsFailingModule() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        TestModule first = new First(events);
+        first.fail = true;
+        try {
+            new ModuleStarter(4).startup(Arrays.<MaryModule>asList(first, new Second(events, First.class)));
+            Assert.fail("expected an exception");
+        } catch (Exception e) {
+            Assert.assertEquals("Problem starting module First", e.getMessage());
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertFalse(events.contains("start Second"));
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import marytts.datatypes.MaryDataType;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ProcessingPlanTest
+{
+    private static MaryModule tokeniser;
+    private static MaryModule phonemiser;
+
+    private static class TestModule extends InternalModule
+    {
+        TestModule(String name, MaryDataType inputType, MaryDataType outputType)
+        {
+            super(name, inputType, outputType, Locale.US);
+        }
+    }
+
+    @BeforeClass
+    public static void registerModules()
+    {
+        // The registry can be filled only once per JVM
+        if (!ModuleRegistry.getRegistrationComplete()) {
+            tokeniser = new TestModule("TestTokeniser", MaryDataType.TEXT, MaryDataType.TOKENS);
+            phonemiser = new TestModule("TestWords", MaryDataType.TOKENS, MaryDataType.WORDS);
+            ModuleRegistry.registerModule(tokeniser, Locale.US, null);
+            ModuleRegistry.registerModule(phonemiser, Locale.US, null);
+            ModuleRegistry.setRegistrationComplete();
+        }
+    }
+
+    @Test
+    public void computesPlanOnce()
+    {
+        Assert.assertNotNull("registry was filled elsewhere", tokeniser);
+        ProcessingPlan plan = ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.WORDS, Locale.US, null);
+        Assert.assertTrue(plan.isFeasible());
+        Assert.assertEquals(Arrays.asList(tokeniser, phonemiser), plan.getModules());
+        Assert.assertSame(plan, ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.WORDS, Locale.US, null));
+        Assert.assertTrue(ModuleRegistry.getProcessingPlans().contains(plan));
+    }
+
+    @Test
+    public void cachesInfeasiblePlans()
+    {
+        ProcessingPlan plan = ModuleRegistry.getProcessingPlan(MaryDataType.WORDS, MaryDataType.TEXT, Locale.US, null);
+        Assert.assertFalse(plan.isFeasible());
+        Assert.assertNull(plan.getModules());
+        Assert.assertNull(ModuleRegistry.modulesRequiredForProcessing(MaryDataType.WORDS, MaryDataType.TEXT, Locale.US, null));
+        Assert.assertSame(plan, ModuleRegistry.getProcessingPlan(MaryDataType.WORDS, MaryDataType.TEXT, Locale.US, null));
+    }
+
+    @Test
+    public void recomputesPlansAfterInvalidation()
+    {
+        ProcessingPlan plan = ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.TOKENS, Locale.US, null);
+        plan.recordExecution(5);
+        ModuleRegistry.invalidateProcessingPlans();
+        Assert.assertFalse(ModuleRegistry.getProcessingPlans().contains(plan));
+        ProcessingPlan recomputed = ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.TOKENS, Locale.US, null);
+        Assert.assertNotSame(plan, recomputed);
+        Assert.assertEquals(plan.getModules(), recomputed.getModules());
+        Assert.assertEquals(0, recomputed.getExecutionCount());
+    }
+
+    @Test
+    public void recordsExecutions()
+    {
+        ProcessingPlan plan = new ProcessingPlan(MaryDataType.TEXT, MaryDataType.TOKENS, Locale.US, null, Arrays.asList(tokeniser));
+        Assert.assertEquals(0, plan.getAverageTime(), 0);
+        plan.recordExecution(10);
+        plan.recordExecution(30);
+        Assert.assertEquals(2, plan.getExecutionCount());
+        Assert.assertEquals(40, plan.getTotalTime());
+        Assert.assertEquals(30, plan.getMaxTime());
+        Assert.assertEquals(20, plan.getAverageTime(), 1e-9);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void modulesCannotBeChanged()
+    {
+        ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.WORDS, Locale.US, null).getModules().clear();
+    }
+}
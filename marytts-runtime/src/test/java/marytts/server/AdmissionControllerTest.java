@@ -0,0 +1,161 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import marytts.exceptions.AdmissionException;
+import marytts.server.AdmissionController.Priority;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class AdmissionControllerTest
+{
+    /**
+     * Waits for admission in a thread of its own and records the order of admission.
+     */
+    private static class Waiting extends Thread
+    {
+        private final AdmissionController admission;
+        private final String voice;
+        private final Priority priority;
+        private final List<String> admitted;
+        AdmissionController.Ticket ticket;
+        AdmissionException rejection;
+
+        Waiting(AdmissionController admission, String voice, Priority priority, List<String> admitted)
+        {
+            this.admission = admission;
+            this.voice = voice;
+            this.priority = priority;
+            this.admitted = admitted;
+        }
+
+        public void run()
+        {
+            try {
+                ticket = admission.admit(voice, priority);
+                admitted.add(getName());
+            } catch (AdmissionException e) {
+                rejection = e;
+            }
+        }
+    }
+
+    private static void waitUntilWaiting(AdmissionController admission, int n) throws InterruptedException
+    {
+        while (admission.getWaiting() < n) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void admitsInteractiveBeforeBatch() throws Exception
+    {
+        AdmissionController admission = new AdmissionController(1, 0, 0, 10, 10000);
+        List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        AdmissionController.Ticket first = admission.admit(null, Priority.INTERACTIVE);
+        Waiting batch = new Waiting(admission, null, Priority.BATCH, admitted);
+        batch.setName("batch");
+        batch.start();
+        waitUntilWaiting(admission, 1);
+        Waiting interactive = new Waiting(admission, null, Priority.INTERACTIVE, admitted);
+        interactive.setName("interactive");
+        interactive.start();
+        waitUntilWaiting(admission, 2);
+
+        first.release();
+        first.release(); // no effect
+        interactive.join();
+        Assert.assertEquals(1, admission.getRunning());
+        interactive.ticket.release();
+        batch.join();
+        batch.ticket.release();
+        Assert.assertEquals("[interactive, batch]", admitted.toString());
+        Assert.assertEquals(0, admission.getRunning());
+    }
+
+    @Test
+    public void limitsVoiceWithoutBlockingOthers() throws Exception
+    {
+        AdmissionController admission = new AdmissionController(4, 1, 0, 10, 10000);
+        List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        AdmissionController.Ticket busy = admission.admit("slow-voice", Priority.INTERACTIVE);
+        Waiting sameVoice = new Waiting(admission, "slow-voice", Priority.INTERACTIVE, admitted);
+        sameVoice.setName("same voice");
+        sameVoice.start();
+        waitUntilWaiting(admission, 1);
+        Waiting otherVoice = new Waiting(admission, "fast-voice", Priority.INTERACTIVE, admitted);
+        otherVoice.setName("other voice");
+        otherVoice.start();
+        otherVoice.join();
+        Assert.assertEquals("[other voice]", admitted.toString());
+
+        busy.release();
+        sameVoice.join();
+        Assert.assertEquals(1, admission.getRunning("slow-voice"));
+    }
+
+    @Test
+    public void rejectsWhenQueueFullOrTimedOut() throws Exception
+    {
+        AdmissionController admission = new AdmissionController(1, 0, 0, 1, 50);
+        List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        AdmissionController.Ticket busy = admission.admit(null, Priority.INTERACTIVE);
+        Waiting waiting = new Waiting(admission, null, Priority.INTERACTIVE, admitted);
+        waiting.start();
+        waitUntilWaiting(admission, 1);
+        try {
+            admission.admit(null, Priority.BATCH);
+            Assert.fail("expected the queue to be full");
+        } catch (AdmissionException e) {
+            Assert.assertEquals("queue_full", e.getReason());
+        }
+        waiting.join();
+        Assert.assertEquals("timeout", waiting.rejection.getReason());
+        Assert.assertEquals(0, admission.getWaiting());
+        busy.release();
+        Assert.assertEquals(0, admission.getRunning());
+    }
+
+    @Test
+    public void keepsInterruptStatus() throws Exception
+    {
+        AdmissionController admission = new AdmissionController(1, 0, 0, 10, 10000);
+        AdmissionController.Ticket busy = admission.admit(null, Priority.INTERACTIVE);
+        Thread.currentThread().interrupt();
+        try {
+            admission.admit(null, Priority.INTERACTIVE);
+            Assert.fail("expected the interrupt to end the wait");
+        } catch (AdmissionException e) {
+            Assert.assertEquals("interrupted", e.getReason());
+        }
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertEquals(0, admission.getWaiting());
+        busy.release();
+    }
+}
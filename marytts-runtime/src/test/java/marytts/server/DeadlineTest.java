@@ -0,0 +1,78 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class DeadlineTest
+{
+    @Test
+    public void noDegradationWithoutDeadline()
+    {
+        Deadline previous = Deadline.setCurrent(null);
+        try {
+            Assert.assertFalse(Deadline.degrade("beam"));
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+    }
+
+    @Test
+    public void noDegradationWhileTimeIsAmple()
+    {
+        Deadline deadline = new Deadline(60000, 0.5);
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            Assert.assertFalse(Deadline.degrade("beam"));
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertTrue(deadline.getDegradations().isEmpty());
+        Assert.assertFalse(deadline.isExpired());
+    }
+
+    @Test
+    public void recordsEachDegradedStageOnce()
+    {
+        Deadline deadline = new Deadline(60000, 0);
+        long before = MaryMetrics.getCounter(MaryMetrics.DEGRADATIONS, "stage", "test_gv").get();
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            Assert.assertTrue(Deadline.degrade("test_gv"));
+            Assert.assertTrue(Deadline.degrade("test_effects"));
+            Assert.assertTrue(Deadline.degrade("test_gv"));
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertEquals("[test_gv, test_effects]", deadline.getDegradations().toString());
+        Assert.assertEquals(before + 1, MaryMetrics.getCounter(MaryMetrics.DEGRADATIONS, "stage", "test_gv").get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBudget()
+    {
+        new Deadline(0, 0.5);
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class MaryMetricsTest
+{
+    @Test
+    public void escapesLabelValues()
+    {
+        Assert.assertEquals("m", MaryMetrics.key("m", null, "ignored"));
+        Assert.assertEquals("m{voice=\"cmu-slt-hsmm\"}", MaryMetrics.key("m", "voice", "cmu-slt-hsmm"));
+        Assert.assertEquals("m{voice=\"a \\\"b\\\" \\\\ c\\nd\"}", MaryMetrics.key("m", "voice", "a \"b\" \\ c\nd"));
+    }
+}
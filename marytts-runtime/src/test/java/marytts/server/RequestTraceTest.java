@@ -0,0 +1,137 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class RequestTraceTest
+{
+    @Test
+    public void countsOnlyForTheCurrentTrace()
+    {
+        RequestTrace trace = new RequestTrace(1, "cmu-slt-hsmm", "TEXT", "AUDIO", 12);
+        RequestTrace.count("chunks", 1); // not traced
+        RequestTrace previous = RequestTrace.setCurrent(trace);
+        try {
+            RequestTrace.count("chunks", 1);
+            RequestTrace.count("chunks", 2);
+            MaryMetrics.recordCacheLookup("test", true);
+        } finally {
+            RequestTrace.setCurrent(previous);
+        }
+        RequestTrace.count("chunks", 1); // not traced
+        Assert.assertEquals(3, trace.getCount("chunks"));
+        Assert.assertEquals(1, trace.getCount("cache_test_hits"));
+        Assert.assertEquals(0, trace.getCount("viterbi_candidates"));
+    }
+
+    @Test
+    public void writesOneLineOfJson()
+    {
+        RequestTrace trace = new RequestTrace(7, "a \"quoted\"\nvoice", "TEXT", "AUDIO", 5);
+        trace.moduleProcessed("TextToMaryXML", System.currentTimeMillis(), System.currentTimeMillis());
+        trace.add("mlpg_frames", 200);
+        trace.finished("ok", 100, 400, Arrays.asList("beam"));
+        String json = trace.toJson();
+        Assert.assertEquals(-1, json.indexOf('\n'));
+        Assert.assertTrue(json, json.startsWith("{\"id\":7,"));
+        Assert.assertTrue(json, json.contains("\"voice\":\"a \\\"quoted\\\"\\nvoice\""));
+        Assert.assertTrue(json, json.contains("\"outcome\":\"ok\",\"processing_ms\":100,\"audio_ms\":400,\"rtf\":0.25"));
+        Assert.assertTrue(json, json.contains("\"modules\":[{\"name\":\"TextToMaryXML\","));
+        Assert.assertTrue(json, json.contains("\"counts\":{\"mlpg_frames\":200}"));
+        Assert.assertTrue(json, json.endsWith("\"degradations\":[\"beam\"]}"));
+    }
+
+    @Test
+    public void keepsTheMostRecentTraces()
+    {
+        TraceLog log = new TraceLog(1, 2);
+        Assert.assertTrue(log.sample());
+        for (int i = 1; i <= 3; i++) {
+            log.record(new RequestTrace(i, null, "TEXT", "AUDIO", -1));
+        }
+        List<RequestTrace> recent = log.getRecent();
+        Assert.assertEquals(2, recent.size());
+        Assert.assertEquals(2, recent.get(0).getId());
+        Assert.assertEquals(3, recent.get(1).getId());
+        Assert.assertFalse(new TraceLog(0, 2).sample());
+    }
+
+    @Test(timeout=10000)
+    public void writesOnlyTracesToTheFile() throws Exception
+    {
+        File file = File.createTempFile("trace", ".jsonl");
+        file.deleteOnExit();
+        TraceLog log = new TraceLog(1, 2, 4);
+        log.logTo(file.getPath(), "10MB", 0);
+        AtomicLong dropped = MaryMetrics.getCounter(MaryMetrics.TRACES_DROPPED);
+        long droppedBefore = dropped.get();
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            log.record(new RequestTrace(i, null, "TEXT", "AUDIO", -1));
+        }
+        List<String> lines = FileUtils.readLines(file, "UTF-8");
+        while (lines.size() + dropped.get() - droppedBefore < n) {
+            Thread.sleep(10);
+            lines = FileUtils.readLines(file, "UTF-8");
+        }
+        Assert.assertEquals(n, lines.size() + dropped.get() - droppedBefore);
+        for (String line : lines) {
+            Assert.assertTrue(line, line.startsWith("{\"id\":") && line.endsWith("}"));
+        }
+    }
+
+    @Test
+    public void requestIdsAreUniqueAcrossThreads() throws Exception
+    {
+        final Set<Integer> ids = Collections.synchronizedSet(new HashSet<Integer>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run()
+                {
+                    for (int j = 0; j < 1000; j++) {
+                        ids.add(Request.newId());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Assert.assertEquals(4000, ids.size());
+        Assert.assertFalse(ids.contains(0));
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import marytts.modules.synthesis.Voice;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class WarmUpTest
+{
+    @Test(timeout=10000)
+    public void completesWithoutVoices()
+    {
+        WarmUp warmUp = new WarmUp(2, 60000, Collections.<Locale, List<String>>emptyMap());
+        Assert.assertEquals(0, warmUp.run(Collections.<Voice>emptyList()));
+        // no voices are loaded in this test
+        warmUp.run();
+    }
+
+    @Test
+    public void readsOneCorpusPerLocale() throws Exception
+    {
+        File german = File.createTempFile("warmup", ".txt");
+        german.deleteOnExit();
+        FileUtils.writeStringToFile(german, "# comment\nEin Satz.\n\n  Noch ein Satz.  \n", "UTF-8");
+        System.setProperty("server.warmup.corpus.de", german.getPath());
+        Map<Locale, List<String>> corpora;
+        try {
+            corpora = WarmUp.readCorpora(Arrays.asList(Locale.GERMAN, Locale.US));
+        } finally {
+            System.clearProperty("server.warmup.corpus.de");
+        }
+        Assert.assertEquals(Arrays.asList("Ein Satz.", "Noch ein Satz."), corpora.get(Locale.GERMAN));
+        Assert.assertFalse(corpora.containsKey(Locale.US));
+    }
+}
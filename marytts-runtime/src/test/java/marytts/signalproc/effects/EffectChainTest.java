@@ -0,0 +1,142 @@
+package marytts.signalproc.effects;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.server.Deadline;
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+
+import org.junit.Test;
+
+public class EffectChainTest {
+
+	/**
+	 * A signal source which remembers how much of the signal has been read.
+	 */
+	private static class CountingSource extends BufferedDoubleDataSource {
+		int delivered = 0;
+
+		CountingSource(double[] signal) {
+			super(signal);
+		}
+
+		@Override
+		public int getData(double[] target, int targetPos, int length) {
+			int n = super.getData(target, targetPos, length);
+			delivered += n;
+			return n;
+		}
+	}
+
+	private static double[] signal(int length) {
+		double[] signal = new double[length];
+		for (int i = 0; i < length; i++) {
+			signal[i] = 0.3 * Math.sin(0.05 * i);
+		}
+		return signal;
+	}
+
+	@Test
+	public void chainsAreShared() {
+		EffectChain chain = EffectChain.forEffects("Robot(amount=50)+Volume(amount=2.0)", 16000);
+		assertSame(chain, EffectChain.forEffects("Robot(amount=50)+Volume(amount=2.0)", 16000));
+		assertEquals(2, chain.getEffects().length);
+		assertTrue(EffectChain.forEffects(null, 16000).isEmpty());
+		assertTrue(EffectChain.forEffects("NoSuchEffect", 16000).isEmpty());
+	}
+
+	@Test
+	public void identityEffectsReturnInput() {
+		DoubleDataSource input = new BufferedDoubleDataSource(signal(1000));
+		assertSame(input, EffectChain.forEffects("F0Add(f0Add=50)", 16000).apply(input));
+	}
+
+	@Test
+	public void effectsAreSkippedWhenTimeIsShort() {
+		EffectChain chain = EffectChain.forEffects("Robot(amount=50)", 16000);
+		DoubleDataSource input = new BufferedDoubleDataSource(signal(1000));
+		Deadline ample = new Deadline(60000, 1);
+		Deadline previous = Deadline.setCurrent(ample);
+		try {
+			assertNotSame(input, chain.apply(input));
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+		assertTrue(ample.getDegradations().isEmpty());
+		Deadline isShort = new Deadline(60000, 0);
+		previous = Deadline.setCurrent(isShort);
+		try {
+			assertSame(input, chain.apply(input));
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+		assertEquals(Arrays.asList("effects"), isShort.getDegradations());
+	}
+
+	@Test
+	public void effectsStreamFrameByFrame() {
+		int length = 10 * 16000;
+		String[] effects = { "Volume(amount=2.0)", "Robot(amount=100)", "Stadium(amount=100)",
+				"Whisper(amount=100)", "JetPilot", "TractScaler(amount=1.5)" };
+		for (String effect : effects) {
+			CountingSource input = new CountingSource(signal(length));
+			DoubleDataSource output = EffectChain.forEffects(effect, 16000).apply(input);
+			assertEquals(effect, length, output.getDataLength());
+			double[] buf = new double[1000];
+			assertEquals(effect, buf.length, output.getData(buf));
+			assertTrue(effect + " read " + input.delivered + " samples for the first 1000", input.delivered < length / 4);
+			long total = buf.length;
+			while (output.hasMoreData()) {
+				total += output.getData(buf);
+			}
+			assertEquals(effect, length, total);
+		}
+	}
+
+	private static double[] readAll(DoubleDataSource source) {
+		double[] result = new double[(int) source.getDataLength()];
+		int pos = 0;
+		while (source.hasMoreData() && pos < result.length) {
+			pos += source.getData(result, pos, Math.min(512, result.length - pos));
+		}
+		return result;
+	}
+
+	@Test
+	public void sharedChainsCanBeAppliedConcurrently() throws Exception {
+		final String effects = "FIRFilter(type=3,fc1=500,fc2=2000)+JetPilot+Stadium(amount=100)+Robot(amount=100)";
+		final int length = 2 * 16000;
+		final double[] expected = readAll(EffectChain.forEffects(effects, 16000).apply(new BufferedDoubleDataSource(signal(length))));
+		int numThreads = 4;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger mismatches = new AtomicInteger();
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < 3; i++) {
+							double[] actual = readAll(EffectChain.forEffects(effects, 16000).apply(new BufferedDoubleDataSource(signal(length))));
+							if (!Arrays.equals(expected, actual)) {
+								mismatches.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						mismatches.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(0, mismatches.get());
+	}
+}
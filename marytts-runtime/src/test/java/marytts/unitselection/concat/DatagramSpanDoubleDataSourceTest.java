@@ -0,0 +1,93 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.concat;
+
+import java.util.Random;
+
+import marytts.unitselection.data.DatagramSpan;
+import marytts.util.data.Datagram;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class DatagramSpanDoubleDataSourceTest
+{
+    private static Datagram[] randomFrames(Random random, int n)
+    {
+        Datagram[] frames = new Datagram[n];
+        for (int i=0; i<n; i++) {
+            int duration = 40 + random.nextInt(80);
+            byte[] data = new byte[2*duration];
+            random.nextBytes(data);
+            frames[i] = new Datagram(duration, data);
+        }
+        return frames;
+    }
+
+    @Test
+    public void agreesWithDatagramOverlapSource()
+    {
+        Random random = new Random(17);
+        int nUnits = 12;
+        Datagram[][] datagrams = new Datagram[nUnits][];
+        Datagram[] rightContexts = new Datagram[nUnits];
+        DatagramSpan[] spans = new DatagramSpan[nUnits];
+        DatagramSpan[] rightContextSpans = new DatagramSpan[nUnits];
+        for (int i=0; i<nUnits; i++) {
+            datagrams[i] = randomFrames(random, 1 + random.nextInt(6));
+            spans[i] = new DatagramSpan(datagrams[i]);
+            if (i % 3 != 0) {
+                rightContexts[i] = randomFrames(random, 1)[0];
+                rightContextSpans[i] = new DatagramSpan(new Datagram[] {rightContexts[i]});
+            }
+        }
+        double[] expected = new DatagramOverlapDoubleDataSource(datagrams, rightContexts).getAllData();
+        double[] actual = new DatagramSpanDoubleDataSource(spans, rightContextSpans).getAllData();
+        Assert.assertArrayEquals(expected, actual, 0);
+    }
+
+    @Test
+    public void spansCanBeSelectedAndPadded()
+    {
+        Datagram[] frames = randomFrames(new Random(3), 5);
+        DatagramSpan span = new DatagramSpan(frames);
+        DatagramSpan selected = span.select(new int[] {0, 1, 4}).insertSilence(2, 100);
+        Assert.assertEquals(4, selected.size());
+        Assert.assertEquals(frames[0], selected.getDatagram(0));
+        Assert.assertEquals(frames[1], selected.getDatagram(1));
+        Assert.assertTrue(selected.isSilence(2));
+        Assert.assertEquals(frames[4], selected.getDatagram(3));
+        long total = frames[0].getDuration() + frames[1].getDuration() + 100 + frames[4].getDuration();
+        Assert.assertEquals(total, selected.getTotalDuration());
+        double[] samples = new DatagramSpanDoubleDataSource(new DatagramSpan[] {selected}).getAllData();
+        Assert.assertEquals(total, samples.length);
+        int silenceStart = (int) (frames[0].getDuration() + frames[1].getDuration());
+        for (int i=silenceStart; i<silenceStart+100; i++) {
+            Assert.assertEquals(0, samples[i], 0);
+        }
+        // the selection shares the data, but not the durations:
+        selected.setDuration(0, 1);
+        Assert.assertEquals(frames[0].getDuration(), span.getDuration(0));
+    }
+}
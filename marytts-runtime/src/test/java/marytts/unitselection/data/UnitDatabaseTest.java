@@ -0,0 +1,140 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.data;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import marytts.cart.CART;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
+import marytts.server.Deadline;
+import marytts.unitselection.select.Target;
+import marytts.unitselection.select.TargetCostFunction;
+import marytts.unitselection.select.viterbi.ViterbiCandidate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class UnitDatabaseTest
+{
+    private static final int N_UNITS = 100;
+
+    private static class ConstantTargetCost implements TargetCostFunction
+    {
+        public double cost(Target target, Unit unit) { return 0; }
+        public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {}
+        public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {}
+        public void computeTargetFeatures(Target target) {}
+        public FeatureDefinition getFeatureDefinition() { return null; }
+        public String getFeature(Unit unit, String featureName) { return "u"; }
+        public FeatureVector getFeatureVector(Unit unit) { return null; }
+        public FeatureVector[] getFeatureVectors() { return null; }
+        public PackedFeatureStore getFeatureStore() { return null; }
+    }
+
+    /**
+     * A database whose preselection tree offers all of its units, in database order, for any target.
+     */
+    private static class AllUnitsDatabase extends UnitDatabase
+    {
+        AllUnitsDatabase()
+        {
+            final int[] all = new int[N_UNITS];
+            for (int i=0; i<N_UNITS; i++) {
+                all[i] = i;
+            }
+            targetCostFunction = new ConstantTargetCost();
+            preselectionCART = new CART() {
+                @Override
+                public Object interpret(Target target, int minNumberOfData)
+                {
+                    return all;
+                }
+            };
+            unitReader = new UnitFileReader() {
+                @Override
+                public Unit getUnit(int i)
+                {
+                    return new Unit(100L * i, 100, i);
+                }
+            };
+        }
+
+        @Override
+        public String getFilename(Unit unit)
+        {
+            return "recording" + (unit.index / 10);
+        }
+    }
+
+    @Test
+    public void returnsAllCandidatesWhileTimeIsAmple()
+    {
+        Deadline deadline = new Deadline(60000, 1);
+        Deadline previous = Deadline.setCurrent(deadline);
+        List<ViterbiCandidate> candidates;
+        try {
+            candidates = new AllUnitsDatabase().getCandidates(new Target("t", null));
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertEquals(N_UNITS, candidates.size());
+        Assert.assertTrue(deadline.getDegradations().isEmpty());
+    }
+
+    @Test
+    public void samplesCandidatesFromAllRecordingsWhenTimeIsShort()
+    {
+        Deadline deadline = new Deadline(60000, 0);
+        Deadline previous = Deadline.setCurrent(deadline);
+        List<ViterbiCandidate> candidates;
+        try {
+            candidates = new AllUnitsDatabase().getCandidates(new Target("t", null));
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertEquals(N_UNITS / 4, candidates.size());
+        Assert.assertEquals(Arrays.asList("candidates"), deadline.getDegradations());
+        boolean[] recordings = new boolean[N_UNITS / 10];
+        for (ViterbiCandidate c : candidates) {
+            recordings[c.getUnit().index / 10] = true;
+        }
+        for (int i=0; i<recordings.length; i++) {
+            Assert.assertTrue("no candidate from recording " + i, recordings[i]);
+        }
+    }
+
+    @Test
+    public void samplesEvenly()
+    {
+        int[] units = new int[] { 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 };
+        Assert.assertArrayEquals(new int[] { 10, 12, 14, 16, 18 }, UnitDatabase.sample(units, 5));
+        Assert.assertArrayEquals(new int[] { 10, 13, 16 }, UnitDatabase.sample(units, 3));
+        Assert.assertSame(units, UnitDatabase.sample(units, 10));
+    }
+}
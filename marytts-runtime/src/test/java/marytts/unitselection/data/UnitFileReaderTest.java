@@ -0,0 +1,89 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.data;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import marytts.util.data.MaryHeader;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class UnitFileReaderTest
+{
+    private static File unitFile;
+
+    @BeforeClass
+    public static void writeUnitFile() throws Exception
+    {
+        unitFile = File.createTempFile("units", ".mry");
+        unitFile.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(unitFile));
+        try {
+            new MaryHeader(MaryHeader.UNITS).writeTo(out);
+            out.writeInt(3); // number of units
+            out.writeInt(16000); // sample rate
+            out.writeLong(0);
+            out.writeInt(-1); // edge unit
+            out.writeLong(0);
+            out.writeInt(800);
+            out.writeLong(800);
+            out.writeInt(1200);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void assertUnits(UnitFileReader reader)
+    {
+        Assert.assertEquals(3, reader.getNumberOfUnits());
+        Assert.assertEquals(16000, reader.getSampleRate());
+        Assert.assertTrue(reader.isEdgeUnit(0));
+        Unit unit = reader.getUnit(2);
+        Assert.assertEquals(800, unit.startTime);
+        Assert.assertEquals(1200, unit.duration);
+        Assert.assertEquals(2, unit.index);
+        Assert.assertEquals(1, reader.getPreviousUnit(unit).index);
+        Assert.assertNull(reader.getNextUnit(unit));
+    }
+
+    @Test
+    public void readsMappedUnits() throws Exception
+    {
+        UnitFileReader reader = new UnitFileReader(unitFile.getPath());
+        assertUnits(reader);
+    }
+
+    @Test
+    public void readsPreloadedUnits() throws Exception
+    {
+        UnitFileReader reader = new UnitFileReader();
+        reader.load(unitFile.getPath(), true);
+        assertUnits(reader);
+        Assert.assertSame(reader.getUnit(1), reader.getUnit(1));
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select.viterbi;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import marytts.exceptions.SynthesisException;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.features.PackedFeatureStore;
+import marytts.server.Deadline;
+import marytts.unitselection.data.FeatureFileReader;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.data.UnitDatabase;
+import marytts.unitselection.select.JoinCostFunction;
+import marytts.unitselection.select.SelectedUnit;
+import marytts.unitselection.select.Target;
+import marytts.unitselection.select.TargetCostFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ViterbiTest
+{
+    private static final int[] BEAM_SIZES = new int[] { -1, 2, 5 };
+
+    /**
+     * Pseudo-random but reproducible costs between 0 and 1.
+     */
+    private static double noise(long seed)
+    {
+        return new Random(seed).nextDouble();
+    }
+
+    private static class SyntheticTargetCost implements TargetCostFunction
+    {
+        public double cost(Target target, Unit unit)
+        {
+            return noise(31L * target.getName().hashCode() + unit.index);
+        }
+
+        public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {}
+        public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {}
+        public void computeTargetFeatures(Target target) {}
+        public FeatureDefinition getFeatureDefinition() { return null; }
+        public String getFeature(Unit unit, String featureName) { return "u"; }
+        public FeatureVector getFeatureVector(Unit unit) { return null; }
+        public FeatureVector[] getFeatureVectors() { return null; }
+        public PackedFeatureStore getFeatureStore() { return null; }
+    }
+
+    private static class SyntheticJoinCost implements JoinCostFunction
+    {
+        int joins = 0;
+
+        public double cost(Target t1, Unit u1, Target t2, Unit u2)
+        {
+            joins++;
+            // units recorded one after the other join perfectly
+            return u2.index == u1.index + 1 ? 0 : noise(1000003L * u1.index + u2.index);
+        }
+
+        public void init(String configPrefix) {}
+        public void load(String joinFileName, InputStream weightStream, String precompiledCostFileName, float wSignal) {}
+    }
+
+    /**
+     * A database with a handful of candidate units for each target, drawn at random from a small inventory.
+     */
+    private static class SyntheticDatabase extends UnitDatabase
+    {
+        private final long seed;
+        private final int nCandidates;
+
+        SyntheticDatabase(long seed)
+        {
+            this(seed, 6);
+        }
+
+        SyntheticDatabase(long seed, int nCandidates)
+        {
+            this.seed = seed;
+            this.nCandidates = nCandidates;
+            this.targetCostFunction = new SyntheticTargetCost();
+            this.joinCostFunction = new SyntheticJoinCost();
+        }
+
+        @Override
+        public List<ViterbiCandidate> getCandidates(Target target)
+        {
+            Random random = new Random(seed * 7919 + target.getName().hashCode());
+            List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
+            for (int i=0; i<nCandidates; i++) {
+                int index = random.nextInt(200);
+                candidates.add(new ViterbiCandidate(target, new Unit(10L * index, 10, index), targetCostFunction));
+            }
+            return candidates;
+        }
+    }
+
+    /**
+     * An utterance of the given length, with a silence every seven targets.
+     */
+    private static List<Target> targets(int length)
+    {
+        List<Target> targets = new ArrayList<Target>();
+        for (int i=0; i<length; i++) {
+            targets.add(new Target((i % 7 == 6 ? "_" : "t") + i, null));
+        }
+        return targets;
+    }
+
+    private static class CollectingListener implements Viterbi.SelectionListener
+    {
+        final List<SelectedUnit> units = new ArrayList<SelectedUnit>();
+        int calls = 0;
+
+        public void unitsSelected(List<SelectedUnit> selected)
+        {
+            Assert.assertFalse("empty call", selected.isEmpty());
+            units.addAll(selected);
+            calls++;
+        }
+    }
+
+    private static void assertSameUnits(String message, List<SelectedUnit> expected, List<SelectedUnit> actual)
+    {
+        Assert.assertEquals(message, expected.size(), actual.size());
+        for (int i=0; i<expected.size(); i++) {
+            Assert.assertSame(message + ", target " + i, expected.get(i).getTarget(), actual.get(i).getTarget());
+            Assert.assertEquals(message + ", unit " + i, expected.get(i).getUnit().index, actual.get(i).getUnit().index);
+        }
+    }
+
+    @Test
+    public void incrementalSelectionFindsTheSameUnits() throws SynthesisException
+    {
+        for (int seed=1; seed<=20; seed++) {
+            for (int beam : BEAM_SIZES) {
+                List<Target> targets = targets(30);
+                Viterbi batch = new Viterbi(targets, new SyntheticDatabase(seed), 0.5f, beam);
+                batch.apply();
+                CollectingListener listener = new CollectingListener();
+                new Viterbi(targets, new SyntheticDatabase(seed), 0.5f, beam).apply(listener, false);
+                assertSameUnits("seed " + seed + ", beam " + beam, batch.getSelectedUnits(), listener.units);
+            }
+        }
+    }
+
+    @Test
+    public void committedUnitsAreNeverRevised() throws SynthesisException
+    {
+        for (int seed=1; seed<=20; seed++) {
+            for (int beam : BEAM_SIZES) {
+                for (boolean commitAtSilences : new boolean[] { false, true }) {
+                    final List<Target> targets = targets(30);
+                    final Viterbi viterbi = new Viterbi(targets, new SyntheticDatabase(seed), 0.5f, beam);
+                    CollectingListener listener = new CollectingListener();
+                    viterbi.apply(listener, commitAtSilences);
+                    // the final best path starts with everything handed on before
+                    assertSameUnits("seed " + seed + ", beam " + beam + ", commit at silences " + commitAtSilences,
+                            viterbi.getSelectedUnits(), listener.units);
+                    if (commitAtSilences) {
+                        // at least once per silence, plus the rest at the end
+                        Assert.assertTrue(listener.calls > 30 / 7);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unitsArriveInUtteranceOrder() throws SynthesisException
+    {
+        final List<Target> targets = targets(50);
+        final List<Target> seen = new ArrayList<Target>();
+        final Viterbi viterbi = new Viterbi(targets, new SyntheticDatabase(42), 0.5f, 3);
+        viterbi.apply(new Viterbi.SelectionListener() {
+            public void unitsSelected(List<SelectedUnit> units)
+            {
+                for (SelectedUnit u : units) {
+                    seen.add(u.getTarget());
+                }
+                // only targets whose units are final are handed on
+                Assert.assertTrue(seen.size() <= targets.size());
+            }
+        }, true);
+        Assert.assertEquals(targets, seen);
+    }
+
+    @Test
+    public void narrowsTheBeamWhenTimeIsShort() throws SynthesisException
+    {
+        SyntheticDatabase ample = new SyntheticDatabase(1, 40);
+        new Viterbi(targets(30), ample, 0.5f, 40).apply();
+        SyntheticDatabase degraded = new SyntheticDatabase(1, 40);
+        Deadline deadline = new Deadline(60000, 0);
+        Deadline previous = Deadline.setCurrent(deadline);
+        Viterbi viterbi;
+        try {
+            viterbi = new Viterbi(targets(30), degraded, 0.5f, 40);
+            viterbi.apply();
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+        Assert.assertEquals(Arrays.asList("beam"), deadline.getDegradations());
+        Assert.assertEquals(30, viterbi.getSelectedUnits().size());
+        // a quarter of the paths, each extended to a quarter of the candidates
+        int ampleJoins = ((SyntheticJoinCost) ample.getJoinCostFunction()).joins;
+        int degradedJoins = ((SyntheticJoinCost) degraded.getJoinCostFunction()).joins;
+        Assert.assertTrue(degradedJoins + " joins", degradedJoins * 8 < ampleJoins);
+    }
+}
@@ -171,7 +171,6 @@ public class MaryServer implements Runnable {
 
     private ServerSocket server;
     private Logger logger;
-    private int runningNumber = 1;
     private Map<Integer, Object[]> clientMap = Collections.synchronizedMap(new HashMap<Integer, Object[]>());
     private Executor clients = Executors.newCachedThreadPool();
 
@@ -196,10 +195,6 @@ public class MaryServer implements Runnable {
         }
     }
 
-    private synchronized int getID() {
-        return runningNumber++;
-    }
-
     public class ClientHandler implements Runnable {
 
         Socket client;
@@ -389,7 +384,7 @@ public class MaryServer implements Runnable {
 
             // Now, the parse is complete.
             // this request's id:
-            id = getID();
+            id = Request.newId();
 
 
             AudioFormat audioFormat = voice.dbAudioFormat();
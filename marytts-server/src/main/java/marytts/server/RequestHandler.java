@@ -35,9 +35,11 @@ import javax.sound.sampled.AudioSystem;
 import javax.xml.transform.TransformerException;
 
 import marytts.datatypes.MaryDataType;
+import marytts.exceptions.AdmissionException;
 import marytts.server.http.MaryHttpServerUtils;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
+import marytts.util.io.FileUtils;
 import marytts.util.io.LoggingReader;
 
 import org.apache.http.HttpResponse;
@@ -142,8 +144,10 @@ public class RequestHandler extends Thread {
         // * in turn, write to and read from each module according to data type
         // * write output according to its type
 
+        String inputText = null;
         try {
-            request.readInputData(inputReader);
+            inputText = FileUtils.getReaderAsString(inputReader);
+            request.setInputData(inputText);
         } catch (Exception e) {
             String message = "Problem reading input";
             logger.warn(message, e);
@@ -151,6 +155,20 @@ public class RequestHandler extends Thread {
             ok = false;
         }
 
+        // Wait until the server has capacity for this request
+        AdmissionController.Ticket ticket = null;
+        if (ok) {
+            AdmissionController admission = AdmissionController.getInstance();
+            try {
+                ticket = admission.admit(request.getDefaultVoice() != null ? request.getDefaultVoice().getName() : null,
+                        admission.classify(inputText));
+            } catch (AdmissionException e) {
+                logger.warn("Request rejected: " + e.getMessage());
+                clientLogError("Request rejected.", e);
+                ok = false;
+            }
+        }
+
         boolean streamingOutput = false;
         StreamingOutputWriter rw = null;
         // Process input data to output data
@@ -202,6 +220,9 @@ public class RequestHandler extends Thread {
                 }
             }
         }            
+        if (ticket != null) {
+            ticket.release();
+        }
         try {
             dataSocket.close();
         } catch (IOException e) {
@@ -23,13 +23,16 @@ package marytts.server.http;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
+import marytts.exceptions.RequestCancelledException;
 import marytts.server.Request;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.ChunkedAudioInputStream;
 
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.nio.ContentEncoder;
@@ -50,6 +53,7 @@ extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
     private Request maryRequest;
     private AudioInputStream audio;
     private AudioFileFormat.Type audioType;
+    private StreamingAudioEncoder encoder;
     private Logger logger;
     private Object mutex;
     private SharedOutputBuffer out;
@@ -63,6 +67,19 @@ extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
         this.mutex = new Object();
     }
 
+    /**
+     * Create an entity which streams the request's audio through the given encoder,
+     * rather than writing it as the request's audio file type.
+     * @param maryRequest
+     * @param encoder a fresh encoder for this request.
+     */
+    public AudioStreamNHttpEntity(Request maryRequest, StreamingAudioEncoder encoder)
+    {
+        this(maryRequest);
+        this.encoder = encoder;
+        setContentType(encoder.getMimeType());
+    }
+
     public void finish()
     {
         assert logger != null : "we should never be able to write if run() is not called";
@@ -70,6 +87,7 @@ extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
         maryRequest = null;
         audio = null;
         audioType = null;
+        encoder = null;
         logger = null;
     }
 
@@ -115,22 +133,37 @@ extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
         this.logger = MaryUtils.getLogger(Thread.currentThread().getName());
         // We must wait until produceContent() is called:
         while (out == null) {
+            if (maryRequest.getCancellationToken().isCancelled()) {
+                logger.info("Request cancelled before output could be written");
+                return;
+            }
             synchronized(mutex) {
                 try {
-                    mutex.wait();
+                    mutex.wait(1000);
                 } catch (InterruptedException e) {}
             }
         }
         assert out != null;
         ContentOutputStream outStream = new ContentOutputStream(out);
         try {
-            AudioSystem.write(audio, audioType, outStream);
+            if (encoder != null) {
+                encoder.encode(audio, outStream);
+            } else if (audioType == AudioFileFormat.Type.AU
+                    && audio instanceof ChunkedAudioInputStream
+                    && ((ChunkedAudioInputStream) audio).canTransferAsAU()) {
+                // pass the audio on as it is appended, without the conversion streams of AudioSystem.write()
+                ((ChunkedAudioInputStream) audio).transferToAU(Channels.newChannel(outStream));
+            } else {
+                AudioSystem.write(audio, audioType, outStream);
+            }
             outStream.flush();
             outStream.close();                
             logger.info("Finished writing output");
         } catch (IOException ioe) {
             logger.info("Cannot write output, client seems to have disconnected. ", ioe);
             maryRequest.abort();
+        } catch (RequestCancelledException e) {
+            logger.info("Request cancelled while writing output");
         }
     }
 
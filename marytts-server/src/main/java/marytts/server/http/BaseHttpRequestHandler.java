@@ -45,6 +45,7 @@ import marytts.signalproc.effects.AudioEffects;
 import marytts.signalproc.effects.BaseAudioEffect;
 import marytts.unitselection.UnitSelectionVoice;
 import marytts.unitselection.interpolation.InterpolatingVoice;
+import marytts.util.CancellationToken;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.http.Address;
@@ -77,6 +78,12 @@ import org.apache.log4j.Logger;
  */
 public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler implements HttpRequestHandler  
 {
+    /**
+     * The name of the connection context attribute holding the connection's {@link CancellationToken},
+     * which is cancelled when the connection is closed.
+     */
+    static final String CANCELLATION_TOKEN = "marytts.cancellation";
+
     private final boolean useFileChannels = true;
     
     protected static Logger logger;
@@ -99,6 +106,13 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
     public void handle(final HttpRequest request, final HttpResponse response, final HttpContext context)
     throws HttpException, IOException
     {
+        // Requests created while handling this one are cancelled when the connection closes:
+        CancellationToken connectionToken = (CancellationToken) context.getAttribute(CANCELLATION_TOKEN);
+        if (connectionToken == null) {
+            connectionToken = new CancellationToken();
+            context.setAttribute(CANCELLATION_TOKEN, connectionToken);
+        }
+        CancellationToken previousToken = CancellationToken.setCurrent(connectionToken);
         try {
             Header[] tmp = request.getHeaders("Host");
             Address serverAddressAtClient = getServerAddressAtClient(tmp[0].getValue());
@@ -145,6 +159,8 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
 
         } catch (RuntimeException re) {
             logger.warn("runtime exception in handle():", re);
+        } finally {
+            CancellationToken.setCurrent(previousToken);
         }
     }
 
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Base class for encoders of 16 bit linear PCM audio. The audio is read in
+ * blocks as it becomes available; each block is converted to samples,
+ * passed to {@link #encodeSamples(short[], int, OutputStream)} and flushed
+ * to the client.
+ *
+ * @author agent
+ */
+public abstract class BaseStreamingAudioEncoder implements StreamingAudioEncoder
+{
+    /** The number of frames to read from the audio at a time */
+    protected static final int BUFFER_FRAMES = 1024;
+
+    public boolean canEncode(AudioFormat format)
+    {
+        return format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+            && format.getSampleSizeInBits() == 16;
+    }
+
+    public void encode(AudioInputStream audio, OutputStream out) throws IOException
+    {
+        AudioFormat format = audio.getFormat();
+        if (!canEncode(format)) {
+            throw new IOException("Cannot encode audio format "+format+" as "+getName());
+        }
+        writeHeader(format, out);
+        out.flush();
+        boolean bigEndian = format.isBigEndian();
+        byte[] bytes = new byte[BUFFER_FRAMES * format.getFrameSize()];
+        short[] samples = new short[bytes.length / 2];
+        int nRead;
+        while ((nRead = audio.read(bytes)) != -1) {
+            int nSamples = nRead / 2;
+            for (int i=0; i<nSamples; i++) {
+                if (bigEndian) {
+                    samples[i] = (short) ((bytes[2*i] << 8) | (bytes[2*i+1] & 0xFF));
+                } else {
+                    samples[i] = (short) ((bytes[2*i+1] << 8) | (bytes[2*i] & 0xFF));
+                }
+            }
+            if (nSamples > 0) {
+                encodeSamples(samples, nSamples, out);
+                out.flush();
+            }
+        }
+        finish(out);
+        out.flush();
+    }
+
+    /**
+     * Write the header of the encoded stream. As the length of the audio is not known
+     * in advance, the header must not depend on it.
+     * @param format the format of the audio to be encoded
+     * @param out the stream to write to
+     */
+    protected abstract void writeHeader(AudioFormat format, OutputStream out) throws IOException;
+
+    /**
+     * Encode the next samples. For multi-channel audio, the samples are interleaved.
+     * @param samples the samples
+     * @param n the number of valid samples in the array
+     * @param out the stream to write to
+     */
+    protected abstract void encodeSamples(short[] samples, int n, OutputStream out) throws IOException;
+
+    /**
+     * Write any remaining data after the end of the audio. This implementation does nothing.
+     * @param out the stream to write to
+     */
+    protected void finish(OutputStream out) throws IOException
+    {
+    }
+
+    /**
+     * Write a 32 bit integer in big-endian byte order.
+     */
+    protected static void writeIntBE(OutputStream out, int value) throws IOException
+    {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Write a 32 bit integer in little-endian byte order.
+     */
+    protected static void writeIntLE(OutputStream out, int value) throws IOException
+    {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * Write a 16 bit integer in little-endian byte order.
+     */
+    protected static void writeShortLE(OutputStream out, int value) throws IOException
+    {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+}
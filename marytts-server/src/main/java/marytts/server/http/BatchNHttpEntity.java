@@ -0,0 +1,243 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import marytts.util.MaryUtils;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentOutputStream;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedOutputBuffer;
+import org.apache.log4j.Logger;
+
+/**
+ * An entity which processes the items of a batch request on an executor
+ * and streams their results as the parts of a <code>multipart/mixed</code> body.
+ * Each part has the headers <code>Content-Type</code>, <code>Content-Length</code>,
+ * <code>X-Mary-Batch-Index</code> (the position of the item in the batch, starting at 0)
+ * and <code>X-Mary-Batch-Status</code> (the HTTP status the item would have had
+ * as a single request).
+ * <p>
+ * The parts are written either in the order of the items, or in the order in which
+ * they are completed. No more than a fixed number of items are submitted
+ * to the executor before their results have been written.
+ *
+ * @author agent
+ */
+public class BatchNHttpEntity
+extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
+{
+    static final String INDEX_HEADER = "X-Mary-Batch-Index";
+    static final String STATUS_HEADER = "X-Mary-Batch-Status";
+
+    private List<Callable<Part>> items;
+    private ExecutorService executor;
+    private int window;
+    private boolean inOrder;
+    private String boundary;
+    private Logger logger;
+    private Object mutex;
+    private SharedOutputBuffer out;
+
+    /**
+     * @param items the computations producing the result of each item in the batch
+     * @param executor the executor on which to run the items
+     * @param window the maximum number of items processed or waiting to be written at any time
+     * @param inOrder if true, write the results in the order of the items; if false, as they are completed.
+     */
+    public BatchNHttpEntity(List<Callable<Part>> items, ExecutorService executor, int window, boolean inOrder)
+    {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1, got "+window);
+        }
+        this.items = items;
+        this.executor = executor;
+        this.window = window;
+        this.inOrder = inOrder;
+        this.boundary = "MaryBatch" + Long.toHexString(new Random().nextLong());
+        setContentType("multipart/mixed; boundary=" + boundary);
+        this.mutex = new Object();
+    }
+
+    public void finish()
+    {
+        items = null;
+        executor = null;
+        logger = null;
+    }
+
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl)
+    throws IOException
+    {
+        if (out == null) {
+            synchronized (mutex) {
+                out = new SharedOutputBuffer(8192, ioctrl, new HeapByteBufferAllocator());
+                mutex.notify();
+            }
+        }
+        while (!encoder.isCompleted())
+            out.produceContent(encoder);
+    }
+
+    public long getContentLength() {
+        return -1;
+    }
+
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    public boolean isStreaming() {
+        return true;
+    }
+
+    public InputStream getContent() {
+        return null;
+    }
+
+    public void writeTo(final OutputStream outstream) throws IOException {
+        throw new RuntimeException("Should not be called");
+    }
+
+    /**
+     * Wait for the SharedOutputBuffer to become available, then process the items
+     * and write their results to it.
+     */
+    public void run()
+    {
+        this.logger = MaryUtils.getLogger(Thread.currentThread().getName());
+        // We must wait until produceContent() is called:
+        while (out == null) {
+            synchronized(mutex) {
+                try {
+                    mutex.wait();
+                } catch (InterruptedException e) {}
+            }
+        }
+        assert out != null;
+        int numItems = items.size();
+        ContentOutputStream outStream = new ContentOutputStream(out);
+        List<Future<Part>> submitted = new ArrayList<Future<Part>>();
+        try {
+            write(outStream, submitted);
+            outStream.flush();
+            outStream.close();
+            logger.info("Finished writing "+numItems+" batch results");
+        } catch (IOException ioe) {
+            logger.info("Cannot write output, client seems to have disconnected. ", ioe);
+        } catch (InterruptedException ie) {
+            logger.info("Interrupted while processing batch", ie);
+        } finally {
+            for (Future<Part> f : submitted) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Process the items and write their results to out, followed by the closing delimiter.
+     * @param submitted receives the futures of the items as they are submitted
+     */
+    void write(OutputStream out, List<Future<Part>> submitted) throws IOException, InterruptedException
+    {
+        CompletionService<Part> completion = new ExecutorCompletionService<Part>(executor);
+        TreeMap<Integer, Part> completed = new TreeMap<Integer, Part>();
+        int numItems = items.size();
+        int written = 0;
+        while (written < numItems) {
+            while (submitted.size() < numItems && submitted.size() - written < window) {
+                submitted.add(completion.submit(items.get(submitted.size())));
+            }
+            Part part;
+            try {
+                part = completion.take().get();
+            } catch (ExecutionException e) {
+                // the items are expected to report their problems in their result
+                throw new IOException("Batch item failed", e.getCause());
+            }
+            if (inOrder) {
+                completed.put(part.index, part);
+                while (completed.containsKey(written)) {
+                    writePart(out, boundary, completed.remove(written));
+                    written++;
+                }
+            } else {
+                writePart(out, boundary, part);
+                written++;
+            }
+            out.flush();
+        }
+        out.write(("--" + boundary + "--\r\n").getBytes("US-ASCII"));
+    }
+
+    /**
+     * Write one part of a multipart body, including the delimiter before it.
+     */
+    static void writePart(OutputStream out, String boundary, Part part) throws IOException
+    {
+        StringBuilder header = new StringBuilder();
+        header.append("--").append(boundary).append("\r\n");
+        header.append("Content-Type: ").append(part.contentType).append("\r\n");
+        header.append("Content-Length: ").append(part.data.length).append("\r\n");
+        header.append(INDEX_HEADER).append(": ").append(part.index).append("\r\n");
+        header.append(STATUS_HEADER).append(": ").append(part.status).append("\r\n");
+        header.append("\r\n");
+        out.write(header.toString().getBytes("US-ASCII"));
+        out.write(part.data);
+        out.write('\r');
+        out.write('\n');
+    }
+
+    /**
+     * The result of one item in a batch.
+     */
+    public static class Part
+    {
+        final int index;
+        final int status;
+        final String contentType;
+        final byte[] data;
+
+        public Part(int index, int status, String contentType, byte[] data)
+        {
+            this.index = index;
+            this.status = status;
+            this.contentType = contentType;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.server.MaryProperties;
+import marytts.util.CancellationToken;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Processes batch synthesis requests: many inputs with the same parameters
+ * in one http request. The parameters are the same as for a single synthesis request,
+ * except that INPUT_TEXT contains one input per line; within a line, "\n" stands for
+ * a line break and "\\" for a backslash. Empty lines are ignored.
+ * <p>
+ * The inputs are processed in parallel on a pool of
+ * <code>server.http.batch.threads</code> threads shared by all batch requests,
+ * and the results are streamed back as a <code>multipart/mixed</code> body
+ * (see {@link BatchNHttpEntity}). With BATCH_ORDER=completion, the results are sent
+ * as soon as they are available; by default, they are sent in the order of the inputs.
+ * Streaming audio types are processed as the corresponding file types.
+ *
+ * @author agent
+ */
+public class BatchSynthesisRequestHandler extends SynthesisRequestHandler
+{
+    private static int batchId = 0;
+
+    private static synchronized int getBatchId()
+    {
+        return batchId++;
+    }
+
+    private ExecutorService pool;
+    private int window;
+
+    public BatchSynthesisRequestHandler()
+    {
+        super();
+        int numThreads = MaryProperties.getInteger("server.http.batch.threads", Runtime.getRuntime().availableProcessors());
+        numThreads = Math.max(1, numThreads);
+        pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "BatchSynthesis-"+count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // keep all threads busy while results are written, but do not run ahead too far:
+        window = 2 * numThreads;
+    }
+
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, final Address serverAddressAtClient)
+    throws IOException
+    {
+        if (queryItems == null || !queryItems.containsKey("INPUT_TEXT")) {
+            MaryHttpServerUtils.errorMissingQueryParameter(response, "'INPUT_TEXT'");
+            return;
+        }
+        String order = queryItems.get("BATCH_ORDER");
+        if (order != null && !order.equals("input") && !order.equals("completion")) {
+            MaryHttpServerUtils.errorWrongQueryParameterValue(response, "BATCH_ORDER", order, "expected 'input' or 'completion'");
+            return;
+        }
+        List<String> inputs = splitInputs(queryItems.get("INPUT_TEXT"));
+        logger.debug("New batch synthesis request with "+inputs.size()+" inputs");
+        // the parameters shared by all inputs:
+        final Map<String, String> itemQuery = new HashMap<String, String>(queryItems);
+        itemQuery.remove("INPUT_TEXT");
+        itemQuery.remove("BATCH_ORDER");
+        String audio = itemQuery.get("AUDIO");
+        if (audio != null && audio.endsWith("_STREAM")) {
+            itemQuery.put("AUDIO", audio.substring(0, audio.length() - "_STREAM".length()) + "_FILE");
+        }
+        // batch items give way to interactive requests unless the client says otherwise
+        if (!itemQuery.containsKey("PRIORITY")) {
+            itemQuery.put("PRIORITY", "batch");
+        }
+        // the items are processed in the pool, but are cancelled with this connection:
+        final CancellationToken cancellation = CancellationToken.current();
+        List<Callable<BatchNHttpEntity.Part>> items = new ArrayList<Callable<BatchNHttpEntity.Part>>(inputs.size());
+        for (int i=0; i<inputs.size(); i++) {
+            final int index = i;
+            final String input = inputs.get(i);
+            items.add(new Callable<BatchNHttpEntity.Part>() {
+                public BatchNHttpEntity.Part call() {
+                    CancellationToken previousToken = CancellationToken.setCurrent(cancellation);
+                    try {
+                        return processItem(index, input, itemQuery, serverAddressAtClient);
+                    } finally {
+                        CancellationToken.setCurrent(previousToken);
+                    }
+                }
+            });
+        }
+        BatchNHttpEntity entity = new BatchNHttpEntity(items, pool, window, !"completion".equals(order));
+        new Thread(entity, "HTTPWriter batch "+getBatchId()).start();
+        response.setEntity(entity);
+        response.setStatusCode(HttpStatus.SC_OK);
+    }
+
+    /**
+     * Process one input of a batch as if it were a single synthesis request.
+     */
+    private BatchNHttpEntity.Part processItem(int index, String input, Map<String, String> itemQuery, Address serverAddressAtClient)
+    {
+        Map<String, String> query = new HashMap<String, String>(itemQuery);
+        query.put("INPUT_TEXT", input);
+        HttpResponse itemResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        try {
+            process(serverAddressAtClient, query, itemResponse);
+            HttpEntity entity = itemResponse.getEntity();
+            byte[] data = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+            String contentType = entity != null && entity.getContentType() != null
+                ? entity.getContentType().getValue()
+                : "text/plain; charset=UTF-8";
+            return new BatchNHttpEntity.Part(index, itemResponse.getStatusLine().getStatusCode(), contentType, data);
+        } catch (Throwable t) {
+            logger.warn("Problem processing batch item "+index, t);
+            byte[] message;
+            try {
+                message = String.valueOf(t).getBytes("UTF-8");
+            } catch (IOException e) {
+                message = new byte[0];
+            }
+            return new BatchNHttpEntity.Part(index, HttpStatus.SC_INTERNAL_SERVER_ERROR, "text/plain; charset=UTF-8", message);
+        }
+    }
+
+    /**
+     * Split the text of a batch request into its inputs.
+     * @param text one input per line, with "\n" and "\\" standing for a line break and a backslash
+     * @return the non-empty inputs, in order.
+     */
+    static List<String> splitInputs(String text)
+    {
+        List<String> inputs = new ArrayList<String>();
+        for (String line : text.split("\r?\n")) {
+            if (line.length() == 0) {
+                continue;
+            }
+            StringBuilder input = new StringBuilder(line.length());
+            for (int i=0; i<line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '\\' && i+1 < line.length()) {
+                    char next = line.charAt(i+1);
+                    if (next == 'n') {
+                        input.append('\n');
+                        i++;
+                        continue;
+                    } else if (next == '\\') {
+                        input.append('\\');
+                        i++;
+                        continue;
+                    }
+                }
+                input.append(c);
+            }
+            inputs.add(input.toString());
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+import marytts.server.Mary;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Processor class for health check http requests to Mary server, e.g. from a load balancer.
+ * <ul>
+ * <li><code>/live</code> answers OK as long as the server is running,
+ * so a failure means that it should be restarted;</li>
+ * <li><code>/ready</code> answers OK only when the server can process requests at full speed,
+ * i.e. after the warm-up (see {@link marytts.server.WarmUp}), and "Service unavailable" before,
+ * so that requests can be sent to other servers in the meantime.</li>
+ * </ul>
+ *
+ * @author agent
+ */
+public class HealthRequestHandler extends BaseHttpRequestHandler
+{
+    public HealthRequestHandler()
+    {
+        super();
+    }
+
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
+    throws IOException
+    {
+        boolean ok;
+        String notOk;
+        if (absPath.equals("/ready")) {
+            ok = isReady();
+            notOk = isRunning() ? "Warming up" : "Not running";
+        } else {
+            ok = isRunning();
+            notOk = "Not running";
+        }
+        if (ok) {
+            MaryHttpServerUtils.toHttpResponse("OK\n", response, "text/plain; charset=UTF-8");
+        } else {
+            MaryHttpServerUtils.errorServiceUnavailable(response, notOk, 5);
+        }
+    }
+
+    /**
+     * @return whether the server is running.
+     */
+    protected boolean isRunning()
+    {
+        return Mary.currentState() == Mary.STATE_RUNNING;
+    }
+
+    /**
+     * @return whether the server is running and warmed up, see {@link Mary#isReady()}.
+     */
+    protected boolean isReady()
+    {
+        return Mary.isReady();
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Encode mono audio as 4 bit IMA ADPCM in a WAV stream, which reduces
+ * the size of 16 bit audio to about a quarter.
+ * <p>
+ * The audio is encoded in blocks as used by WAV files (format tag 0x0011),
+ * each of which starts with a header holding the first sample and the
+ * current step index, so a block is written as soon as enough samples are available.
+ * The last block is padded with silence. As the length of the audio is not known
+ * in advance, the RIFF and data chunk sizes are set to the maximum value, and no
+ * "fact" chunk is written.
+ *
+ * @author agent
+ */
+public class ImaAdpcmAudioEncoder extends BaseStreamingAudioEncoder
+{
+    public static final int WAVE_FORMAT_IMA_ADPCM = 0x0011;
+    private static final int BLOCK_HEADER_SIZE = 4;
+    private static final int UNKNOWN_SIZE = 0xffffffff;
+
+    static final int[] STEP_SIZES = {
+        7, 8, 9, 10, 11, 12, 13, 14, 16, 17,
+        19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+        50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+        130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+        337, 371, 408, 449, 494, 544, 598, 658, 724, 796,
+        876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+        2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+        5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+        15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    static final int[] INDEX_CHANGES = {
+        -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    private int predictor;
+    private int stepIndex;
+    private short[] block;
+    private int inBlock;
+    private byte[] encoded;
+
+    public String getName()
+    {
+        return "IMA_ADPCM";
+    }
+
+    public String getMimeType()
+    {
+        return "audio/x-wav";
+    }
+
+    @Override
+    public boolean canEncode(AudioFormat format)
+    {
+        return super.canEncode(format) && format.getChannels() == 1;
+    }
+
+    /**
+     * The block size in bytes, chosen in the same way as common encoders do
+     * depending on the sampling rate.
+     */
+    static int getBlockAlign(float sampleRate)
+    {
+        if (sampleRate <= 11025) return 256;
+        if (sampleRate <= 22050) return 512;
+        return 1024;
+    }
+
+    /**
+     * The number of samples encoded in a block of the given size:
+     * one in the block header, two per following byte.
+     */
+    static int getSamplesPerBlock(int blockAlign)
+    {
+        return (blockAlign - BLOCK_HEADER_SIZE) * 2 + 1;
+    }
+
+    protected void writeHeader(AudioFormat format, OutputStream out) throws IOException
+    {
+        int sampleRate = (int) format.getSampleRate();
+        int blockAlign = getBlockAlign(sampleRate);
+        int samplesPerBlock = getSamplesPerBlock(blockAlign);
+        block = new short[samplesPerBlock];
+        encoded = new byte[blockAlign];
+        inBlock = 0;
+        predictor = 0;
+        stepIndex = 0;
+
+        out.write(new byte[] {'R', 'I', 'F', 'F'});
+        writeIntLE(out, UNKNOWN_SIZE);
+        out.write(new byte[] {'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        writeIntLE(out, 20); // fmt chunk size
+        writeShortLE(out, WAVE_FORMAT_IMA_ADPCM);
+        writeShortLE(out, 1); // channels
+        writeIntLE(out, sampleRate);
+        writeIntLE(out, (int) ((long) sampleRate * blockAlign / samplesPerBlock)); // average bytes per second
+        writeShortLE(out, blockAlign);
+        writeShortLE(out, 4); // bits per sample
+        writeShortLE(out, 2); // size of extra format information
+        writeShortLE(out, samplesPerBlock);
+        out.write(new byte[] {'d', 'a', 't', 'a'});
+        writeIntLE(out, UNKNOWN_SIZE);
+    }
+
+    protected void encodeSamples(short[] samples, int n, OutputStream out) throws IOException
+    {
+        int i = 0;
+        while (i < n) {
+            int toCopy = Math.min(n - i, block.length - inBlock);
+            System.arraycopy(samples, i, block, inBlock, toCopy);
+            inBlock += toCopy;
+            i += toCopy;
+            if (inBlock == block.length) {
+                encodeBlock(out);
+            }
+        }
+    }
+
+    @Override
+    protected void finish(OutputStream out) throws IOException
+    {
+        if (inBlock > 0) {
+            for (int i=inBlock; i<block.length; i++) {
+                block[i] = 0;
+            }
+            encodeBlock(out);
+        }
+    }
+
+    private void encodeBlock(OutputStream out) throws IOException
+    {
+        predictor = block[0];
+        encoded[0] = (byte) predictor;
+        encoded[1] = (byte) (predictor >> 8);
+        encoded[2] = (byte) stepIndex;
+        encoded[3] = 0;
+        for (int i=1, pos=BLOCK_HEADER_SIZE; i<block.length; i+=2, pos++) {
+            int low = encodeSample(block[i]);
+            int high = encodeSample(block[i+1]);
+            encoded[pos] = (byte) (low | (high << 4));
+        }
+        out.write(encoded, 0, encoded.length);
+        inBlock = 0;
+    }
+
+    /**
+     * Encode one sample as a 4 bit code relative to the current predictor,
+     * and update the predictor and step index as the decoder will.
+     */
+    private int encodeSample(int sample)
+    {
+        int step = STEP_SIZES[stepIndex];
+        int diff = sample - predictor;
+        int code = 0;
+        if (diff < 0) {
+            code = 8;
+            diff = -diff;
+        }
+        int delta = step >> 3;
+        if (diff >= step) {
+            code |= 4;
+            diff -= step;
+            delta += step;
+        }
+        step >>= 1;
+        if (diff >= step) {
+            code |= 2;
+            diff -= step;
+            delta += step;
+        }
+        step >>= 1;
+        if (diff >= step) {
+            code |= 1;
+            delta += step;
+        }
+        if ((code & 8) != 0) {
+            predictor -= delta;
+        } else {
+            predictor += delta;
+        }
+        if (predictor > Short.MAX_VALUE) predictor = Short.MAX_VALUE;
+        else if (predictor < Short.MIN_VALUE) predictor = Short.MIN_VALUE;
+        stepIndex += INDEX_CHANGES[code & 7];
+        if (stepIndex < 0) stepIndex = 0;
+        else if (stepIndex >= STEP_SIZES.length) stepIndex = STEP_SIZES.length - 1;
+        return code;
+    }
+}
@@ -83,7 +83,7 @@ public class InfoRequestHandler extends BaseHttpRequestHandler
         else if (request.equals("datatypes")) return MaryRuntimeUtils.getDataTypes();
         else if (request.equals("locales")) return MaryRuntimeUtils.getLocales();
         else if (request.equals("voices")) return MaryRuntimeUtils.getVoices();
-        else if (request.equals("audioformats")) return MaryRuntimeUtils.getAudioFileFormatTypes();
+        else if (request.equals("audioformats")) return MaryRuntimeUtils.getAudioFileFormatTypes() + StreamingAudioEncoders.getAudioFormatTypes();
         else if (request.equals("exampletext")) {
             if (queryItems != null) {
                 // Voice example text
@@ -22,8 +22,13 @@ package marytts.server.http;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import marytts.server.MaryProperties;
+import marytts.util.CancellationToken;
 import marytts.util.MaryUtils;
 
 import org.apache.http.HttpException;
@@ -32,8 +37,10 @@ import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.nio.NHttpConnection;
-import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
 import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.ListeningIOReactor;
 import org.apache.http.params.BasicHttpParams;
@@ -42,7 +49,6 @@ import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpProcessor;
 import org.apache.http.protocol.ExecutionContext;
-import org.apache.http.protocol.HttpRequestHandlerRegistry;
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
@@ -95,6 +101,9 @@ import org.apache.log4j.Logger;
  *   <li><code>features?voice=hmm-slt</code> requests the list of available features that can be computed for the given voice;</li>
  *   <li><code>vocalizations?voice=dfki-poppy</code> requests the list of vocalization names that are available with the given voice;
  *   <li><code>styles?voice=dfki-pavoque-styles</code> requests the list of style names that are available with the given voice;
+ *   <li><code>metrics</code> requests cumulative processing statistics, in a text format suitable for Prometheus;</li>
+ *   <li><code>debug/traces</code> requests the traces of recently processed requests, if tracing is enabled (see {@link TraceRequestHandler});</li>
+ *   <li><code>live</code> and <code>ready</code> check whether the server is running and whether it has finished warming up, respectively (see {@link HealthRequestHandler});</li>
  *   <li><code>process</code> requests the synthesis of some text (see below).</li>
  * </ul>
  * <p>
@@ -179,16 +188,29 @@ public class MaryHttpServer extends Thread
         httpproc.addInterceptor(new ResponseContent());
         httpproc.addInterceptor(new ResponseConnControl());
 
-        BufferingHttpServiceHandler handler = new BufferingHttpServiceHandler(
+        AsyncNHttpServiceHandler handler = new AsyncNHttpServiceHandler(
                 httpproc,
                 new DefaultHttpResponseFactory(),
                 new DefaultConnectionReuseStrategy(),
                 params);
 
+        // Synthesis requests may wait for admission and take a while to process,
+        // so they run on worker threads rather than on the I/O threads serving all connections;
+        // their number is limited by the AdmissionController, which rejects requests when its queue is full.
+        ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "HttpWorker-"+count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
         // Set up request handlers
-        HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
-        registry.register("/process", new SynthesisRequestHandler());
-        InfoRequestHandler infoRH = new InfoRequestHandler();
+        NHttpRequestHandlerRegistry registry = new NHttpRequestHandlerRegistry();
+        registry.register("/process", new WorkerRequestHandler(new SynthesisRequestHandler(), workers));
+        registry.register("/processbatch", new WorkerRequestHandler(new BatchSynthesisRequestHandler(), workers));
+        NHttpRequestHandler infoRH = new WorkerRequestHandler(new InfoRequestHandler(), null);
         registry.register("/version", infoRH);
         registry.register("/datatypes", infoRH);
         registry.register("/locales", infoRH);
@@ -204,7 +226,12 @@ public class MaryHttpServer extends Thread
         registry.register("/features-discrete", infoRH);
         registry.register("/vocalizations", infoRH);
         registry.register("/styles", infoRH);
-        registry.register("*", new FileRequestHandler());
+        registry.register("/metrics", new WorkerRequestHandler(new MetricsRequestHandler(), null));
+        registry.register("/debug/traces", new WorkerRequestHandler(new TraceRequestHandler(), null));
+        NHttpRequestHandler healthRH = new WorkerRequestHandler(new HealthRequestHandler(), null);
+        registry.register("/live", healthRH);
+        registry.register("/ready", healthRH);
+        registry.register("*", new WorkerRequestHandler(new FileRequestHandler(), null));
 
 
         handler.setHandlerResolver(registry);
@@ -250,11 +277,24 @@ public class MaryHttpServer extends Thread
         public void connectionClosed(final NHttpConnection conn) 
         {
             logger.info("Connection closed: " + conn);
+            cancelRequests(conn);
         }
 
         public void fatalIOException(final IOException ex, final NHttpConnection conn) 
         {
             logger.info("I/O error: " + ex.getMessage());
+            cancelRequests(conn);
+        }
+
+        /**
+         * Stop processing the requests of a client which has gone away.
+         */
+        private void cancelRequests(final NHttpConnection conn)
+        {
+            CancellationToken token = (CancellationToken) conn.getContext().getAttribute(BaseHttpRequestHandler.CANCELLATION_TOKEN);
+            if (token != null) {
+                token.cancel();
+            }
         }
 
         public void fatalProtocolException(final HttpException ex, final NHttpConnection conn) 
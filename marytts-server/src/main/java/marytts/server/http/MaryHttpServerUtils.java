@@ -239,5 +239,24 @@ public class MaryHttpServerUtils
         } catch (UnsupportedEncodingException e){}
     }
 
+    /**
+     * The server is too busy to process the request now.
+     * @param retryAfter the number of seconds after which the client may try again
+     */
+    public static void errorServiceUnavailable(HttpResponse response, String message, int retryAfter)
+    {
+        int status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+        response.setStatusCode(status);
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        logger.debug("Returning HTTP status "+status+": "+message);
+        try {
+            NStringEntity entity = new NStringEntity(
+                    "<html><body><h1>Service unavailable</h1><p>"+message
+                    +".</p></body></html>", "UTF-8");
+            entity.setContentType("text/html; charset=UTF-8");
+            response.setEntity(entity);
+        } catch (UnsupportedEncodingException e){}
+    }
+
 }
 
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+import marytts.server.MaryMetrics;
+import marytts.util.LatencyHistogram;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Processor class for metrics http requests to Mary server.
+ * The cumulative statistics collected in {@link MaryMetrics} are returned
+ * in the plain text exposition format understood by Prometheus:
+ * counters as counters, latency histograms as summaries with
+ * the 50th, 95th and 99th percentiles.
+ *
+ * @author agent
+ */
+public class MetricsRequestHandler extends BaseHttpRequestHandler
+{
+    private static final double[] QUANTILES = new double[] { 0.5, 0.95, 0.99 };
+
+    public MetricsRequestHandler()
+    {
+        super();
+    }
+
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
+    throws IOException
+    {
+        MaryHttpServerUtils.toHttpResponse(getMetrics(), response, "text/plain; version=0.0.4; charset=UTF-8");
+    }
+
+    /**
+     * Render the current statistics in Prometheus text format.
+     * @return the metrics as a string
+     */
+    public static String getMetrics()
+    {
+        StringBuilder buf = new StringBuilder();
+        String lastName = null;
+        for (Map.Entry<String, Long> e : MaryMetrics.getCounters().entrySet()) {
+            String name = metricName(e.getKey());
+            if (!name.equals(lastName)) {
+                buf.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            buf.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        lastName = null;
+        for (Map.Entry<String, LatencyHistogram> e : MaryMetrics.getHistograms().entrySet()) {
+            String name = metricName(e.getKey());
+            String labels = metricLabels(e.getKey());
+            LatencyHistogram h = e.getValue();
+            if (!name.equals(lastName)) {
+                buf.append("# TYPE ").append(name).append(" summary\n");
+                lastName = name;
+            }
+            for (double q : QUANTILES) {
+                buf.append(name).append('{');
+                if (labels.length() > 0) buf.append(labels).append(',');
+                buf.append("quantile=\"").append(q).append("\"} ").append(h.getPercentile(q)).append('\n');
+            }
+            String labelPart = labels.length() > 0 ? "{" + labels + "}" : "";
+            buf.append(name).append("_sum").append(labelPart).append(' ').append(h.getSum()).append('\n');
+            buf.append(name).append("_count").append(labelPart).append(' ').append(h.getCount()).append('\n');
+        }
+        buf.append("# TYPE marytts_active_requests gauge\n");
+        buf.append("marytts_active_requests ").append(MaryMetrics.getActiveRequests()).append('\n');
+        buf.append("# TYPE marytts_realtime_factor gauge\n");
+        buf.append("marytts_realtime_factor ").append(MaryMetrics.getRealTimeFactor()).append('\n');
+        Runtime rt = Runtime.getRuntime();
+        buf.append("# TYPE marytts_jvm_memory_used_bytes gauge\n");
+        buf.append("marytts_jvm_memory_used_bytes ").append(rt.totalMemory() - rt.freeMemory()).append('\n');
+        return buf.toString();
+    }
+
+    private static String metricName(String key)
+    {
+        int brace = key.indexOf('{');
+        return brace == -1 ? key : key.substring(0, brace);
+    }
+
+    private static String metricLabels(String key)
+    {
+        int brace = key.indexOf('{');
+        return brace == -1 ? "" : key.substring(brace + 1, key.length() - 1);
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import marytts.server.MaryMetrics;
+import marytts.server.MaryProperties;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+
+/**
+ * Keeps the complete responses to synthesis requests, so that repeated requests,
+ * e.g. for the prompts of a voice menu, are answered without synthesizing and encoding
+ * the audio again.
+ * <p>
+ * The responses are kept outside of the Java heap, in direct byte buffers, and are written
+ * to the client directly from there. The cache holds at most <code>server.http.cache.size</code>
+ * bytes (default 0, i.e. no cache) and evicts the least recently used responses when it is full;
+ * a single response larger than a quarter of the cache is not kept.
+ * Each response has an ETag computed from its content, so that clients can revalidate
+ * with <code>If-None-Match</code>. Lookups are counted in {@link MaryMetrics#CACHE_LOOKUPS}
+ * with the cache name "http".
+ *
+ * @author agent
+ */
+public class ResponseCache
+{
+    private static ResponseCache instance;
+
+    /**
+     * The response cache configured by the MARY properties.
+     * @return the cache, or null if no response cache is configured.
+     */
+    public static synchronized ResponseCache getInstance()
+    {
+        if (instance == null) {
+            int size = MaryProperties.getInteger("server.http.cache.size", 0);
+            if (size <= 0) {
+                return null;
+            }
+            instance = new ResponseCache(size);
+        }
+        return instance;
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long bytes = 0;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes the maximum total size of the responses in the cache
+     */
+    public ResponseCache(long maxBytes)
+    {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got "+maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+    }
+
+    /**
+     * Look up a response, marking it as recently used.
+     * @param key the normalized parameters of the request
+     * @return the response, or null if it is not in the cache.
+     */
+    public Entry get(String key)
+    {
+        Entry e;
+        synchronized (this) {
+            e = entries.get(key);
+        }
+        MaryMetrics.recordCacheLookup("http", e != null);
+        return e;
+    }
+
+    /**
+     * Keep a response, evicting the least recently used ones as needed.
+     * @param key the normalized parameters of the request
+     * @param content the body of the response
+     * @param contentType the content type of the response
+     * @return the response as it can be served from the cache, or null if it is too large to be kept.
+     */
+    public Entry put(String key, byte[] content, String contentType)
+    {
+        if (content.length > maxEntryBytes) {
+            return null;
+        }
+        Entry e = new Entry(content, contentType);
+        synchronized (this) {
+            Entry old = entries.put(key, e);
+            if (old != null) {
+                bytes -= old.getContentLength();
+            }
+            bytes += e.getContentLength();
+            Iterator<Entry> it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next();
+                bytes -= eldest.getContentLength();
+                it.remove();
+            }
+        }
+        return e;
+    }
+
+    /**
+     * @return the total size of the responses in the cache, in bytes.
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return the number of responses in the cache.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * The strong ETag for a response with the given content.
+     */
+    public static String etag(byte[] content)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder buf = new StringBuilder(2 * digest.length + 2);
+            buf.append('"');
+            for (byte b : digest) {
+                buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return buf.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * Whether the value of an If-None-Match header matches the given ETag.
+     * @param ifNoneMatch the header value, e.g. <code>"abc", "def"</code> or <code>*</code>; may be null.
+     */
+    public static boolean matches(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A response kept in the cache.
+     */
+    public static class Entry
+    {
+        private final ByteBuffer content;
+        private final String contentType;
+        private final String etag;
+
+        Entry(byte[] content, String contentType)
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+            buffer.put(content);
+            buffer.flip();
+            this.content = buffer.asReadOnlyBuffer();
+            this.contentType = contentType;
+            this.etag = etag(content);
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        public String getETag()
+        {
+            return etag;
+        }
+
+        public int getContentLength()
+        {
+            return content.capacity();
+        }
+
+        /**
+         * An entity which writes the response from the cache to one client.
+         */
+        public ProducingNHttpEntity toEntity()
+        {
+            return new CachedEntity(content.duplicate(), contentType);
+        }
+    }
+
+    /**
+     * Writes a buffer kept in the cache to the client without copying it to the heap first.
+     */
+    private static class CachedEntity extends AbstractHttpEntity implements ProducingNHttpEntity
+    {
+        private final ByteBuffer buffer;
+
+        CachedEntity(ByteBuffer buffer, String contentType)
+        {
+            this.buffer = buffer;
+            setContentType(contentType);
+        }
+
+        public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException
+        {
+            encoder.write(buffer);
+            if (!buffer.hasRemaining()) {
+                encoder.complete();
+            }
+        }
+
+        public void finish()
+        {
+            buffer.rewind();
+        }
+
+        public long getContentLength()
+        {
+            return buffer.limit();
+        }
+
+        public boolean isRepeatable()
+        {
+            return true;
+        }
+
+        public boolean isStreaming()
+        {
+            return false;
+        }
+
+        public InputStream getContent()
+        {
+            byte[] content = new byte[buffer.limit()];
+            ByteBuffer b = buffer.duplicate();
+            b.rewind();
+            b.get(content);
+            return new ByteArrayInputStream(content);
+        }
+
+        public void writeTo(OutputStream outstream) throws IOException
+        {
+            WritableByteChannel channel = Channels.newChannel(outstream);
+            ByteBuffer b = buffer.duplicate();
+            b.rewind();
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+            outstream.flush();
+        }
+    }
+}
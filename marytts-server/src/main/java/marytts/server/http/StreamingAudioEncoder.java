@@ -0,0 +1,69 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * An encoder which writes audio to a client in a format that Java Sound
+ * cannot write, encoding the audio incrementally as it is produced by the synthesis.
+ * Clients request an encoder by its name in the AUDIO parameter, as
+ * <code>NAME_STREAM</code> or <code>NAME_FILE</code>, just like the audio file types
+ * supported by Java Sound.
+ * <p>
+ * Encoders are listed in the property <code>server.http.audioencoders.classes.list</code>,
+ * and a new instance is created for each request, so an encoder can keep the state
+ * of one audio stream in its fields.
+ *
+ * @author agent
+ * @see StreamingAudioEncoders
+ */
+public interface StreamingAudioEncoder
+{
+    /**
+     * The name by which clients request this encoder, e.g. "ULAW".
+     */
+    public String getName();
+
+    /**
+     * The MIME type of the encoded audio.
+     */
+    public String getMimeType();
+
+    /**
+     * Whether this encoder can encode audio in the given format.
+     * @param format the format of the synthesised audio
+     */
+    public boolean canEncode(AudioFormat format);
+
+    /**
+     * Encode the audio data, including any header, into out.
+     * Data must be encoded and written as it becomes available from audio,
+     * so that streaming clients can start playback before synthesis is complete.
+     * @param audio the audio to encode, in a format for which {@link #canEncode(AudioFormat)} is true.
+     * @param out the stream to write the encoded audio to. It is flushed but not closed.
+     * @throws IOException if the audio cannot be read or the encoded data cannot be written
+     */
+    public void encode(AudioInputStream audio, OutputStream out) throws IOException;
+}
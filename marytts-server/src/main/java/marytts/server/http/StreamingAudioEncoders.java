@@ -0,0 +1,90 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import marytts.server.MaryProperties;
+import marytts.util.MaryUtils;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The registry of the {@link StreamingAudioEncoder}s listed in the property
+ * <code>server.http.audioencoders.classes.list</code>.
+ *
+ * @author agent
+ */
+public class StreamingAudioEncoders
+{
+    private static Map<String, Class<? extends StreamingAudioEncoder>> encoders;
+
+    private static synchronized Map<String, Class<? extends StreamingAudioEncoder>> getEncoders()
+    {
+        if (encoders == null) {
+            Logger logger = MaryUtils.getLogger("StreamingAudioEncoders");
+            encoders = new LinkedHashMap<String, Class<? extends StreamingAudioEncoder>>();
+            for (String className : MaryProperties.getList("server.http.audioencoders.classes.list")) {
+                try {
+                    Class<? extends StreamingAudioEncoder> c = Class.forName(className).asSubclass(StreamingAudioEncoder.class);
+                    encoders.put(c.getDeclaredConstructor().newInstance().getName(), c);
+                } catch (Exception e) {
+                    logger.warn("Cannot register audio encoder "+className, e);
+                }
+            }
+        }
+        return encoders;
+    }
+
+    /**
+     * Create a new encoder for one audio stream.
+     * @param name the encoder name, without any _STREAM or _FILE suffix
+     * @return a new encoder instance, or null if there is no encoder with this name.
+     */
+    public static StreamingAudioEncoder createEncoder(String name)
+    {
+        Class<? extends StreamingAudioEncoder> c = getEncoders().get(name);
+        if (c == null) {
+            return null;
+        }
+        try {
+            return c.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot create audio encoder "+name, e);
+        }
+    }
+
+    /**
+     * List the available encoders in the same way as
+     * {@link marytts.util.MaryRuntimeUtils#getAudioFileFormatTypes()}: each line
+     * consists of the encoder name followed by "_FILE" or "_STREAM".
+     * @return a multi-line string, or an empty string if no encoders are available.
+     */
+    public static String getAudioFormatTypes()
+    {
+        StringBuilder output = new StringBuilder();
+        for (String name : getEncoders().keySet()) {
+            output.append(name).append("_FILE\n");
+            output.append(name).append("_STREAM\n");
+        }
+        return output.toString();
+    }
+}
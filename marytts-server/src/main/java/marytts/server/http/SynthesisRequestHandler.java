@@ -35,17 +35,27 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
 import marytts.datatypes.MaryDataType;
+import marytts.exceptions.AdmissionException;
 import marytts.modules.synthesis.Voice;
+import marytts.server.AdmissionController;
+import marytts.server.Deadline;
 import marytts.server.Request;
+import marytts.server.RequestTrace;
 import marytts.server.RequestHandler.StreamingOutputPiper;
 import marytts.server.RequestHandler.StreamingOutputWriter;
+import marytts.server.TraceLog;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.MaryAudioUtils;
 import marytts.util.http.Address;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.protocol.HttpContext;
 import org.apache.log4j.Logger;
 
 /**
@@ -56,12 +66,15 @@ import org.apache.log4j.Logger;
  */
 public class SynthesisRequestHandler extends BaseHttpRequestHandler
 {
-    private static int id = 0;
+    /**
+     * The response header listing the processing stages which did less work than usual
+     * to meet the request's DEADLINE, see {@link Deadline}.
+     */
+    public static final String DEGRADATIONS_HEADER = "X-Mary-Degradations";
+
+    // the If-None-Match header of the request handled by the current thread
+    private final ThreadLocal<String> ifNoneMatch = new ThreadLocal<String>();
     
-    private static synchronized int getId()
-    {
-        return id++;
-    }
     
     
     private StreamingOutputWriter outputToStream;
@@ -79,6 +92,19 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         pipedInput = null;
     }
 
+    @Override
+    public void handle(final HttpRequest request, final HttpResponse response, final HttpContext context)
+    throws HttpException, IOException
+    {
+        Header header = request.getFirstHeader("If-None-Match");
+        ifNoneMatch.set(header != null ? header.getValue() : null);
+        try {
+            super.handle(request, response, context);
+        } finally {
+            ifNoneMatch.remove();
+        }
+    }
+
     @Override
     protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
     throws IOException
@@ -95,7 +121,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
                 logger.debug("    "+key+"="+queryItems.get(key));
             }
         }
-        process(serverAddressAtClient, queryItems, response);
+        process(serverAddressAtClient, queryItems, response, ifNoneMatch.get());
 
     }
 
@@ -104,6 +130,17 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
     
     
     public void process(Address serverAddressAtClient, Map<String, String> queryItems, HttpResponse response)
+    {
+        process(serverAddressAtClient, queryItems, response, null);
+    }
+
+    /**
+     * Process a synthesis request.
+     * @param ifNoneMatch the value of the request's If-None-Match header, or null.
+     * If the response is in the {@link ResponseCache} and its ETag matches, the response
+     * is "304 Not Modified".
+     */
+    public void process(Address serverAddressAtClient, Map<String, String> queryItems, HttpResponse response, String ifNoneMatch)
     {
         if (queryItems == null || !(
                 queryItems.containsKey("INPUT_TYPE") 
@@ -131,6 +168,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         boolean isOutputText = true;
         boolean streamingAudio = false;
         AudioFileFormat.Type audioFileFormatType = null;
+        StreamingAudioEncoder encoder = null;
         if (outputType.name().contains("AUDIO")) {
             isOutputText = false;
             String audioTypeName = queryItems.get("AUDIO");
@@ -145,9 +183,15 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             if (lastUnderscore != -1) {
                 audioTypeName = audioTypeName.substring(0, lastUnderscore);
             }
-            try {
-                audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audioTypeName);
-            } catch (Exception ex) {}
+            encoder = StreamingAudioEncoders.createEncoder(audioTypeName);
+            if (encoder != null) {
+                // the encoder takes the synthesised audio as it is
+                audioFileFormatType = AudioFileFormat.Type.AU;
+            } else {
+                try {
+                    audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audioTypeName);
+                } catch (Exception ex) {}
+            }
             if (audioFileFormatType == null) {
                 MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), null);
                 return;
@@ -203,8 +247,44 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             logger.info("Connection info: "+logMsg);
         }
 
+        AdmissionController admission = AdmissionController.getInstance();
+        AdmissionController.Priority priority;
+        try {
+            priority = admission.getPriority(queryItems.get("PRIORITY"), inputText);
+        } catch (IllegalArgumentException e) {
+            MaryHttpServerUtils.errorWrongQueryParameterValue(response, "PRIORITY", queryItems.get("PRIORITY"), "Expected 'interactive' or 'batch'");
+            return;
+        }
+
+        // The time in milliseconds by which the request should be done, counting from now
+        Deadline deadline = null;
+        if (queryItems.containsKey("DEADLINE")) {
+            try {
+                deadline = new Deadline(Long.parseLong(queryItems.get("DEADLINE")));
+            } catch (IllegalArgumentException e) {
+                MaryHttpServerUtils.errorWrongQueryParameterValue(response, "DEADLINE", queryItems.get("DEADLINE"), "Expected a positive number of milliseconds");
+                return;
+            }
+        }
+
         // Now, the parse is complete.
 
+        // Repeated requests are answered from the response cache, if there is one:
+        ResponseCache cache = streamingAudio ? null : ResponseCache.getInstance();
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = getCacheKey(inputType, outputType, locale, voice, isOutputText ? null : queryItems.get("AUDIO"),
+                    style, effects, outputTypeParams, inputText);
+            long lookupTime = System.currentTimeMillis();
+            ResponseCache.Entry cached = cache.get(cacheKey);
+            if (cached != null) {
+                logger.info("Answered from the response cache.");
+                toHttpResponse(cached, ifNoneMatch, response);
+                traceCacheHit(voice, inputType, outputType, inputText, lookupTime);
+                return;
+            }
+        }
+
         // Construct audio file format -- even when output is not AUDIO,
         // in case we need to pass via audio to get our output type.
         if (audioFileFormatType == null) {
@@ -220,9 +300,14 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         } else {
             audioFormat = Voice.AF16000;
         }
+        if (encoder != null && !encoder.canEncode(audioFormat)) {
+            MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), "Cannot encode the audio of this voice as "+encoder.getName()+".");
+            return;
+        }
         AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
         
-        final Request maryRequest = new Request(inputType, outputType, locale, voice, effects, style, getId(), audioFileFormat, streamingAudio, outputTypeParams);
+        final Request maryRequest = new Request(inputType, outputType, locale, voice, effects, style, Request.newId(), audioFileFormat, streamingAudio, outputTypeParams);
+        maryRequest.setDeadline(deadline);
         
         // Process the request and send back the data
         boolean ok = true;
@@ -235,64 +320,104 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             MaryHttpServerUtils.errorInternalServerError(response, message, e);
             ok = false;
         }
+        // Wait until the server has capacity for this request
+        AdmissionController.Ticket ticket = null;
         if (ok) {
-            if (streamingAudio) {
-                // Start two separate threads:
-                // 1. one thread to process the request;
-                new Thread("RH "+maryRequest.getId()) {
-                    public void run() 
-                    {
-                        Logger myLogger = MaryUtils.getLogger(this.getName());
-                        try {
-                            maryRequest.process();
-                            myLogger.info("Streaming request processed successfully.");
-                        } catch (Throwable t) {
-                            myLogger.error("Processing failed.", t);
+            try {
+                ticket = admission.admit(voice != null ? voice.getName() : null, priority);
+            } catch (AdmissionException e) {
+                logger.warn("Request rejected: " + e.getMessage());
+                MaryHttpServerUtils.errorServiceUnavailable(response, e.getMessage(), 1);
+                ok = false;
+            }
+        }
+        if (ok) {
+            boolean handedOver = false; // whether the processing thread releases the ticket
+            try {
+                if (streamingAudio) {
+                    // Start two separate threads:
+                    // 1. one thread to process the request;
+                    final AdmissionController.Ticket streamingTicket = ticket;
+                    new Thread("RH "+maryRequest.getId()) {
+                        public void run() 
+                        {
+                            Logger myLogger = MaryUtils.getLogger(this.getName());
+                            try {
+                                maryRequest.process();
+                                myLogger.info("Streaming request processed successfully.");
+                            } catch (Throwable t) {
+                                myLogger.error("Processing failed.", t);
+                            } finally {
+                                streamingTicket.release();
+                            }
                         }
-                    }
-                }.start();
+                    }.start();
+                    handedOver = true;
                 
-                // 2. one thread to take the audio data as it becomes available
-                //    and write it into the ProducingNHttpEntity.
-                // The second one does not depend on the first one practically,
-                // because the AppendableSequenceAudioInputStream returned by
-                // maryRequest.getAudio() was already created in the constructor of Request.
-                AudioInputStream audio = maryRequest.getAudio();
-                assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
-                AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
-                AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest);
-                new Thread(entity, "HTTPWriter "+maryRequest.getId()).start();
-                // entity knows its contentType, no need to set explicitly here.
-                response.setEntity(entity);
-                response.setStatusCode(HttpStatus.SC_OK);
-                return;
-            } else { // not streaming audio
-                // Process input data to output data
-                try {
-                    maryRequest.process(); // this may take some time
-                } catch (Throwable e) {
-                    String message = "Processing failed.";
-                    logger.error(message, e);
-                    MaryHttpServerUtils.errorInternalServerError(response, message, e);
-                    ok = false;
-                }
-                if (ok) {
-                    // Write output data to client
+                    // 2. one thread to take the audio data as it becomes available
+                    //    and write it into the ProducingNHttpEntity.
+                    // The second one does not depend on the first one practically,
+                    // because the AppendableSequenceAudioInputStream returned by
+                    // maryRequest.getAudio() was already created in the constructor of Request.
+                    AudioInputStream audio = maryRequest.getAudio();
+                    assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
+                    AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
+                    AudioStreamNHttpEntity entity = encoder != null
+                        ? new AudioStreamNHttpEntity(maryRequest, encoder)
+                        : new AudioStreamNHttpEntity(maryRequest);
+                    new Thread(entity, "HTTPWriter "+maryRequest.getId()).start();
+                    // entity knows its contentType, no need to set explicitly here.
+                    response.setEntity(entity);
+                    response.setStatusCode(HttpStatus.SC_OK);
+                    return;
+                } else { // not streaming audio
+                    // Process input data to output data
                     try {
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        maryRequest.writeOutputData(outputStream);
-                        String contentType;
-                        if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) //text output
-                            contentType = "text/plain; charset=UTF-8";
-                        else //audio output
-                            contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
-                        MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
-                    } catch (Exception e) {
-                        String message = "Cannot write output";
-                        logger.warn(message, e);
+                        maryRequest.process(); // this may take some time
+                    } catch (Throwable e) {
+                        String message = "Processing failed.";
+                        logger.error(message, e);
                         MaryHttpServerUtils.errorInternalServerError(response, message, e);
                         ok = false;
-                    } 
+                    }
+                    if (ok) {
+                        // Write output data to client
+                        try {
+                            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                            String contentType;
+                            if (encoder != null) { //encoded audio output
+                                encoder.encode(maryRequest.getOutputData().getAudio(), outputStream);
+                                contentType = encoder.getMimeType();
+                            } else {
+                                maryRequest.writeOutputData(outputStream);
+                                if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) //text output
+                                    contentType = "text/plain; charset=UTF-8";
+                                else //audio output
+                                    contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
+                            }
+                            byte[] output = outputStream.toByteArray();
+                            boolean degraded = deadline != null && !deadline.getDegradations().isEmpty();
+                            // degraded output must not be served to requests which have time enough
+                            ResponseCache.Entry cached = cache != null && !degraded ? cache.put(cacheKey, output, contentType) : null;
+                            if (cached != null) {
+                                toHttpResponse(cached, ifNoneMatch, response);
+                            } else {
+                                MaryHttpServerUtils.toHttpResponse(output, response, contentType);
+                            }
+                            if (degraded) {
+                                response.setHeader(DEGRADATIONS_HEADER, StringUtils.join(deadline.getDegradations(), ","));
+                            }
+                        } catch (Exception e) {
+                            String message = "Cannot write output";
+                            logger.warn(message, e);
+                            MaryHttpServerUtils.errorInternalServerError(response, message, e);
+                            ok = false;
+                        } 
+                    }
+                }
+            } finally {
+                if (!handedOver) {
+                    ticket.release();
                 }
             }
         }
@@ -309,6 +434,55 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         }
     }
 
+    /**
+     * The parameters of a synthesis request which determine its result, as a key for the {@link ResponseCache}.
+     */
+    private static String getCacheKey(MaryDataType inputType, MaryDataType outputType, Locale locale, Voice voice,
+            String audio, String style, String effects, String outputTypeParams, String inputText)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(inputType.name()).append('\n');
+        key.append(outputType.name()).append('\n');
+        key.append(locale).append('\n');
+        key.append(voice != null ? voice.getName() : "").append('\n');
+        key.append(audio != null ? audio : "").append('\n');
+        key.append(style).append('\n');
+        key.append(effects).append('\n');
+        key.append(outputTypeParams != null ? outputTypeParams : "").append('\n');
+        key.append(inputText);
+        return key.toString();
+    }
+
+    /**
+     * Trace a request answered from the response cache, if it is sampled, see {@link TraceLog};
+     * as it is not processed, {@link Request#process()} does not trace it.
+     */
+    private static void traceCacheHit(Voice voice, MaryDataType inputType, MaryDataType outputType, String inputText, long startTime)
+    {
+        TraceLog traceLog = TraceLog.getInstance();
+        if (traceLog.sample()) {
+            RequestTrace trace = new RequestTrace(Request.newId(), voice != null ? voice.getName() : null,
+                    inputType.name(), outputType.name(), inputText.length());
+            trace.add("cache_http_hits", 1);
+            trace.finished("cached", System.currentTimeMillis() - startTime, -1, null);
+            traceLog.record(trace);
+        }
+    }
+
+    /**
+     * Answer with a response from the cache, or with "304 Not Modified" if the client has it already.
+     */
+    private static void toHttpResponse(ResponseCache.Entry cached, String ifNoneMatch, HttpResponse response)
+    {
+        response.setHeader("ETag", cached.getETag());
+        if (ResponseCache.matches(ifNoneMatch, cached.getETag())) {
+            response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+        } else {
+            response.setEntity(cached.toEntity());
+            response.setStatusCode(HttpStatus.SC_OK);
+        }
+    }
+
 
     protected String toRequestedAudioEffectsString(Map<String, String> keyValuePairs)
     {
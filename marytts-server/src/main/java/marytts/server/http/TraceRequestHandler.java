@@ -0,0 +1,84 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import marytts.server.RequestTrace;
+import marytts.server.TraceLog;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Processor class for debug http requests to Mary server, returning the traces
+ * of recently processed requests (see {@link TraceLog}) as JSON lines, most recent first.
+ * <ul>
+ * <li><code>/debug/traces</code> returns all traces kept in memory;</li>
+ * <li><code>/debug/traces?n=10</code> returns the ten most recent traces;</li>
+ * <li><code>/debug/traces?id=42</code> returns the trace of the request with the given id, if it is still kept.</li>
+ * </ul>
+ * Nothing is returned unless tracing is enabled with <code>trace.sample</code>.
+ *
+ * @author agent
+ */
+public class TraceRequestHandler extends BaseHttpRequestHandler
+{
+    public TraceRequestHandler()
+    {
+        super();
+    }
+
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
+    throws IOException
+    {
+        int id = -1;
+        int n = Integer.MAX_VALUE;
+        try {
+            if (queryItems != null && queryItems.containsKey("id")) {
+                id = Integer.parseInt(queryItems.get("id"));
+            }
+        } catch (NumberFormatException e) {
+            MaryHttpServerUtils.errorWrongQueryParameterValue(response, "id", queryItems.get("id"), "expected a request id");
+            return;
+        }
+        try {
+            if (queryItems != null && queryItems.containsKey("n")) {
+                n = Integer.parseInt(queryItems.get("n"));
+            }
+        } catch (NumberFormatException e) {
+            MaryHttpServerUtils.errorWrongQueryParameterValue(response, "n", queryItems.get("n"), "expected a number of traces");
+            return;
+        }
+        StringBuilder buf = new StringBuilder();
+        List<RequestTrace> traces = TraceLog.getInstance().getRecent();
+        for (int i = traces.size() - 1; i >= 0 && n > 0; i--) {
+            RequestTrace trace = traces.get(i);
+            if (id == -1 || trace.getId() == id) {
+                buf.append(trace.toJson()).append('\n');
+                n--;
+            }
+        }
+        MaryHttpServerUtils.toHttpResponse(buf.toString(), response, "application/x-ndjson; charset=UTF-8");
+    }
+}
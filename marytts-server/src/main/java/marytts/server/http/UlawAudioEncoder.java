@@ -0,0 +1,86 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.util.io.General;
+
+/**
+ * Encode audio as 8 bit G.711 mu-law in an AU stream, which halves the
+ * size of 16 bit audio. The AU header leaves the data size unspecified,
+ * as allowed by the format for streams of unknown length.
+ *
+ * @author agent
+ */
+public class UlawAudioEncoder extends BaseStreamingAudioEncoder
+{
+    private static final int AU_MAGIC = 0x2e736e64; // ".snd"
+    private static final int AU_HEADER_SIZE = 24;
+    private static final int AU_UNKNOWN_SIZE = 0xffffffff;
+    private static final int AU_ULAW_8 = 1;
+
+    /** The mu-law byte for each 16 bit sample, indexed by sample+32768 */
+    private static final byte[] ULAW = new byte[65536];
+    static {
+        for (int i=0; i<ULAW.length; i++) {
+            // General.shortToUlaw() cannot negate the most negative sample,
+            // and returns the mu-law value offset by -128:
+            short sample = (short) Math.max(i - 32768, -32767);
+            ULAW[i] = (byte) (General.shortToUlaw(sample) + 128);
+        }
+    }
+
+    private byte[] encoded;
+
+    public String getName()
+    {
+        return "ULAW";
+    }
+
+    public String getMimeType()
+    {
+        return "audio/basic";
+    }
+
+    protected void writeHeader(AudioFormat format, OutputStream out) throws IOException
+    {
+        writeIntBE(out, AU_MAGIC);
+        writeIntBE(out, AU_HEADER_SIZE);
+        writeIntBE(out, AU_UNKNOWN_SIZE);
+        writeIntBE(out, AU_ULAW_8);
+        writeIntBE(out, (int) format.getSampleRate());
+        writeIntBE(out, format.getChannels());
+    }
+
+    protected void encodeSamples(short[] samples, int n, OutputStream out) throws IOException
+    {
+        if (encoded == null || encoded.length < n) {
+            encoded = new byte[samples.length];
+        }
+        for (int i=0; i<n; i++) {
+            encoded[i] = ULAW[samples[i] + 32768];
+        }
+        out.write(encoded, 0, n);
+    }
+}
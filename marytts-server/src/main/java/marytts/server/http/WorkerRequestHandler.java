@@ -0,0 +1,110 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import marytts.util.MaryUtils;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.entity.BufferingNHttpEntity;
+import org.apache.http.nio.entity.ConsumingNHttpEntity;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs a blocking {@link HttpRequestHandler} on a worker thread, and submits the response
+ * when it is done. The I/O threads of the server each serve many connections,
+ * so a request which waits for admission or takes long to process must not run on them.
+ * As with {@link org.apache.http.nio.protocol.BufferingHttpServiceHandler},
+ * the request entity is read into memory before the handler is called.
+ *
+ * @author agent
+ */
+public class WorkerRequestHandler implements NHttpRequestHandler
+{
+    private static final Logger logger = MaryUtils.getLogger("http");
+
+    private final HttpRequestHandler handler;
+    private final Executor workers;
+
+    /**
+     * @param handler the handler to run
+     * @param workers the threads to run it on, or null to run it on the I/O thread,
+     * which is fine for handlers answering quickly
+     */
+    public WorkerRequestHandler(HttpRequestHandler handler, Executor workers)
+    {
+        this.handler = handler;
+        this.workers = workers;
+    }
+
+    public ConsumingNHttpEntity entityRequest(HttpEntityEnclosingRequest request, HttpContext context)
+    throws HttpException, IOException
+    {
+        return new BufferingNHttpEntity(request.getEntity(), new HeapByteBufferAllocator());
+    }
+
+    public void handle(final HttpRequest request, final HttpResponse response, final NHttpResponseTrigger trigger,
+            final HttpContext context)
+    throws HttpException, IOException
+    {
+        if (workers == null) {
+            process(request, response, trigger, context);
+            return;
+        }
+        workers.execute(new Runnable() {
+            public void run()
+            {
+                process(request, response, trigger, context);
+            }
+        });
+    }
+
+    /**
+     * Runs the handler and submits its response. Anything the handler throws besides
+     * HTTP and I/O errors is answered with an internal server error, so that no request is left without response.
+     */
+    private void process(HttpRequest request, HttpResponse response, NHttpResponseTrigger trigger, HttpContext context)
+    {
+        try {
+            handler.handle(request, response, context);
+        } catch (HttpException e) {
+            trigger.handleException(e);
+            return;
+        } catch (IOException e) {
+            trigger.handleException(e);
+            return;
+        } catch (Throwable t) {
+            String message = "Cannot handle request";
+            logger.error(message, t);
+            MaryHttpServerUtils.errorInternalServerError(response, message, t);
+        }
+        trigger.submitResponse(response);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.mux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import marytts.util.mux.Frame;
+
+/**
+ * An output stream sending what is written to it as the data frames of one request.
+ * Data is collected until a chunk is full or the stream is flushed.
+ * Closing the stream only flushes it; the end of the request is sent separately.
+ *
+ * @author agent
+ */
+class FrameOutputStream extends OutputStream
+{
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final MuxConnection connection;
+    private final int requestId;
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int count = 0;
+
+    FrameOutputStream(MuxConnection connection, int requestId)
+    {
+        this.connection = connection;
+        this.requestId = requestId;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (count == buffer.length) {
+            flush();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0) {
+            if (count == buffer.length) {
+                flush();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        if (count == 0) {
+            return;
+        }
+        byte[] data = new byte[count];
+        System.arraycopy(buffer, 0, data, 0, count);
+        count = 0;
+        connection.send(new Frame(requestId, Frame.DATA, data));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        flush();
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.mux;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+import marytts.util.CancellationToken;
+import marytts.util.mux.Frame;
+
+/**
+ * One client connection of the {@link MuxServer}. Reading and writing on the channel
+ * happen in the selector thread the connection belongs to; other threads send frames
+ * by putting them into the write queue. A thread sending frames waits while more than
+ * {@link #MAX_QUEUED_BYTES} are waiting to be written, so that a slow client slows down
+ * the requests producing output for it rather than filling the memory.
+ * When the connection is closed, the requests still being processed for it are cancelled.
+ *
+ * @author agent
+ */
+class MuxConnection
+{
+    static final int MAX_QUEUED_BYTES = 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final MuxServer server;
+    private final MuxServer.SelectorThread selectorThread;
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    private final LinkedList<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+    private int queuedBytes = 0;
+    private boolean closed = false;
+    private final CancellationToken cancellation = new CancellationToken();
+
+    MuxConnection(SocketChannel channel, MuxServer server, MuxServer.SelectorThread selectorThread)
+    {
+        this.channel = channel;
+        this.server = server;
+        this.selectorThread = selectorThread;
+    }
+
+    /**
+     * Register with the selector, or update the operations we are interested in.
+     * Called in the selector thread.
+     */
+    void updateInterest(Selector selector) throws ClosedChannelException
+    {
+        if (key == null) {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+        synchronized (this) {
+            if (closed) {
+                key.cancel();
+                return;
+            }
+            key.interestOps(writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Read what is available and pass on all complete frames to the server.
+     * Called in the selector thread.
+     */
+    void read() throws IOException
+    {
+        if (channel.read(readBuffer) == -1) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        Frame frame;
+        while ((frame = Frame.decode(readBuffer)) != null) {
+            server.received(this, frame);
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) { // a frame larger than the buffer
+            ByteBuffer bigger = ByteBuffer.allocate(2 * readBuffer.capacity());
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        }
+    }
+
+    /**
+     * Write as much of the queued data as the channel takes.
+     * Called in the selector thread.
+     */
+    synchronized void write() throws IOException
+    {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer buffer = writeQueue.getFirst();
+            queuedBytes -= channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            writeQueue.removeFirst();
+        }
+        if (writeQueue.isEmpty()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Queue a frame for sending, waiting while too much data is queued already.
+     * Must not be called in the selector thread.
+     * @throws IOException if the connection is closed
+     */
+    void send(Frame frame) throws IOException
+    {
+        enqueue(frame, true);
+    }
+
+    /**
+     * Queue a frame for sending, without waiting. For short frames sent from the selector thread.
+     * @throws IOException if the connection is closed
+     */
+    void sendNow(Frame frame) throws IOException
+    {
+        enqueue(frame, false);
+    }
+
+    private void enqueue(Frame frame, boolean wait) throws IOException
+    {
+        ByteBuffer buffer = frame.toByteBuffer();
+        synchronized (this) {
+            while (wait && !closed && queuedBytes > MAX_QUEUED_BYTES) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted while waiting to send");
+                }
+            }
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            writeQueue.add(buffer);
+            queuedBytes += buffer.remaining();
+        }
+        selectorThread.update(this);
+    }
+
+    synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * The token which is cancelled when this connection is closed.
+     */
+    CancellationToken getCancellationToken()
+    {
+        return cancellation;
+    }
+
+    void close()
+    {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            writeQueue.clear();
+            notifyAll();
+        }
+        cancellation.cancel();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing more we can do
+        }
+        server.closed(this);
+    }
+}
@@ -0,0 +1,448 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.mux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+import marytts.server.AdmissionController;
+import marytts.server.MaryProperties;
+import marytts.server.Request;
+import marytts.util.CancellationToken;
+import marytts.util.MaryRuntimeUtils;
+import marytts.util.MaryUtils;
+import marytts.util.data.audio.MaryAudioUtils;
+import marytts.util.mux.Frame;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A server for the multiplexing MARY protocol (see {@link Frame}), in which a client
+ * sends any number of concurrent requests over one persistent connection and receives
+ * their output as interleaved frames.
+ * <p>
+ * The connections are served by a small number of selector threads
+ * (<code>server.mux.selectors</code>, default 2), which only read and write frames;
+ * the requests are processed on a pool of <code>server.mux.threads</code> threads
+ * (default: the number of processors). The server listens on <code>socket.port</code>;
+ * it is started with <code>server=mux</code>.
+ *
+ * @author agent
+ */
+public class MuxServer implements Runnable
+{
+    private final Logger logger;
+    private final int port;
+    private final int numSelectors;
+    private final int numThreads;
+    private ServerSocketChannel serverChannel;
+    private SelectorThread[] selectors;
+    private ExecutorService workers;
+    private final Set<MuxConnection> connections = Collections.newSetFromMap(new ConcurrentHashMap<MuxConnection, Boolean>());
+
+    public MuxServer()
+    {
+        this(MaryProperties.needInteger("socket.port"),
+             MaryProperties.getInteger("server.mux.selectors", 2),
+             MaryProperties.getInteger("server.mux.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     * @param numSelectors the number of threads reading and writing frames
+     * @param numThreads the number of requests to process at the same time
+     */
+    public MuxServer(int port, int numSelectors, int numThreads)
+    {
+        this.logger = MaryUtils.getLogger("server");
+        this.port = port;
+        this.numSelectors = Math.max(1, numSelectors);
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Open the server socket and start the selector threads, without accepting connections yet.
+     * Called by {@link #run()} if necessary.
+     */
+    public synchronized void bind() throws IOException
+    {
+        if (serverChannel != null) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MuxWorker-"+count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        selectors = new SelectorThread[numSelectors];
+        for (int i=0; i<numSelectors; i++) {
+            selectors[i] = new SelectorThread("MuxSelector-"+(i+1));
+            selectors[i].start();
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * The port the server listens on, once it is bound.
+     */
+    public int getLocalPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void run()
+    {
+        logger.info("Starting multiplexing server.");
+        try {
+            bind();
+            int next = 0;
+            logger.info("Waiting for clients to connect on port " + getLocalPort());
+            while (serverChannel.isOpen()) {
+                SocketChannel client = serverChannel.accept();
+                logger.info("Connection from " + client.socket().getInetAddress().getHostName()
+                        + " (" + client.socket().getInetAddress().getHostAddress() + ").");
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+                SelectorThread selector = selectors[next++ % selectors.length];
+                MuxConnection connection = new MuxConnection(client, this, selector);
+                connections.add(connection);
+                selector.update(connection);
+            }
+        } catch (Exception e) {
+            if (serverChannel != null && !serverChannel.isOpen()) {
+                logger.info("Server stopped.");
+                return;
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stop accepting connections, and close all selector threads and connections.
+     */
+    public synchronized void shutdown() throws IOException
+    {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close();
+        for (MuxConnection connection : connections) {
+            connection.close();
+        }
+        for (SelectorThread selector : selectors) {
+            selector.shutdown();
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * Called in the selector thread for each frame received from a client.
+     */
+    void received(final MuxConnection connection, final Frame frame) throws IOException
+    {
+        if (frame.getType() != Frame.REQUEST) {
+            connection.sendNow(Frame.error(frame.getRequestId(), "Unexpected frame type "+frame.getType()));
+            return;
+        }
+        workers.execute(new Runnable() {
+            public void run() {
+                handle(connection, frame);
+            }
+        });
+    }
+
+    /**
+     * Called when a connection is closed.
+     */
+    void closed(MuxConnection connection)
+    {
+        connections.remove(connection);
+        logger.info("Connection closed, " + connections.size() + " connections open.");
+    }
+
+    private void handle(MuxConnection connection, Frame frame)
+    {
+        int id = frame.getRequestId();
+        FrameOutputStream output = new FrameOutputStream(connection, id);
+        // requests created while processing are cancelled when the connection closes:
+        CancellationToken previousToken = CancellationToken.setCurrent(connection.getCancellationToken());
+        try {
+            process(frame.getParameters(), frame.getInput(), output);
+            output.flush();
+            connection.send(new Frame(id, Frame.END, new byte[0]));
+        } catch (Throwable t) {
+            if (connection.isClosed()) {
+                logger.info("Client disconnected before request "+id+" was answered");
+                return;
+            }
+            logger.warn("Request "+id+" failed", t);
+            try {
+                connection.send(Frame.error(id, MaryUtils.getThrowableAndCausesAsString(t)));
+            } catch (IOException ioe) {
+                logger.info("Cannot send error message, client seems to have disconnected.");
+            }
+        } finally {
+            CancellationToken.setCurrent(previousToken);
+        }
+    }
+
+    /**
+     * Process one request and write its output.
+     * @param parameters the request parameters
+     * @param input the input data
+     * @param output receives the output data
+     * @throws Exception if the request is malformed or cannot be processed
+     */
+    protected void process(Map<String, String> parameters, String input, OutputStream output) throws Exception
+    {
+        MaryDataType inputType = getDataType(parameters, "IN");
+        MaryDataType outputType = getDataType(parameters, "OUT");
+        String localeString = parameters.get("LOCALE");
+        if (localeString == null) {
+            throw new Exception("Expected LOCALE=<locale>");
+        }
+        Locale locale = MaryUtils.string2locale(localeString);
+
+        AudioFileFormat.Type audioFileFormatType = AudioFileFormat.Type.WAVE;
+        boolean streamingAudio = false;
+        String audio = parameters.get("AUDIO");
+        if (audio != null && outputType == MaryDataType.get("AUDIO")) {
+            streamingAudio = audio.startsWith("STREAMING_");
+            // as in the classic protocol; other formats need the length of the audio before it is written
+            if (streamingAudio && !audio.equals("STREAMING_AU") && !audio.equals("STREAMING_MP3")) {
+                throw new Exception("Cannot stream audio of type " + audio.substring(10) + ", only AU and MP3");
+            }
+            audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(streamingAudio ? audio.substring(10) : audio);
+        }
+
+        Voice voice = null;
+        String voiceName = parameters.get("VOICE");
+        if (voiceName != null) {
+            if (voiceName.equals("male") || voiceName.equals("female")) {
+                voice = Voice.getVoice(locale, new Voice.Gender(voiceName));
+            } else {
+                voice = Voice.getVoice(voiceName);
+            }
+            if (voice == null) {
+                throw new Exception("Invalid voice: " + voiceName);
+            }
+        } else {
+            voice = Voice.getDefaultVoice(locale);
+            logger.debug("No voice requested -- using default " + voice);
+        }
+
+        AudioFormat audioFormat = voice != null ? voice.dbAudioFormat() : Voice.AF16000;
+        if (audioFileFormatType.toString().equals("MP3")) {
+            if (!MaryRuntimeUtils.canCreateMP3()) {
+                throw new UnsupportedAudioFileException("Conversion to MP3 not supported.");
+            }
+            audioFormat = MaryRuntimeUtils.getMP3AudioFormat();
+        } else if (audioFileFormatType.toString().equals("Vorbis")) {
+            if (!MaryRuntimeUtils.canCreateOgg()) {
+                throw new UnsupportedAudioFileException("Conversion to OGG Vorbis format not supported.");
+            }
+            audioFormat = MaryRuntimeUtils.getOggAudioFormat();
+        }
+        AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
+
+        final Request request = new Request(inputType, outputType, locale, voice, parameters.get("EFFECTS"),
+                parameters.get("STYLE"), Request.newId(), audioFileFormat, streamingAudio, parameters.get("OUTPUT_TYPE_PARAMS"));
+        request.setInputData(input);
+        AdmissionController admission = AdmissionController.getInstance();
+        AdmissionController.Ticket ticket = admission.admit(voice != null ? voice.getName() : null,
+                admission.getPriority(parameters.get("PRIORITY"), input));
+        try {
+            if (!streamingAudio) {
+                processRequest(request);
+                request.writeOutputData(output);
+                return;
+            }
+            // Streaming: send the audio as it is produced, while this thread processes the request
+            StreamingWriter writer = new StreamingWriter(request, output);
+            writer.start();
+            boolean processed = false;
+            try {
+                processRequest(request);
+                processed = true;
+            } finally {
+                if (!processed) {
+                    // the writer must not wait for audio that is never going to come
+                    request.getAudio().doneAppending();
+                }
+                writer.join();
+            }
+            if (writer.problem != null) {
+                throw writer.problem;
+            }
+        } finally {
+            ticket.release();
+        }
+    }
+
+    /**
+     * Run the actual processing of a request.
+     * @param request the request, with its input data set
+     */
+    protected void processRequest(Request request) throws Exception
+    {
+        request.process();
+    }
+
+    private static MaryDataType getDataType(Map<String, String> parameters, String name) throws Exception
+    {
+        String typeName = parameters.get(name);
+        if (typeName == null) {
+            throw new Exception("Expected " + name + "=<" + (name.equals("IN") ? "INPUTTYPE" : "OUTPUTTYPE") + ">");
+        }
+        MaryDataType type = MaryDataType.get(typeName);
+        if (type == null) {
+            throw new Exception("Invalid " + (name.equals("IN") ? "input" : "output") + " type: " + typeName);
+        }
+        return type;
+    }
+
+    /**
+     * Writes the audio of a streaming request as it becomes available.
+     */
+    private static class StreamingWriter extends Thread
+    {
+        private final Request request;
+        private final OutputStream output;
+        IOException problem;
+
+        StreamingWriter(Request request, OutputStream output)
+        {
+            super("MuxWriter " + request.getId());
+            this.request = request;
+            this.output = output;
+        }
+
+        public void run()
+        {
+            try {
+                AudioSystem.write(request.getAudio(), request.getAudioFileFormat().getType(), output);
+            } catch (IOException ioe) {
+                problem = ioe;
+                request.abort();
+            }
+        }
+    }
+
+    /**
+     * A thread serving a number of connections with one selector.
+     */
+    class SelectorThread extends Thread
+    {
+        private final Selector selector;
+        /** Connections to register or whose interest has changed. */
+        private final Queue<MuxConnection> updates = new ConcurrentLinkedQueue<MuxConnection>();
+
+        SelectorThread(String name) throws IOException
+        {
+            super(name);
+            setDaemon(true);
+            selector = Selector.open();
+        }
+
+        /**
+         * Have the selector thread register the connection or update its interest.
+         */
+        void update(MuxConnection connection)
+        {
+            updates.add(connection);
+            selector.wakeup();
+        }
+
+        void shutdown() throws IOException
+        {
+            selector.close();
+        }
+
+        public void run()
+        {
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                    MuxConnection connection;
+                    while ((connection = updates.poll()) != null) {
+                        try {
+                            connection.updateInterest(selector);
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        connection = (MuxConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        } catch (IOException e) {
+                            logger.info("Closing connection: " + e.getMessage());
+                            connection.close();
+                        } catch (CancelledKeyException e) {
+                            connection.close();
+                        }
+                    }
+                } catch (ClosedSelectorException e) {
+                    break;
+                } catch (IOException e) {
+                    logger.warn("Problem in selector thread", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class BatchNHttpEntityTest
+{
+    /**
+     * Items which take the longer, the earlier they are in the batch.
+     */
+    private static List<Callable<BatchNHttpEntity.Part>> createItems(final int n)
+    {
+        List<Callable<BatchNHttpEntity.Part>> items = new ArrayList<Callable<BatchNHttpEntity.Part>>();
+        for (int i=0; i<n; i++) {
+            final int index = i;
+            items.add(new Callable<BatchNHttpEntity.Part>() {
+                public BatchNHttpEntity.Part call() throws Exception {
+                    Thread.sleep(10 * (n - index));
+                    return new BatchNHttpEntity.Part(index, 200, "text/plain", ("item "+index).getBytes("US-ASCII"));
+                }
+            });
+        }
+        return items;
+    }
+
+    private static List<Integer> writeBatch(int n, boolean inOrder, String[] body) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            BatchNHttpEntity entity = new BatchNHttpEntity(createItems(n), executor, n, inOrder);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.write(out, new ArrayList<Future<BatchNHttpEntity.Part>>());
+            body[0] = out.toString("US-ASCII");
+            String boundary = entity.getContentType().getValue().replaceFirst(".*boundary=", "");
+            Assert.assertTrue(body[0].endsWith("--" + boundary + "--\r\n"));
+        } finally {
+            executor.shutdown();
+        }
+        List<Integer> indices = new ArrayList<Integer>();
+        Matcher m = Pattern.compile(BatchNHttpEntity.INDEX_HEADER + ": (\\d+)").matcher(body[0]);
+        while (m.find()) {
+            indices.add(Integer.valueOf(m.group(1)));
+        }
+        return indices;
+    }
+
+    @Test
+    public void writesResultsInInputOrder() throws Exception
+    {
+        String[] body = new String[1];
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), writeBatch(4, true, body));
+        Assert.assertTrue(body[0].contains("Content-Length: 6\r\n" + BatchNHttpEntity.INDEX_HEADER + ": 2\r\n"
+                + BatchNHttpEntity.STATUS_HEADER + ": 200\r\n\r\nitem 2\r\n"));
+    }
+
+    @Test
+    public void writesResultsInCompletionOrder() throws Exception
+    {
+        Assert.assertEquals(Arrays.asList(3, 2, 1, 0), writeBatch(4, false, new String[1]));
+    }
+
+    @Test
+    public void splitsInputs()
+    {
+        Assert.assertEquals(Arrays.asList("one", "two\nlines", "back\\slash\\n"),
+                BatchSynthesisRequestHandler.splitInputs("one\r\n\ntwo\\nlines\nback\\\\slash\\\\n\n"));
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class HealthRequestHandlerTest
+{
+    /**
+     * Reports the server state set by the test rather than that of the Mary system.
+     */
+    private static class TestHealthRequestHandler extends HealthRequestHandler
+    {
+        boolean running = false;
+        boolean ready = false;
+
+        @Override
+        protected boolean isRunning()
+        {
+            return running;
+        }
+
+        @Override
+        protected boolean isReady()
+        {
+            return ready;
+        }
+    }
+
+    private static HttpResponse get(HealthRequestHandler handler, String path) throws Exception
+    {
+        BasicHttpRequest request = new BasicHttpRequest("GET", path);
+        request.addHeader("Host", "localhost:59125");
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        handler.handle(request, response, new BasicHttpContext());
+        return response;
+    }
+
+    private static void assertStatus(int status, String text, HttpResponse response) throws Exception
+    {
+        Assert.assertEquals(status, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(EntityUtils.toString(response.getEntity()).contains(text));
+    }
+
+    @Test
+    public void reportsStartup() throws Exception
+    {
+        TestHealthRequestHandler handler = new TestHealthRequestHandler();
+        assertStatus(HttpStatus.SC_SERVICE_UNAVAILABLE, "Not running", get(handler, "/live"));
+        assertStatus(HttpStatus.SC_SERVICE_UNAVAILABLE, "Not running", get(handler, "/ready"));
+
+        handler.running = true;
+        assertStatus(HttpStatus.SC_OK, "OK", get(handler, "/live"));
+        HttpResponse warmingUp = get(handler, "/ready");
+        Assert.assertNotNull(warmingUp.getFirstHeader("Retry-After"));
+        assertStatus(HttpStatus.SC_SERVICE_UNAVAILABLE, "Warming up", warmingUp);
+
+        handler.ready = true;
+        assertStatus(HttpStatus.SC_OK, "OK", get(handler, "/live"));
+        assertStatus(HttpStatus.SC_OK, "OK", get(handler, "/ready"));
+    }
+
+    @Test
+    public void reportsTheMarySystem() throws Exception
+    {
+        // not started in this test
+        HealthRequestHandler handler = new HealthRequestHandler();
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, get(handler, "/live").getStatusLine().getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, get(handler, "/ready").getStatusLine().getStatusCode());
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ResponseCacheTest
+{
+    private static byte[] content(int length, int value)
+    {
+        byte[] b = new byte[length];
+        for (int i=0; i<length; i++) {
+            b[i] = (byte) (value + i);
+        }
+        return b;
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBySize()
+    {
+        ResponseCache cache = new ResponseCache(1000);
+        cache.put("a", content(200, 1), "audio/x-wav");
+        cache.put("b", content(200, 2), "audio/x-wav");
+        cache.put("c", content(200, 3), "audio/x-wav");
+        cache.put("d", content(200, 4), "audio/x-wav");
+        Assert.assertNotNull(cache.get("a")); // now b is the least recently used
+        cache.put("e", content(250, 5), "audio/x-wav");
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertEquals(4, cache.size());
+        Assert.assertEquals(850, cache.getBytes());
+    }
+
+    @Test
+    public void doesNotKeepLargeResponses()
+    {
+        ResponseCache cache = new ResponseCache(1000);
+        Assert.assertNull(cache.put("big", content(251, 0), "audio/x-wav"));
+        Assert.assertNull(cache.get("big"));
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void servesContentWithETag() throws Exception
+    {
+        ResponseCache cache = new ResponseCache(1000);
+        byte[] data = content(100, 7);
+        ResponseCache.Entry entry = cache.put("x", data, "audio/basic");
+        Assert.assertEquals(ResponseCache.etag(data), entry.getETag());
+        Assert.assertTrue(ResponseCache.matches("\"nothing\", " + entry.getETag(), entry.getETag()));
+        Assert.assertTrue(ResponseCache.matches("*", entry.getETag()));
+        Assert.assertFalse(ResponseCache.matches(null, entry.getETag()));
+        Assert.assertFalse(ResponseCache.matches(ResponseCache.etag(content(100, 8)), entry.getETag()));
+
+        HttpEntity entity = cache.get("x").toEntity();
+        Assert.assertEquals(100, entity.getContentLength());
+        Assert.assertEquals("audio/basic", entity.getContentType().getValue());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        Assert.assertArrayEquals(data, out.toByteArray());
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class StreamingAudioEncoderTest
+{
+    private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+    private static short[] createSignal(int n)
+    {
+        short[] signal = new short[n];
+        for (int i=0; i<n; i++) {
+            signal[i] = (short) (8000 * Math.sin(2*Math.PI*i*220/16000.) + 3000 * Math.sin(2*Math.PI*i*1234/16000.));
+        }
+        return signal;
+    }
+
+    private static AudioInputStream toAudio(short[] signal)
+    {
+        byte[] bytes = new byte[2*signal.length];
+        for (int i=0; i<signal.length; i++) {
+            bytes[2*i] = (byte) signal[i];
+            bytes[2*i+1] = (byte) (signal[i] >> 8);
+        }
+        return new AudioInputStream(new ByteArrayInputStream(bytes), FORMAT, signal.length);
+    }
+
+    private static double snr(short[] signal, short[] decoded)
+    {
+        double energy = 0;
+        double error = 0;
+        for (int i=0; i<signal.length; i++) {
+            energy += (double) signal[i] * signal[i];
+            error += (double) (signal[i] - decoded[i]) * (signal[i] - decoded[i]);
+        }
+        return 10 * Math.log10(energy / error);
+    }
+
+    @Test
+    public void ulawCanBeReadByJavaSound() throws Exception
+    {
+        short[] signal = createSignal(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UlawAudioEncoder().encode(toAudio(signal), out);
+        Assert.assertEquals(24 + signal.length, out.size());
+        AudioInputStream ulaw = AudioSystem.getAudioInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(AudioFormat.Encoding.ULAW, ulaw.getFormat().getEncoding());
+        AudioInputStream pcm = AudioSystem.getAudioInputStream(FORMAT, ulaw);
+        byte[] bytes = new byte[2*signal.length];
+        int read = 0;
+        int n;
+        while (read < bytes.length && (n = pcm.read(bytes, read, bytes.length - read)) != -1) {
+            read += n;
+        }
+        Assert.assertEquals(bytes.length, read);
+        short[] decoded = new short[signal.length];
+        for (int i=0; i<decoded.length; i++) {
+            decoded[i] = (short) ((bytes[2*i+1] << 8) | (bytes[2*i] & 0xFF));
+        }
+        Assert.assertTrue(snr(signal, decoded) > 30);
+    }
+
+    @Test
+    public void imaAdpcmDecodesToInput() throws Exception
+    {
+        short[] signal = createSignal(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ImaAdpcmAudioEncoder().encode(toAudio(signal), out);
+        byte[] wav = out.toByteArray();
+        int headerSize = 48;
+        int blockAlign = ImaAdpcmAudioEncoder.getBlockAlign(16000);
+        int samplesPerBlock = ImaAdpcmAudioEncoder.getSamplesPerBlock(blockAlign);
+        int nBlocks = (signal.length + samplesPerBlock - 1) / samplesPerBlock;
+        Assert.assertEquals(headerSize + nBlocks * blockAlign, wav.length);
+        Assert.assertEquals(ImaAdpcmAudioEncoder.WAVE_FORMAT_IMA_ADPCM, wav[20]);
+        Assert.assertEquals('d', wav[headerSize - 8]);
+
+        short[] decoded = new short[nBlocks * samplesPerBlock];
+        for (int b=0, s=0; b<nBlocks; b++) {
+            int pos = headerSize + b * blockAlign;
+            int predictor = (short) ((wav[pos+1] << 8) | (wav[pos] & 0xFF));
+            int index = wav[pos+2];
+            decoded[s++] = (short) predictor;
+            for (int k=4; k<blockAlign; k++) {
+                for (int nibble=0; nibble<2; nibble++) {
+                    int code = (wav[pos+k] >> (4*nibble)) & 0xF;
+                    int step = ImaAdpcmAudioEncoder.STEP_SIZES[index];
+                    int delta = step >> 3;
+                    if ((code & 4) != 0) delta += step;
+                    if ((code & 2) != 0) delta += step >> 1;
+                    if ((code & 1) != 0) delta += step >> 2;
+                    predictor += (code & 8) != 0 ? -delta : delta;
+                    predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+                    index = Math.max(0, Math.min(88, index + ImaAdpcmAudioEncoder.INDEX_CHANGES[code & 7]));
+                    decoded[s++] = (short) predictor;
+                }
+            }
+        }
+        short[] decodedSignal = new short[signal.length];
+        System.arraycopy(decoded, 0, decodedSignal, 0, signal.length);
+        Assert.assertTrue(snr(signal, decodedSignal) > 20);
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class WorkerRequestHandlerTest
+{
+    /**
+     * Records the response or exception submitted for a request.
+     */
+    private static class Trigger implements NHttpResponseTrigger
+    {
+        final CountDownLatch done = new CountDownLatch(1);
+        HttpResponse response;
+        Exception exception;
+
+        public void submitResponse(HttpResponse r)
+        {
+            response = r;
+            done.countDown();
+        }
+
+        public void handleException(HttpException e)
+        {
+            exception = e;
+            done.countDown();
+        }
+
+        public void handleException(IOException e)
+        {
+            exception = e;
+            done.countDown();
+        }
+    }
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    @After
+    public void stopWorkers()
+    {
+        workers.shutdownNow();
+    }
+
+    private static HttpResponse newResponse()
+    {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_INTERNAL_SERVER_ERROR, "not handled");
+    }
+
+    @Test
+    public void doesNotBlockTheCallingThread() throws Exception
+    {
+        final CountDownLatch proceed = new CountDownLatch(1);
+        WorkerRequestHandler handler = new WorkerRequestHandler(new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+            {
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                response.setStatusCode(HttpStatus.SC_OK);
+            }
+        }, workers);
+        Trigger trigger = new Trigger();
+        HttpResponse response = newResponse();
+        handler.handle(new BasicHttpRequest("GET", "/process"), response, trigger, new BasicHttpContext());
+        Assert.assertNull(trigger.response);
+        proceed.countDown();
+        Assert.assertTrue(trigger.done.await(5, TimeUnit.SECONDS));
+        Assert.assertSame(response, trigger.response);
+        Assert.assertEquals(HttpStatus.SC_OK, trigger.response.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void handlesQuickRequestsDirectly() throws Exception
+    {
+        WorkerRequestHandler handler = new WorkerRequestHandler(new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+            {
+                response.setStatusCode(HttpStatus.SC_OK);
+            }
+        }, null);
+        Trigger trigger = new Trigger();
+        handler.handle(new BasicHttpRequest("GET", "/live"), newResponse(), trigger, new BasicHttpContext());
+        Assert.assertEquals(0, trigger.done.getCount());
+        Assert.assertEquals(HttpStatus.SC_OK, trigger.response.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void reportsFailures() throws Exception
+    {
+        WorkerRequestHandler handler = new WorkerRequestHandler(new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+            {
+                throw new IllegalStateException("broken handler");
+            }
+        }, workers);
+        Trigger trigger = new Trigger();
+        handler.handle(new BasicHttpRequest("GET", "/process"), newResponse(), trigger, new BasicHttpContext());
+        Assert.assertTrue(trigger.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(trigger.exception);
+        Assert.assertEquals(HttpStatus.SC_INTERNAL_SERVER_ERROR, trigger.response.getStatusLine().getStatusCode());
+        Assert.assertTrue(EntityUtils.toString(trigger.response.getEntity()).contains("broken handler"));
+    }
+
+    @Test
+    public void reportsErrors() throws Exception
+    {
+        WorkerRequestHandler handler = new WorkerRequestHandler(new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+            {
+                throw new OutOfMemoryError("no memory for this request");
+            }
+        }, workers);
+        Trigger trigger = new Trigger();
+        handler.handle(new BasicHttpRequest("GET", "/process"), newResponse(), trigger, new BasicHttpContext());
+        Assert.assertTrue(trigger.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(HttpStatus.SC_INTERNAL_SERVER_ERROR, trigger.response.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void passesHttpErrorsOn() throws Exception
+    {
+        WorkerRequestHandler handler = new WorkerRequestHandler(new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException
+            {
+                throw new HttpException("bad request");
+            }
+        }, workers);
+        Trigger trigger = new Trigger();
+        handler.handle(new BasicHttpRequest("GET", "/process"), newResponse(), trigger, new BasicHttpContext());
+        Assert.assertTrue(trigger.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(trigger.response);
+        Assert.assertTrue(trigger.exception instanceof HttpException);
+    }
+}
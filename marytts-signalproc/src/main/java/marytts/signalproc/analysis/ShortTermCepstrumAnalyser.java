@@ -23,7 +23,7 @@ import java.util.Arrays;
 
 import marytts.signalproc.window.Window;
 import marytts.util.data.DoubleDataSource;
-import marytts.util.math.FFT;
+import marytts.util.math.FFTPlan;
 import marytts.util.math.MathUtils;
 
 
@@ -40,6 +40,8 @@ public class ShortTermCepstrumAnalyser extends FrameBasedAnalyser<double[]>
     int invFftSize;
     double frequencyResolution;
     double quefrencyResolution;
+    FFTPlan plan;
+    FFTPlan invPlan;
 
     /**
      * Initialise a FrameBasedAnalyser.
@@ -64,6 +66,8 @@ public class ShortTermCepstrumAnalyser extends FrameBasedAnalyser<double[]>
             throw new IllegalArgumentException("invFftSize must be a power of two!");
         this.fftSize = fftSize;
         this.invFftSize = invFftSize;
+        this.plan = FFTPlan.forSize(fftSize);
+        this.invPlan = FFTPlan.forSize(invFftSize);
         assert fftSize >= frame.length;
         
         this.frequencyResolution = (double)samplingRate/fftSize;
@@ -86,7 +90,7 @@ public class ShortTermCepstrumAnalyser extends FrameBasedAnalyser<double[]>
         double[] real = new double[fftSize];
         double[] imag = new double[fftSize];
         System.arraycopy(aFrame, 0, real, 0, aFrame.length);
-        FFT.transform(real, imag, false);
+        plan.transform(real, imag, false);
         // Now real + j*imag is the complex spectrum
         MathUtils.toPolarCoordinates(real, imag);
         // now real = abs(X), imag = phi
@@ -112,7 +116,7 @@ public class ShortTermCepstrumAnalyser extends FrameBasedAnalyser<double[]>
         for (int i=0;i<invFftSize/2; i++) {
             invReal[invFftSize-i-1] = invReal[i];
         }
-        FFT.transform(invReal, invImag, true);
+        invPlan.transform(invReal, invImag, true);
         return invReal;
     }
 
@@ -39,6 +39,7 @@ import marytts.signalproc.analysis.PitchMarks;
 import marytts.signalproc.analysis.PitchReaderWriter;
 import marytts.signalproc.window.DynamicWindow;
 import marytts.signalproc.window.Window;
+import marytts.util.CancellationToken;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.Datagram;
 import marytts.util.data.DatagramDoubleDataSource;
@@ -49,6 +50,7 @@ import marytts.util.io.FileUtils;
 import marytts.util.io.LEDataInputStream;
 import marytts.util.io.LEDataOutputStream;
 import marytts.util.math.ComplexArray;
+import marytts.util.math.FFT;
 import marytts.util.math.FFTMixedRadix;
 import marytts.util.math.MathUtils;
 import marytts.util.signal.SignalProcUtils;
@@ -365,6 +367,17 @@ public class FDPSOLAProcessor extends VocalTractModifier {
      */
     public DDSAudioInputStream processDecrufted(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
             boolean[][] voicings, double[][] pitchScales, double[][] timeScales) throws IOException {
+        double[] output = processDecruftedSamples(datagrams, rightContexts, audioformat, voicings, pitchScales, timeScales);
+        BufferedDoubleDataSource buffer = new BufferedDoubleDataSource(output);
+        DDSAudioInputStream stream = new DDSAudioInputStream(buffer, audioformat);
+        return stream;
+    }
+
+    /**
+     * Same as {@link #processDecrufted}, but returning the modified audio as an array of samples.
+     */
+    double[] processDecruftedSamples(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
+            boolean[][] voicings, double[][] pitchScales, double[][] timeScales) throws IOException {
 
         // obscure dependency on several fields:
         tscaleSingle = -1;
@@ -382,6 +395,7 @@ public class FDPSOLAProcessor extends VocalTractModifier {
 
         // for each unit:
         for (int i = 0; i < datagrams.length; i++) {
+            CancellationToken.checkCurrent();
             // for each datagram in that unit:
             for (int j = 0; j < datagrams[i].length; j++) {
 
@@ -465,10 +479,8 @@ public class FDPSOLAProcessor extends VocalTractModifier {
         // update final datagram duration:
         Datagram finalDatagram = datagrams[datagrams.length - 1][datagrams[datagrams.length - 1].length - 1];
         finalDatagram.setDuration(finalDatagram.getDuration() + samples.length);
-        
-        BufferedDoubleDataSource buffer = new BufferedDoubleDataSource(output);
-        DDSAudioInputStream stream = new DDSAudioInputStream(buffer, audioformat);
-        return stream;
+
+        return output;
     }
 
     //FD-PSOLA using all concatenation units
@@ -1386,7 +1398,10 @@ public class FDPSOLAProcessor extends VocalTractModifier {
                 //Convert back to time domain
                 //FFT.transform(hy.real, hy.imag, true);
                 //hy = FFTArbitraryLength.ifft(hy);
-                hy = FFTMixedRadix.ifft(hy);
+                if (MathUtils.isPowerOfTwo(newFftSize))
+                    FFT.transform(hy.real, hy.imag, true);
+                else
+                    hy = FFTMixedRadix.ifft(hy);
                 
                 frmy = new double[newFrmSize];
                 System.arraycopy(hy.real, 0, frmy, 0, newFrmSize);
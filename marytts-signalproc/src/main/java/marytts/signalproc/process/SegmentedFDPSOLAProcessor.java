@@ -0,0 +1,414 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.process;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.exceptions.RequestCancelledException;
+import marytts.util.CancellationToken;
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.Datagram;
+import marytts.util.data.audio.DDSAudioInputStream;
+
+/**
+ * FD-PSOLA modification of a sequence of units, processed in segments in parallel.
+ * <p>
+ * The unit sequence is cut into segments of roughly {@link #getUnitsPerSegment()} units,
+ * preferably at a unit boundary where the signal is unvoiced on both sides.
+ * Each segment is processed with its own {@link FDPSOLAProcessor#processDecrufted}, together with
+ * {@link #getMarginUnits()} units of context on either side, so that the analysis and overlap-add
+ * around a segment boundary see the same signal as in serial processing. Only the core of each
+ * segment is kept; neighbouring cores are joined by a short linear cross-fade between the two
+ * versions of the signal around the boundary, which both segments have computed.
+ * <p>
+ * As with the serial version, the durations of the datagrams are overwritten with the number of
+ * output samples produced for them. Short sequences are processed serially.
+ *
+ * @author agent
+ *
+ */
+public class SegmentedFDPSOLAProcessor
+{
+    public static final int DEFAULT_UNITS_PER_SEGMENT = 40;
+    public static final int DEFAULT_MARGIN_UNITS = 2;
+    /**
+     * Maximum length of the cross-fade at segment boundaries, in seconds.
+     */
+    public static final double CROSSFADE_DURATION = 0.005;
+
+    private static final ExecutorService defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "FDPSOLASegment-"+count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final int unitsPerSegment;
+    private final int marginUnits;
+    private final ExecutorService executor;
+
+    public SegmentedFDPSOLAProcessor()
+    {
+        this(DEFAULT_UNITS_PER_SEGMENT, DEFAULT_MARGIN_UNITS, null);
+    }
+
+    /**
+     * @param unitsPerSegment the approximate number of units to process in one segment
+     * @param marginUnits the number of context units processed on either side of a segment
+     * @param executor the executor on which to process the segments, or null for a shared pool of daemon threads.
+     */
+    public SegmentedFDPSOLAProcessor(int unitsPerSegment, int marginUnits, ExecutorService executor)
+    {
+        if (unitsPerSegment < 1) {
+            throw new IllegalArgumentException("Need at least one unit per segment, got "+unitsPerSegment);
+        }
+        if (marginUnits < 1) {
+            throw new IllegalArgumentException("Need at least one margin unit, got "+marginUnits);
+        }
+        this.unitsPerSegment = unitsPerSegment;
+        this.marginUnits = marginUnits;
+        this.executor = executor != null ? executor : defaultExecutor;
+    }
+
+    public int getUnitsPerSegment()
+    {
+        return unitsPerSegment;
+    }
+
+    public int getMarginUnits()
+    {
+        return marginUnits;
+    }
+
+    /**
+     * Same as {@link FDPSOLAProcessor#processDecrufted(Datagram[][], Datagram[], AudioFormat, boolean[][], double[][], double[][])},
+     * but processing segments of the unit sequence in parallel.
+     * @throws IOException if frames cannot be processed
+     */
+    public DDSAudioInputStream processDecrufted(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
+            boolean[][] voicings, double[][] pitchScales, double[][] timeScales) throws IOException
+    {
+        int[] boundaries = getSegmentBoundaries(datagrams, voicings);
+        if (boundaries.length <= 2) {
+            return new FDPSOLAProcessor().processDecrufted(datagrams, rightContexts, audioformat, voicings, pitchScales, timeScales);
+        }
+        int numSegments = boundaries.length - 1;
+        List<Segment> submitted = new ArrayList<Segment>(numSegments);
+        List<Future<Segment>> futures = new ArrayList<Future<Segment>>(numSegments);
+        for (int s=0; s<numSegments; s++) {
+            Segment segment = new Segment(datagrams, rightContexts, audioformat, voicings, pitchScales, timeScales,
+                    boundaries[s], boundaries[s+1], new ArrayList<Segment>(submitted));
+            submitted.add(segment);
+            futures.add(executor.submit(segment));
+        }
+        Segment[] segments = new Segment[numSegments];
+        try {
+            for (int s=0; s<numSegments; s++) {
+                segments[s] = futures.get(s).get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<Segment> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing frames", e);
+        } catch (ExecutionException e) {
+            for (Future<Segment> f : futures) {
+                f.cancel(true);
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RequestCancelledException) {
+                throw (RequestCancelledException) e.getCause();
+            }
+            throw new IOException("Frames could not be processed!", e.getCause());
+        }
+
+        double[] output = stitch(segments, (int) (CROSSFADE_DURATION * audioformat.getSampleRate()));
+        for (Segment segment : segments) {
+            segment.copyDurations(datagrams);
+        }
+        return new DDSAudioInputStream(new BufferedDoubleDataSource(output), audioformat);
+    }
+
+    /**
+     * Determine where to cut the unit sequence into segments.
+     * @return the index of the first unit of each segment, followed by the number of units.
+     * If the sequence is not cut, this is only {0, datagrams.length}.
+     */
+    int[] getSegmentBoundaries(Datagram[][] datagrams, boolean[][] voicings)
+    {
+        int numUnits = datagrams.length;
+        List<Integer> boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        int tolerance = unitsPerSegment / 4;
+        int start = 0;
+        // Only cut if the remaining units make up a reasonable segment on their own:
+        while (numUnits - start >= unitsPerSegment + Math.max(marginUnits, unitsPerSegment / 2)) {
+            int nominal = start + unitsPerSegment;
+            int cut = nominal;
+            for (int d=0; d<=tolerance; d++) {
+                if (isUnvoicedBoundary(datagrams, voicings, nominal - d)) {
+                    cut = nominal - d;
+                    break;
+                }
+                if (isUnvoicedBoundary(datagrams, voicings, nominal + d)) {
+                    cut = nominal + d;
+                    break;
+                }
+            }
+            boundaries.add(cut);
+            start = cut;
+        }
+        boundaries.add(numUnits);
+        int[] result = new int[boundaries.size()];
+        for (int i=0; i<result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the last frame before unit u and the first frame of unit u are unvoiced.
+     */
+    private static boolean isUnvoicedBoundary(Datagram[][] datagrams, boolean[][] voicings, int u)
+    {
+        if (u <= 0 || u >= datagrams.length) {
+            return false;
+        }
+        if (datagrams[u-1].length == 0 || datagrams[u].length == 0) {
+            return false;
+        }
+        return !voicings[u-1][voicings[u-1].length-1] && !voicings[u][0];
+    }
+
+    /**
+     * Concatenate the cores of the segments, cross-fading around each boundary.
+     */
+    private static double[] stitch(Segment[] segments, int maxCrossfade)
+    {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.coreLength();
+        }
+        double[] output = new double[total];
+        int pos = 0;
+        for (int s=0; s<segments.length; s++) {
+            Segment segment = segments[s];
+            System.arraycopy(segment.output, segment.coreStart, output, pos, segment.coreLength());
+            if (s > 0) {
+                Segment previous = segments[s-1];
+                // Both segments have computed the signal around the boundary;
+                // the previous one after its core, this one before its core.
+                int half = maxCrossfade / 2;
+                half = Math.min(half, previous.output.length - previous.coreEnd);
+                half = Math.min(half, segment.coreStart);
+                half = Math.min(half, previous.coreLength());
+                half = Math.min(half, segment.coreLength());
+                for (int t=-half; t<half; t++) {
+                    double w = (t + half + 0.5) / (2 * half);
+                    output[pos+t] = (1 - w) * previous.output[previous.coreEnd+t] + w * segment.output[segment.coreStart+t];
+                }
+            }
+            pos += segment.coreLength();
+        }
+        return output;
+    }
+
+    /**
+     * One segment of the unit sequence, processed together with its margins.
+     * The datagrams are processed as copies, because processing overwrites their durations
+     * and the margins are processed by two segments.
+     * <p>
+     * The serial processor keeps track of the small differences between desired and realised
+     * frame durations over the whole sequence, and compensates them at the last frame.
+     * Each segment therefore measures these differences over its core frames,
+     * and the last segment waits for the earlier segments' values before its last frame.
+     */
+    private class Segment implements Callable<Segment>
+    {
+        private final int first;
+        private final int end;
+        private final int marginStart;
+        private final Datagram[][] subDatagrams;
+        private final Datagram[] subRightContexts;
+        private final AudioFormat audioformat;
+        private final boolean[][] subVoicings;
+        private final double[][] subPitchScales;
+        private final double[][] subTimeScales;
+        private final List<Segment> previous;
+        private final CountDownLatch coreDone = new CountDownLatch(1);
+        // the request's token, to be checked in the pool thread:
+        private final CancellationToken cancellation = CancellationToken.current();
+
+        double[] output;
+        int coreStart;
+        int coreEnd;
+        volatile double coreDurationDifference;
+
+        Segment(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
+                boolean[][] voicings, double[][] pitchScales, double[][] timeScales, int first, int end, List<Segment> previous)
+        {
+            this.first = first;
+            this.end = end;
+            this.audioformat = audioformat;
+            this.previous = end == datagrams.length ? previous : null;
+            marginStart = Math.max(0, first - marginUnits);
+            int marginEnd = Math.min(datagrams.length, end + marginUnits);
+            int n = marginEnd - marginStart;
+            subDatagrams = new Datagram[n][];
+            subRightContexts = new Datagram[n];
+            subVoicings = new boolean[n][];
+            subPitchScales = new double[n][];
+            subTimeScales = new double[n][];
+            for (int i=0; i<n; i++) {
+                Datagram[] unit = datagrams[marginStart+i];
+                subDatagrams[i] = new Datagram[unit.length];
+                for (int j=0; j<unit.length; j++) {
+                    subDatagrams[i][j] = new Datagram(unit[j].getDuration(), unit[j].getData());
+                }
+                subRightContexts[i] = rightContexts[marginStart+i];
+                subVoicings[i] = voicings[marginStart+i];
+                subPitchScales[i] = pitchScales[marginStart+i];
+                subTimeScales[i] = timeScales[marginStart+i];
+            }
+            // The last frame of the margin is followed by the next unit, not by silence:
+            if (subRightContexts[n-1] == null && marginEnd < datagrams.length && datagrams[marginEnd].length > 0) {
+                subRightContexts[n-1] = datagrams[marginEnd][0];
+            }
+        }
+
+        public Segment call() throws IOException
+        {
+            final int coreFirstFrame = countFrames(0, first - marginStart);
+            final int coreEndFrame = coreFirstFrame + countFrames(first - marginStart, end - marginStart);
+            if (coreEndFrame == coreFirstFrame) {
+                coreDone.countDown();
+            }
+            FDPSOLAProcessor processor = new FDPSOLAProcessor() {
+                private int frameIndex = 0;
+                private double differenceBeforeCore = 0;
+
+                @Override
+                public double[] processFrame(double[] frmIn, boolean isVoiced, double pscale, double tscale, double escale,
+                        double vscale, boolean isLastInputFrame, int currentPeriod, int inputFrameSize) throws IOException
+                {
+                    if (frameIndex == coreFirstFrame) {
+                        differenceBeforeCore = sumLocalDurDiffs;
+                    }
+                    if (isLastInputFrame && previous != null) {
+                        // count the earlier cores' differences instead of those of our left margin:
+                        sumLocalDurDiffs += getPreviousDurationDifference() - differenceBeforeCore;
+                    }
+                    double[] frame = super.processFrame(frmIn, isVoiced, pscale, tscale, escale, vscale, isLastInputFrame,
+                            currentPeriod, inputFrameSize);
+                    if (frameIndex == coreEndFrame - 1) {
+                        coreDurationDifference = sumLocalDurDiffs - differenceBeforeCore;
+                        coreDone.countDown();
+                    }
+                    frameIndex++;
+                    return frame;
+                }
+            };
+            CancellationToken previousToken = CancellationToken.setCurrent(cancellation);
+            try {
+                output = processor.processDecruftedSamples(subDatagrams, subRightContexts, audioformat,
+                        subVoicings, subPitchScales, subTimeScales);
+            } finally {
+                CancellationToken.setCurrent(previousToken);
+                // never leave the last segment waiting
+                coreDone.countDown();
+            }
+            coreStart = Math.min(sumDurations(0, first - marginStart), output.length);
+            if (previous != null) {
+                coreEnd = output.length;
+            } else {
+                coreEnd = Math.min(Math.max(coreStart, sumDurations(0, end - marginStart)), output.length);
+            }
+            return this;
+        }
+
+        private double getPreviousDurationDifference() throws IOException
+        {
+            double sum = 0;
+            for (Segment segment : previous) {
+                try {
+                    segment.coreDone.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while processing frames", e);
+                }
+                sum += segment.coreDurationDifference;
+            }
+            return sum;
+        }
+
+        private int countFrames(int from, int to)
+        {
+            int count = 0;
+            for (int i=from; i<to; i++) {
+                count += subDatagrams[i].length;
+            }
+            return count;
+        }
+
+        private int sumDurations(int from, int to)
+        {
+            int sum = 0;
+            for (int i=from; i<to; i++) {
+                for (Datagram d : subDatagrams[i]) {
+                    sum += d.getDuration();
+                }
+            }
+            return sum;
+        }
+
+        int coreLength()
+        {
+            return coreEnd - coreStart;
+        }
+
+        /**
+         * Overwrite the durations of the core's original datagrams with the number of samples produced for them.
+         */
+        void copyDurations(Datagram[][] datagrams)
+        {
+            for (int i=first; i<end; i++) {
+                for (int j=0; j<datagrams[i].length; j++) {
+                    datagrams[i][j].setDuration(subDatagrams[i-marginStart][j].getDuration());
+                }
+            }
+        }
+    }
+}
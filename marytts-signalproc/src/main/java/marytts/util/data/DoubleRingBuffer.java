@@ -0,0 +1,235 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.util.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import marytts.util.CancellationToken;
+
+/**
+ * A fixed-size ring buffer of primitive doubles for exactly one producing
+ * and one consuming thread. Data is copied in blocks, and the two threads
+ * only communicate through two counters, so no locks are taken and nothing is
+ * allocated while data is passed. A thread which has to wait for space or data
+ * parks until the other thread makes progress.
+ * <p>
+ * The producer signals the end of the data with {@link #close()}, or a failure
+ * with {@link #fail(Throwable)}; the consumer then receives the remaining
+ * data, followed by -1 (end of stream) or an exception (failure).
+ * A producer waiting for space gives up when its request is cancelled,
+ * see {@link CancellationToken}, e.g. because nobody reads the data any more.
+ *
+ * @author agent
+ *
+ */
+public class DoubleRingBuffer
+{
+    /**
+     * Upper bound for a single park, so that a missed wake-up can only cause a short delay.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final double[] data;
+    private final int mask;
+    // total number of doubles written resp. read; only the owning thread modifies each counter
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+    private volatile Thread waitingProducer = null;
+    private volatile Thread waitingConsumer = null;
+
+    /**
+     * Create a ring buffer.
+     * @param minCapacity the minimum number of doubles the buffer can hold;
+     * the actual capacity is the next power of two.
+     */
+    public DoubleRingBuffer(int minCapacity)
+    {
+        if (minCapacity <= 0 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal capacity: "+minCapacity);
+        }
+        int capacity = 1;
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        data = new double[capacity];
+        mask = capacity - 1;
+    }
+
+    public int getCapacity()
+    {
+        return data.length;
+    }
+
+    /**
+     * The number of doubles which can currently be read without waiting.
+     * @return the number of doubles in the buffer
+     */
+    public int available()
+    {
+        return (int) (written.get() - read.get());
+    }
+
+    /**
+     * Whether the producer has closed the buffer, normally or with a failure.
+     * Data may still be available for reading.
+     * @return true if no more data will be written
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Called by the producer: write the given data, waiting for the consumer
+     * to make space as needed.
+     * @param source the data to write
+     * @param off the position of the first double in source
+     * @param len the number of doubles to write
+     * @throws IllegalStateException if the buffer has been closed
+     */
+    public void put(double[] source, int off, int len)
+    {
+        if (closed) {
+            throw new IllegalStateException("Buffer has been closed");
+        }
+        while (len > 0) {
+            long w = written.get();
+            int space = data.length - (int) (w - read.get());
+            if (space == 0) {
+                CancellationToken.checkCurrent();
+                waitingProducer = Thread.currentThread();
+                if (data.length - (int) (w - read.get()) == 0) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                waitingProducer = null;
+                continue;
+            }
+            int n = Math.min(space, len);
+            int start = (int) (w & mask);
+            int first = Math.min(n, data.length - start);
+            System.arraycopy(source, off, data, start, first);
+            if (first < n) {
+                System.arraycopy(source, off + first, data, 0, n - first);
+            }
+            written.set(w + n); // publishes the data to the consumer
+            off += n;
+            len -= n;
+            wakeUp(waitingConsumer);
+        }
+    }
+
+    /**
+     * Called by the producer: write a single double.
+     * @param value the value to write
+     * @throws IllegalStateException if the buffer has been closed
+     */
+    public void put(double value)
+    {
+        if (closed) {
+            throw new IllegalStateException("Buffer has been closed");
+        }
+        long w = written.get();
+        while (data.length - (int) (w - read.get()) == 0) {
+            CancellationToken.checkCurrent();
+            waitingProducer = Thread.currentThread();
+            if (data.length - (int) (w - read.get()) == 0) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            waitingProducer = null;
+        }
+        data[(int) (w & mask)] = value;
+        written.set(w + 1);
+        wakeUp(waitingConsumer);
+    }
+
+    /**
+     * Called by the producer when all data has been written.
+     */
+    public void close()
+    {
+        closed = true;
+        wakeUp(waitingConsumer);
+    }
+
+    /**
+     * Called by the producer if it cannot produce all of its data.
+     * The consumer will get an exception after reading the data written so far.
+     * @param cause the reason for the failure
+     */
+    public void fail(Throwable cause)
+    {
+        failure = cause;
+        close();
+    }
+
+    /**
+     * Called by the consumer: read up to len doubles, waiting until at least one
+     * is available or the buffer is closed.
+     * @param target the array to copy the data into
+     * @param off the position in target of the first double read
+     * @param len the maximum number of doubles to read
+     * @return the number of doubles read, or -1 if the buffer is closed and all data has been read.
+     * @throws RuntimeException if the producer has failed
+     */
+    public int get(double[] target, int off, int len)
+    {
+        if (len == 0) return 0;
+        long r = read.get();
+        int avail;
+        while ((avail = (int) (written.get() - r)) == 0) {
+            if (closed) {
+                // the producer may have written its last data just before closing
+                if (written.get() != r) continue;
+                Throwable t = failure;
+                if (t != null) {
+                    throw new RuntimeException("Data producer failed", t);
+                }
+                return -1;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (written.get() == r && !closed) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            waitingConsumer = null;
+        }
+        int n = Math.min(avail, len);
+        int start = (int) (r & mask);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(data, start, target, off, first);
+        if (first < n) {
+            System.arraycopy(data, 0, target, off + first, n - first);
+        }
+        read.set(r + n); // releases the space to the producer
+        wakeUp(waitingProducer);
+        return n;
+    }
+
+    private static void wakeUp(Thread t)
+    {
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data;
+
+import marytts.util.ConcurrentLRUCache;
+
+/**
+ * The filters for converting a signal from one sampling rate to another
+ * by a rational factor L/M. For each of the L phases, i.e. the possible
+ * fractional positions of an output sample between two input samples,
+ * the bank holds a low-pass interpolation filter: a Blackman-windowed sinc whose cutoff
+ * lies slightly below the lower of the two Nyquist frequencies.
+ * Each phase's filter is normalised to unit gain at DC.
+ * <p>
+ * Filter banks are immutable and can be shared between threads. Get the bank for
+ * a pair of sampling rates with {@link #forRates(int, int)}, which computes each
+ * bank only once.
+ *
+ * @author agent
+ * @see ResamplingDoubleDataSource
+ */
+public class PolyphaseFilterBank
+{
+    /** The half-width of the filters, in zero crossings of the sinc */
+    private static final int ZERO_CROSSINGS = 12;
+    /** The cutoff frequency relative to the lower Nyquist frequency */
+    private static final double CUTOFF = 0.95;
+    private static final int CACHE_SIZE = 20;
+    private static final ConcurrentLRUCache<String, PolyphaseFilterBank> banks = new ConcurrentLRUCache<String, PolyphaseFilterBank>(CACHE_SIZE);
+
+    /**
+     * Get the filter bank for converting between the given sampling rates.
+     * @param inputRate the sampling rate of the input signal, in Hz
+     * @param outputRate the sampling rate of the output signal, in Hz
+     * @return the filter bank, shared with all other users of this pair of rates.
+     * @throws IllegalArgumentException if either rate is not positive.
+     */
+    public static PolyphaseFilterBank forRates(int inputRate, int outputRate)
+    {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Sampling rates must be positive, got "+inputRate+" and "+outputRate);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        int up = outputRate / gcd;
+        int down = inputRate / gcd;
+        String key = up + "/" + down;
+        PolyphaseFilterBank bank = banks.get(key);
+        if (bank == null) {
+            bank = new PolyphaseFilterBank(up, down);
+            banks.put(key, bank);
+        }
+        return bank;
+    }
+
+    private static int gcd(int a, int b)
+    {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private final int up;
+    private final int down;
+    private final int taps;
+    // the filter of phase p consists of coeffs[p*taps] to coeffs[p*taps+taps-1]
+    private final double[] coeffs;
+
+    private PolyphaseFilterBank(int up, int down)
+    {
+        this.up = up;
+        this.down = down;
+        // cutoff frequency, relative to the input Nyquist frequency:
+        double fc = CUTOFF * Math.min(1., (double) up / down);
+        // half-width of the filters, in input samples:
+        double halfWidth = ZERO_CROSSINGS / fc;
+        taps = 2 * (int) Math.ceil(halfWidth);
+        coeffs = new double[up * taps];
+        int first = getFirstTap();
+        for (int p=0; p<up; p++) {
+            double sum = 0;
+            for (int j=0; j<taps; j++) {
+                // distance between the output sample and input sample first+j, in input samples:
+                double u = (double) p / up - (first + j);
+                double c = 0;
+                if (Math.abs(u) < halfWidth) {
+                    c = fc * sinc(fc * u) * blackman(u / halfWidth);
+                }
+                coeffs[p*taps + j] = c;
+                sum += c;
+            }
+            for (int j=0; j<taps; j++) {
+                coeffs[p*taps + j] /= sum;
+            }
+        }
+    }
+
+    private static double sinc(double x)
+    {
+        if (x == 0) return 1;
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    /**
+     * The Blackman window, for x between -1 and 1.
+     */
+    private static double blackman(double x)
+    {
+        return 0.42 + 0.5 * Math.cos(Math.PI * x) + 0.08 * Math.cos(2 * Math.PI * x);
+    }
+
+    /**
+     * The interpolation factor L.
+     */
+    public int getUpFactor()
+    {
+        return up;
+    }
+
+    /**
+     * The decimation factor M.
+     */
+    public int getDownFactor()
+    {
+        return down;
+    }
+
+    /**
+     * The number of input samples used for each output sample.
+     */
+    public int getTapsPerPhase()
+    {
+        return taps;
+    }
+
+    /**
+     * The position of the first input sample used for an output sample, relative
+     * to the last input sample at or before the output sample. This is negative:
+     * the filters use getTapsPerPhase() input samples from getFirstTap() to getFirstTap()+getTapsPerPhase()-1.
+     */
+    public int getFirstTap()
+    {
+        return 1 - taps / 2;
+    }
+
+    /**
+     * Compute one output sample.
+     * @param phase the fractional position of the output sample, in units of 1/L input samples,
+     * after the input sample at position pos-getFirstTap(); between 0 and L-1.
+     * @param input the input signal
+     * @param pos the position in input of the first input sample to use.
+     * @return the output sample
+     */
+    public double filter(int phase, double[] input, int pos)
+    {
+        double sum = 0;
+        for (int j=0, c=phase*taps; j<taps; j++, c++) {
+            sum += coeffs[c] * input[pos+j];
+        }
+        return sum;
+    }
+}
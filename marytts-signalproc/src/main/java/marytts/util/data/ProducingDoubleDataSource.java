@@ -20,21 +20,46 @@
 
 package marytts.util.data;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import marytts.signalproc.process.InlineDataProcessor;
+import marytts.util.CancellationToken;
 
 /**
+ * A double data source whose data is computed by a producer running in its own thread,
+ * while the data is being read. Producer and reader exchange the data through a
+ * {@link DoubleRingBuffer}, so producers should send their data in blocks via
+ * {@link #putData(double[], int, int)} where possible.
+ * <p>
+ * By default, producers run on a shared pool of daemon threads; use
+ * {@link #start(Executor)} to run them elsewhere.
+ *
  * @author marc
  *
  */
 public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource implements Runnable {
-    private static final Double END_OF_STREAM = Double.NEGATIVE_INFINITY;
-    
-    
-    protected ArrayBlockingQueue<Double> queue = new ArrayBlockingQueue<Double>(1024);
-    private Thread dataProducingThread = null;
-    private boolean hasSentEndOfStream = false;
+    /**
+     * The number of doubles which a producer can be ahead of the reader.
+     */
+    public static final int RING_BUFFER_SIZE = 4096;
+
+    private static final ExecutorService defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "DataProducer-"+count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    protected final DoubleRingBuffer ringBuffer = new DoubleRingBuffer(RING_BUFFER_SIZE);
+    private volatile boolean started = false;
+    // the token of the request for which the data is produced
+    private final CancellationToken cancellation = CancellationToken.current();
     private boolean hasReceivedEndOfStream = false;
 
 
@@ -57,34 +82,74 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
         this.dataLength = numDataThatWillBeProduced;
     }
 
+    /**
+     * Start producing the data on the shared producer thread pool.
+     */
     public void start() {
-        dataProducingThread = new Thread(this);
-        dataProducingThread.start();
+        start(defaultExecutor);
+    }
+
+    /**
+     * Start producing the data using the given executor.
+     * If {@link #run()} fails with an exception, the reader gets the exception
+     * after the data produced so far. The producer runs with the {@link CancellationToken}
+     * of the thread which created this data source.
+     * @param executor the executor to run the producer
+     */
+    public void start(Executor executor) {
+        started = true;
+        executor.execute(new Runnable() {
+            public void run() {
+                CancellationToken previousToken = CancellationToken.setCurrent(cancellation);
+                try {
+                    ProducingDoubleDataSource.this.run();
+                } catch (Throwable t) {
+                    if (!ringBuffer.isClosed()) {
+                        ringBuffer.fail(t);
+                    }
+                } finally {
+                    CancellationToken.setCurrent(previousToken);
+                }
+            }
+        });
     }
 
     /**
      * Subclasses must implement this method such that it produces data and sends it through
-     * {@link #putOneDataPoint(double)}.
+     * {@link #putData(double[], int, int)} or {@link #putOneDataPoint(double)}.
      * When all data is sent, the subclass must call {@link #putEndOfStream()} exactly once.
      */
     public abstract void run();
     
     /**
-     * The producing thread tries to put ont data item into the queue.
+     * The producing thread puts one data item into the buffer.
      * @param value
      */
     public void putOneDataPoint(double value) {
-        try {
-            queue.put(value);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Unexpected interruption", e);
-        }
+        ringBuffer.put(value);
+    }
+
+    /**
+     * The producing thread puts a block of data into the buffer, waiting for the reader as needed.
+     * @param data the data
+     * @param off the position of the first data item to send
+     * @param len the number of data items to send
+     */
+    public void putData(double[] data, int off, int len) {
+        ringBuffer.put(data, off, len);
     }
-    
     
     protected void putEndOfStream() {
-        putOneDataPoint(END_OF_STREAM);
-        hasSentEndOfStream  = true;
+        ringBuffer.close();
+    }
+
+    /**
+     * Instead of {@link #putEndOfStream()}, a producer which cannot produce all of its data
+     * calls this method; the reader will get an exception after reading the data produced so far.
+     * @param cause the reason for the failure
+     */
+    protected void putFailure(Throwable cause) {
+        ringBuffer.fail(cause);
     }
     
 
@@ -104,11 +169,7 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
         if (isAllProductionDataRead()) {
             return 0;
         }
-        int inQueue = queue.size();
-        if (hasSentEndOfStream && !hasReceivedEndOfStream) {
-            inQueue -= 1;
-        }
-        return inQueue;
+        return ringBuffer.available();
     }
 
 
@@ -130,14 +191,13 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
         // Now we have a buffer that can hold at least minLength new data points
         int readSum = 0;
         while (readSum < minLength) {
-            double data = getOneDataPoint();
-            if (data == END_OF_STREAM) {
+            int read = ringBuffer.get(buf, writePos, minLength-readSum);
+            if (read < 0) {
                 hasReceivedEndOfStream = true;
                 break;
             }
-            buf[writePos] = data;
-            writePos++;
-            readSum++;
+            writePos += read;
+            readSum += read;
         }
         if (dataProcessor != null) {
             dataProcessor.applyInline(buf, writePos-readSum, readSum);
@@ -145,29 +205,17 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
         return readSum == minLength;
     }
 
-    /**
-     * The reading thread tries to get one data item from the queue.
-     * @return
-     */
-    private double getOneDataPoint() {
-        try {
-            return queue.take();
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Unexpected interruption", e);
-        }
-    }
-    
     /**
      * @throws IllegalStateException
      */
     private void checkStarted() throws IllegalStateException {
         if (!isStarted()) {
-            throw new IllegalStateException("Producer thread has not been started -- call start()");
+            throw new IllegalStateException("Producer has not been started -- call start()");
         }
     }
 
     private boolean isStarted() {
-        return dataProducingThread != null;
+        return started;
     }
 
 
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data;
+
+import java.util.Arrays;
+
+import marytts.signalproc.process.InlineDataProcessor;
+
+/**
+ * A double data source converting the signal of its input source to another
+ * sampling rate, using a {@link PolyphaseFilterBank}.
+ * <p>
+ * The input is read as it is needed, and no more than is available without blocking
+ * once enough input for the next output sample is there, so that the resampler can
+ * be used on streaming audio. After the buffers have been set up, resampling does not
+ * allocate any memory. The output sample n lies at the time of the input sample n*M/L;
+ * the output has ceil(N*L/M) samples for an input of N samples.
+ *
+ * @author agent
+ */
+public class ResamplingDoubleDataSource extends BufferedDoubleDataSource
+{
+    private static final int INPUT_BLOCKSIZE = 1024;
+
+    protected PolyphaseFilterBank filters;
+    protected int up;
+    protected int down;
+    // the input samples around the current position:
+    private double[] input;
+    private long inputOffset; // the position in the input signal of input[0]
+    private int inputLength; // the number of samples in input
+    private long inputRead; // the number of samples read from the input source
+    private boolean inputDone;
+    // the position of the next output sample: input sample base plus phase/up
+    private long base;
+    private int phase;
+
+    /**
+     * Create a resampler for the given source.
+     * @param inputSource the signal to resample
+     * @param inputRate the sampling rate of inputSource
+     * @param outputRate the sampling rate of the data to be read from this source
+     */
+    public ResamplingDoubleDataSource(DoubleDataSource inputSource, int inputRate, int outputRate)
+    {
+        this(inputSource, inputRate, outputRate, null);
+    }
+
+    /**
+     * Create a resampler for the given source, processing the resampled data with the given processor.
+     * @param inputSource the signal to resample
+     * @param inputRate the sampling rate of inputSource
+     * @param outputRate the sampling rate of the data to be read from this source
+     * @param dataProcessor the processor to apply to the output, or null
+     */
+    public ResamplingDoubleDataSource(DoubleDataSource inputSource, int inputRate, int outputRate, InlineDataProcessor dataProcessor)
+    {
+        super(inputSource, dataProcessor);
+        this.filters = PolyphaseFilterBank.forRates(inputRate, outputRate);
+        this.up = filters.getUpFactor();
+        this.down = filters.getDownFactor();
+        long inLength = inputSource.getDataLength();
+        if (inLength != DoubleDataSource.NOT_SPECIFIED) {
+            dataLength = (inLength * up + down - 1) / down;
+        }
+        int history = -filters.getFirstTap();
+        input = new double[filters.getTapsPerPhase() + INPUT_BLOCKSIZE];
+        // the samples before the start of the signal are zero:
+        inputOffset = -history;
+        inputLength = history;
+        base = 0;
+        phase = 0;
+    }
+
+    @Override
+    public boolean hasMoreData()
+    {
+        return currentlyInBuffer() > 0 || base < inputRead || !inputDone && inputSource.hasMoreData();
+    }
+
+    @Override
+    public int available()
+    {
+        return currentlyInBuffer() + (int) ((inputRead - base + inputSource.available()) * up / down);
+    }
+
+    @Override
+    protected boolean readIntoBuffer(int minLength)
+    {
+        if (bufferSpaceLeft()<minLength) {
+            // current buffer cannot hold the data requested;
+            // need to make it larger
+            increaseBufferSize(minLength+currentlyInBuffer());
+        } else if (buf.length-writePos<minLength) {
+            compact(); // create a contiguous space for the new data
+        }
+        int firstTap = filters.getFirstTap();
+        int lastTap = firstTap + filters.getTapsPerPhase() - 1;
+        int readSum = 0;
+        while (readSum < minLength) {
+            if (inputDone && base >= inputRead) {
+                break;
+            }
+            if (base + lastTap >= inputOffset + inputLength) {
+                readInput(base + lastTap);
+            }
+            buf[writePos++] = filters.filter(phase, input, (int) (base + firstTap - inputOffset));
+            readSum++;
+            phase += down;
+            base += phase / up;
+            phase %= up;
+        }
+        if (dataProcessor != null) {
+            dataProcessor.applyInline(buf, writePos-readSum, readSum);
+        }
+        return readSum == minLength;
+    }
+
+    /**
+     * Discard the input samples no longer needed, and read more input samples until
+     * the sample at position last is in the input buffer. After the end of the input,
+     * the buffer is filled with zeroes.
+     * @param last the position in the input signal of the last sample needed
+     */
+    private void readInput(long last)
+    {
+        int discard = (int) (base + filters.getFirstTap() - inputOffset);
+        if (discard > 0) {
+            System.arraycopy(input, discard, input, 0, inputLength - discard);
+            inputLength -= discard;
+            inputOffset += discard;
+        }
+        if (!inputDone) {
+            int space = input.length - inputLength;
+            int needed = (int) (last - inputOffset - inputLength + 1);
+            int toRead = Math.min(space, Math.max(needed, inputSource.available()));
+            int read = inputSource.getData(input, inputLength, toRead);
+            inputLength += read;
+            inputRead += read;
+            if (read < toRead) {
+                inputDone = true;
+            }
+        }
+        if (inputDone) {
+            Arrays.fill(input, inputLength, input.length, 0);
+            inputLength = input.length;
+        }
+        assert last < inputOffset + inputLength;
+    }
+}
@@ -0,0 +1,376 @@
+/**
+ * Copyright (C) 2026 DFKI GmbH. All rights reserved.
+ */
+
+package marytts.util.data.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * An appendable audio input stream for exactly one appending and one reading
+ * thread, which does not lock. The stream is a queue of chunks, each of which is
+ * either an appended audio input stream or a block of audio bytes; the appending
+ * thread adds chunks to a lock-free queue, and the reading thread parks while
+ * the queue is empty and more audio is expected.
+ * <p>
+ * Apart from the usual read methods, the audio can be written to a channel with
+ * {@link #transferTo(WritableByteChannel)}, which passes byte chunks to the channel as they are
+ * rather than reading them into a buffer first, or in Sun AU format with
+ * {@link #transferToAU(WritableByteChannel)}. This is not zero-copy: a channel wrapping
+ * an output stream (see {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)})
+ * copies the bytes, and so does a socket or file channel for heap buffers.
+ * <p>
+ * The stream counts the frames read, so that the length of the audio is known
+ * once it has been read even if some appended stream did not know its length;
+ * see {@link #whenRead(Runnable)}.
+ *
+ * @author agent
+ *
+ */
+public class ChunkedAudioInputStream extends AppendableSequenceAudioInputStream
+{
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+    private final ConcurrentLinkedQueue<Object> chunks = new ConcurrentLinkedQueue<Object>();
+    private volatile boolean done = false;
+    private volatile Thread waitingReader = null;
+    // all streams appended, for computing the frame length, and the frames of all byte chunks
+    private final ConcurrentLinkedQueue<AudioInputStream> appendedStreams = new ConcurrentLinkedQueue<AudioInputStream>();
+    private final AtomicLong appendedDataFrames = new AtomicLong(0);
+
+    // The reader's state:
+    private Object currentChunk = null;
+    private ByteBuffer transferBuffer = null;
+    private final AtomicLong framesRead = new AtomicLong(0);
+    // what to do once all has been read; guarded by itself
+    private final List<Runnable> endActions = new ArrayList<Runnable>();
+    private boolean ended = false;
+
+    /**
+     * Create a chunked audio input stream.
+     * @param audioFormat the format of all audio in this stream
+     * @param audioInputStreams the list of initial audio input streams, or null if initially the stream is empty.
+     */
+    public ChunkedAudioInputStream(AudioFormat audioFormat, Collection<AudioInputStream> audioInputStreams)
+    {
+        super(audioFormat, null);
+        if (audioInputStreams != null) {
+            for (AudioInputStream ais : audioInputStreams) {
+                append(ais);
+            }
+        }
+    }
+
+    /**
+     * Append the new audio input stream to the end of the stream.
+     * It will be read by the reading thread when its turn comes.
+     * @param ais
+     * @throws IllegalArgumentException if this method is called after doneAppending() was called.
+     */
+    @Override
+    public void append(AudioInputStream ais)
+    {
+        if (ais == this)
+            throw new IllegalArgumentException("Cannot append me to myself");
+        if (done) throw new IllegalArgumentException("Cannot append after doneAppending() was called!");
+        appendedStreams.add(ais);
+        chunks.add(ais);
+        wakeUpReader();
+    }
+
+    /**
+     * Append a block of audio bytes in the format of this stream. The array is not copied,
+     * so the caller must not modify it afterwards.
+     * @param data the audio bytes
+     * @param off the offset of the first byte to append
+     * @param len the number of bytes to append; must be a whole number of frames.
+     * @throws IllegalArgumentException if this method is called after doneAppending() was called,
+     * or if len is not a multiple of the frame size.
+     */
+    public void appendData(byte[] data, int off, int len)
+    {
+        if (done) throw new IllegalArgumentException("Cannot append after doneAppending() was called!");
+        if (frameSize > 0 && len % frameSize != 0) throw new IllegalArgumentException("Need whole frames of "+frameSize+" bytes, got "+len+" bytes");
+        if (len == 0) return;
+        appendedDataFrames.addAndGet(frameSize > 0 ? len / frameSize : 0);
+        chunks.add(ByteBuffer.wrap(data, off, len));
+        wakeUpReader();
+    }
+
+    @Override
+    public void doneAppending()
+    {
+        doneAppending = true;
+        done = true;
+        wakeUpReader();
+    }
+
+    private void wakeUpReader()
+    {
+        Thread t = waitingReader;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Get the chunk to read from, waiting for one to be appended if necessary.
+     * @return the current chunk, or null if all data has been read.
+     */
+    private Object currentChunk()
+    {
+        while (currentChunk == null) {
+            currentChunk = chunks.poll();
+            if (currentChunk != null) break;
+            if (done) {
+                // chunks appended before doneAppending() are visible now
+                currentChunk = chunks.poll();
+                if (currentChunk == null) {
+                    ended();
+                    return null;
+                }
+                break;
+            }
+            waitingReader = Thread.currentThread();
+            if (chunks.isEmpty() && !done) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            waitingReader = null;
+        }
+        return currentChunk;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] b = new byte[1];
+        if (frameSize != 1) {
+            throw new IOException("cannot read a single byte if frame size > 1");
+        }
+        int n = read(b, 0, 1);
+        if (n == -1) return -1;
+        return b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException
+    {
+        if (frameSize > 0) len -= len % frameSize;
+        if (len == 0) return 0;
+        Object chunk;
+        while ((chunk = currentChunk()) != null) {
+            int n;
+            if (chunk instanceof ByteBuffer) {
+                ByteBuffer bb = (ByteBuffer) chunk;
+                n = Math.min(len, bb.remaining());
+                bb.get(buf, off, n);
+                if (!bb.hasRemaining()) currentChunk = null;
+            } else {
+                n = ((AudioInputStream) chunk).read(buf, off, len);
+                if (n == -1) currentChunk = null;
+            }
+            if (n > 0) {
+                countRead(n);
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        throw new IOException("skip() is not supported");
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        Object chunk = currentChunk;
+        if (chunk == null) chunk = chunks.peek();
+        if (chunk instanceof ByteBuffer) return ((ByteBuffer) chunk).remaining();
+        if (chunk instanceof AudioInputStream) return ((AudioInputStream) chunk).available();
+        return 0;
+    }
+
+    /**
+     * Return the frame length of this stream. As long as <code>doneAppending()</code> has not been called,
+     * returns <code>AudioSystem.NOT_SPECIFIED</code>; after that, the sum of the frame lengths of the chunks,
+     * or <code>AudioSystem.NOT_SPECIFIED</code> if any of them is unknown.
+     */
+    @Override
+    public long getFrameLength()
+    {
+        if (!done) {
+            return AudioSystem.NOT_SPECIFIED;
+        }
+        long total = appendedDataFrames.get();
+        for (AudioInputStream ais : appendedStreams) {
+            long length = ais.getFrameLength();
+            if (length == AudioSystem.NOT_SPECIFIED) {
+                // If one is not specified, all are not specified
+                return AudioSystem.NOT_SPECIFIED;
+            }
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * The number of frames read so far, whether with the read methods or by a transfer to a channel.
+     * Once all audio has been read, this is the length of the audio, see {@link #whenRead(Runnable)}.
+     */
+    public long getFramesRead()
+    {
+        return framesRead.get();
+    }
+
+    /**
+     * Run the given action once the reader has reached the end of this stream, or has closed it.
+     * If that has happened already, the action is run immediately, otherwise it is run by the reading thread.
+     * This allows to find out the length of the audio with {@link #getFramesRead()}
+     * when {@link #getFrameLength()} does not know it.
+     * @param action the action to run; it must not throw exceptions.
+     */
+    public void whenRead(Runnable action)
+    {
+        synchronized (endActions) {
+            if (!ended) {
+                endActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        ended();
+        super.close();
+    }
+
+    private void countRead(int bytes)
+    {
+        if (frameSize > 0) {
+            framesRead.addAndGet(bytes / frameSize);
+        }
+    }
+
+    private void ended()
+    {
+        List<Runnable> actions;
+        synchronized (endActions) {
+            if (ended) return;
+            ended = true;
+            actions = new ArrayList<Runnable>(endActions);
+            endActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Write all remaining audio to the given channel, blocking while more audio is expected.
+     * Byte chunks are passed to the channel as they are; appended audio input streams are read into a reusable buffer.
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if the audio cannot be read or written
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException
+    {
+        return transfer(channel, false);
+    }
+
+    /**
+     * Write all remaining audio to the given channel in Sun AU format with unknown length,
+     * as {@link AudioSystem#write(AudioInputStream, AudioFileFormat.Type, java.io.OutputStream)} would for a stream
+     * of unknown length, but without intermediate conversion streams.
+     * This is only possible for 16 bit signed linear PCM, see {@link #canTransferAsAU()}.
+     * @param channel the channel to write to
+     * @return the number of bytes written, including the header
+     * @throws IOException if the audio cannot be read or written
+     * @throws IllegalStateException if the audio format cannot be written in this way
+     */
+    public long transferToAU(WritableByteChannel channel) throws IOException
+    {
+        if (!canTransferAsAU()) {
+            throw new IllegalStateException("Cannot write "+format+" as AU data");
+        }
+        ByteBuffer header = ByteBuffer.allocate(24); // big endian
+        header.putInt(0x2e736e64); // ".snd"
+        header.putInt(24); // data offset
+        header.putInt(-1); // unknown data size
+        header.putInt(3); // 16 bit linear PCM
+        header.putInt(Math.round(format.getSampleRate()));
+        header.putInt(format.getChannels());
+        header.flip();
+        long total = 0;
+        while (header.hasRemaining()) {
+            total += channel.write(header);
+        }
+        return total + transfer(channel, !format.isBigEndian());
+    }
+
+    /**
+     * Whether {@link #transferToAU(WritableByteChannel)} can be used for this stream's audio format.
+     * @return true for 16 bit signed PCM audio.
+     */
+    public boolean canTransferAsAU()
+    {
+        return format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+            && format.getSampleSizeInBits() == 16;
+    }
+
+    private long transfer(WritableByteChannel channel, boolean swapBytes) throws IOException
+    {
+        long total = 0;
+        Object chunk;
+        while ((chunk = currentChunk()) != null) {
+            if (chunk instanceof ByteBuffer && !swapBytes) {
+                ByteBuffer bb = (ByteBuffer) chunk;
+                countRead(bb.remaining());
+                while (bb.hasRemaining()) {
+                    total += channel.write(bb);
+                }
+                currentChunk = null;
+                continue;
+            }
+            if (transferBuffer == null) {
+                transferBuffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            }
+            byte[] b = transferBuffer.array();
+            int n = read(b, 0, b.length);
+            if (n <= 0) continue;
+            if (swapBytes) {
+                for (int i=0; i+1<n; i+=2) {
+                    byte tmp = b[i];
+                    b[i] = b[i+1];
+                    b[i+1] = tmp;
+                }
+            }
+            transferBuffer.clear();
+            transferBuffer.limit(n);
+            while (transferBuffer.hasRemaining()) {
+                total += channel.write(transferBuffer);
+            }
+        }
+        return total;
+    }
+}
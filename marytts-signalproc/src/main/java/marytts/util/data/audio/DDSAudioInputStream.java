@@ -34,9 +34,13 @@ import marytts.util.data.DoubleDataSource;
  */
 public class DDSAudioInputStream extends AudioInputStream {
     public static final int MAX_AMPLITUDE = 32767;
+    private static volatile boolean ditherByDefault = false;
     protected DoubleDataSource source;
     protected double[] sampleBuf;
     protected static final int SAMPLEBUFFERSIZE = 8192;
+    protected boolean dither = ditherByDefault;
+    protected long clippedSamples = 0;
+    private int ditherState = 0x2545F491;
     
     /**
      * From the given DoubleDataSource, create an AudioInputStream of the given
@@ -94,54 +98,136 @@ public class DDSAudioInputStream extends AudioInputStream {
             if (toRead > sampleBuf.length) toRead = sampleBuf.length;
             int nRead = source.getData(sampleBuf, 0, toRead);
             //System.err.println("DDSAudioInputStream: read " + nRead + " samples from source");
-            if (frameSize == 1) { // bytes per sample
-                for (int i=0; i<nRead; i++, currentPos++) {
-                    int sample = (int) Math.round(sampleBuf[i] * 127.0); // de-normalise to value range
-                    b[currentPos] = (byte) ((sample>>8)&0xFF);
-                }
-            } else if (frameSize == 2){ // 16 bit
-                boolean bigEndian = format.isBigEndian();
-                for (int i=0; i<nRead; i++, currentPos+=2) {
-                    int sample = (int) Math.round(sampleBuf[i] * 32767.0); // de-normalise to value range
-                    if (sample > MAX_AMPLITUDE || sample < -MAX_AMPLITUDE) {
-                        System.err.println("Warning: signal amplitude out of range: "+sample);
-                    }
-                    byte hibyte = (byte) (sample>>8);
-                    byte lobyte = (byte) (sample&0xFF);
-                    if (!bigEndian) {
-                        b[currentPos] = lobyte;
-                        b[currentPos+1] = hibyte;
-                    } else {
-                        b[currentPos] = hibyte;
-                        b[currentPos+1] = lobyte;
-                    }
-                    //System.err.println("out sample["+i+"]="+sample+" hi:"+Integer.toBinaryString(hibyte)+"/"+hibyte+" lo:"+Integer.toBinaryString(lobyte)+"/"+lobyte);
-                }
-            } else { // 24 bit
-                boolean bigEndian = format.isBigEndian();
-                for (int i=0; i<nRead; i++, currentPos+=3) {
-                    int sample = (int) Math.round(sampleBuf[i] * 8388605.0); // de-normalise to value range
-                    byte hibyte = (byte) (sample>>16);
-                    byte midbyte = (byte) ((sample>>8) & 0xFF);
-                    byte lobyte = (byte) (sample&0xFF);
-                    if (!bigEndian) {
-                        b[currentPos] = lobyte;
-                        b[currentPos+1] = midbyte;
-                        b[currentPos+2] = hibyte;
-                    } else {
-                        b[currentPos] = hibyte;
-                        b[currentPos+1] = midbyte;
-                        b[currentPos+2] = lobyte;
-                    }
-                    //System.err.println("out sample["+i+"]="+sample+" hi:"+Integer.toBinaryString(hibyte)+"/"+hibyte+" lo:"+Integer.toBinaryString(lobyte)+"/"+lobyte);
-                }
-            }
+            currentPos = toPCM(sampleBuf, nRead, b, currentPos);
             totalRead += nRead;
             assert currentPos <= off+len;
         } while (source.hasMoreData() && totalRead < nSamples);
         if (totalRead == 0) return -1;
         else return totalRead*frameSize;
     }
+
+    /**
+     * Convert a block of samples into PCM bytes of this stream's format.
+     * The samples are first scaled, dithered and clipped in place, and then
+     * written as integers; both loops work on whole blocks, without
+     * per-sample method calls or branches on the format.
+     * @param samples the samples, normally between -1 and 1; overwritten with the scaled values.
+     * @param n the number of samples to convert
+     * @param b the target byte array
+     * @param pos the position in b of the first byte to write
+     * @return the position in b after the last byte written
+     */
+    protected int toPCM(double[] samples, int n, byte[] b, int pos) {
+        double scale;
+        double max;
+        if (frameSize == 1) {
+            scale = 127.0;
+            max = 127;
+        } else if (frameSize == 2) {
+            scale = 32767.0;
+            max = MAX_AMPLITUDE;
+        } else {
+            scale = 8388605.0;
+            max = 8388607;
+        }
+        // de-normalise to value range, and clip to avoid wrap-around
+        int clipped = 0;
+        for (int i=0; i<n; i++) {
+            double v = samples[i] * scale;
+            if (dither) {
+                v += nextDither();
+            }
+            if (v > max) {
+                v = max;
+                clipped++;
+            } else if (v < -max) {
+                v = -max;
+                clipped++;
+            }
+            samples[i] = v;
+        }
+        clippedSamples += clipped;
+        boolean signed = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+        boolean bigEndian = format.isBigEndian();
+        if (frameSize == 1) { // bytes per sample
+            int offset = signed ? 0 : 128;
+            for (int i=0; i<n; i++) {
+                b[pos++] = (byte) (Math.round(samples[i]) + offset);
+            }
+        } else if (frameSize == 2) { // 16 bit
+            int offset = signed ? 0 : 32768;
+            int hi = bigEndian ? 0 : 1;
+            int lo = 1 - hi;
+            for (int i=0; i<n; i++, pos+=2) {
+                int sample = (int) Math.round(samples[i]) + offset;
+                b[pos+hi] = (byte) (sample>>8);
+                b[pos+lo] = (byte) sample;
+            }
+        } else { // 24 bit
+            int offset = signed ? 0 : 8388608;
+            int hi = bigEndian ? 0 : 2;
+            int lo = 2 - hi;
+            for (int i=0; i<n; i++, pos+=3) {
+                int sample = (int) Math.round(samples[i]) + offset;
+                b[pos+hi] = (byte) (sample>>16);
+                b[pos+1] = (byte) (sample>>8);
+                b[pos+lo] = (byte) sample;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Triangular dither noise between -1 and 1 quantization steps, from two uniform
+     * random values of a xorshift generator.
+     */
+    private double nextDither() {
+        int x = ditherState;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        int y = x;
+        y ^= y << 13;
+        y ^= y >>> 17;
+        y ^= y << 5;
+        ditherState = y;
+        return ((x >>> 8) - (y >>> 8)) * (1.0 / (1 << 24));
+    }
+
+    /**
+     * Whether to add triangular dither of one quantization step to the samples before
+     * they are quantized. This masks quantization noise for very quiet signals; it is off by default,
+     * see {@link #setDitherByDefault(boolean)}.
+     * @param dither true to add dither
+     */
+    public void setDither(boolean dither) {
+        this.dither = dither;
+    }
+
+    public boolean isDither() {
+        return dither;
+    }
+
+    /**
+     * Whether streams created from now on add dither, see {@link #setDither(boolean)}.
+     * The MARY server sets this from the property <code>audio.dither</code>.
+     * @param dither true to add dither
+     */
+    public static void setDitherByDefault(boolean dither) {
+        ditherByDefault = dither;
+    }
+
+    public static boolean isDitherByDefault() {
+        return ditherByDefault;
+    }
+
+    /**
+     * The number of samples so far which were outside the value range of the audio format and had to be clipped.
+     * @return the number of clipped samples
+     */
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
  
     /**
      * Skips over and discards a specified number of bytes from this
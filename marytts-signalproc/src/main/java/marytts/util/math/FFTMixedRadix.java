@@ -33,61 +33,6 @@ public class FFTMixedRadix {
     
     //  maxp must be > the number of prime factors of fftSize.
     private static int maxp = 10000;
-    
-    private static int [] nfac;
-    private static int [] np;
-    private static double [] at;
-    private static double  [] ck;
-    private static double  [] bt;
-    private static double  [] sk;
-    private static int factInd; //In original code: i
-    private static int nt;
-    private static int ks;
-    private static int kspan;
-    private static int nn;
-    private static int jc;
-    private static double  radf;
-    private static int jf;
-    private static double  sd;
-    private static double  cd;
-    private static int kk;
-    private static int k1;
-    private static int k2;
-    private static double  ak;
-    private static double  bk;
-    private static double  c1;
-    private static double  s1;
-    private static double  aj;
-    private static double  bj;
-    private static int kspnn;
-    private static int k3;
-    private static int k4;
-    private static double  akp;
-    private static double  akm;
-    private static double  ajp;
-    private static double  ajm;
-    private static double  bkp;
-    private static double  bkm;
-    private static double  bjp;
-    private static double  bjm;
-    private static double  c2;
-    private static double  s2;
-    private static double  c3;
-    private static double  s3;
-    private static double  aa;
-    private static double  bb;
-    private static int currentFactor; //In original code: k
-    private static int jCount; //In original code: j
-    private static int jj;
-    private static int jn;
-    private static int kt;
-    private static int mCount;//In original code: m
-
-    private static int inc;
-    private static double  c72;
-    private static double  s72;
-    private static double  s120;
-    private static double  rad;
 
     //FFT power spectrum of real valued data x
     public static double [] fftPowerSpectrum(double [] x)
@@ -172,6 +117,7 @@ public class FFTMixedRadix {
     // xlen-point FFT of real valued data x of length xlen.
     // The result is returned as a pointer to a ComplexArray object 
     //   which holds a real and an imag array of size xlen
+    //   For powers of two, the cached FFTPlan of that size is used.
     public static ComplexArray fftReal(double [] x, int xlen)
     {
         ComplexArray h = new ComplexArray(xlen);
@@ -184,6 +130,12 @@ public class FFTMixedRadix {
             h.imag[w] = 0.0;
         }
 
+        if (MathUtils.isPowerOfTwo(xlen))
+        {
+            FFTPlan.forSize(xlen).transform(h.real, h.imag, false);
+            return h;
+        }
+
         mixedRadixFFTBase(h.real, h.imag, xlen, xlen, xlen, 1);
 
         for (w=0; w<xlen; w++)
@@ -401,6 +353,61 @@ public class FFTMixedRadix {
     //    Please refer to these functions if you want to add new functions calling mixedRadixFFTBase.
     private static void mixedRadixFFTBase(double [] a, double [] b, int ntot, int fftSize, int nspan, int isn)
     {    
+        //Working variables, local so that concurrent transforms do not interfere
+        int [] nfac = null;
+        int [] np = null;
+        double [] at = null;
+        double [] ck = null;
+        double [] bt = null;
+        double [] sk = null;
+        int factInd = 0; //In original code: i
+        int nt = 0;
+        int ks = 0;
+        int kspan = 0;
+        int nn = 0;
+        int jc = 0;
+        double radf = 0.0;
+        int jf = 0;
+        double sd = 0.0;
+        double cd = 0.0;
+        int kk = 0;
+        int k1 = 0;
+        int k2 = 0;
+        double ak = 0.0;
+        double bk = 0.0;
+        double c1 = 0.0;
+        double s1 = 0.0;
+        double aj = 0.0;
+        double bj = 0.0;
+        int kspnn = 0;
+        int k3 = 0;
+        int k4 = 0;
+        double akp = 0.0;
+        double akm = 0.0;
+        double ajp = 0.0;
+        double ajm = 0.0;
+        double bkp = 0.0;
+        double bkm = 0.0;
+        double bjp = 0.0;
+        double bjm = 0.0;
+        double c2 = 0.0;
+        double s2 = 0.0;
+        double c3 = 0.0;
+        double s3 = 0.0;
+        double aa = 0.0;
+        double bb = 0.0;
+        int currentFactor = 0; //In original code: k
+        int jCount = 0; //In original code: j
+        int jj = 0;
+        int jn = 0;
+        int kt = 0;
+        int mCount = 0;//In original code: m
+        int inc = 0;
+        double c72 = 0.0;
+        double s72 = 0.0;
+        double s120 = 0.0;
+        double rad = 0.0;
+
         //Local variables for handling goto statements
         boolean bLoopLine924 = false;
         boolean bJumpToLine924 = false;
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.math;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A precomputed plan for FFTs of one power-of-two size. The plan holds the
+ * twiddle factors and the bit reversal permutation for its size, so that
+ * transforming a frame neither computes sines and cosines nor allocates memory;
+ * all transforms work in-place on the arrays given by the caller.
+ * <p>
+ * Plans are immutable and can be shared between threads. Get the plan
+ * for a given size with {@link #forSize(int)}, which creates each plan only once.
+ * The transforms compute the same as {@link FFT#transform(double[], double[], boolean)},
+ * {@link FFT#transform(double[], boolean)} and {@link FFT#realTransform(double[], boolean)},
+ * which use these plans.
+ *
+ * @author agent
+ *
+ */
+public class FFTPlan
+{
+    private static final int MAX_LOG2 = 30;
+    private static final AtomicReferenceArray<FFTPlan> plans = new AtomicReferenceArray<FFTPlan>(MAX_LOG2+1);
+
+    /**
+     * Get the plan for FFTs of the given size.
+     * @param n the number of (complex) points to transform; must be a power of two.
+     * @return the plan, shared with all other users of this size.
+     * @throws IllegalArgumentException if n is not a power of two.
+     */
+    public static FFTPlan forSize(int n)
+    {
+        if (n <= 0 || (n & (n-1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two, got "+n);
+        }
+        int log2 = Integer.numberOfTrailingZeros(n);
+        FFTPlan plan = plans.get(log2);
+        if (plan == null) {
+            plans.compareAndSet(log2, null, new FFTPlan(n));
+            plan = plans.get(log2);
+        }
+        return plan;
+    }
+
+    private final int n;
+    // cos[k] = cos(2*PI*k/n), sin[k] = sin(2*PI*k/n), for 0 <= k < n/2
+    private final double[] cos;
+    private final double[] sin;
+    // pairs of indices to swap for the bit reversal permutation
+    private final int[] swaps;
+
+    private FFTPlan(int n)
+    {
+        this.n = n;
+        int halfN = n / 2;
+        cos = new double[halfN];
+        sin = new double[halfN];
+        for (int k=0; k<halfN; k++) {
+            double phi = MathUtils.TWOPI * k / n;
+            cos[k] = Math.cos(phi);
+            sin[k] = Math.sin(phi);
+        }
+        int log2 = Integer.numberOfTrailingZeros(n);
+        int numSwaps = 0;
+        for (int i=0; i<n; i++) {
+            if (i < reverse(i, log2)) numSwaps++;
+        }
+        swaps = new int[2*numSwaps];
+        for (int i=0, s=0; i<n; i++) {
+            int r = reverse(i, log2);
+            if (i < r) {
+                swaps[s++] = i;
+                swaps[s++] = r;
+            }
+        }
+    }
+
+    private static int reverse(int i, int bits)
+    {
+        return bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+
+    /**
+     * The number of complex points transformed by this plan.
+     */
+    public int getSize()
+    {
+        return n;
+    }
+
+    /**
+     * Carry out the FFT or inverse FFT in-place, as {@link FFT#transform(double[], double[], boolean)}.
+     * @param real the real parts, of length {@link #getSize()}
+     * @param imag the imaginary parts, of length {@link #getSize()}
+     * @param inverse whether to calculate the FFT or the inverse FFT.
+     * @throws IllegalArgumentException if the arrays do not have the size of this plan.
+     */
+    public void transform(double[] real, double[] imag, boolean inverse)
+    {
+        if (real.length != n || imag.length != n)
+            throw new IllegalArgumentException("Expected arrays of length "+n+", got "+real.length+" and "+imag.length);
+        for (int s=0; s<swaps.length; s+=2) {
+            int i = swaps[s];
+            int j = swaps[s+1];
+            double tmp = real[i];
+            real[i] = real[j];
+            real[j] = tmp;
+            tmp = imag[i];
+            imag[i] = imag[j];
+            imag[j] = tmp;
+        }
+        // Combine pairs of blocks of length halfBlockLength, using w = exp(-+2*PI*I*k/blockLength)
+        // = exp(-+2*PI*I*k*step/n)
+        for (int halfBlockLength=1, step=n>>1; halfBlockLength<n; halfBlockLength<<=1, step>>=1) {
+            int blockLength = halfBlockLength<<1;
+            for (int start=0; start<n; start+=blockLength) {
+                for (int k=0, t=0; k<halfBlockLength; k++, t+=step) {
+                    double wReal = cos[t];
+                    double wImag = inverse ? sin[t] : -sin[t];
+                    int i = start+k;
+                    int j = i+halfBlockLength;
+                    double tmpReal = wReal*real[j] - wImag*imag[j];
+                    double tmpImag = wReal*imag[j] + wImag*real[j];
+                    real[j] = real[i] - tmpReal;
+                    imag[j] = imag[i] - tmpImag;
+                    real[i] += tmpReal;
+                    imag[i] += tmpImag;
+                }
+            }
+        }
+        if (inverse) {
+            double scale = 1. / n;
+            for (int i=0; i<n; i++) {
+                real[i] *= scale;
+                imag[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Carry out the FFT or inverse FFT in-place, as {@link FFT#transform(double[], boolean)}:
+     * the even indices of the array hold the real part, the odd indices the imaginary part of each complex number.
+     * @param realAndImag the complex numbers, of length 2*{@link #getSize()}
+     * @param inverse whether to calculate the FFT or the inverse FFT.
+     * @throws IllegalArgumentException if the array does not have the size of this plan.
+     */
+    public void transform(double[] realAndImag, boolean inverse)
+    {
+        if (realAndImag.length != 2*n)
+            throw new IllegalArgumentException("Expected array of length "+(2*n)+", got "+realAndImag.length);
+        for (int s=0; s<swaps.length; s+=2) {
+            int i = swaps[s]<<1;
+            int j = swaps[s+1]<<1;
+            double tmp = realAndImag[i];
+            realAndImag[i] = realAndImag[j];
+            realAndImag[j] = tmp;
+            tmp = realAndImag[i+1];
+            realAndImag[i+1] = realAndImag[j+1];
+            realAndImag[j+1] = tmp;
+        }
+        for (int halfBlockLength=1, step=n>>1; halfBlockLength<n; halfBlockLength<<=1, step>>=1) {
+            int blockLength = halfBlockLength<<1;
+            for (int start=0; start<n; start+=blockLength) {
+                for (int k=0, t=0; k<halfBlockLength; k++, t+=step) {
+                    double wReal = cos[t];
+                    double wImag = inverse ? sin[t] : -sin[t];
+                    int i = (start+k)<<1;
+                    int j = i+(halfBlockLength<<1);
+                    double tmpReal = wReal*realAndImag[j] - wImag*realAndImag[j+1];
+                    double tmpImag = wReal*realAndImag[j+1] + wImag*realAndImag[j];
+                    realAndImag[j] = realAndImag[i] - tmpReal;
+                    realAndImag[j+1] = realAndImag[i+1] - tmpImag;
+                    realAndImag[i] += tmpReal;
+                    realAndImag[i+1] += tmpImag;
+                }
+            }
+        }
+        if (inverse) {
+            double scale = 1. / n;
+            for (int i=0; i<realAndImag.length; i++) {
+                realAndImag[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Carry out the FFT of {@link #getSize()} real values in-place, or its inverse, as
+     * {@link FFT#realTransform(double[], boolean)}. The transform is computed as a complex FFT
+     * of half the size. The result of the forward transform is
+     * data[0] = real[0], data[1] = real[N/2], data[2*i] = real[i], data[2*i+1] = imag[i] for 1&lt;=i&lt;N/2.
+     * @param data the real signal resp. the packed positive frequencies, of length {@link #getSize()} &gt;= 4
+     * @param inverse whether to calculate the FFT or the inverse FFT.
+     * @throws IllegalArgumentException if the array does not have the size of this plan.
+     */
+    public void realTransform(double[] data, boolean inverse)
+    {
+        if (data.length != n)
+            throw new IllegalArgumentException("Expected array of length "+n+", got "+data.length);
+        if (n < 4)
+            throw new IllegalArgumentException("Real transform needs at least 4 points, got "+n);
+        FFTPlan half = forSize(n>>1);
+        double c1 = 0.5;
+        double c2;
+        if (!inverse) {
+            c2 = -0.5;
+            half.transform(data, false);
+        } else {
+            c2 = 0.5;
+        }
+        int n4 = n>>2;
+        for (int i=1; i<n4; i++) {
+            double wReal = cos[i];
+            double wImag = inverse ? sin[i] : -sin[i];
+            int twoI = i<<1;
+            int twoIPlus1 = twoI + 1;
+            int nMinusTwoI = n - twoI;
+            int nMinusTwoIPlus1 = nMinusTwoI + 1;
+            // separate the transforms of the even and the odd samples
+            double h1r = c1*(data[twoI]+data[nMinusTwoI]);
+            double h1i = c1*(data[twoIPlus1]-data[nMinusTwoIPlus1]);
+            double h2r = -c2*(data[twoIPlus1]+data[nMinusTwoIPlus1]);
+            double h2i = c2*(data[twoI]-data[nMinusTwoI]);
+            // and recombine them to form the transform of the real data
+            data[twoI] = h1r+wReal*h2r-wImag*h2i;
+            data[twoIPlus1] = h1i+wReal*h2i+wImag*h2r;
+            data[nMinusTwoI] = h1r-wReal*h2r+wImag*h2i;
+            data[nMinusTwoIPlus1] = -h1i+wReal*h2i+wImag*h2r;
+        }
+        double tmp = data[0];
+        if (!inverse) {
+            data[0] += data[1];
+            data[1] = tmp - data[1];
+            data[n/2+1] = -data[n/2+1];
+        } else {
+            data[0] = 0.5*(tmp+data[1]);
+            data[1] = 0.5*(tmp-data[1]);
+            data[n/2+1] = -data[n/2+1];
+            half.transform(data, true);
+        }
+    }
+
+    /**
+     * Compare the speed of FFT plans with that of the mixed-radix FFT and of the allocating
+     * convenience methods, for a range of typical frame sizes.
+     * @param args optionally, the number of transforms per size (default: 20000)
+     */
+    public static void main(String[] args)
+    {
+        int numTransforms = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        for (int round=0; round<2; round++) { // the first round warms up the JIT
+            boolean print = round == 1;
+            for (int k=8; k<=11; k++) {
+                int size = 1<<k;
+                double[] signal = new double[size];
+                for (int i=0; i<size; i++) {
+                    signal[i] = Math.sin(0.01*i) + 0.1*Math.sin(0.37*i);
+                }
+                FFTPlan plan = FFTPlan.forSize(size);
+                double[] real = new double[size];
+                double[] imag = new double[size];
+                double[] spectrum = new double[size/2];
+                double check = 0;
+
+                long start = System.nanoTime();
+                for (int j=0; j<numTransforms; j++) {
+                    System.arraycopy(signal, 0, real, 0, size);
+                    Arrays.fill(imag, 0);
+                    plan.transform(real, imag, false);
+                    plan.transform(real, imag, true);
+                    check += real[1];
+                }
+                long planComplex = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int j=0; j<numTransforms; j++) {
+                    System.arraycopy(signal, 0, real, 0, size);
+                    Arrays.fill(imag, 0);
+                    ComplexArray x = FFTMixedRadix.ifft(FFTMixedRadix.fftComplex(real, imag));
+                    check += x.real[1];
+                }
+                long mixedRadix = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int j=0; j<numTransforms; j++) {
+                    System.arraycopy(signal, 0, real, 0, size);
+                    plan.realTransform(real, false);
+                    FFT.computePowerSpectrum_FD(real, spectrum);
+                    check += spectrum[1];
+                }
+                long planReal = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int j=0; j<numTransforms; j++) {
+                    double[] s = FFT.computePowerSpectrum(signal);
+                    check += s[1];
+                }
+                long allocatingReal = System.nanoTime() - start;
+
+                if (print) {
+                    System.out.printf("n=%5d  complex: plan %7.2f us, mixed radix %7.2f us;  power spectrum: plan %7.2f us, allocating %7.2f us  (%g)%n",
+                            size, planComplex/1000./numTransforms, mixedRadix/1000./numTransforms,
+                            planReal/1000./numTransforms, allocatingReal/1000./numTransforms, check);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.process;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.util.data.Datagram;
+import marytts.util.data.audio.AudioDoubleDataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class SegmentedFDPSOLAProcessorTest
+{
+    private static final AudioFormat FORMAT = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 16000, 16, 1, 2, 16000, false);
+    private static final int NUM_UNITS = 100;
+    private static final int FRAMES_PER_UNIT = 4;
+    private static final int PERIOD = 100;
+
+    private static boolean isVoiced(int unit)
+    {
+        return unit % 7 != 3 && unit % 7 != 4;
+    }
+
+    private static Datagram[][] createUnits()
+    {
+        Random random = new Random(42);
+        Datagram[][] datagrams = new Datagram[NUM_UNITS][FRAMES_PER_UNIT];
+        for (int i=0; i<NUM_UNITS; i++) {
+            for (int j=0; j<FRAMES_PER_UNIT; j++) {
+                byte[] data = new byte[2*PERIOD];
+                for (int t=0; t<PERIOD; t++) {
+                    double x = isVoiced(i) ? 0.5*Math.sin(2*Math.PI*t/PERIOD) : 0.1*random.nextGaussian();
+                    short sample = (short) (x * 32767);
+                    data[2*t] = (byte) (sample >> 8);
+                    data[2*t+1] = (byte) sample;
+                }
+                datagrams[i][j] = new Datagram(PERIOD, data);
+            }
+        }
+        return datagrams;
+    }
+
+    private static double[][] fill(double value)
+    {
+        double[][] values = new double[NUM_UNITS][FRAMES_PER_UNIT];
+        for (double[] unit : values) {
+            Arrays.fill(unit, value);
+        }
+        return values;
+    }
+
+    private static boolean[][] voicings()
+    {
+        boolean[][] voicings = new boolean[NUM_UNITS][FRAMES_PER_UNIT];
+        for (int i=0; i<NUM_UNITS; i++) {
+            Arrays.fill(voicings[i], isVoiced(i));
+        }
+        return voicings;
+    }
+
+    private static long totalDuration(Datagram[][] datagrams)
+    {
+        long total = 0;
+        for (Datagram[] unit : datagrams) {
+            for (Datagram d : unit) {
+                total += d.getDuration();
+            }
+        }
+        return total;
+    }
+
+    @Test
+    public void segmentsAreCutAtUnvoicedBoundaries()
+    {
+        SegmentedFDPSOLAProcessor processor = new SegmentedFDPSOLAProcessor(20, 2, null);
+        int[] boundaries = processor.getSegmentBoundaries(createUnits(), voicings());
+        Assert.assertTrue(boundaries.length > 3);
+        Assert.assertEquals(0, boundaries[0]);
+        Assert.assertEquals(NUM_UNITS, boundaries[boundaries.length-1]);
+        for (int s=1; s<boundaries.length-1; s++) {
+            Assert.assertTrue(boundaries[s] > boundaries[s-1]);
+            Assert.assertTrue("boundary "+boundaries[s], !isVoiced(boundaries[s]) && !isVoiced(boundaries[s]-1));
+        }
+        int[] unsegmented = new SegmentedFDPSOLAProcessor(NUM_UNITS, 2, null).getSegmentBoundaries(createUnits(), voicings());
+        Assert.assertArrayEquals(new int[] {0, NUM_UNITS}, unsegmented);
+    }
+
+    @Test
+    public void agreesWithSerialProcessing() throws Exception
+    {
+        double[][] pscales = fill(1.2);
+        double[][] tscales = fill(1.3);
+        Datagram[][] serialUnits = createUnits();
+        double[] serial = new AudioDoubleDataSource(new FDPSOLAProcessor().processDecrufted(serialUnits,
+                new Datagram[NUM_UNITS], FORMAT, voicings(), pscales, tscales)).getAllData();
+        Datagram[][] segmentedUnits = createUnits();
+        double[] segmented = new AudioDoubleDataSource(new SegmentedFDPSOLAProcessor(20, 2, null).processDecrufted(segmentedUnits,
+                new Datagram[NUM_UNITS], FORMAT, voicings(), pscales, tscales)).getAllData();
+
+        Assert.assertEquals(totalDuration(serialUnits), serial.length - 1);
+        Assert.assertEquals(totalDuration(segmentedUnits), segmented.length - 1);
+        Assert.assertEquals(serial.length, segmented.length, 0.01 * serial.length);
+        // The signals agree as long as the same frames are repeated or skipped:
+        int same = 0;
+        for (int i=0; i<NUM_UNITS; i++) {
+            long serialDuration = 0;
+            long segmentedDuration = 0;
+            for (int j=0; j<FRAMES_PER_UNIT; j++) {
+                serialDuration += serialUnits[i][j].getDuration();
+                segmentedDuration += segmentedUnits[i][j].getDuration();
+            }
+            if (serialDuration != segmentedDuration) {
+                break;
+            }
+            same += serialDuration;
+        }
+        Assert.assertTrue(same > serial.length / 4);
+        double error = 0;
+        double energy = 0;
+        for (int i=0; i<same; i++) {
+            error += (serial[i] - segmented[i]) * (serial[i] - segmented[i]);
+            energy += serial[i] * serial[i];
+        }
+        Assert.assertTrue("relative error "+(error/energy), error/energy < 0.02);
+    }
+}
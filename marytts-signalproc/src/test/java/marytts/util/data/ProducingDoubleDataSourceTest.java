@@ -1,13 +1,18 @@
 package marytts.util.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 
+import marytts.exceptions.RequestCancelledException;
 import marytts.signalproc.process.InlineDataProcessor;
+import marytts.util.CancellationToken;
 import marytts.util.data.audio.DDSAudioInputStream;
 
 import org.junit.Test;
@@ -113,6 +118,77 @@ public class ProducingDoubleDataSourceTest {
     
     
 
+    @Test
+    public void canReadBlocksInOrder() {
+        final int numDoubles = 100000; // much more than fits into the ring buffer
+        ProducingDoubleDataSource producer = new ProducingDoubleDataSource(numDoubles) {
+            public void run() {
+                double[] block = new double[77];
+                int sent = 0;
+                while (sent < numDoubles) {
+                    int len = Math.min(block.length, numDoubles - sent);
+                    for (int i=0; i<len; i++) {
+                        block[i] = sent + i;
+                    }
+                    putData(block, 0, len);
+                    sent += len;
+                }
+                putEndOfStream();
+            }
+        };
+        producer.start();
+        double[] data = producer.getAllData();
+        assertEquals(numDoubles, data.length);
+        for (int i=0; i<numDoubles; i++) {
+            assertEquals(i, data[i], 0);
+        }
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void producerFailureReachesReader() {
+        ProducingDoubleDataSource producer = new ProducingDoubleDataSource() {
+            public void run() {
+                putData(new double[10], 0, 10);
+                throw new IllegalStateException("test failure");
+            }
+        };
+        producer.start();
+        producer.getAllData();
+    }
+
+    @Test
+    public void abandonedProducerStopsWhenCancelled() throws Exception {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final Throwable[] reason = new Throwable[1];
+        CancellationToken token = new CancellationToken();
+        CancellationToken previous = CancellationToken.setCurrent(token);
+        ProducingDoubleDataSource producer;
+        try {
+            producer = new ProducingDoubleDataSource() {
+                public void run() {
+                    try {
+                        while (true) { // never finishes on its own
+                            putData(new double[100], 0, 100);
+                        }
+                    } catch (RuntimeException e) {
+                        reason[0] = e;
+                        throw e;
+                    } finally {
+                        stopped.countDown();
+                    }
+                }
+            };
+        } finally {
+            CancellationToken.setCurrent(previous);
+        }
+        producer.start();
+        producer.getData(new double[10]); // then the reader goes away
+        assertEquals(1, stopped.getCount());
+        token.cancel();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(reason[0] instanceof RequestCancelledException);
+    }
+
     private static class TestProducer extends ProducingDoubleDataSource {
         double DUMMY = 0.23;
         
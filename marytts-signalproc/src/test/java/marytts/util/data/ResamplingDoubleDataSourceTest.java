@@ -0,0 +1,106 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ResamplingDoubleDataSourceTest
+{
+    private static double[] sine(double frequency, int samplingRate, int n)
+    {
+        double[] signal = new double[n];
+        for (int i=0; i<n; i++) {
+            signal[i] = 0.5 * Math.sin(2 * Math.PI * frequency * i / samplingRate);
+        }
+        return signal;
+    }
+
+    private static void assertResamplesSine(int inputRate, int outputRate, double frequency)
+    {
+        int n = 3 * inputRate / 10;
+        double[] resampled = new ResamplingDoubleDataSource(new BufferedDoubleDataSource(sine(frequency, inputRate, n)),
+                inputRate, outputRate).getAllData();
+        double[] expected = sine(frequency, outputRate, resampled.length);
+        Assert.assertEquals(((long) n * outputRate + inputRate - 1) / inputRate, resampled.length);
+        // away from the edges, the resampled signal is the sine at the new rate:
+        int margin = outputRate / 100;
+        for (int i=margin; i<resampled.length-margin; i++) {
+            Assert.assertEquals("sample "+i, expected[i], resampled[i], 0.005);
+        }
+    }
+
+    @Test
+    public void upsamplesSine()
+    {
+        assertResamplesSine(16000, 22050, 440);
+        assertResamplesSine(16000, 48000, 3000);
+    }
+
+    @Test
+    public void downsamplesSine()
+    {
+        assertResamplesSine(22050, 16000, 440);
+        assertResamplesSine(48000, 8000, 1000);
+    }
+
+    @Test
+    public void removesFrequenciesAboveNyquist()
+    {
+        double[] resampled = new ResamplingDoubleDataSource(new BufferedDoubleDataSource(sine(6000, 16000, 4800)),
+                16000, 8000).getAllData();
+        for (int i=80; i<resampled.length-80; i++) {
+            Assert.assertEquals(0, resampled[i], 0.005);
+        }
+    }
+
+    @Test
+    public void readsPiecewiseLikeAtOnce()
+    {
+        double[] signal = sine(440, 16000, 5000);
+        double[] atOnce = new ResamplingDoubleDataSource(new BufferedDoubleDataSource(signal), 16000, 22050).getAllData();
+        DoubleDataSource resampler = new ResamplingDoubleDataSource(new BufferedDoubleDataSource(signal), 16000, 22050);
+        double[] piecewise = new double[atOnce.length + 10];
+        int pos = 0;
+        int chunk = 1;
+        int read;
+        while ((read = resampler.getData(piecewise, pos, Math.min(chunk, piecewise.length - pos))) > 0) {
+            pos += read;
+            chunk = chunk * 3 % 517 + 1;
+        }
+        Assert.assertEquals(atOnce.length, pos);
+        for (int i=0; i<atOnce.length; i++) {
+            Assert.assertEquals(atOnce[i], piecewise[i], 0);
+        }
+    }
+
+    @Test
+    public void sharesFilterBanks()
+    {
+        PolyphaseFilterBank bank = PolyphaseFilterBank.forRates(16000, 22050);
+        Assert.assertSame(bank, PolyphaseFilterBank.forRates(32000, 44100));
+        Assert.assertEquals(441, bank.getUpFactor());
+        Assert.assertEquals(320, bank.getDownFactor());
+    }
+}
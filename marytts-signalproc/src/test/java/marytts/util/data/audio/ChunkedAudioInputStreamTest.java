@@ -0,0 +1,136 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.math.FFTTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class ChunkedAudioInputStreamTest
+{
+    private static final AudioFormat FORMAT = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 16000, 16, 1, 2, 16000, false);
+
+    private static ChunkedAudioInputStream createStream(double[] signal, byte[] extra)
+    {
+        ChunkedAudioInputStream cais = new ChunkedAudioInputStream(FORMAT, null);
+        cais.append(new DDSAudioInputStream(new BufferedDoubleDataSource(signal), FORMAT));
+        cais.appendData(extra, 0, extra.length);
+        cais.doneAppending();
+        return cais;
+    }
+
+    @Test
+    public void readerGetsAudioAppendedByOtherThread() throws Exception
+    {
+        final double[] signal = FFTTest.getSampleSignal(4000);
+        final byte[] extra = new byte[] {1, 2, 3, 4};
+        final ChunkedAudioInputStream cais = new ChunkedAudioInputStream(FORMAT, null);
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(20); // reader has to wait
+                } catch (InterruptedException ie) {}
+                cais.append(new DDSAudioInputStream(new BufferedDoubleDataSource(signal), FORMAT));
+                cais.appendData(extra, 0, extra.length);
+                cais.doneAppending();
+            }
+        };
+        producer.start();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1001]; // not a whole number of frames
+        int n;
+        while ((n = cais.read(buf)) != -1) {
+            Assert.assertEquals(0, n % 2);
+            baos.write(buf, 0, n);
+        }
+        producer.join();
+        byte[] audio = baos.toByteArray();
+        Assert.assertEquals(2 * signal.length + extra.length, audio.length);
+        Assert.assertEquals(signal.length + 2, cais.getFrameLength());
+        for (int i=0; i<extra.length; i++) {
+            Assert.assertEquals(extra[i], audio[2 * signal.length + i]);
+        }
+    }
+
+    @Test
+    public void transferToAUGivesSameAudioAsAudioSystem() throws Exception
+    {
+        double[] signal = FFTTest.getSampleSignal(4000);
+        byte[] extra = new byte[] {1, 2, 3, 4};
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        AudioSystem.write(createStream(signal, extra), AudioFileFormat.Type.AU, expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ChunkedAudioInputStream cais = createStream(signal, extra);
+        Assert.assertTrue(cais.canTransferAsAU());
+        long written = cais.transferToAU(Channels.newChannel(actual));
+        byte[] e = expected.toByteArray();
+        byte[] a = actual.toByteArray();
+        Assert.assertEquals(e.length, written);
+        Assert.assertEquals(e.length, a.length);
+        for (int i=0; i<a.length; i++) {
+            if (i >= 8 && i < 12) continue; // data size: unknown when streaming
+            Assert.assertEquals("byte "+i, e[i], a[i]);
+        }
+    }
+
+    @Test
+    public void countsTheFramesOfStreamsOfUnknownLength() throws Exception
+    {
+        byte[] bytes = new byte[2 * 1000];
+        final ChunkedAudioInputStream cais = new ChunkedAudioInputStream(FORMAT, null);
+        cais.append(new AudioInputStream(new ByteArrayInputStream(bytes), FORMAT, AudioSystem.NOT_SPECIFIED));
+        cais.appendData(new byte[] {1, 2, 3, 4}, 0, 4);
+        cais.doneAppending();
+        Assert.assertEquals(AudioSystem.NOT_SPECIFIED, cais.getFrameLength());
+        final long[] frames = new long[] { -1, -1 };
+        cais.whenRead(new Runnable() {
+            public void run()
+            {
+                frames[0] = cais.getFramesRead();
+            }
+        });
+        Assert.assertEquals(-1, frames[0]);
+        cais.transferToAU(Channels.newChannel(new ByteArrayOutputStream()));
+        Assert.assertEquals(1002, frames[0]);
+        // once read, actions run immediately
+        cais.whenRead(new Runnable() {
+            public void run()
+            {
+                frames[1] = cais.getFramesRead();
+            }
+        });
+        Assert.assertEquals(1002, frames[1]);
+    }
+}
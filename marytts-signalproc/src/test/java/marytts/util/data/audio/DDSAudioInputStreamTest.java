@@ -0,0 +1,94 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+import marytts.util.math.FFTTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class DDSAudioInputStreamTest
+{
+    @Test
+    public void clipsInsteadOfWrappingAround() throws Exception
+    {
+        AudioFormat af = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 16000, 16, 1, 2, 16000, false);
+        DDSAudioInputStream ais = new DDSAudioInputStream(new BufferedDoubleDataSource(new double[] {2.0, -2.0, 0.5}), af);
+        byte[] b = new byte[6];
+        Assert.assertEquals(6, ais.read(b));
+        Assert.assertEquals(32767, (short) ((b[1] << 8) | (b[0] & 0xFF)));
+        Assert.assertEquals(-32767, (short) ((b[3] << 8) | (b[2] & 0xFF)));
+        Assert.assertEquals(16384, (short) ((b[5] << 8) | (b[4] & 0xFF)));
+        Assert.assertEquals(2, ais.getClippedSamples());
+    }
+
+    @Test
+    public void canWriteEightBit() throws Exception
+    {
+        AudioFormat signed = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 8000, 8, 1, 1, 8000, false);
+        byte[] b = new byte[3];
+        new DDSAudioInputStream(new BufferedDoubleDataSource(new double[] {1.0, -1.0, 0}), signed).read(b);
+        Assert.assertArrayEquals(new byte[] {127, -127, 0}, b);
+        AudioFormat unsigned = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 8000, 8, 1, 1, 8000, false);
+        new DDSAudioInputStream(new BufferedDoubleDataSource(new double[] {1.0, -1.0, 0}), unsigned).read(b);
+        Assert.assertArrayEquals(new byte[] {(byte) 255, 1, (byte) 128}, b);
+    }
+
+    @Test
+    public void ditherStaysWithinOneStep()
+    {
+        int samplingRate = 16000;
+        AudioFormat af = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, samplingRate, 16, 1, 2, samplingRate, true);
+        double[] signal = FFTTest.getSampleSignal(16000);
+        DDSAudioInputStream ais = new DDSAudioInputStream(new BufferedDoubleDataSource(signal.clone()), af);
+        ais.setDither(true);
+        double[] result = new AudioDoubleDataSource(ais).getAllData();
+        Assert.assertEquals(signal.length, result.length);
+        boolean changed = false;
+        for (int i=0; i<signal.length; i++) {
+            double diff = Math.abs(signal[i] - result[i]) * 32767;
+            Assert.assertTrue("sample "+i+" differs by "+diff+" steps", diff <= 1.5);
+            if (diff > 0.5) changed = true;
+        }
+        Assert.assertTrue(changed);
+    }
+
+    @Test
+    public void ditherCanBeSwitchedOnForAllStreams()
+    {
+        AudioFormat af = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 16000, 16, 1, 2, 16000, true);
+        DoubleDataSource silence = new BufferedDoubleDataSource(new double[10]);
+        Assert.assertFalse(new DDSAudioInputStream(silence, af).isDither());
+        DDSAudioInputStream.setDitherByDefault(true);
+        try {
+            Assert.assertTrue(new DDSAudioInputStream(silence, af).isDither());
+        } finally {
+            DDSAudioInputStream.setDitherByDefault(false);
+        }
+    }
+}
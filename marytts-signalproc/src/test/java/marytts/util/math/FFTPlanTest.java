@@ -0,0 +1,124 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.math;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class FFTPlanTest
+{
+    private static double[] randomSignal(int length)
+    {
+        Random random = new Random(length);
+        double[] signal = new double[length];
+        for (int i=0; i<length; i++) {
+            signal[i] = random.nextGaussian();
+        }
+        return signal;
+    }
+
+    @Test
+    public void transformComputesDFT()
+    {
+        int n = 64;
+        double[] signal = randomSignal(n);
+        double[] real = signal.clone();
+        double[] imag = new double[n];
+        FFTPlan.forSize(n).transform(real, imag, false);
+        for (int k=0; k<n; k++) {
+            double re = 0;
+            double im = 0;
+            for (int t=0; t<n; t++) {
+                re += signal[t] * Math.cos(MathUtils.TWOPI*k*t/n);
+                im -= signal[t] * Math.sin(MathUtils.TWOPI*k*t/n);
+            }
+            Assert.assertEquals(re, real[k], 1.E-10);
+            Assert.assertEquals(im, imag[k], 1.E-10);
+        }
+    }
+
+    @Test
+    public void realTransformAgreesWithComplexTransform()
+    {
+        int n = 512;
+        double[] signal = randomSignal(n);
+        double[] real = signal.clone();
+        double[] imag = new double[n];
+        FFTPlan plan = FFTPlan.forSize(n);
+        plan.transform(real, imag, false);
+        double[] packed = signal.clone();
+        plan.realTransform(packed, false);
+        Assert.assertEquals(real[0], packed[0], 1.E-10);
+        Assert.assertEquals(real[n/2], packed[1], 1.E-10);
+        for (int i=1; i<n/2; i++) {
+            Assert.assertEquals(real[i], packed[2*i], 1.E-10);
+            Assert.assertEquals(imag[i], packed[2*i+1], 1.E-10);
+        }
+        plan.realTransform(packed, true);
+        for (int i=0; i<n; i++) {
+            Assert.assertEquals(signal[i], packed[i], 1.E-12);
+        }
+    }
+
+    @Test
+    public void agreesWithMixedRadix()
+    {
+        int n = 256;
+        double[] signal = randomSignal(n);
+        ComplexArray expected = FFTMixedRadix.fftComplex(signal.clone(), new double[n]);
+        double[] realAndImag = new double[2*n];
+        for (int i=0; i<n; i++) {
+            realAndImag[2*i] = signal[i];
+        }
+        FFTPlan.forSize(n).transform(realAndImag, false);
+        for (int i=0; i<n; i++) {
+            Assert.assertEquals(expected.real[i], realAndImag[2*i], 1.E-10);
+            Assert.assertEquals(expected.imag[i], realAndImag[2*i+1], 1.E-10);
+        }
+        ComplexArray viaPlan = FFTMixedRadix.fftReal(signal, n);
+        Assert.assertArrayEquals(expected.real, viaPlan.real, 1.E-10);
+        Assert.assertArrayEquals(expected.imag, viaPlan.imag, 1.E-10);
+        ComplexArray inverse = FFTMixedRadix.ifft(expected);
+        FFTPlan.forSize(n).transform(realAndImag, true);
+        for (int i=0; i<n; i++) {
+            Assert.assertEquals(inverse.real[i], realAndImag[2*i], 1.E-12);
+            Assert.assertEquals(inverse.imag[i], realAndImag[2*i+1], 1.E-12);
+        }
+    }
+
+    @Test
+    public void plansAreShared()
+    {
+        Assert.assertSame(FFTPlan.forSize(1024), FFTPlan.forSize(1024));
+        Assert.assertEquals(1024, FFTPlan.forSize(1024).getSize());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void sizeMustBePowerOfTwo()
+    {
+        FFTPlan.forSize(1000);
+    }
+}